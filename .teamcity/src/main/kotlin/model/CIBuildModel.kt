@@ -179,6 +179,21 @@ data class CIBuildModel(
                 PerformanceTestCoverage(11, PerformanceTestType.per_commit, Os.WINDOWS, numberOfBuckets = 5, withoutDependencies = true),
                 PerformanceTestCoverage(12, PerformanceTestType.per_commit, Os.MACOS, numberOfBuckets = 5, withoutDependencies = true),
                 PerformanceTestCoverage(13, PerformanceTestType.per_day, Os.LINUX, numberOfBuckets = 30, withoutDependencies = true)
+            ),
+            flameGraphs = listOf(
+                // The heap profile shows where the resolution engine allocates
+                FlameGraphGeneration(
+                    17, "Dependency Graph Resolution",
+                    listOf(
+                        PerformanceScenario(
+                            Scenario(
+                                "org.gradle.performance.regression.corefeature.SyntheticDependencyGraphPerformanceTest",
+                                "resolve synthetic dependency graph with 10000 modules"
+                            ),
+                            "largeSyntheticDependencyGraph"
+                        )
+                    )
+                )
             )
         )
     ),
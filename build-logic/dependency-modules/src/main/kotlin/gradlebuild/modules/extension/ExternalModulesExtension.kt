@@ -130,6 +130,7 @@ abstract class ExternalModulesExtension {
     val agp = "com.android.tools.build:gradle"
     val xbeanReflect = "org.apache.xbean:xbean-reflect"
     val xmlApis = "xml-apis:xml-apis"
+    val zstdJni = "com.github.luben:zstd-jni"
 
     // Compile only dependencies (dynamically downloaded if needed)
     val maven3Compat = "org.apache.maven:maven-compat"
@@ -266,6 +267,7 @@ abstract class ExternalModulesExtension {
         tomlj to License.Apache2,
         trove4j to License.LGPL21,
         xbeanReflect to License.Apache2,
-        xmlApis to License.Apache2
+        xmlApis to License.Apache2,
+        zstdJni to License.BSDStyle
     )
 }
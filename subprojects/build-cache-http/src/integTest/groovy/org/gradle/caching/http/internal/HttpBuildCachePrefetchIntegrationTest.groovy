@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import org.gradle.caching.internal.operations.BuildCacheRemoteLoadBuildOperationType
+import org.gradle.integtests.fixtures.BuildOperationsFixture
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class HttpBuildCachePrefetchIntegrationTest extends HttpBuildCacheFixture {
+    def operations = new BuildOperationsFixture(executer, temporaryFolder)
+    def localCacheDir = file("local-cache")
+
+    def setup() {
+        buildFile << """
+            apply plugin: 'base'
+
+            @CacheableTask
+            class CustomTask extends DefaultTask {
+                @Input
+                String content = "content"
+
+                @OutputFile
+                File outputFile
+
+                @TaskAction
+                void createFile() {
+                    outputFile.text = content
+                }
+            }
+
+            task customTask(type: CustomTask) {
+                outputFile = file('build/output.txt')
+            }
+        """.stripIndent()
+        // Prefetched entries are handed over via the local cache
+        httpBuildCacheServer.start()
+        settingsFile << """
+            buildCache {
+                local {
+                    directory = file("${localCacheDir.name}")
+                }
+                remote(HttpBuildCache) {
+                    url = "${httpBuildCacheServer.uri}"
+                    push = true
+                }
+            }
+        """
+    }
+
+    def "loads the entry prefetched from a slow remote cache"() {
+        given:
+        withBuildCache().run "customTask"
+        withBuildCache().run "clean"
+        localCacheDir.deleteDir()
+
+        def loadRequests = new AtomicInteger()
+        httpBuildCacheServer.addResponder { req, res ->
+            if (req.method == "GET") {
+                loadRequests.incrementAndGet()
+                Thread.sleep(1000)
+            }
+            true
+        }
+
+        when:
+        withBuildCache().run "customTask"
+
+        then:
+        skipped ":customTask"
+        loadRequests.get() == 1
+
+        and:
+        def remoteLoad = operations.only(BuildCacheRemoteLoadBuildOperationType)
+        operations.parentsOf(remoteLoad)*.displayName.contains("Run build")
+    }
+
+    def "executes the work when prefetching from the remote cache fails"() {
+        given:
+        def loadRequests = new AtomicInteger()
+        httpBuildCacheServer.addResponder { req, res ->
+            if (req.method == "GET") {
+                loadRequests.incrementAndGet()
+                res.sendError(500)
+                false
+            } else {
+                true
+            }
+        }
+
+        when:
+        withBuildCache().run "customTask"
+
+        then:
+        executedAndNotSkipped ":customTask"
+        output =~ /Could not load entry .* from remote build cache: Loading entry from '.+' response status 500: Server Error/
+        loadRequests.get() == 1
+    }
+}
@@ -111,6 +111,23 @@ class HttpBuildCacheServiceTest extends Specification {
         destFile.bytes == content
     }
 
+    def "reuses connections between requests"() {
+        HttpClientHelper httpClientHelper = null
+        def defaultFactory = httpClientHelperFactory
+        httpClientHelperFactory = { settings -> httpClientHelper = defaultFactory.create(settings) } as HttpClientHelper.Factory
+        def content = "Data".bytes
+        server.expectPut("/cache/${key.hashCode}", tempDir.file("first.zip"), HttpStatus.SC_OK, null, content.length)
+        server.expectPut("/cache/${key.hashCode}", tempDir.file("second.zip"), HttpStatus.SC_OK, null, content.length)
+
+        when:
+        cache.store(key, writer(content))
+        cache.store(key, writer(content))
+
+        then:
+        httpClientHelper.connectionStatistics.requests == 2
+        httpClientHelper.connectionStatistics.reusedConnections == 1
+    }
+
     def "storing to cache can follow non method preserving redirects"() {
         def content = "Data".bytes
         server.expectPutRedirected("/cache/${key.hashCode}", "/redirect/cache/${key.hashCode}")
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import org.gradle.caching.internal.operations.BuildCacheRemoteStoreBuildOperationType
+import org.gradle.integtests.fixtures.BuildOperationsFixture
+
+class HttpBuildCacheUploadIntegrationTest extends HttpBuildCacheFixture {
+    def operations = new BuildOperationsFixture(executer, temporaryFolder)
+
+    def setup() {
+        buildFile << """
+            apply plugin: 'base'
+
+            @CacheableTask
+            class CustomTask extends DefaultTask {
+                @Input
+                String content = "content"
+
+                @OutputFile
+                File outputFile
+
+                @TaskAction
+                void createFile() {
+                    outputFile.text = content
+                }
+            }
+
+            task customTask(type: CustomTask) {
+                outputFile = file('build/output.txt')
+            }
+        """.stripIndent()
+        settingsFile << withHttpBuildCacheServer()
+    }
+
+    def "uploads to a slow remote cache as part of the build"() {
+        given:
+        httpBuildCacheServer.addResponder { req, res ->
+            if (req.method == "PUT") {
+                Thread.sleep(1000)
+            }
+            true
+        }
+
+        when:
+        withBuildCache().run "customTask"
+
+        then:
+        executedAndNotSkipped ":customTask"
+        httpBuildCacheServer.cacheDir.listFiles().size() == 1
+
+        and:
+        def remoteStore = operations.only(BuildCacheRemoteStoreBuildOperationType)
+        operations.parentsOf(remoteStore)*.displayName.contains("Run build")
+    }
+}
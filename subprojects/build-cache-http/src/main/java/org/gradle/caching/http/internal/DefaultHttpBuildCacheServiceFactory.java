@@ -45,6 +45,7 @@
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
 
     private static final int MAX_REDIRECTS = Integer.getInteger("org.gradle.cache.http.max-redirects", 10);
+    private static final int MAX_CONNECTIONS = Integer.getInteger("org.gradle.cache.http.max-connections", 64);
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
@@ -89,6 +90,7 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
             .withAuthenticationSettings(authentications)
             .maxRedirects(MAX_REDIRECTS)
+            .maxConnections(MAX_CONNECTIONS)
             .withRedirectMethodHandlingStrategy(HttpSettings.RedirectMethodHandlingStrategy.ALLOW_FOLLOW_FOR_MUTATIONS)
             .withRedirectVerifier(redirectVerifier);
         if (allowUntrustedServer) {
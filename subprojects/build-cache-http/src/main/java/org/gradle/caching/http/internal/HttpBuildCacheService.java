@@ -177,6 +177,7 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
 
     @Override
     public void close() throws IOException {
+        LOGGER.info("Connection usage of the HTTP build cache at {}: {}", safeUri(root), httpClientHelper.getConnectionStatistics());
         httpClientHelper.close();
     }
 
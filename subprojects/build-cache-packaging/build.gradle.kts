@@ -1,6 +1,7 @@
 plugins {
     id("gradlebuild.distribution.api-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Package build cache results"
@@ -16,6 +17,7 @@ dependencies {
     implementation(libs.guava)
     implementation(libs.commonsCompress)
     implementation(libs.commonsIo)
+    implementation(libs.zstdJni)
 
     testImplementation(project(":process-services"))
     testImplementation(project(":file-collections"))
@@ -25,4 +27,8 @@ dependencies {
     testImplementation(testFixtures(project(":core")))
     testImplementation(testFixtures(project(":snapshots")))
     testImplementation(testFixtures(project(":core-api")))
+
+    jmhImplementation(platform(project(":distributions-dependencies")))
 }
+
+jmh.includes.set(listOf("BuildCacheEntryPackerBenchmark"))
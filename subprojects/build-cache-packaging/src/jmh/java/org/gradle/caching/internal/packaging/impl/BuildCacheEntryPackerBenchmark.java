@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.file.TreeType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT;
+import static org.gradle.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
+
+/**
+ * Compares the compression formats for build cache entries, packing and unpacking the outputs of a typical compile and test task.
+ *
+ * The size of the packed entry for each format is printed when the trial starts.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BuildCacheEntryPackerBenchmark {
+    private static final String[] CLASS_FILE_TOKENS = {
+        "java/lang/Object", "java/lang/String", "java/util/List", "java/util/Map", "<init>", "()V", "(Ljava/lang/String;)V",
+        "Code", "LineNumberTable", "LocalVariableTable", "this", "StackMapTable", "SourceFile", "RuntimeVisibleAnnotations",
+        "Lorg/gradle/api/Task;", "Ljavax/annotation/Nullable;", "getName", "setName", "equals", "hashCode", "toString"
+    };
+    private static final OriginWriter WRITE_ORIGIN = output -> output.write("buildInvocationId=benchmark".getBytes(StandardCharsets.UTF_8));
+    private static final OriginReader READ_ORIGIN = input -> new OriginMetadata("benchmark", Duration.ZERO);
+
+    @Param({"gzip", "zstd-1", "zstd-3", "zstd-9"})
+    String format;
+
+    private File tempDir;
+    private CacheableEntity sourceEntity;
+    private CacheableEntity targetEntity;
+    private Map<String, FileSystemSnapshot> snapshots;
+    private BuildCacheEntryPacker packer;
+    private byte[] packedEntry;
+
+    @Setup
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("build-cache-packing-").toFile();
+        File classes = new File(tempDir, "source/classes");
+        File testResults = new File(tempDir, "source/test-results");
+        Random random = new Random(1234L);
+        snapshots = ImmutableMap.of(
+            "classes", createTree(classes, 40, 50, ".class", random, BuildCacheEntryPackerBenchmark::classFile),
+            "testResults", createTree(testResults, 10, 30, ".xml", random, BuildCacheEntryPackerBenchmark::testReport)
+        );
+        sourceEntity = entity(classes, testResults);
+        targetEntity = entity(new File(tempDir, "target/classes"), new File(tempDir, "target/test-results"));
+        packer = createPacker(format);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(sourceEntity, snapshots, output, WRITE_ORIGIN);
+        packedEntry = output.toByteArray();
+        long uncompressedSize = FileUtils.sizeOfDirectory(new File(tempDir, "source"));
+        System.out.printf(">>> %s entry is %d bytes long (uncompressed length: %d, compression ratio: %,.2f%%)%n", format, packedEntry.length, uncompressedSize, 100d * packedEntry.length / uncompressedSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public int pack() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(packedEntry.length);
+        packer.pack(sourceEntity, snapshots, output, WRITE_ORIGIN);
+        return output.size();
+    }
+
+    @Benchmark
+    public BuildCacheEntryPacker.UnpackResult unpack() throws IOException {
+        return packer.unpack(targetEntity, new ByteArrayInputStream(packedEntry), READ_ORIGIN);
+    }
+
+    private static BuildCacheEntryPacker createPacker(String format) {
+        TarPackerFileSystemSupport fileSystemSupport = new TarPackerFileSystemSupport() {
+            @Override
+            public void ensureFileIsMissing(File entry) throws IOException {
+                FileUtils.forceDelete(entry);
+            }
+
+            @Override
+            public void ensureDirectoryForTree(TreeType type, File root) throws IOException {
+                FileUtils.deleteDirectory(root);
+                FileUtils.forceMkdir(root);
+            }
+        };
+        FilePermissionAccess filePermissionAccess = new FilePermissionAccess() {
+            @Override
+            public int getUnixMode(File f) {
+                return f.isDirectory() ? 0755 : 0644;
+            }
+
+            @Override
+            public void chmod(File file, int mode) {
+            }
+        };
+        TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, new DefaultStreamHasher(), Interners.newStrongInterner());
+        if (format.equals("gzip")) {
+            return new GZipBuildCacheEntryPacker(tarPacker);
+        }
+        return new ZstdBuildCacheEntryPacker(tarPacker, Integer.parseInt(format.substring("zstd-".length())));
+    }
+
+    private static CacheableEntity entity(File classes, File testResults) {
+        return new CacheableEntity() {
+            @Override
+            public String getIdentity() {
+                return ":compileJava";
+            }
+
+            @Override
+            public Class<?> getType() {
+                return CacheableEntity.class;
+            }
+
+            @Override
+            public String getDisplayName() {
+                return getIdentity();
+            }
+
+            @Override
+            public void visitOutputTrees(CacheableTreeVisitor visitor) {
+                visitor.visitOutputTree("classes", TreeType.DIRECTORY, classes);
+                visitor.visitOutputTree("testResults", TreeType.DIRECTORY, testResults);
+            }
+        };
+    }
+
+    private interface ContentGenerator {
+        byte[] generate(Random random);
+    }
+
+    private static FileSystemSnapshot createTree(File root, int directoryCount, int filesPerDirectory, String extension, Random random, ContentGenerator contentGenerator) throws IOException {
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        builder.enterDirectory(DIRECT, root.getAbsolutePath(), root.getName(), INCLUDE_EMPTY_DIRS);
+        for (int directoryIndex = 0; directoryIndex < directoryCount; directoryIndex++) {
+            File directory = new File(root, "package" + directoryIndex);
+            FileUtils.forceMkdir(directory);
+            builder.enterDirectory(DIRECT, directory.getAbsolutePath(), directory.getName(), INCLUDE_EMPTY_DIRS);
+            for (int fileIndex = 0; fileIndex < filesPerDirectory; fileIndex++) {
+                File file = new File(directory, "File" + fileIndex + extension);
+                byte[] content = contentGenerator.generate(random);
+                Files.write(file.toPath(), content);
+                builder.visitLeafElement(new RegularFileSnapshot(file.getAbsolutePath(), file.getName(), Hashing.hashBytes(content), DefaultFileMetadata.file(content.length, file.lastModified(), DIRECT)));
+            }
+            builder.leaveDirectory();
+        }
+        builder.leaveDirectory();
+        return builder.getResult();
+    }
+
+    /**
+     * Mostly constant pool entries which repeat across classes, mixed with some bytecode.
+     */
+    private static byte[] classFile(Random random) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int size = 500 + random.nextInt(8 * 1024);
+        while (output.size() < size) {
+            if (random.nextInt(10) < 7) {
+                byte[] token = CLASS_FILE_TOKENS[random.nextInt(CLASS_FILE_TOKENS.length)].getBytes(StandardCharsets.UTF_8);
+                output.write(token.length);
+                output.write(token, 0, token.length);
+            } else {
+                byte[] code = new byte[1 + random.nextInt(32)];
+                random.nextBytes(code);
+                output.write(code, 0, code.length);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] testReport(Random random) {
+        StringBuilder report = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuite name=\"org.gradle.sample.SampleTest\">\n");
+        int testCount = 5 + random.nextInt(100);
+        for (int testIndex = 0; testIndex < testCount; testIndex++) {
+            report.append("  <testcase name=\"test").append(testIndex).append("\" classname=\"org.gradle.sample.SampleTest\" time=\"0.")
+                .append(random.nextInt(1000)).append("\"/>\n");
+        }
+        report.append("  <system-out><![CDATA[").append(Long.toHexString(random.nextLong())).append("]]></system-out>\n</testsuite>\n");
+        return report.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -23,6 +23,7 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -45,6 +46,33 @@ public long getEntries() {
 
     UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException;
 
+    /**
+     * The namespace of the keys the packed entries are stored under, or {@code null} when they are stored under the cache key itself.
+     *
+     * Packers whose entries other clients cannot unpack use their own namespace, so that these clients never load such entries.
+     */
+    @Nullable
+    default String getKeyNamespace() {
+        return null;
+    }
+
+    /**
+     * Whether unpacking can skip writing the output files which already exist with the same content.
+     * If so, the snapshots of the existing outputs should be passed to {@link #unpack(CacheableEntity, InputStream, OriginReader, Map)}.
+     */
+    default boolean isUnpackingChangedFilesOnly() {
+        return false;
+    }
+
+    /**
+     * Unpacks the entry, only writing the output files which differ from the existing outputs.
+     *
+     * @param existingSnapshots the snapshots of the existing outputs by tree name, taken before unpacking.
+     */
+    default UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, Map<String, ? extends FileSystemLocationSnapshot> existingSnapshots) throws IOException {
+        return unpack(entity, input, readOrigin);
+    }
+
     class UnpackResult {
         private final OriginMetadata originMetadata;
         private final long entries;
@@ -20,6 +20,7 @@
 import org.gradle.caching.internal.origin.OriginReader;
 import org.gradle.caching.internal.origin.OriginWriter;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
 import java.io.IOException;
@@ -49,4 +50,16 @@ public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginRead
             return delegate.unpack(entity, gzipInput, readOrigin);
         }
     }
+
+    @Override
+    public boolean isUnpackingChangedFilesOnly() {
+        return delegate.isUnpackingChangedFilesOnly();
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, Map<String, ? extends FileSystemLocationSnapshot> existingSnapshots) throws IOException {
+        try (GZIPInputStream gzipInput = new GZIPInputStream(input)) {
+            return delegate.unpack(entity, gzipInput, readOrigin, existingSnapshots);
+        }
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+
+/**
+ * Outputs restored from an {@link OutputFileStore} by hard linking share their content and their permissions with the stored file.
+ *
+ * <p>Stored files are read-only, so such outputs are read-only, too.
+ * Before an output like this is modified in place, the link has to be replaced by a copy of the file.</p>
+ */
+public final class OutputFileLinks {
+    /**
+     * Only files of at least this size are stored and restored by linking.
+     */
+    public static final long MIN_FILE_SIZE = 1024 * 1024;
+
+    private static final int WRITE_PERMISSIONS = 0222;
+    private static final int OWNER_WRITE_PERMISSION = 0200;
+
+    private OutputFileLinks() {
+    }
+
+    /**
+     * Returns the permissions a stored file with the given permissions has.
+     */
+    public static int readOnly(int mode) {
+        return mode & ~WRITE_PERMISSIONS;
+    }
+
+    /**
+     * Returns the permissions the output had before it was linked to a stored file.
+     */
+    public static int writable(int mode) {
+        return mode | OWNER_WRITE_PERMISSION;
+    }
+
+    /**
+     * Returns whether outputs can be linked to stored files.
+     * Only file systems which expose the link count of files are supported, as otherwise links to stored files cannot be detected and broken.
+     */
+    public static boolean isSupported() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    }
+
+    /**
+     * Returns whether the given file is a read-only file with more than one hard link, which is what an output linked to a stored file looks like.
+     */
+    public static boolean isLinked(File file) {
+        Path path = file.toPath();
+        if (!Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        try {
+            int linkCount = (Integer) Files.getAttribute(path, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+            return linkCount > 1 && !Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS).contains(PosixFilePermission.OWNER_WRITE);
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            // Outputs are only linked on file systems which expose the link count
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the given linked file with a writable copy of it, so modifying it does not modify the stored file.
+     */
+    public static void breakLink(File file) throws IOException {
+        Path path = file.toPath();
+        Path copy = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            if (!copy.toFile().setWritable(true)) {
+                throw new IOException("Could not make " + copy + " writable");
+            }
+            Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Uncompressed copies of unpacked output files, addressed by their content hash.
+ *
+ * Files found in the store can be restored by linking them instead of unpacking their content.
+ * The store is a cache: it may drop files at any time, and failing to store a file is not an error.
+ */
+public interface OutputFileStore {
+    /**
+     * Returns the stored file with the given content, or {@code null} when there is none.
+     *
+     * The returned file must not be modified.
+     */
+    @Nullable
+    File get(HashCode contentHash);
+
+    /**
+     * Stores a copy of the given file, if the store does not contain it already.
+     */
+    void put(HashCode contentHash, File file);
+
+    /**
+     * Creates the target as a hard link to the stored file returned by {@link #get(HashCode)}.
+     *
+     * The target is given the current time as its modification time, like a newly written file.
+     *
+     * @throws IOException when the file cannot be linked, e.g. because the store is on a different file system.
+     */
+    void link(HashCode contentHash, File storedFile, File target) throws IOException;
+}
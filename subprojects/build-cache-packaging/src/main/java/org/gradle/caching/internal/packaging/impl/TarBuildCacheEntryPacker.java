@@ -17,9 +17,12 @@
 package org.gradle.caching.internal.packaging.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -51,6 +54,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -64,9 +68,21 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -92,22 +108,76 @@ private interface UnixPermissions {
     private static final Pattern TREE_PATH = Pattern.compile("(missing-)?tree-([^/]+)(?:/(.*))?");
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final int MAX_PARALLEL_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_PENDING_BYTES = 32 * 1024 * 1024;
+    private static final String CONTENT_HASH_PAX_HEADER = "GRADLE.content-hash";
 
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    @Nullable
+    private final Executor unpackExecutor;
+    @Nullable
+    private final OutputFileStore outputFileStore;
+    private final boolean unpackChangedFilesOnly;
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
         FilePermissionAccess filePermissionAccess,
         StreamHasher streamHasher,
         Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null);
+    }
+
+    /**
+     * Creates a packer which unpacks the files of a directory tree using the given executor.
+     *
+     * The archive is still read on the unpacking thread, which creates the directories and hands the content of small files to the executor.
+     * Large files are written by the unpacking thread directly.
+     *
+     * @param unpackExecutor the executor to write the files with, or {@code null} to write all files on the unpacking thread.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        @Nullable Executor unpackExecutor
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, unpackExecutor, null, false);
+    }
+
+    /**
+     * Creates a packer which restores large files from the given store when it contains them.
+     *
+     * The content hash of large files is recorded in the archive, so that they can be looked up in the store before unpacking them.
+     * Files found in the store are hard linked, or copied when linking is not possible.
+     * Files which are not found are unpacked from the archive as usual and then added to the store.
+     *
+     * When {@code unpackChangedFilesOnly} is set, the content hash of all files is recorded in the archive.
+     * Files which already exist with the same content are then left untouched when unpacking, see {@link #unpack(CacheableEntity, InputStream, OriginReader, Map)}.
+     *
+     * @param outputFileStore the store to restore large files from, or {@code null} to always unpack all files.
+     * @param unpackChangedFilesOnly whether to only write the files which differ from the existing outputs when unpacking.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        @Nullable Executor unpackExecutor,
+        @Nullable OutputFileStore outputFileStore,
+        boolean unpackChangedFilesOnly
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
+        this.outputFileStore = outputFileStore;
+        this.unpackChangedFilesOnly = unpackChangedFilesOnly;
     }
 
     @Override
@@ -151,26 +221,47 @@ private long pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapsh
     }
 
     private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, TarArchiveOutputStream tarOutput) {
-        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess);
+        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess, outputFileStore, unpackChangedFilesOnly);
         snapshots.accept(new RelativePathTracker(), packingVisitor);
         return packingVisitor.getPackedEntryCount();
     }
 
     private static void createTarEntry(String path, long size, int mode, TarArchiveOutputStream tarOutput) throws IOException {
+        createTarEntry(path, size, mode, null, tarOutput);
+    }
+
+    private static void createTarEntry(String path, long size, int mode, @Nullable HashCode contentHash, TarArchiveOutputStream tarOutput) throws IOException {
         TarArchiveEntry entry = new TarArchiveEntry(path, true);
         entry.setSize(size);
         entry.setMode(mode);
+        if (contentHash != null) {
+            entry.addPaxHeader(CONTENT_HASH_PAX_HEADER, contentHash.toString());
+        }
         tarOutput.putArchiveEntry(entry);
     }
 
     @Override
     public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        return unpack(entity, input, readOrigin, Collections.emptyMap());
+    }
+
+    @Override
+    public boolean isUnpackingChangedFilesOnly() {
+        return unpackChangedFilesOnly;
+    }
+
+    /**
+     * Unpacks the entry, leaving the existing files which have the content hash recorded in the archive untouched.
+     * Other existing files are overwritten or deleted.
+     */
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, Map<String, ? extends FileSystemLocationSnapshot> existingSnapshots) throws IOException {
         try (TarArchiveInputStream tarInput = new TarArchiveInputStream(input, ENCODING.name())) {
-            return unpack(entity, tarInput, readOrigin);
+            return unpack(entity, tarInput, readOrigin, existingSnapshots);
         }
     }
 
-    private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInput, OriginReader readOriginAction) throws IOException {
+    private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInput, OriginReader readOriginAction, Map<String, ? extends FileSystemLocationSnapshot> existingSnapshots) throws IOException {
         ImmutableMap.Builder<String, CacheableTree> treesBuilder = ImmutableMap.builder();
         entity.visitOutputTrees((name, type, root) -> treesBuilder.put(name, new CacheableTree(type, root)));
         ImmutableMap<String, CacheableTree> treesByName = treesBuilder.build();
@@ -204,7 +295,7 @@ private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInp
 
                 boolean missing = matcher.group(1) != null;
                 String childPath = matcher.group(3);
-                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries);
+                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, existingSnapshots.get(treeName), snapshots, entries);
             }
         }
         if (originMetadata == null) {
@@ -233,7 +324,18 @@ public File getRoot() {
     }
 
     @Nullable
-    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries) throws IOException {
+    private TarArchiveEntry unpackTree(
+        String treeName,
+        TreeType treeType,
+        File treeRoot,
+        TarArchiveInputStream input,
+        TarArchiveEntry rootEntry,
+        String childPath,
+        boolean missing,
+        @Nullable FileSystemLocationSnapshot existingSnapshot,
+        Map<String, FileSystemLocationSnapshot> snapshots,
+        AtomicLong entries
+    ) throws IOException {
         boolean isDirEntry = rootEntry.isDirectory();
         boolean root = Strings.isNullOrEmpty(childPath);
         if (!root) {
@@ -245,12 +347,18 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
             return input.getNextTarEntry();
         }
 
-        fileSystemSupport.ensureDirectoryForTree(treeType, treeRoot);
         if (treeType == TreeType.FILE) {
             if (isDirEntry) {
                 throw new IllegalStateException("Should be a file: " + treeName);
             }
-            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
+            RegularFileSnapshot unchangedFile = findUnchangedFile(existingSnapshot, rootEntry);
+            if (unchangedFile != null) {
+                updateUnchangedFilePermissions(rootEntry, treeRoot);
+                snapshots.put(treeName, unchangedFile);
+                return input.getNextTarEntry();
+            }
+            fileSystemSupport.ensureDirectoryForTree(treeType, treeRoot);
+            RegularFileSnapshot fileSnapshot = unpackFileUsingStore(input, rootEntry, treeRoot, treeRoot.getName());
             snapshots.put(treeName, fileSnapshot);
             return input.getNextTarEntry();
         }
@@ -258,12 +366,39 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         if (!isDirEntry) {
             throw new IllegalStateException("Should be a directory: " + treeName);
         }
-        chmodUnpackedFile(rootEntry, treeRoot);
+        Map<String, FileSystemLocationSnapshot> existingChildren = new HashMap<>();
+        if (existingSnapshot instanceof DirectorySnapshot && existingSnapshot.getAccessType() == DIRECT) {
+            existingSnapshot.accept(new RelativePathTracker(), (snapshot, relativePath) -> {
+                if (!relativePath.isRoot()) {
+                    existingChildren.put(relativePath.toRelativePath(), snapshot);
+                }
+                return SnapshotVisitResult.CONTINUE;
+            });
+            updatePermissions(rootEntry, treeRoot);
+        } else {
+            fileSystemSupport.ensureDirectoryForTree(treeType, treeRoot);
+            chmodUnpackedFile(rootEntry, treeRoot);
+        }
+
+        return unpackDirectoryTree(input, rootEntry, existingChildren, snapshots, entries, treeRoot, treeName);
+    }
 
-        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
+    /**
+     * Returns the snapshot of the existing file if it has the content recorded for the entry.
+     */
+    @Nullable
+    private RegularFileSnapshot findUnchangedFile(@Nullable FileSystemLocationSnapshot existingSnapshot, TarArchiveEntry entry) {
+        if (!(existingSnapshot instanceof RegularFileSnapshot) || existingSnapshot.getAccessType() != DIRECT) {
+            return null;
+        }
+        String contentHash = entry.getExtraPaxHeader(CONTENT_HASH_PAX_HEADER);
+        if (contentHash == null || !HashCode.fromString(contentHash).equals(existingSnapshot.getHash())) {
+            return null;
+        }
+        return (RegularFileSnapshot) existingSnapshot;
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -273,39 +408,175 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
         }
     }
 
+    /**
+     * Restores the file from the output file store when possible, otherwise unpacks it and adds it to the store.
+     */
+    private RegularFileSnapshot unpackFileUsingStore(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+        HashCode contentHash = getStoredContentHash(entry);
+        if (contentHash == null) {
+            return unpackFile(input, entry, file, fileName);
+        }
+        File storedFile = outputFileStore.get(contentHash);
+        if (storedFile != null && storedFile.length() == entry.getSize()) {
+            restoreStoredFile(contentHash, storedFile, entry, file);
+            String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+            String internedFileName = stringInterner.intern(fileName);
+            return new RegularFileSnapshot(internedAbsolutePath, internedFileName, contentHash, DefaultFileMetadata.file(entry.getSize(), file.lastModified(), DIRECT));
+        }
+        RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, fileName);
+        if (fileSnapshot.getHash().equals(contentHash)) {
+            outputFileStore.put(contentHash, file);
+        }
+        return fileSnapshot;
+    }
+
+    @Nullable
+    private HashCode getStoredContentHash(TarArchiveEntry entry) {
+        if (outputFileStore == null || entry.getSize() < OutputFileLinks.MIN_FILE_SIZE) {
+            return null;
+        }
+        String contentHash = entry.getExtraPaxHeader(CONTENT_HASH_PAX_HEADER);
+        return contentHash == null ? null : HashCode.fromString(contentHash);
+    }
+
+    private void restoreStoredFile(HashCode contentHash, File storedFile, TarArchiveEntry entry, File file) throws IOException {
+        // Linked files share their permissions with the read-only stored file, so only link files which have the same permissions apart from being writable
+        int mode = entry.getMode() & UnixPermissions.PERM_MASK;
+        if (filePermissionAccess.getUnixMode(storedFile) == OutputFileLinks.readOnly(mode)) {
+            try {
+                outputFileStore.link(contentHash, storedFile, file);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Hard links are not supported, e.g. because the store is on a different file system, copy the file instead
+            }
+        }
+        Files.copy(storedFile.toPath(), file.toPath());
+        chmodUnpackedFile(entry, file);
+    }
+
+    private Supplier<RegularFileSnapshot> unpackFileInParallel(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, Semaphore pendingBytes, List<Future<?>> pendingWrites) throws IOException {
+        int size = (int) entry.getSize();
+        pendingBytes.acquireUninterruptibly(size);
+        byte[] content;
+        try {
+            content = IOUtils.toByteArray(input, size);
+        } catch (IOException e) {
+            pendingBytes.release(size);
+            throw e;
+        }
+        CompletableFuture<RegularFileSnapshot> pendingWrite = CompletableFuture.supplyAsync(() -> {
+            try {
+                return unpackFile(new ByteArrayInputStream(content), entry, file, fileName);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                pendingBytes.release(size);
+            }
+        }, unpackExecutor);
+        pendingWrites.add(pendingWrite);
+        return () -> Futures.getUnchecked(pendingWrite);
+    }
+
+    /**
+     * Waits for all the writes to finish and returns the first failure.
+     */
     @Nullable
-    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+    private static Throwable awaitPendingWrites(List<Future<?>> pendingWrites) {
+        Throwable failure = null;
+        for (Future<?> pendingWrite : pendingWrites) {
+            try {
+                Uninterruptibles.getUninterruptibly(pendingWrite);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        return failure;
+    }
+
+    private static void rethrowFailure(@Nullable Throwable failure) throws IOException {
+        if (failure instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) failure).getCause();
+        }
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure);
+            throw new RuntimeException(failure);
+        }
+    }
+
+    @Nullable
+    private TarArchiveEntry unpackDirectoryTree(
+        TarArchiveInputStream input,
+        TarArchiveEntry rootEntry,
+        Map<String, FileSystemLocationSnapshot> existingChildren,
+        Map<String, FileSystemLocationSnapshot> snapshots,
+        AtomicLong entries,
+        File treeRoot,
+        String treeName
+    ) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
 
-        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS);
+        // Files may be written in parallel, so the snapshot is built once all files have been written
+        List<Consumer<DirectorySnapshotBuilder>> snapshotActions = new ArrayList<>();
+        List<Future<?>> pendingWrites = new ArrayList<>();
+        Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+        snapshotActions.add(builder -> builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS));
 
         TarArchiveEntry entry;
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, () -> snapshotActions.add(DirectorySnapshotBuilder::leaveDirectory));
+                if (outsideOfRoot) {
+                    break;
+                }
+                entries.incrementAndGet();
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, builder::leaveDirectory);
-            if (outsideOfRoot) {
-                break;
+                File file = new File(treeRoot, parser.getRelativePath());
+                FileSystemLocationSnapshot existingSnapshot = existingChildren.remove(parser.getRelativePath());
+                RegularFileSnapshot unchangedFile = isDir ? null : findUnchangedFile(existingSnapshot, entry);
+                if (existingSnapshot != null && unchangedFile == null && !(isDir && existingSnapshot.getType() == FileType.Directory && existingSnapshot.getAccessType() == DIRECT)) {
+                    fileSystemSupport.ensureFileIsMissing(file);
+                }
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    updatePermissions(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedName = stringInterner.intern(parser.getName());
+                    snapshotActions.add(builder -> builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS));
+                } else if (unchangedFile != null) {
+                    updateUnchangedFilePermissions(entry, file);
+                    snapshotActions.add(builder -> builder.visitLeafElement(unchangedFile));
+                } else if (unpackExecutor != null && entry.getSize() <= MAX_PARALLEL_FILE_SIZE && getStoredContentHash(entry) == null) {
+                    Supplier<RegularFileSnapshot> fileSnapshot = unpackFileInParallel(input, entry, file, parser.getName(), pendingBytes, pendingWrites);
+                    snapshotActions.add(builder -> builder.visitLeafElement(fileSnapshot.get()));
+                } else {
+                    RegularFileSnapshot fileSnapshot = unpackFileUsingStore(input, entry, file, parser.getName());
+                    snapshotActions.add(builder -> builder.visitLeafElement(fileSnapshot));
+                }
             }
-            entries.incrementAndGet();
-
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedName = stringInterner.intern(parser.getName());
-                builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitLeafElement(fileSnapshot);
+        } catch (Throwable t) {
+            // Do not leave files being written behind, the original failure is reported
+            awaitPendingWrites(pendingWrites);
+            throw t;
+        }
+        rethrowFailure(awaitPendingWrites(pendingWrites));
+
+        // Remove the existing files which are not part of the entry
+        for (FileSystemLocationSnapshot staleSnapshot : existingChildren.values()) {
+            File staleFile = new File(staleSnapshot.getAbsolutePath());
+            // Files in a directory which has already been removed are gone
+            if (Files.exists(staleFile.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                fileSystemSupport.ensureFileIsMissing(staleFile);
             }
         }
 
-        parser.exitToRoot(builder::leaveDirectory);
-        builder.leaveDirectory();
+        parser.exitToRoot(() -> snapshotActions.add(DirectorySnapshotBuilder::leaveDirectory));
+        snapshotActions.add(DirectorySnapshotBuilder::leaveDirectory);
 
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        snapshotActions.forEach(action -> action.accept(builder));
         snapshots.put(treeName, builder.getResult());
         return entry;
     }
@@ -314,6 +585,34 @@ private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
         filePermissionAccess.chmod(file, entry.getMode() & UnixPermissions.PERM_MASK);
     }
 
+    /**
+     * Changes the permissions of an unchanged file only when they differ.
+     * The read-only permissions of a file linked to a stored file are kept, and the link is broken when other permissions have to be changed.
+     */
+    private void updateUnchangedFilePermissions(TarArchiveEntry entry, File file) throws IOException {
+        int mode = entry.getMode() & UnixPermissions.PERM_MASK;
+        int currentMode = filePermissionAccess.getUnixMode(file);
+        if (currentMode != mode) {
+            if (OutputFileLinks.isLinked(file)) {
+                if (currentMode == OutputFileLinks.readOnly(mode)) {
+                    return;
+                }
+                OutputFileLinks.breakLink(file);
+            }
+            filePermissionAccess.chmod(file, mode);
+        }
+    }
+
+    /**
+     * Changes the permissions of an existing file only when they differ, so that unchanged files are not touched.
+     */
+    private void updatePermissions(TarArchiveEntry entry, File file) {
+        int mode = entry.getMode() & UnixPermissions.PERM_MASK;
+        if (filePermissionAccess.getUnixMode(file) != mode) {
+            filePermissionAccess.chmod(file, mode);
+        }
+    }
+
     private static String escape(String name) {
         try {
             return URLEncoder.encode(name, ENCODING.name());
@@ -336,15 +635,27 @@ private static class PackingVisitor implements RelativePathTrackingFileSystemSna
         private final String treeRoot;
         private final FilePermissionAccess filePermissionAccess;
         private final TreeType type;
+        @Nullable
+        private final OutputFileStore outputFileStore;
+        private final boolean recordContentHashes;
 
         private long packedEntryCount;
 
-        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess) {
+        public PackingVisitor(
+            TarArchiveOutputStream tarOutput,
+            String treeName,
+            TreeType type,
+            FilePermissionAccess filePermissionAccess,
+            @Nullable OutputFileStore outputFileStore,
+            boolean recordContentHashes
+        ) {
             this.tarOutput = tarOutput;
             this.treePath = "tree-" + escape(treeName);
             this.treeRoot = treePath + "/";
             this.type = type;
             this.filePermissionAccess = filePermissionAccess;
+            this.outputFileStore = outputFileStore;
+            this.recordContentHashes = recordContentHashes;
         }
 
         @Override
@@ -365,7 +676,17 @@ public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
                     assertCorrectType(isRoot, snapshot);
                     File file = new File(snapshot.getAbsolutePath());
                     int fileMode = filePermissionAccess.getUnixMode(file);
-                    storeFileEntry(file, targetPath, file.length(), fileMode, tarOutput);
+                    long length = file.length();
+                    HashCode contentHash = recordContentHashes ? fileSnapshot.getHash() : null;
+                    if (outputFileStore != null && length >= OutputFileLinks.MIN_FILE_SIZE) {
+                        contentHash = fileSnapshot.getHash();
+                        outputFileStore.put(contentHash, file);
+                        if (OutputFileLinks.isLinked(file)) {
+                            // Pack the permissions the output had before it was restored by linking
+                            fileMode = OutputFileLinks.writable(fileMode);
+                        }
+                    }
+                    storeFileEntry(file, targetPath, length, fileMode, contentHash, tarOutput);
                 }
 
                 @Override
@@ -427,9 +748,9 @@ private void storeDirectoryEntry(String path, int mode, TarArchiveOutputStream t
             }
         }
 
-        private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
+        private void storeFileEntry(File inputFile, String path, long size, int mode, @Nullable HashCode contentHash, TarArchiveOutputStream tarOutput) {
             try {
-                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
+                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, contentHash, tarOutput);
                 try (FileInputStream input = new FileInputStream(inputFile)) {
                     IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
                 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.github.luben.zstd.util.Native;
+import org.apache.commons.io.IOUtils;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compresses build cache entries with Zstandard.
+ *
+ * Clients packing with gzip cannot unpack these entries, so they are stored under keys in their own namespace, see {@link #getKeyNamespace()}.
+ * Entries without the magic number of a Zstandard frame are still unpacked as gzip.
+ */
+public class ZstdBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    public static final int DEFAULT_LEVEL = 3;
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+
+    private final BuildCacheEntryPacker delegate;
+    private final BuildCacheEntryPacker gzipPacker;
+    private final int level;
+
+    public ZstdBuildCacheEntryPacker(BuildCacheEntryPacker delegate, int level) {
+        this.delegate = delegate;
+        this.gzipPacker = new GZipBuildCacheEntryPacker(delegate);
+        this.level = level;
+    }
+
+    /**
+     * Whether the native Zstandard library can be loaded on the current platform.
+     */
+    public static boolean isAvailable() {
+        try {
+            Native.load();
+            return true;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (ZstdOutputStream zstdOutput = new ZstdOutputStream(output, level)) {
+            return delegate.pack(entity, snapshots, zstdOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, ZSTD_MAGIC.length);
+        if (!startsWithZstdMagic(pushbackInput)) {
+            return gzipPacker.unpack(entity, pushbackInput, readOrigin);
+        }
+        try (ZstdInputStream zstdInput = new ZstdInputStream(pushbackInput)) {
+            return delegate.unpack(entity, zstdInput, readOrigin);
+        }
+    }
+
+    @Override
+    public String getKeyNamespace() {
+        return "zstd";
+    }
+
+    @Override
+    public boolean isUnpackingChangedFilesOnly() {
+        return delegate.isUnpackingChangedFilesOnly();
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, Map<String, ? extends FileSystemLocationSnapshot> existingSnapshots) throws IOException {
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, ZSTD_MAGIC.length);
+        if (!startsWithZstdMagic(pushbackInput)) {
+            return gzipPacker.unpack(entity, pushbackInput, readOrigin, existingSnapshots);
+        }
+        try (ZstdInputStream zstdInput = new ZstdInputStream(pushbackInput)) {
+            return delegate.unpack(entity, zstdInput, readOrigin, existingSnapshots);
+        }
+    }
+
+    private static boolean startsWithZstdMagic(PushbackInputStream input) throws IOException {
+        byte[] header = new byte[ZSTD_MAGIC.length];
+        int length = IOUtils.read(input, header);
+        input.unread(header, 0, length);
+        return length == ZSTD_MAGIC.length && Arrays.equals(header, ZSTD_MAGIC);
+    }
+}
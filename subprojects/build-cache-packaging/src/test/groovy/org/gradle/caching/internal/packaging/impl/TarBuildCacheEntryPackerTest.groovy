@@ -18,10 +18,14 @@ package org.gradle.caching.internal.packaging.impl
 
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.internal.file.Deleter
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.nativeintegration.filesystem.FileSystem
 import org.gradle.util.Requires
 import org.gradle.util.TestPrecondition
 
+import java.nio.file.Files
+import java.util.concurrent.Executors
+
 import static org.gradle.internal.file.TreeType.DIRECTORY
 import static org.gradle.internal.file.TreeType.FILE
 
@@ -63,6 +67,143 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         result.entries == 4
     }
 
+    def "unpacking files in parallel produces the same snapshot"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        (1..20).each { dirIndex ->
+            def dir = sourceOutputDir.file("dir-$dirIndex").createDir()
+            (1..20).each { fileIndex ->
+                dir.file("file-$fileIndex.txt") << "content $dirIndex $fileIndex"
+            }
+        }
+        sourceOutputDir.file("empty").createDir()
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor)
+
+        when:
+        def sequentialResult = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, temporaryFolder.file("target"))
+        def parallelResult = parallelPacker.unpack(entity(prop(DIRECTORY, temporaryFolder.file("target"))), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        parallelResult.entries == sequentialResult.entries
+        parallelResult.snapshots["test"].hash == sequentialResult.snapshots["test"].hash
+        temporaryFolder.file("target/dir-7/file-3.txt").text == "content 7 3"
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "restores large files from the output file store"() {
+        def storeDir = temporaryFolder.file("store").createDir()
+        def storingPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null, outputFileStore(storeDir), false)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        def largeContent = new byte[2 * 1024 * 1024]
+        new Random(1234).nextBytes(largeContent)
+        sourceOutputDir.file("large.jar").bytes = largeContent
+        sourceOutputDir.file("small.txt") << "small"
+        def sourceSnapshot = fileSystemAccess.read(sourceOutputDir.absolutePath)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        storingPacker.pack(entity(prop(DIRECTORY, sourceOutputDir)), ["test": sourceSnapshot], output, writeOrigin)
+
+        then:
+        storeDir.listFiles().length == 1
+
+        when:
+        def result = storingPacker.unpack(entity(prop(DIRECTORY, temporaryFolder.file("target"))), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        temporaryFolder.file("target/large.jar").bytes == largeContent
+        temporaryFolder.file("target/small.txt").text == "small"
+        result.snapshots["test"].hash == sourceSnapshot.hash
+
+        when:
+        storeDir.listFiles()*.delete()
+        def resultWithoutStoredFiles = storingPacker.unpack(entity(prop(DIRECTORY, temporaryFolder.file("other-target"))), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        temporaryFolder.file("other-target/large.jar").bytes == largeContent
+        resultWithoutStoredFiles.snapshots["test"].hash == sourceSnapshot.hash
+        storeDir.listFiles().length == 1
+    }
+
+    @Requires(TestPrecondition.UNIX_DERIVATIVE)
+    def "links large files to the read-only stored files"() {
+        def storeDir = temporaryFolder.file("store").createDir()
+        def storingPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null, outputFileStore(storeDir), true)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        def largeContent = new byte[2 * 1024 * 1024]
+        new Random(1234).nextBytes(largeContent)
+        sourceOutputDir.file("large.jar").bytes = largeContent
+        filePermissionAccess.chmod(sourceOutputDir.file("large.jar"), 0644)
+        def output = new ByteArrayOutputStream()
+        storingPacker.pack(entity(prop(DIRECTORY, sourceOutputDir)), ["test": fileSystemAccess.read(sourceOutputDir.absolutePath)], output, writeOrigin)
+        def storedFile = storeDir.listFiles().first()
+
+        when:
+        def targetOutputDir = temporaryFolder.file("target")
+        storingPacker.unpack(entity(prop(DIRECTORY, targetOutputDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+        def linkedFile = targetOutputDir.file("large.jar")
+
+        then:
+        linkedFile.bytes == largeContent
+        Files.getAttribute(linkedFile.toPath(), "unix:nlink") == 2
+        filePermissionAccess.getUnixMode(linkedFile) == 0444
+        filePermissionAccess.getUnixMode(storedFile) == 0444
+
+        when:
+        def existingSnapshot = TestFiles.fileSystemAccess().read(targetOutputDir.absolutePath)
+        storingPacker.unpack(entity(prop(DIRECTORY, targetOutputDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin, ["test": existingSnapshot])
+
+        then:
+        Files.getAttribute(linkedFile.toPath(), "unix:nlink") == 2
+        filePermissionAccess.getUnixMode(storedFile) == 0444
+
+        when:
+        def repacked = new ByteArrayOutputStream()
+        storingPacker.pack(entity(prop(DIRECTORY, targetOutputDir)), ["test": TestFiles.fileSystemAccess().read(targetOutputDir.absolutePath)], repacked, writeOrigin)
+        def copyOutputDir = temporaryFolder.file("copy")
+        packer.unpack(entity(prop(DIRECTORY, copyOutputDir)), new ByteArrayInputStream(repacked.toByteArray()), readOrigin)
+
+        then:
+        filePermissionAccess.getUnixMode(copyOutputDir.file("large.jar")) == 0644
+    }
+
+    def "only writes changed files when unpacking over existing outputs"() {
+        def changedFilesPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null, null, true)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        sourceOutputDir.file("unchanged.txt") << "unchanged"
+        sourceOutputDir.file("changed.txt") << "original"
+        sourceOutputDir.file("dir/nested.txt") << "nested"
+        def sourceSnapshot = fileSystemAccess.read(sourceOutputDir.absolutePath)
+        def output = new ByteArrayOutputStream()
+        changedFilesPacker.pack(entity(prop(DIRECTORY, sourceOutputDir)), ["test": sourceSnapshot], output, writeOrigin)
+
+        def targetOutputDir = temporaryFolder.file("target")
+        changedFilesPacker.unpack(entity(prop(DIRECTORY, targetOutputDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+        def unchangedFile = targetOutputDir.file("unchanged.txt")
+        unchangedFile.lastModified = 1000
+        targetOutputDir.file("changed.txt").text = "modified"
+        targetOutputDir.file("stale.txt") << "stale"
+        targetOutputDir.file("stale-dir/stale.txt") << "stale"
+        targetOutputDir.file("dir/nested.txt").delete()
+        targetOutputDir.file("dir/nested.txt").createDir()
+
+        when:
+        def existingSnapshot = TestFiles.fileSystemAccess().read(targetOutputDir.absolutePath)
+        def result = changedFilesPacker.unpack(entity(prop(DIRECTORY, targetOutputDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin, ["test": existingSnapshot])
+
+        then:
+        unchangedFile.lastModified() == 1000
+        targetOutputDir.file("changed.txt").text == "original"
+        targetOutputDir.file("dir/nested.txt").text == "nested"
+        !targetOutputDir.file("stale.txt").exists()
+        !targetOutputDir.file("stale-dir").exists()
+        result.snapshots["test"].hash == sourceSnapshot.hash
+    }
+
     def "can pack tree with missing #type (pre-existing as: #preExistsAs)"() {
         def sourceOutput = temporaryFolder.file("source")
         def targetOutput = temporaryFolder.file("target")
@@ -237,4 +378,29 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         then:
         targetDir.assertIsEmptyDir()
     }
+
+    private static OutputFileStore outputFileStore(File storeDir) {
+        new OutputFileStore() {
+            @Override
+            File get(HashCode contentHash) {
+                def storedFile = new File(storeDir, contentHash.toString())
+                return storedFile.file ? storedFile : null
+            }
+
+            @Override
+            void put(HashCode contentHash, File file) {
+                def storedFile = new File(storeDir, contentHash.toString())
+                if (!storedFile.exists()) {
+                    Files.copy(file.toPath(), storedFile.toPath())
+                    storedFile.setWritable(false, false)
+                }
+            }
+
+            @Override
+            void link(HashCode contentHash, File storedFile, File target) {
+                Files.createLink(target.toPath(), storedFile.toPath())
+                target.setLastModified(System.currentTimeMillis())
+            }
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+
+class ZstdBuildCacheEntryPackerTest extends Specification {
+    def delegate = Mock(BuildCacheEntryPacker)
+    def entity = Stub(CacheableEntity)
+    def writeOrigin = Stub(OriginWriter)
+    def readOrigin = Stub(OriginReader)
+    def content = "output of the work\n" * 1000
+    def packer = new ZstdBuildCacheEntryPacker(delegate, ZstdBuildCacheEntryPacker.DEFAULT_LEVEL)
+
+    def "can unpack entries packed with #format"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        writer(packer, delegate).pack(entity, [:], output, writeOrigin)
+
+        then:
+        1 * delegate.pack(entity, [:], _, writeOrigin) >> { args ->
+            (args[2] as OutputStream).write(content.bytes)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+        output.size() < content.length()
+
+        when:
+        def result = packer.unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { args ->
+            assert (args[1] as InputStream).text == content
+            null
+        }
+        result == null
+
+        where:
+        format | writer
+        "zstd" | { ZstdBuildCacheEntryPacker zstdPacker, BuildCacheEntryPacker tarPacker -> zstdPacker }
+        "gzip" | { ZstdBuildCacheEntryPacker zstdPacker, BuildCacheEntryPacker tarPacker -> new GZipBuildCacheEntryPacker(tarPacker) }
+    }
+
+    def "marks packed entries with the Zstandard magic number"() {
+        def output = new ByteArrayOutputStream()
+        delegate.pack(*_) >> { args ->
+            (args[2] as OutputStream).write(content.bytes)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+
+        when:
+        packer.pack(entity, [:], output, writeOrigin)
+
+        then:
+        output.toByteArray().take(4) == [0x28, 0xB5, 0x2F, 0xFD] as byte[]
+    }
+
+    def "stores entries under keys in a different namespace than gzip"() {
+        expect:
+        packer.keyNamespace == "zstd"
+        new GZipBuildCacheEntryPacker(delegate).keyNamespace == null
+    }
+}
@@ -20,6 +20,7 @@ dependencies {
     implementation(project(":persistent-cache"))
     implementation(project(":resources"))
     implementation(project(":logging"))
+    implementation(project(":messaging"))
 
     implementation(libs.slf4jApi)
     implementation(libs.guava)
@@ -40,5 +40,12 @@ public interface BuildCacheController extends Closeable {
 
     Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity cacheableEntity);
 
+    /**
+     * Starts downloading the remote entry for the given key in the background, so that a later {@link #load(BuildCacheKey, CacheableEntity)} finds it locally.
+     *
+     * This is only a hint: the entry is not unpacked, and implementations may ignore it.
+     */
+    void prefetch(BuildCacheKey cacheKey);
+
     void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime);
 }
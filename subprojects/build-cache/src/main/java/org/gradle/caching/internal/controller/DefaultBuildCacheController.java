@@ -30,6 +30,7 @@
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
 import org.gradle.caching.internal.controller.operations.UnpackOperationResult;
+import org.gradle.caching.internal.controller.service.AsyncStoringRemoteBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheLoadResult;
 import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
@@ -48,6 +49,9 @@
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.TreeType;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -57,6 +61,8 @@
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.vfs.FileSystemAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -65,11 +71,18 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultBuildCacheController implements BuildCacheController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildCacheController.class);
 
     @VisibleForTesting
     final RemoteBuildCacheServiceHandle remote;
@@ -80,8 +93,12 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    private final Executor prefetchExecutor;
+    private final ConcurrentMap<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+    @Nullable
+    private final String keyNamespace;
 
-    private boolean closed;
+    private volatile boolean closed;
 
     public DefaultBuildCacheController(
         BuildCacheServicesConfiguration config,
@@ -93,11 +110,13 @@ public DefaultBuildCacheController(
         FileSystemAccess fileSystemAccess,
         BuildCacheEntryPacker packer,
         OriginMetadataFactory originMetadataFactory,
-        StringInterner stringInterner
+        StringInterner stringInterner,
+        Executor prefetchExecutor,
+        @Nullable Executor uploadExecutor
     ) {
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
-        this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError);
+        this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError, uploadExecutor, temporaryFileProvider);
         this.tmp = toTempFileStore(config.getLocal(), temporaryFileProvider);
         this.packExecutor = new PackOperationExecutor(
             buildOperationExecutor,
@@ -106,6 +125,8 @@ public DefaultBuildCacheController(
             originMetadataFactory,
             stringInterner
         );
+        this.prefetchExecutor = prefetchExecutor;
+        this.keyNamespace = packer.getKeyNamespace();
     }
 
     @Override
@@ -119,14 +140,31 @@ public boolean isEmitDebugLogging() {
     }
 
     @Override
-    public Optional<BuildCacheLoadResult> load(BuildCacheKey key, CacheableEntity entity) {
+    public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity entity) {
+        BuildCacheKey key = storedKey(cacheKey);
+        Prefetch prefetch = prefetches.remove(key.getHashCode());
+        boolean prefetched = prefetch != null && prefetch.await();
         Optional<BuildCacheLoadResult> result = loadLocal(key, entity);
-        if (result.isPresent()) {
+        if (result.isPresent() || prefetched) {
+            // A successful prefetch already stored the remote entry in the local cache, if there was one
             return result;
         }
         return loadRemoteAndStoreResultLocally(key, entity);
     }
 
+    @Override
+    public void prefetch(BuildCacheKey cacheKey) {
+        // The prefetched entry is handed over via the local cache
+        if (closed || !remote.canLoad() || !local.canStore()) {
+            return;
+        }
+        BuildCacheKey key = storedKey(cacheKey);
+        Prefetch prefetch = new Prefetch(key);
+        if (prefetches.putIfAbsent(key.getHashCode(), prefetch) == null) {
+            prefetchExecutor.execute(prefetch);
+        }
+    }
+
     private Optional<BuildCacheLoadResult> loadLocal(BuildCacheKey key, CacheableEntity entity) {
         try {
             return local.maybeLoad(key, file -> packExecutor.unpack(key, entity, file));
@@ -156,10 +194,11 @@ private Optional<BuildCacheLoadResult> loadRemoteAndStoreResultLocally(BuildCach
     }
 
     @Override
-    public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
+    public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
         if (!local.canStore() && !remote.canStore()) {
             return;
         }
+        BuildCacheKey key = storedKey(cacheKey);
         tmp.withTempFile(key, file -> {
             packExecutor.pack(file, key, entity, snapshots, executionTime);
             remote.maybeStore(key, file);
@@ -167,10 +206,27 @@ public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSys
         });
     }
 
+    /**
+     * Returns the key the entry is stored under, which differs from the cache key when the packer uses its own key namespace.
+     */
+    private BuildCacheKey storedKey(BuildCacheKey cacheKey) {
+        if (keyNamespace == null) {
+            return cacheKey;
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(keyNamespace);
+        hasher.putBytes(cacheKey.toByteArray());
+        return new NamespacedBuildCacheKey(hasher.hash());
+    }
+
     @Override
     public void close() throws IOException {
         if (!closed) {
             closed = true;
+            for (Prefetch prefetch : prefetches.values()) {
+                prefetch.await();
+            }
+            prefetches.clear();
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
@@ -178,6 +234,77 @@ public void close() throws IOException {
         }
     }
 
+    /**
+     * Downloads a remote entry into the local cache in the background.
+     *
+     * <p>A prefetch which has not started yet when the entry is loaded is cancelled, so that loading never waits in the queue behind other prefetches.</p>
+     *
+     * <p>The operation of the work can complete before the prefetch does, for example when the work is up-to-date.
+     * So the prefetch executor runs the remote load operation as a child of the operation of the build instead.</p>
+     *
+     * <p>A prefetch only stays registered after it finished when it found that there is no remote entry, so that loading does not query the remote cache again.
+     * Otherwise, loading finds the prefetched entry in the local cache, or queries the remote cache again after a failure.</p>
+     */
+    private class Prefetch implements Runnable {
+        private final BuildCacheKey key;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean successful;
+
+        Prefetch(BuildCacheKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                // Cancelled
+                return;
+            }
+            AtomicBoolean found = new AtomicBoolean();
+            try {
+                if (!closed) {
+                    tmp.withTempFile(key, file -> {
+                        remote.maybeLoad(key, file, f -> {
+                            found.set(true);
+                            return null;
+                        });
+                        if (found.get()) {
+                            local.maybeStore(key, file);
+                        }
+                    });
+                    successful = true;
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not prefetch build cache entry {}", key.getHashCode(), e);
+            } finally {
+                if (!successful || found.get()) {
+                    // Nothing to hand over to the load
+                    prefetches.remove(key.getHashCode(), this);
+                }
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Waits for the prefetch to finish, or cancels it when it has not started yet.
+         *
+         * @return whether the remote cache has been queried successfully
+         */
+        boolean await() {
+            if (started.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return successful;
+        }
+    }
+
     @VisibleForTesting
     static class PackOperationExecutor {
         private final BuildOperationExecutor buildOperationExecutor;
@@ -218,9 +345,13 @@ public BuildOperationDescriptor.Builder description() {
         private BuildCacheLoadResult doUnpack(CacheableEntity entity, InputStream input) throws IOException {
             ImmutableList.Builder<String> roots = ImmutableList.builder();
             entity.visitOutputTrees((name, type, root) -> roots.add(root.getAbsolutePath()));
+            // The existing outputs need to be snapshotted before the roots are invalidated
+            Map<String, FileSystemLocationSnapshot> existingSnapshots = packer.isUnpackingChangedFilesOnly() ? snapshotExistingOutputs(entity) : null;
             // TODO: Actually unpack the roots inside of the action
             fileSystemAccess.write(roots.build(), () -> {});
-            BuildCacheEntryPacker.UnpackResult unpackResult = packer.unpack(entity, input, originMetadataFactory.createReader(entity));
+            BuildCacheEntryPacker.UnpackResult unpackResult = existingSnapshots != null
+                ? packer.unpack(entity, input, originMetadataFactory.createReader(entity), existingSnapshots)
+                : packer.unpack(entity, input, originMetadataFactory.createReader(entity));
             // TODO: Update the snapshots from the action
             ImmutableSortedMap<String, FileSystemSnapshot> resultingSnapshots = snapshotUnpackedData(entity, unpackResult.getSnapshots());
             return new BuildCacheLoadResult() {
@@ -239,6 +370,12 @@ public ImmutableSortedMap<String, FileSystemSnapshot> getResultingSnapshots() {
             };
         }
 
+        private Map<String, FileSystemLocationSnapshot> snapshotExistingOutputs(CacheableEntity entity) {
+            Map<String, FileSystemLocationSnapshot> existingSnapshots = new HashMap<>();
+            entity.visitOutputTrees((treeName, type, root) -> existingSnapshots.put(treeName, fileSystemAccess.read(root.getAbsolutePath())));
+            return existingSnapshots;
+        }
+
         private ImmutableSortedMap<String, FileSystemSnapshot> snapshotUnpackedData(CacheableEntity entity, Map<String, ? extends FileSystemLocationSnapshot> treeSnapshots) {
             ImmutableSortedMap.Builder<String, FileSystemSnapshot> builder = ImmutableSortedMap.naturalOrder();
             entity.visitOutputTrees((treeName, type, root) -> {
@@ -281,10 +418,22 @@ public BuildOperationDescriptor.Builder description() {
         }
     }
 
-    private static RemoteBuildCacheServiceHandle toRemoteHandle(@Nullable BuildCacheService service, boolean push, BuildOperationExecutor buildOperationExecutor, boolean logStackTraces, boolean disableOnError) {
-        return service == null
-            ? NullRemoteBuildCacheServiceHandle.INSTANCE
-            : new OpFiringRemoteBuildCacheServiceHandle(service, push, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces, disableOnError);
+    private static RemoteBuildCacheServiceHandle toRemoteHandle(
+        @Nullable BuildCacheService service,
+        boolean push,
+        BuildOperationExecutor buildOperationExecutor,
+        boolean logStackTraces,
+        boolean disableOnError,
+        @Nullable Executor uploadExecutor,
+        TemporaryFileProvider temporaryFileProvider
+    ) {
+        if (service == null) {
+            return NullRemoteBuildCacheServiceHandle.INSTANCE;
+        }
+        RemoteBuildCacheServiceHandle handle = new OpFiringRemoteBuildCacheServiceHandle(service, push, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces, disableOnError);
+        return uploadExecutor == null
+            ? handle
+            : new AsyncStoringRemoteBuildCacheServiceHandle(handle, uploadExecutor, temporaryFileProvider);
     }
 
     private static LocalBuildCacheServiceHandle toLocalHandle(@Nullable LocalBuildCacheService local, boolean localPush) {
@@ -298,4 +447,32 @@ private static BuildCacheTempFileStore toTempFileStore(@Nullable LocalBuildCache
             ? local
             : new DefaultBuildCacheTempFileStore(temporaryFileProvider);
     }
+
+    private static class NamespacedBuildCacheKey implements BuildCacheKey {
+        private final HashCode hashCode;
+
+        NamespacedBuildCacheKey(HashCode hashCode) {
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public String getHashCode() {
+            return hashCode.toString();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return hashCode.toByteArray();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return getHashCode();
+        }
+
+        @Override
+        public String toString() {
+            return getHashCode();
+        }
+    }
 }
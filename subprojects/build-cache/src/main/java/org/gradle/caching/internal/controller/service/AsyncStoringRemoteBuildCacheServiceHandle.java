@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Stores entries in the remote cache in the background, so that the work does not wait for the upload.
+ *
+ * <p>The entries to upload are queued on disk. When the queue holds too much data, entries are stored synchronously instead.
+ * Upload failures are reported by the delegate like synchronous ones, and never fail the work.</p>
+ *
+ * <p>When closed, the pending uploads are flushed for a limited time. The uploads which have not finished by then are abandoned before the delegate is closed:
+ * the ones which have not started are dropped, and the running ones are interrupted.</p>
+ */
+public class AsyncStoringRemoteBuildCacheServiceHandle implements RemoteBuildCacheServiceHandle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncStoringRemoteBuildCacheServiceHandle.class);
+
+    private static final int MAX_PENDING_KIBIBYTES = 512 * 1024;
+    private static final Duration DEFAULT_FLUSH_TIMEOUT = Duration.ofMinutes(1);
+
+    private final RemoteBuildCacheServiceHandle delegate;
+    private final Executor uploadExecutor;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final Duration flushTimeout;
+    private final Semaphore availableKibibytes = new Semaphore(MAX_PENDING_KIBIBYTES);
+    private final Set<Upload> pendingUploads = ConcurrentHashMap.newKeySet();
+
+    public AsyncStoringRemoteBuildCacheServiceHandle(RemoteBuildCacheServiceHandle delegate, Executor uploadExecutor, TemporaryFileProvider temporaryFileProvider) {
+        this(delegate, uploadExecutor, temporaryFileProvider, DEFAULT_FLUSH_TIMEOUT);
+    }
+
+    @VisibleForTesting
+    AsyncStoringRemoteBuildCacheServiceHandle(RemoteBuildCacheServiceHandle delegate, Executor uploadExecutor, TemporaryFileProvider temporaryFileProvider, Duration flushTimeout) {
+        this.delegate = delegate;
+        this.uploadExecutor = uploadExecutor;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.flushTimeout = flushTimeout;
+    }
+
+    @Nullable
+    @Override
+    public BuildCacheService getService() {
+        return delegate.getService();
+    }
+
+    @Override
+    public boolean canLoad() {
+        return delegate.canLoad();
+    }
+
+    @Override
+    public Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile, Function<File, BuildCacheLoadResult> unpackFunction) {
+        return delegate.maybeLoad(key, toFile, unpackFunction);
+    }
+
+    @Override
+    public boolean canStore() {
+        return delegate.canStore();
+    }
+
+    /**
+     * Queues the file for upload, unless the queue is full.
+     *
+     * Returns true if the file has been queued or stored.
+     */
+    @Override
+    public boolean maybeStore(BuildCacheKey key, File file) {
+        if (!canStore()) {
+            return false;
+        }
+        int kibibytes = (int) Math.min(MAX_PENDING_KIBIBYTES, file.length() / 1024 + 1);
+        if (!availableKibibytes.tryAcquire(kibibytes)) {
+            return delegate.maybeStore(key, file);
+        }
+        File queuedFile;
+        try {
+            queuedFile = enqueue(file);
+        } catch (IOException e) {
+            availableKibibytes.release(kibibytes);
+            LOGGER.debug("Could not queue entry {} for upload, storing it synchronously", key.getDisplayName(), e);
+            return delegate.maybeStore(key, file);
+        }
+        Upload upload = new Upload(key, queuedFile, kibibytes);
+        pendingUploads.add(upload);
+        uploadExecutor.execute(upload);
+        return true;
+    }
+
+    /**
+     * The file to store is owned by the caller, so the queue keeps its own link to it, or a copy when linking is not possible.
+     */
+    private File enqueue(File file) throws IOException {
+        File queuedFile = temporaryFileProvider.createTemporaryFile("build-cache-upload", ".bin");
+        Files.delete(queuedFile.toPath());
+        try {
+            Files.createLink(queuedFile.toPath(), file.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file.toPath(), queuedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return queuedFile;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private void flush() {
+        long deadline = System.nanoTime() + flushTimeout.toNanos();
+        int abandoned = 0;
+        for (Upload upload : pendingUploads) {
+            if (!upload.await(deadline - System.nanoTime())) {
+                // Cancel the upload before the delegate is closed
+                upload.abandon();
+                abandoned++;
+            }
+        }
+        if (abandoned > 0) {
+            LOGGER.warn("Abandoned {} uploads to the remote build cache which did not finish in time.", abandoned);
+        }
+    }
+
+    @VisibleForTesting
+    int getPendingUploadCount() {
+        return pendingUploads.size();
+    }
+
+    private class Upload extends FutureTask<Void> {
+        private final File file;
+        private final int kibibytes;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Upload(BuildCacheKey key, File file, int kibibytes) {
+            super(() -> delegate.maybeStore(key, file), null);
+            this.file = file;
+            this.kibibytes = kibibytes;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                // Abandoned
+                return;
+            }
+            try {
+                super.run();
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Waits for the upload to finish.
+         *
+         * @return whether the upload has finished
+         */
+        boolean await(long timeoutNanos) {
+            try {
+                get(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+                return true;
+            } catch (ExecutionException | CancellationException e) {
+                // Failures are reported by the delegate
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Drops the upload when it has not started yet, or interrupts it otherwise.
+         */
+        void abandon() {
+            if (started.compareAndSet(false, true)) {
+                cancel(false);
+                release();
+            } else {
+                cancel(true);
+            }
+        }
+
+        private void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            pendingUploads.remove(this);
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                LOGGER.debug("Could not delete queued upload {}", file, e);
+            } finally {
+                availableKibibytes.release(kibibytes);
+            }
+        }
+    }
+}
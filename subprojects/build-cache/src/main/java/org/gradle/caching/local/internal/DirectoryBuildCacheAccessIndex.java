@@ -0,0 +1,154 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.internal.file.FileAccessTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records which entries of the directory build cache have been accessed on which day, so that cleanup only needs to look at the entries accessed on old days.
+ *
+ * <p>The index is a directory with one file per day, listing the names of the entries accessed on that day.
+ * An entry can be listed for several days; the access time journal stays the source of truth for when it has last been accessed.
+ * Each process lists an entry at most once per day.</p>
+ *
+ * <p>The index is only accessed while holding the lock of the cache.</p>
+ */
+public class DirectoryBuildCacheAccessIndex implements FileAccessTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheAccessIndex.class);
+
+    static final String INDEX_DIR_NAME = "access-index";
+    private static final String DAY_FILE_SUFFIX = ".txt";
+    private static final String FULL_SCAN_MARKER_NAME = "full-scan";
+
+    private final File cacheDir;
+    private final File indexDir;
+    private final FileAccessTracker delegate;
+    private final Set<String> recordedToday = ConcurrentHashMap.newKeySet();
+    private volatile long today;
+
+    public DirectoryBuildCacheAccessIndex(File cacheDir, FileAccessTracker delegate) {
+        this.cacheDir = cacheDir;
+        this.indexDir = new File(cacheDir, INDEX_DIR_NAME);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void markAccessed(File file) {
+        delegate.markAccessed(file);
+        if (cacheDir.equals(file.getParentFile())) {
+            long day = toDay(System.currentTimeMillis());
+            if (day != today) {
+                recordedToday.clear();
+                today = day;
+            }
+            if (recordedToday.add(file.getName())) {
+                record(file.getName(), day);
+            }
+        }
+    }
+
+    File getIndexDir() {
+        return indexDir;
+    }
+
+    void record(String entryName, long day) {
+        try {
+            Files.createDirectories(indexDir.toPath());
+            try (OutputStream output = new FileOutputStream(dayFile(day), true)) {
+                output.write((entryName + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            // The entry is found again by the next full scan
+            LOGGER.debug("Could not record access to build cache entry {}", entryName, e);
+        }
+    }
+
+    /**
+     * Returns the days before the given day for which accesses have been recorded, oldest first.
+     */
+    List<Long> daysBefore(long day) {
+        File[] files = indexDir.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<Long> days = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(DAY_FILE_SUFFIX)) {
+                try {
+                    long fileDay = Long.parseLong(name.substring(0, name.length() - DAY_FILE_SUFFIX.length()));
+                    if (fileDay < day) {
+                        days.add(fileDay);
+                    }
+                } catch (NumberFormatException e) {
+                    // Not a day file
+                }
+            }
+        }
+        Collections.sort(days);
+        return days;
+    }
+
+    List<String> readDay(long day) throws IOException {
+        return Files.readAllLines(dayFile(day).toPath(), StandardCharsets.UTF_8);
+    }
+
+    void removeDay(long day) throws IOException {
+        Files.deleteIfExists(dayFile(day).toPath());
+    }
+
+    /**
+     * Whether the cache directory needs to be scanned, because there is no index yet or the last scan is too old.
+     *
+     * Scanning once in a while finds the entries which are not in the index, like the ones stored by older Gradle versions.
+     */
+    boolean needsFullScan(long fullScanInterval) {
+        File marker = new File(indexDir, FULL_SCAN_MARKER_NAME);
+        return !marker.isFile() || marker.lastModified() < System.currentTimeMillis() - fullScanInterval;
+    }
+
+    void markFullScanned() throws IOException {
+        Files.createDirectories(indexDir.toPath());
+        File marker = new File(indexDir, FULL_SCAN_MARKER_NAME);
+        Files.write(marker.toPath(), new byte[0]);
+        //noinspection ResultOfMethodCallIgnored
+        marker.setLastModified(System.currentTimeMillis());
+    }
+
+    static long toDay(long timestamp) {
+        return TimeUnit.MILLISECONDS.toDays(timestamp);
+    }
+
+    private File dayFile(long day) {
+        return new File(indexDir, day + DAY_FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.cache.internal.NonReservedFileFilter;
+import org.gradle.internal.file.FileAccessTimeJournal;
+import org.gradle.util.internal.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Deletes the entries of the directory build cache not accessed within the specified number of days.
+ *
+ * <p>Only the entries listed in the {@link DirectoryBuildCacheAccessIndex} for days before the cut-off are looked at,
+ * so the time spent is proportional to the number of entries evicted rather than to the size of the cache.
+ * Entries which have been accessed since are listed again for the day of their last access.</p>
+ *
+ * <p>The whole cache directory is scanned instead when there is no index yet, and once in a while to find entries missing from the index.</p>
+ */
+public class DirectoryBuildCacheCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheCleanup.class);
+    private static final long FULL_SCAN_INTERVAL = TimeUnit.DAYS.toMillis(30);
+
+    private final DirectoryBuildCacheAccessIndex index;
+    private final FileAccessTimeJournal journal;
+    private final Supplier<Long> removeUnusedEntriesOlderThan;
+
+    public DirectoryBuildCacheCleanup(DirectoryBuildCacheAccessIndex index, FileAccessTimeJournal journal, Supplier<Long> removeUnusedEntriesOlderThan) {
+        this.index = index;
+        this.journal = journal;
+        this.removeUnusedEntriesOlderThan = removeUnusedEntriesOlderThan;
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        long cutoff = removeUnusedEntriesOlderThan.get();
+        LOGGER.info("{} removing files not accessed on or after {}.", cleanableStore.getDisplayName(), new Date(cutoff));
+        int filesDeleted;
+        try {
+            if (index.needsFullScan(FULL_SCAN_INTERVAL)) {
+                filesDeleted = cleanByScanning(cleanableStore, cutoff, progressMonitor);
+                index.markFullScanned();
+            } else {
+                filesDeleted = cleanByIndex(cleanableStore.getBaseDir(), cutoff, progressMonitor);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOGGER.info("{} cleanup deleted {} files/directories.", cleanableStore.getDisplayName(), filesDeleted);
+    }
+
+    private int cleanByIndex(File baseDir, long cutoff, CleanupProgressMonitor progressMonitor) throws IOException {
+        int filesDeleted = 0;
+        for (long day : index.daysBefore(DirectoryBuildCacheAccessIndex.toDay(cutoff))) {
+            Set<String> seen = new HashSet<>();
+            for (String entryName : index.readDay(day)) {
+                if (entryName.isEmpty() || !seen.add(entryName)) {
+                    continue;
+                }
+                File entry = new File(baseDir, entryName);
+                if (!entry.exists()) {
+                    // Already deleted, or listed for an older day as well
+                    continue;
+                }
+                if (clean(entry, cutoff, progressMonitor)) {
+                    filesDeleted++;
+                }
+            }
+            index.removeDay(day);
+        }
+        return filesDeleted;
+    }
+
+    private int cleanByScanning(CleanableStore cleanableStore, long cutoff, CleanupProgressMonitor progressMonitor) {
+        FileFilter nonReserved = new NonReservedFileFilter(cleanableStore.getReservedCacheFiles());
+        File[] entries = cleanableStore.getBaseDir().listFiles(file -> nonReserved.accept(file) && !file.equals(index.getIndexDir()));
+        if (entries == null) {
+            return 0;
+        }
+        int filesDeleted = 0;
+        for (File entry : entries) {
+            if (clean(entry, cutoff, progressMonitor)) {
+                filesDeleted++;
+            }
+        }
+        return filesDeleted;
+    }
+
+    /**
+     * Deletes the entry when it has not been used since the cut-off, or lists it in the index for the day it has last been accessed.
+     */
+    private boolean clean(File entry, long cutoff, CleanupProgressMonitor progressMonitor) {
+        long lastAccessTime = journal.getLastAccessTime(entry);
+        if (lastAccessTime < cutoff) {
+            progressMonitor.incrementDeleted();
+            if (GFileUtils.deleteQuietly(entry)) {
+                journal.deleteLastAccessTime(entry);
+                return true;
+            }
+        } else {
+            progressMonitor.incrementSkipped();
+            index.record(entry.getName(), DirectoryBuildCacheAccessIndex.toDay(lastAccessTime));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.internal.cache.DefaultCacheCleanupStrategy;
+import org.gradle.cache.CacheBuilder;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.CleanupActionDecorator;
+import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
+import org.gradle.cache.internal.SingleDepthFilesFinder;
+import org.gradle.caching.internal.packaging.impl.OutputFileStore;
+import org.gradle.internal.file.FileAccessTimeJournal;
+import org.gradle.internal.file.impl.SingleDepthFileAccessTracker;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.time.TimestampSuppliers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+
+import static org.gradle.cache.FileLockManager.LockMode.OnDemand;
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Stores output files uncompressed in a directory, in {@code <first two characters of the content hash>/<content hash>}.
+ *
+ * <p>Restored outputs may be hard links to the stored files.
+ * The stored files are therefore read-only, and links are broken before Gradle modifies an output, see {@link org.gradle.caching.internal.packaging.impl.OutputFileLinks}.
+ * Linked outputs share their modification time with the stored file. Linking sets it to the current time, so restored outputs have a modification time like newly written files.
+ * To detect stored files which have been modified anyway, the store keeps an index of the modification time it last gave each stored file.
+ * Files which do not have this modification time anymore or have become writable are dropped from the store.</p>
+ *
+ * <p>The cache is only opened once it is used. Files which have not been used for {@value #REMOVE_UNUSED_FILES_AFTER_DAYS} days are removed.</p>
+ */
+public class DirectoryOutputFileStore implements OutputFileStore, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryOutputFileStore.class);
+
+    private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 2;
+    private static final int REMOVE_UNUSED_FILES_AFTER_DAYS = 7;
+
+    private final CacheBuilder cacheBuilder;
+    private final FileAccessTimeJournal fileAccessTimeJournal;
+    private final CleanupActionDecorator cleanupActionDecorator;
+
+    private PersistentCache cache;
+    private SingleDepthFileAccessTracker fileAccessTracker;
+    private PersistentIndexedCache<HashCode, Long> modificationTimes;
+
+    public DirectoryOutputFileStore(CacheBuilder cacheBuilder, FileAccessTimeJournal fileAccessTimeJournal, CleanupActionDecorator cleanupActionDecorator) {
+        this.cacheBuilder = cacheBuilder;
+        this.fileAccessTimeJournal = fileAccessTimeJournal;
+        this.cleanupActionDecorator = cleanupActionDecorator;
+    }
+
+    @Nullable
+    @Override
+    public File get(HashCode contentHash) {
+        PersistentCache cache = getCache();
+        return cache.useCache(() -> {
+            File storedFile = getStoredFile(cache, contentHash);
+            if (!storedFile.isFile()) {
+                return null;
+            }
+            if (isModified(contentHash, storedFile)) {
+                LOGGER.debug("Removing stored output file {} as it has been modified.", storedFile);
+                deleteQuietly(storedFile.toPath());
+                return null;
+            }
+            fileAccessTracker.markAccessed(storedFile);
+            return storedFile;
+        });
+    }
+
+    @Override
+    public void put(HashCode contentHash, File file) {
+        PersistentCache cache = getCache();
+        cache.useCache(() -> {
+            File storedFile = getStoredFile(cache, contentHash);
+            if (storedFile.isFile() && !isModified(contentHash, storedFile)) {
+                fileAccessTracker.markAccessed(storedFile);
+                return;
+            }
+            Path tempFile = null;
+            try {
+                Path parentDir = Files.createDirectories(storedFile.getParentFile().toPath());
+                tempFile = Files.createTempFile(parentDir, contentHash.toString(), ".tmp");
+                Files.copy(file.toPath(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+                if (!tempFile.toFile().setWritable(false, false)) {
+                    throw new IOException("Could not make " + tempFile + " read-only");
+                }
+                Files.move(tempFile, storedFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                modificationTimes.put(contentHash, storedFile.lastModified());
+                fileAccessTracker.markAccessed(storedFile);
+            } catch (IOException e) {
+                LOGGER.debug("Could not store output file {}.", file, e);
+                if (tempFile != null) {
+                    deleteQuietly(tempFile);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void link(HashCode contentHash, File storedFile, File target) throws IOException {
+        PersistentCache cache = getCache();
+        try {
+            cache.useCache(() -> {
+                try {
+                    Files.createLink(target.toPath(), storedFile.toPath());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // The target shares its modification time with the stored file
+                if (!target.setLastModified(System.currentTimeMillis())) {
+                    LOGGER.debug("Could not set the modification time of {}.", target);
+                }
+                modificationTimes.put(contentHash, storedFile.lastModified());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean isModified(HashCode contentHash, File storedFile) {
+        Long modificationTime = modificationTimes.getIfPresent(contentHash);
+        if (modificationTime == null || storedFile.lastModified() != modificationTime) {
+            return true;
+        }
+        try {
+            return Files.getPosixFilePermissions(storedFile.toPath()).contains(PosixFilePermission.OWNER_WRITE);
+        } catch (UnsupportedOperationException | IOException e) {
+            return storedFile.canWrite();
+        }
+    }
+
+    private static File getStoredFile(PersistentCache cache, HashCode contentHash) {
+        String hash = contentHash.toString();
+        return new File(new File(cache.getBaseDir(), hash.substring(0, 2)), hash);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.debug("Could not delete {}.", file, e);
+        }
+    }
+
+    private synchronized PersistentCache getCache() {
+        if (cache == null) {
+            cache = cacheBuilder
+                .withCleanupStrategy(DefaultCacheCleanupStrategy.from(cleanupActionDecorator.decorate(new LeastRecentlyUsedCacheCleanup(
+                    new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP),
+                    fileAccessTimeJournal,
+                    TimestampSuppliers.daysAgo(REMOVE_UNUSED_FILES_AFTER_DAYS)
+                ))))
+                .withDisplayName("Build cache output files")
+                .withLockOptions(mode(OnDemand))
+                .open();
+            fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, cache.getBaseDir(), FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+            // Entries of files removed by the cleanup are left behind, and are replaced when the file is stored again
+            modificationTimes = cache.createCache(PersistentIndexedCacheParameters.of("modificationTimes", HashCode.class, BaseSerializerFactory.LONG_SERIALIZER));
+        }
+        return cache;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.junit.Rule
 import spock.lang.Specification
 
 import java.time.Duration
+import java.util.concurrent.Executor
 
 class DefaultBuildCacheControllerTest extends Specification {
 
@@ -59,9 +60,12 @@ class DefaultBuildCacheControllerTest extends Specification {
     def remotePush = true
     def loadmetadata = Mock(Object)
     FileSystemAccess fileSystemAccess = Stub(FileSystemAccess)
-    BuildCacheEntryPacker packer = Stub(BuildCacheEntryPacker)
+    BuildCacheEntryPacker packer = Stub(BuildCacheEntryPacker) {
+        getKeyNamespace() >> null
+    }
     OriginMetadataFactory originMetadataFactory = Stub(OriginMetadataFactory)
     StringInterner stringInterner = Stub(StringInterner)
+    Executor prefetchExecutor = { Runnable command -> command.run() } as Executor
 
     def operations = new TestBuildOperationExecutor()
 
@@ -86,7 +90,9 @@ class DefaultBuildCacheControllerTest extends Specification {
             fileSystemAccess,
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            prefetchExecutor,
+            null
         )
     }
 
@@ -201,6 +207,80 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * local.storeLocally(key, _)
     }
 
+    def "prefetch stores remote entry locally"() {
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        1 * local.storeLocally(key, _)
+
+        when:
+        controller.load(key, cacheableEntity)
+
+        then:
+        1 * local.loadLocally(key, _)
+        0 * remote.load(key, _)
+    }
+
+    def "does not load from remote again after a prefetch miss"() {
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+
+        then:
+        1 * remote.load(key, _) >> false
+        1 * local.loadLocally(key, _)
+        0 * local.storeLocally(key, _)
+    }
+
+    def "prefetch miss is only used by the first load"() {
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+        controller.load(key, cacheableEntity)
+
+        then:
+        2 * remote.load(key, _) >> false
+        2 * local.loadLocally(key, _)
+        0 * local.storeLocally(key, _)
+    }
+
+    def "does not prefetch if local push is disabled"() {
+        given:
+        localPush = false
+
+        when:
+        controller.prefetch(key)
+
+        then:
+        0 * remote.load(key, _)
+    }
+
+    def "load cancels a prefetch which has not started yet"() {
+        List<Runnable> queued = []
+        prefetchExecutor = { Runnable command -> queued << command } as Executor
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+        queued*.run()
+
+        then:
+        1 * local.loadLocally(key, _)
+        1 * remote.load(key, _)
+    }
+
     def "stops calling through after read error"() {
         local = null
 
@@ -276,4 +356,33 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "stores and loads entries under their own keys when the packer uses a key namespace"() {
+        given:
+        packer = Stub(BuildCacheEntryPacker) {
+            getKeyNamespace() >> "zstd"
+        }
+        def cacheKey = Stub(BuildCacheKey) {
+            getHashCode() >> "0123456789abcdef0123456789abcdef"
+            toByteArray() >> ([1, 2, 3] as byte[])
+        }
+        BuildCacheKey storedKey = null
+
+        when:
+        controller.store(cacheKey, cacheableEntity, snapshots, executionTime)
+
+        then:
+        1 * remote.store(_, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            storedKey = key
+        }
+        1 * local.storeLocally({ it.hashCode == storedKey.hashCode }, _)
+        storedKey.hashCode != cacheKey.hashCode
+
+        when:
+        controller.load(cacheKey, cacheableEntity)
+
+        then:
+        1 * local.loadLocally({ it.hashCode == storedKey.hashCode }, _)
+        1 * remote.load({ it.hashCode == storedKey.hashCode }, _)
+    }
 }
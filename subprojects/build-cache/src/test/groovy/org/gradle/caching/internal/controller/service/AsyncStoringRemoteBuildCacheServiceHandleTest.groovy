@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.caching.BuildCacheKey
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+class AsyncStoringRemoteBuildCacheServiceHandleTest extends Specification {
+
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def key = Stub(BuildCacheKey) {
+        getDisplayName() >> "key"
+    }
+    def delegate = Mock(RemoteBuildCacheServiceHandle)
+    List<Runnable> queued = []
+    def executor = { Runnable command -> queued << command } as Executor
+    def handle = new AsyncStoringRemoteBuildCacheServiceHandle(delegate, executor, TestFiles.tmpDirTemporaryFileProvider(temporaryFolder.createDir("tmp")), Duration.ZERO)
+
+    def "uploads a copy of the entry in the background"() {
+        def file = temporaryFolder.file("entry")
+        file.text = "content"
+        String uploaded = null
+
+        when:
+        def stored = handle.maybeStore(key, file)
+        file.delete()
+
+        then:
+        stored
+        _ * delegate.canStore() >> true
+        0 * delegate.maybeStore(_, _)
+
+        when:
+        queued*.run()
+
+        then:
+        1 * delegate.maybeStore(key, _) >> { BuildCacheKey key, File queuedFile ->
+            uploaded = queuedFile.text
+            true
+        }
+        uploaded == "content"
+        temporaryFolder.file("tmp").listFiles().length == 0
+        handle.pendingUploadCount == 0
+    }
+
+    def "does not queue entries when storing is disabled"() {
+        when:
+        def stored = handle.maybeStore(key, temporaryFolder.createFile("entry"))
+
+        then:
+        !stored
+        _ * delegate.canStore() >> false
+        0 * delegate.maybeStore(_, _)
+        queued.empty
+    }
+
+    def "abandons uploads which have not started when closed"() {
+        delegate.canStore() >> true
+
+        when:
+        handle.maybeStore(key, temporaryFolder.createFile("entry"))
+        handle.close()
+        queued*.run()
+
+        then:
+        0 * delegate.maybeStore(_, _)
+        1 * delegate.close()
+        temporaryFolder.file("tmp").listFiles().length == 0
+        handle.pendingUploadCount == 0
+    }
+
+    def "interrupts running uploads which do not finish in time before closing the delegate"() {
+        delegate.canStore() >> true
+        def uploadStarted = new CountDownLatch(1)
+        def uploadInterrupted = new CountDownLatch(1)
+        def handle = new AsyncStoringRemoteBuildCacheServiceHandle(delegate, { Runnable command -> Thread.start { command.run() } } as Executor, TestFiles.tmpDirTemporaryFileProvider(temporaryFolder.createDir("tmp")), Duration.ofMillis(100))
+
+        when:
+        handle.maybeStore(key, temporaryFolder.createFile("entry"))
+        uploadStarted.await()
+        handle.close()
+
+        then:
+        1 * delegate.maybeStore(key, _) >> {
+            uploadStarted.countDown()
+            try {
+                Thread.sleep(10000)
+            } catch (InterruptedException e) {
+                uploadInterrupted.countDown()
+            }
+            true
+        }
+
+        then:
+        1 * delegate.close() >> {
+            assert uploadInterrupted.await(10, TimeUnit.SECONDS)
+        }
+    }
+
+    def "waits for running uploads when closed"() {
+        delegate.canStore() >> true
+        def handle = new AsyncStoringRemoteBuildCacheServiceHandle(delegate, { Runnable command -> Thread.start { command.run() } } as Executor, TestFiles.tmpDirTemporaryFileProvider(temporaryFolder.createDir("tmp")))
+
+        when:
+        handle.maybeStore(key, temporaryFolder.createFile("entry"))
+        handle.close()
+
+        then:
+        1 * delegate.maybeStore(key, _) >> {
+            Thread.sleep(100)
+            true
+        }
+
+        then:
+        1 * delegate.close()
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
+import org.gradle.internal.file.FileAccessTimeJournal
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class DirectoryBuildCacheCleanupTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheDir = temporaryFolder.createDir("cache")
+    Map<File, Long> accessTimes = [:]
+    def journal = Stub(FileAccessTimeJournal) {
+        getLastAccessTime(_ as File) >> { File file -> accessTimes[file] ?: 0L }
+        deleteLastAccessTime(_ as File) >> { File file -> accessTimes.remove(file) }
+    }
+    def index = new DirectoryBuildCacheAccessIndex(cacheDir, Stub(FileAccessTracker))
+    def cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7)
+    def cleanup = new DirectoryBuildCacheCleanup(index, journal, { cutoff })
+    def store = Stub(CleanableStore) {
+        getBaseDir() >> cacheDir
+        getReservedCacheFiles() >> []
+        getDisplayName() >> "Build cache"
+    }
+
+    def "scans the cache directory when there is no index yet"() {
+        def oldEntry = entry("old", daysAgo(10))
+        def newEntry = entry("new", daysAgo(1))
+
+        when:
+        cleanup.clean(store, CleanupProgressMonitor.NO_OP)
+
+        then:
+        !oldEntry.exists()
+        newEntry.exists()
+        index.indexDir.exists()
+    }
+
+    def "only looks at the entries listed for days before the cut-off"() {
+        cleanup.clean(store, CleanupProgressMonitor.NO_OP)
+        def unlisted = entry("unlisted", daysAgo(10))
+        def listed = entry("listed", daysAgo(10))
+        def accessedSince = entry("accessed-since", daysAgo(10))
+        index.record("listed", DirectoryBuildCacheAccessIndex.toDay(daysAgo(10)))
+        index.record("accessed-since", DirectoryBuildCacheAccessIndex.toDay(daysAgo(10)))
+        accessTimes[accessedSince] = daysAgo(2)
+
+        when:
+        cleanup.clean(store, CleanupProgressMonitor.NO_OP)
+
+        then:
+        unlisted.exists()
+        !listed.exists()
+        accessedSince.exists()
+        index.daysBefore(DirectoryBuildCacheAccessIndex.toDay(System.currentTimeMillis())) == [DirectoryBuildCacheAccessIndex.toDay(daysAgo(2))]
+        index.readDay(DirectoryBuildCacheAccessIndex.toDay(daysAgo(2))) == ["accessed-since"]
+    }
+
+    def "records accessed entries once per day"() {
+        def tracker = Mock(FileAccessTracker)
+        def index = new DirectoryBuildCacheAccessIndex(cacheDir, tracker)
+        def entry = entry("entry", System.currentTimeMillis())
+
+        when:
+        index.markAccessed(entry)
+        index.markAccessed(entry)
+
+        then:
+        2 * tracker.markAccessed(entry)
+        index.readDay(DirectoryBuildCacheAccessIndex.toDay(System.currentTimeMillis())) == ["entry"]
+    }
+
+    private File entry(String name, long accessTime) {
+        def file = new File(cacheDir, name)
+        file.text = name
+        accessTimes[file] = accessTime
+        file
+    }
+
+    private static long daysAgo(int days) {
+        System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days)
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CleanupAction
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.internal.CleanupActionDecorator
+import org.gradle.internal.Factory
+import org.gradle.internal.file.FileAccessTimeJournal
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+@UsesNativeServices
+@CleanupTestDirectory
+@Requires(TestPrecondition.UNIX_DERIVATIVE)
+class DirectoryOutputFileStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheDir = temporaryFolder.createDir("store")
+    def modificationTimes = [:]
+    def persistentCache = Stub(PersistentCache) {
+        getBaseDir() >> cacheDir
+        useCache(_ as Factory) >> { Factory factory -> factory.create() }
+        useCache(_ as Runnable) >> { Runnable action -> action.run() }
+        createCache(_) >> ([
+            getIfPresent: { key -> modificationTimes[key] },
+            put: { key, value -> modificationTimes[key] = value }
+        ] as PersistentIndexedCache)
+    }
+    def cacheBuilder = Stub(CacheBuilder)
+    def store = new DirectoryOutputFileStore(cacheBuilder, Stub(FileAccessTimeJournal), Stub(CleanupActionDecorator) {
+        decorate(_) >> Stub(CleanupAction)
+    })
+    def contentHash = HashCode.fromString("0123456789abcdef0123456789abcdef")
+
+    def setup() {
+        cacheBuilder.withCleanupStrategy(_) >> cacheBuilder
+        cacheBuilder.withDisplayName(_) >> cacheBuilder
+        cacheBuilder.withLockOptions(_) >> cacheBuilder
+        cacheBuilder.open() >> persistentCache
+    }
+
+    def "linked outputs are given the current time as modification time"() {
+        def output = temporaryFolder.file("output.jar") << "content"
+        store.put(contentHash, output)
+        def storedFile = store.get(contentHash)
+        // Pretend the file has been stored a while ago
+        storedFile.setLastModified(946684800000L)
+        modificationTimes[contentHash] = storedFile.lastModified()
+        def target = temporaryFolder.file("target/output.jar")
+        target.parentFile.createDir()
+        def beforeLinking = System.currentTimeMillis() - 1000
+
+        when:
+        store.link(contentHash, storedFile, target)
+
+        then:
+        target.text == "content"
+        Files.getAttribute(target.toPath(), "unix:nlink") == 2
+        target.lastModified() >= beforeLinking
+        store.get(contentHash) == storedFile
+    }
+
+    def "drops stored files which have been modified"() {
+        def output = temporaryFolder.file("output.jar") << "content"
+        store.put(contentHash, output)
+        def storedFile = store.get(contentHash)
+
+        when:
+        storedFile.setWritable(true)
+        storedFile.text = "changed"
+        storedFile.setLastModified(storedFile.lastModified() + 2000)
+        storedFile.setWritable(false)
+
+        then:
+        store.get(contentHash) == null
+        !storedFile.exists()
+    }
+
+    def "drops stored files without a recorded modification time"() {
+        def output = temporaryFolder.file("output.jar") << "content"
+        store.put(contentHash, output)
+        def storedFile = store.get(contentHash)
+
+        when:
+        modificationTimes.clear()
+
+        then:
+        store.get(contentHash) == null
+        !storedFile.exists()
+    }
+}
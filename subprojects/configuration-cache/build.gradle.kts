@@ -85,6 +85,7 @@ dependencies {
     implementation(libs.guava)
     implementation(libs.inject)
     implementation(libs.slf4jApi)
+    implementation(libs.snappy)
 
     implementation(libs.futureKotlin("stdlib-jdk8"))
     implementation(libs.futureKotlin("reflect"))
@@ -70,6 +70,32 @@ class ConfigurationCacheBuildOperationsIntegrationTest extends AbstractConfigura
         workGraphLoaded()
     }
 
+    def "reports the size of the state files when compress is #compress"() {
+        given:
+        withLibBuild()
+
+        when:
+        inDirectory 'lib'
+        configurationCacheRun 'assemble', "-Dorg.gradle.configuration-cache.internal.compress-state=$compress"
+
+        then:
+        def storeResult = operations.only(ConfigurationCacheStoreBuildOperationType).result
+        storeResult.uncompressedSize > 0
+        compress ? storeResult.compressedSize < storeResult.uncompressedSize : storeResult.compressedSize == storeResult.uncompressedSize
+
+        when:
+        inDirectory 'lib'
+        configurationCacheRun 'assemble', "-Dorg.gradle.configuration-cache.internal.compress-state=${!compress}"
+
+        then:
+        def loadResult = operations.only(ConfigurationCacheLoadBuildOperationType).result
+        loadResult.uncompressedSize > 0
+        compress ? loadResult.compressedSize < loadResult.uncompressedSize : loadResult.compressedSize == loadResult.uncompressedSize
+
+        where:
+        compress << [true, false]
+    }
+
     def "emits relevant build operations when configuration cache is used - included build dependency"() {
         given:
         withLibBuild()
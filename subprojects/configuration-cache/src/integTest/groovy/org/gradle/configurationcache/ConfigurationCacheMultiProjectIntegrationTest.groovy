@@ -114,4 +114,56 @@ class ConfigurationCacheMultiProjectIntegrationTest extends AbstractConfiguratio
         result.assertTasksExecuted(':ok', ':a:ok', ':b:ok')
         configurationCache.assertStateLoaded()
     }
+
+    def "loads tasks of each project when parallel load is enabled"() {
+        given:
+        settingsFile << """
+            include 'a', 'b', 'c'
+        """
+        buildScript """
+            abstract class Greeting extends DefaultTask {
+                @Input
+                abstract Property<String> getGreeting()
+
+                @TaskAction
+                def greet() {
+                    println(greeting.get() + " from " + path)
+                }
+            }
+
+            def shared = providers.provider { "shared" }
+
+            allprojects {
+                tasks.register('greet', Greeting) {
+                    greeting = "hello"
+                }
+                tasks.register('greetShared', Greeting) {
+                    greeting = shared
+                }
+            }
+            project(':b') {
+                tasks.named('greet') {
+                    dependsOn ':a:greet'
+                    finalizedBy ':c:greet'
+                }
+            }
+        """
+        def configurationCache = newConfigurationCacheFixture()
+
+        when:
+        configurationCacheRun ':b:greet', 'greetShared', '--parallel', '-Dorg.gradle.configuration-cache.internal.parallel-load=true'
+
+        then:
+        configurationCache.assertStateStored()
+
+        when:
+        configurationCacheRun ':b:greet', 'greetShared', '--parallel', '-Dorg.gradle.configuration-cache.internal.parallel-load=true'
+
+        then:
+        configurationCache.assertStateLoaded()
+        result.assertTasksExecutedInOrder(':a:greet', ':b:greet', ':c:greet')
+        result.assertTasksExecuted(':a:greet', ':b:greet', ':c:greet', ':greetShared', ':a:greetShared', ':b:greetShared', ':c:greetShared')
+        outputContains("hello from :b:greet")
+        outputContains("shared from :c:greetShared")
+    }
 }
@@ -199,4 +199,46 @@ class ConfigurationCacheParallelTaskIntegrationTest extends AbstractConfiguratio
             configurationCacheRun "finalizerDep", "finalized"
         }
     }
+
+    @IgnoreIf({ GradleContextualExecuter.parallel })
+    def "loads tasks of different projects concurrently when parallel load is enabled"() {
+        server.start()
+
+        given:
+        settingsFile << """
+            include 'a', 'b'
+        """
+        buildFile << """
+            class Handshake implements Serializable {
+                String projectName
+
+                private void readObject(ObjectInputStream ois) {
+                    ois.defaultReadObject()
+                    ${server.callFromBuildUsingExpression("projectName")}
+                }
+            }
+
+            class LoadedTask extends DefaultTask {
+
+                private final Handshake handshake = new Handshake(projectName: project.name)
+
+                @TaskAction
+                def go() {
+                    println("loaded " + handshake.projectName)
+                }
+            }
+
+            subprojects {
+                tasks.create('loaded', LoadedTask)
+            }
+        """
+
+        expect:
+        2.times {
+            server.expectConcurrent("a", "b")
+            configurationCacheRun "loaded", "--max-workers=2", "-Dorg.gradle.configuration-cache.internal.parallel-load=true"
+            outputContains("loaded a")
+            outputContains("loaded b")
+        }
+    }
 }
@@ -25,13 +25,13 @@ import org.gradle.internal.operations.CallableBuildOperation
 
 
 internal
-fun <T : Any> BuildOperationExecutor.withLoadOperation(block: () -> T) =
-    withOperation("Load configuration cache state", block, LoadDetails, LoadResult)
+fun <T : Any> BuildOperationExecutor.withLoadOperation(stateStreams: ConfigurationCacheStateStreams, block: () -> T) =
+    withOperation("Load configuration cache state", block, LoadDetails, stateStreams, ::LoadResult)
 
 
 internal
-fun BuildOperationExecutor.withStoreOperation(cacheKey: String, block: () -> Unit) =
-    withOperation("Store configuration cache state", block, StoreDetails, StoreResult)
+fun BuildOperationExecutor.withStoreOperation(cacheKey: String, stateStreams: ConfigurationCacheStateStreams, block: () -> Unit) =
+    withOperation("Store configuration cache state", block, StoreDetails, stateStreams, ::StoreResult)
 
 
 private
@@ -39,7 +39,11 @@ object LoadDetails : ConfigurationCacheLoadBuildOperationType.Details
 
 
 private
-object LoadResult : ConfigurationCacheLoadBuildOperationType.Result
+class LoadResult(private val sizes: StateFileSizes) : ConfigurationCacheLoadBuildOperationType.Result {
+    override fun getCompressedSize(): Long = sizes.compressedSize
+
+    override fun getUncompressedSize(): Long = sizes.uncompressedSize
+}
 
 
 private
@@ -47,15 +51,28 @@ object StoreDetails : ConfigurationCacheStoreBuildOperationType.Details
 
 
 private
-object StoreResult : ConfigurationCacheStoreBuildOperationType.Result
+class StoreResult(private val sizes: StateFileSizes) : ConfigurationCacheStoreBuildOperationType.Result {
+    override fun getCompressedSize(): Long = sizes.compressedSize
+
+    override fun getUncompressedSize(): Long = sizes.uncompressedSize
+}
 
 
 private
-fun <T : Any, D : Any, R : Any> BuildOperationExecutor.withOperation(displayName: String, block: () -> T, details: D, result: R): T =
+fun <T : Any, D : Any, R : Any> BuildOperationExecutor.withOperation(
+    displayName: String,
+    block: () -> T,
+    details: D,
+    stateStreams: ConfigurationCacheStateStreams,
+    result: (StateFileSizes) -> R
+): T =
     call(object : CallableBuildOperation<T> {
         override fun description(): BuildOperationDescriptor.Builder =
             BuildOperationDescriptor.displayName(displayName).details(details)
 
-        override fun call(context: BuildOperationContext): T =
-            block().also { context.setResult(result) }
+        override fun call(context: BuildOperationContext): T {
+            val (value, sizes) = stateStreams.collectingSizes(block)
+            context.setResult(result(sizes))
+            return value
+        }
     })
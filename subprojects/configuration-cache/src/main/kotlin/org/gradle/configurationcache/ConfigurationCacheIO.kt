@@ -27,10 +27,17 @@ import org.gradle.configurationcache.problems.ConfigurationCacheProblems
 import org.gradle.configurationcache.serialization.DefaultReadContext
 import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.LoggingTracer
+import org.gradle.configurationcache.serialization.ProjectProvider
+import org.gradle.configurationcache.serialization.ReadContext
+import org.gradle.configurationcache.serialization.ReadIdentities
 import org.gradle.configurationcache.serialization.Tracer
+import org.gradle.configurationcache.serialization.WriteContext
+import org.gradle.configurationcache.serialization.WriteIdentities
 import org.gradle.configurationcache.serialization.beans.BeanStateReaderLookup
 import org.gradle.configurationcache.serialization.beans.BeanStateWriterLookup
 import org.gradle.configurationcache.serialization.codecs.Codecs
+import org.gradle.configurationcache.serialization.codecs.WorkGraphSegment
+import org.gradle.configurationcache.serialization.codecs.WorkGraphSegments
 import org.gradle.configurationcache.serialization.readCollection
 import org.gradle.configurationcache.serialization.readFile
 import org.gradle.configurationcache.serialization.readList
@@ -40,9 +47,13 @@ import org.gradle.configurationcache.serialization.runWriteOperation
 import org.gradle.configurationcache.serialization.withGradleIsolate
 import org.gradle.configurationcache.serialization.writeCollection
 import org.gradle.configurationcache.serialization.writeFile
+import org.gradle.internal.UncheckedException
 import org.gradle.internal.build.BuildStateRegistry
 import org.gradle.internal.buildtree.BuildTreeWorkGraph
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter
+import org.gradle.internal.operations.BuildOperationRef
+import org.gradle.internal.operations.CurrentBuildOperationRef
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder
@@ -50,9 +61,15 @@ import org.gradle.internal.serialize.kryo.KryoBackedEncoder
 import org.gradle.internal.service.scopes.Scopes
 import org.gradle.internal.service.scopes.ServiceScope
 import org.gradle.util.Path
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
 
 
 @ServiceScope(Scopes.Gradle::class)
@@ -63,7 +80,8 @@ class ConfigurationCacheIO internal constructor(
     private val scopeRegistryListener: ConfigurationCacheClassLoaderScopeRegistryListener,
     private val beanStateReaderLookup: BeanStateReaderLookup,
     private val beanStateWriterLookup: BeanStateWriterLookup,
-    private val eventEmitter: BuildOperationProgressEventEmitter
+    private val eventEmitter: BuildOperationProgressEventEmitter,
+    private val stateStreams: ConfigurationCacheStateStreams
 ) {
     private
     val codecs = codecs()
@@ -167,7 +185,7 @@ class ConfigurationCacheIO internal constructor(
         stateFile: ConfigurationCacheStateFile,
         action: suspend DefaultReadContext.(ConfigurationCacheState) -> T
     ): T {
-        return withReadContextFor(stateFile.inputStream()) { codecs ->
+        return withReadContextFor(stateStreams.inputStreamFor(stateFile)) { codecs ->
             ConfigurationCacheState(codecs, stateFile, eventEmitter, host).run {
                 action(this)
             }
@@ -180,7 +198,7 @@ class ConfigurationCacheIO internal constructor(
         action: suspend DefaultWriteContext.(ConfigurationCacheState) -> T
     ): T {
         val build = host.currentBuild
-        val (context, codecs) = writerContextFor(stateFile.outputStream(), build.gradle.owner.displayName.displayName + " state")
+        val (context, codecs) = writerContextFor(stateStreams.outputStreamFor(stateFile), build.gradle.owner.displayName.displayName + " state")
         return context.useToRun {
             runWriteOperation {
                 action(ConfigurationCacheState(codecs, stateFile, eventEmitter, host))
@@ -206,6 +224,115 @@ class ConfigurationCacheIO internal constructor(
         }
     }
 
+    internal
+    val workGraphSegments: WorkGraphSegments = object : WorkGraphSegments {
+        override fun encode(sharedIdentities: WriteIdentities, segments: List<suspend WriteContext.() -> Unit>): List<WorkGraphSegment> {
+            val firstId = sharedIdentities.size
+            val ownerOfId = ArrayList<Int>()
+            val encoded = segments.mapIndexed { index, segment ->
+                val bytes = ByteArrayOutputStream()
+                val references = sharedIdentities.recordingReferences {
+                    writeContextFor(KryoBackedEncoder(bytes), null, codecs, sharedIdentities).useToRun {
+                        runWriteOperation {
+                            segment()
+                        }
+                    }
+                }
+                val segmentFirstId = firstId + ownerOfId.size
+                repeat(sharedIdentities.size - segmentFirstId) { ownerOfId.add(index) }
+                // The instances of earlier segments which this segment references, indexed from the first id of the segments like `ownerOfId`
+                bytes.toByteArray() to references.get(firstId, segmentFirstId)
+            }
+            // A segment is shared when a later segment references an instance that it put into the shared identities
+            val isShared = BooleanArray(segments.size)
+            encoded.forEach { (_, earlierSegmentReferences) ->
+                earlierSegmentReferences.stream().forEach { id -> isShared[ownerOfId[id]] = true }
+            }
+            return encoded.mapIndexed { index, (bytes, _) -> WorkGraphSegment(bytes, isShared[index]) }
+        }
+
+        override fun <T> decode(
+            segments: List<WorkGraphSegment>,
+            sharedIdentities: ReadIdentities,
+            projectProvider: ProjectProvider,
+            segment: suspend ReadContext.() -> T
+        ): List<T> {
+            val independentSegmentCount = segments.count { !it.isShared }
+            if (independentSegmentCount <= 1 || startParameter.maxWorkerCount <= 1) {
+                // Each instance of the shared identities has its own id, so every segment can be decoded with them
+                return segments.map { decodeSegment(it, sharedIdentities, projectProvider, segment) }
+            }
+            // Shared segments are decoded first, in order on this thread, so the other segments find the state they put into the shared identities
+            val sharedResults = segments.map {
+                if (it.isShared) CompletableFuture.completedFuture(decodeSegment(it, sharedIdentities, projectProvider, segment)) else null
+            }
+            // Decoding may run build operations, which should be children of the current one
+            val parentOperation = CurrentBuildOperationRef.instance().get()
+            val executor = service<ExecutorFactory>().create("Configuration cache work graph loader", minOf(independentSegmentCount, startParameter.maxWorkerCount))
+            try {
+                // The shared identities are not modified until all the independent segments are decoded, so each of them can read them from its own thread
+                val results: List<Pair<ReadIdentities?, Future<T>>> = segments.mapIndexed { index, independentSegment ->
+                    val sharedResult = sharedResults[index]
+                    if (sharedResult != null) {
+                        null to sharedResult
+                    } else {
+                        val segmentIdentities = ReadIdentities(sharedIdentities)
+                        segmentIdentities to executor.submit(Callable {
+                            withParentOperation(parentOperation) {
+                                decodeSegment(independentSegment, segmentIdentities, projectProvider, segment)
+                            }
+                        })
+                    }
+                }
+                val decoded = results.map { (_, result) ->
+                    try {
+                        result.get()
+                    } catch (e: ExecutionException) {
+                        throw UncheckedException.throwAsUncheckedException(e.cause!!)
+                    }
+                }
+                // Nodes written after the segments may reference the state of any segment
+                results.forEach { (segmentIdentities, _) ->
+                    segmentIdentities?.let(sharedIdentities::putAll)
+                }
+                return decoded
+            } finally {
+                executor.stop()
+            }
+        }
+
+        private
+        fun <T> decodeSegment(
+            segment: WorkGraphSegment,
+            identities: ReadIdentities,
+            projectProvider: ProjectProvider,
+            action: suspend ReadContext.() -> T
+        ): T {
+            return readContextFor(KryoBackedDecoder(ByteArrayInputStream(segment.bytes)), codecs, identities).use { context ->
+                context.run {
+                    initClassLoader(javaClass.classLoader)
+                    initProjectProvider(projectProvider)
+                    runReadOperation {
+                        action()
+                    }.also {
+                        finish()
+                    }
+                }
+            }
+        }
+
+        private
+        fun <T> withParentOperation(parentOperation: BuildOperationRef?, action: () -> T): T {
+            val currentOperation = CurrentBuildOperationRef.instance()
+            currentOperation.set(parentOperation)
+            try {
+                return action()
+            } finally {
+                currentOperation.clear()
+            }
+        }
+    }
+
     internal
     fun writerContextFor(outputStream: OutputStream, profile: String): Pair<DefaultWriteContext, Codecs> =
         KryoBackedEncoder(outputStream).let { encoder ->
@@ -272,7 +399,8 @@ class ConfigurationCacheIO internal constructor(
     fun writeContextFor(
         encoder: Encoder,
         tracer: Tracer?,
-        codecs: Codecs
+        codecs: Codecs,
+        sharedIdentities: WriteIdentities = WriteIdentities()
     ) = DefaultWriteContext(
         codecs.userTypesCodec(),
         encoder,
@@ -280,19 +408,22 @@ class ConfigurationCacheIO internal constructor(
         beanStateWriterLookup,
         logger,
         tracer,
-        problems
+        problems,
+        sharedIdentities
     )
 
     private
     fun readContextFor(
         decoder: Decoder,
-        codecs: Codecs
+        codecs: Codecs,
+        sharedIdentities: ReadIdentities = ReadIdentities()
     ) = DefaultReadContext(
         codecs.userTypesCodec(),
         decoder,
         beanStateReaderLookup,
         logger,
-        problems
+        problems,
+        sharedIdentities
     )
 
     private
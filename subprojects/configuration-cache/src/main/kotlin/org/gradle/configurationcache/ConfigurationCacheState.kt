@@ -35,6 +35,7 @@ import org.gradle.configurationcache.extensions.serviceOf
 import org.gradle.configurationcache.extensions.uncheckedCast
 import org.gradle.configurationcache.extensions.unsafeLazy
 import org.gradle.configurationcache.flow.BuildFlowScope
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter
 import org.gradle.configurationcache.problems.DocumentationSection.NotYetImplementedSourceDependencies
 import org.gradle.configurationcache.serialization.DefaultReadContext
 import org.gradle.configurationcache.serialization.DefaultWriteContext
@@ -407,15 +408,18 @@ class ConfigurationCacheState(
 
     private
     suspend fun DefaultWriteContext.writeWorkGraphOf(gradle: GradleInternal, scheduledNodes: List<Node>) {
+        val segments = gradle.serviceOf<ConfigurationCacheIO>().workGraphSegments.takeIf {
+            gradle.serviceOf<ConfigurationCacheStartParameter>().parallelLoad
+        }
         workNodeCodec(gradle).run {
-            writeWork(scheduledNodes)
+            writeWork(scheduledNodes, segments)
         }
     }
 
     private
     suspend fun DefaultReadContext.readWorkGraph(gradle: GradleInternal) =
         workNodeCodec(gradle).run {
-            readWork()
+            readWork(gradle.serviceOf<ConfigurationCacheIO>().workGraphSegments)
         }
 
     private
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache
+
+import com.google.common.io.CountingInputStream
+import com.google.common.io.CountingOutputStream
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter
+import org.gradle.internal.service.scopes.Scopes
+import org.gradle.internal.service.scopes.ServiceScope
+import org.iq80.snappy.SnappyFramedInputStream
+import org.iq80.snappy.SnappyFramedOutputStream
+import java.io.FilterInputStream
+import java.io.FilterOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.concurrent.atomic.AtomicLong
+
+
+/**
+ * Opens the streams to write and read configuration cache state files, compressing the state when requested.
+ *
+ * Each state file starts with a header byte telling whether the rest of the file is compressed,
+ * so a state file can be read regardless of whether compression was enabled when it was written.
+ * The state is compressed using the framed Snappy format, which is streamed in blocks of 64KiB.
+ * The reported sizes include the header byte, so the compressed size is the size of the state files on disk.
+ */
+@ServiceScope(Scopes.BuildTree::class)
+internal
+class ConfigurationCacheStateStreams(
+    startParameter: ConfigurationCacheStartParameter
+) {
+    private
+    val compress = startParameter.compressStateFiles
+
+    @Volatile
+    private
+    var sizeCollector: SizeCollector? = null
+
+    fun outputStreamFor(stateFile: ConfigurationCacheStateFile): OutputStream {
+        val storedStream = CountingOutputStream(stateFile.outputStream())
+        try {
+            storedStream.write(if (compress) COMPRESSED_STATE else UNCOMPRESSED_STATE)
+            if (!compress) {
+                return SizeRecordingOutputStream(storedStream) { recordSizes(storedStream.count, storedStream.count) }
+            }
+            val uncompressedStream = CountingOutputStream(SnappyFramedOutputStream(storedStream))
+            return SizeRecordingOutputStream(uncompressedStream) { recordSizes(storedStream.count, HEADER_SIZE + uncompressedStream.count) }
+        } catch (e: Exception) {
+            storedStream.close()
+            throw e
+        }
+    }
+
+    fun inputStreamFor(stateFile: ConfigurationCacheStateFile): InputStream {
+        val storedStream = CountingInputStream(stateFile.inputStream())
+        try {
+            return when (val header = storedStream.read()) {
+                UNCOMPRESSED_STATE -> SizeRecordingInputStream(storedStream) { recordSizes(storedStream.count, storedStream.count) }
+                COMPRESSED_STATE -> {
+                    val uncompressedStream = CountingInputStream(SnappyFramedInputStream(storedStream, true))
+                    SizeRecordingInputStream(uncompressedStream) { recordSizes(storedStream.count, HEADER_SIZE + uncompressedStream.count) }
+                }
+                else -> throw IOException("Unexpected configuration cache state file header $header.")
+            }
+        } catch (e: Exception) {
+            storedStream.close()
+            throw e
+        }
+    }
+
+    /**
+     * Runs the given action, and returns the sizes of the state files written or read while it ran.
+     */
+    fun <T> collectingSizes(action: () -> T): Pair<T, StateFileSizes> {
+        val collector = SizeCollector()
+        sizeCollector = collector
+        try {
+            return action() to collector.sizes()
+        } finally {
+            sizeCollector = null
+        }
+    }
+
+    private
+    fun recordSizes(compressedSize: Long, uncompressedSize: Long) {
+        sizeCollector?.add(compressedSize, uncompressedSize)
+    }
+
+    private
+    companion object {
+        const val UNCOMPRESSED_STATE = 0
+        const val COMPRESSED_STATE = 1
+        const val HEADER_SIZE = 1
+    }
+}
+
+
+internal
+data class StateFileSizes(val compressedSize: Long, val uncompressedSize: Long)
+
+
+private
+class SizeCollector {
+    private
+    val compressedSize = AtomicLong()
+
+    private
+    val uncompressedSize = AtomicLong()
+
+    fun add(compressed: Long, uncompressed: Long) {
+        compressedSize.addAndGet(compressed)
+        uncompressedSize.addAndGet(uncompressed)
+    }
+
+    fun sizes() = StateFileSizes(compressedSize.get(), uncompressedSize.get())
+}
+
+
+private
+class SizeRecordingOutputStream(
+    out: OutputStream,
+    private val onClose: () -> Unit
+) : FilterOutputStream(out) {
+    private
+    var closed = false
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        out.write(b, off, len)
+    }
+
+    override fun close() {
+        if (!closed) {
+            closed = true
+            super.close()
+            onClose()
+        }
+    }
+}
+
+
+private
+class SizeRecordingInputStream(
+    input: InputStream,
+    private val onClose: () -> Unit
+) : FilterInputStream(input) {
+    private
+    var closed = false
+
+    override fun close() {
+        if (!closed) {
+            closed = true
+            super.close()
+            onClose()
+        }
+    }
+}
@@ -63,6 +63,7 @@ class DefaultConfigurationCache internal constructor(
     private val virtualFileSystem: BuildLifecycleAwareVirtualFileSystem,
     private val buildOperationExecutor: BuildOperationExecutor,
     private val cacheFingerprintController: ConfigurationCacheFingerprintController,
+    private val stateStreams: ConfigurationCacheStateStreams,
     /**
      * Force the [FileSystemAccess] service to be initialized as it initializes important static state.
      */
@@ -337,7 +338,7 @@ class DefaultConfigurationCache internal constructor(
 
         cacheEntryRequiresCommit = true
 
-        buildOperationExecutor.withStoreOperation(cacheKey.string) {
+        buildOperationExecutor.withStoreOperation(cacheKey.string, stateStreams) {
             store.useForStore { layout ->
                 try {
                     action(layout.fileFor(stateType))
@@ -376,7 +377,7 @@ class DefaultConfigurationCache internal constructor(
         // when loading the task graph.
         scopeRegistryListener.dispose()
 
-        val result = buildOperationExecutor.withLoadOperation {
+        val result = buildOperationExecutor.withLoadOperation(stateStreams) {
             store.useForStateLoad(stateType, action)
         }
         crossConfigurationTimeBarrier()
@@ -40,6 +40,10 @@ class ConfigurationCacheStartParameter(
 
     val taskExecutionAccessPreStable: Boolean = options.getOption(InternalFlag("org.gradle.configuration-cache.internal.task-execution-access-pre-stable")).get()
 
+    val compressStateFiles: Boolean = options.getOption(InternalFlag("org.gradle.configuration-cache.internal.compress-state")).get()
+
+    val parallelLoad: Boolean = options.getOption(InternalFlag("org.gradle.configuration-cache.internal.parallel-load")).get()
+
     val gradleProperties: Map<String, Any?>
         get() = startParameter.projectProperties
 
@@ -49,6 +53,9 @@ class ConfigurationCacheStartParameter(
     val maxProblems: Int
         get() = startParameter.configurationCacheMaxProblems
 
+    val maxWorkerCount: Int
+        get() = startParameter.maxWorkerCount
+
     val isDebug: Boolean
         get() = startParameter.isConfigurationCacheDebug
 
@@ -54,11 +54,11 @@ class DefaultWriteContext(
 
     override val tracer: Tracer?,
 
-    problemsListener: ProblemsListener
+    problemsListener: ProblemsListener,
 
-) : AbstractIsolateContext<WriteIsolate>(codec, problemsListener), WriteContext, Encoder by encoder, AutoCloseable {
+    override val sharedIdentities: WriteIdentities = WriteIdentities()
 
-    override val sharedIdentities = WriteIdentities()
+) : AbstractIsolateContext<WriteIsolate>(codec, problemsListener), WriteContext, Encoder by encoder, AutoCloseable {
 
     override val circularReferences = CircularReferences()
 
@@ -215,11 +215,11 @@ class DefaultReadContext(
 
     override val logger: Logger,
 
-    problemsListener: ProblemsListener
+    problemsListener: ProblemsListener,
 
-) : AbstractIsolateContext<ReadIsolate>(codec, problemsListener), ReadContext, Decoder by decoder, AutoCloseable {
+    override val sharedIdentities: ReadIdentities = ReadIdentities()
 
-    override val sharedIdentities = ReadIdentities()
+) : AbstractIsolateContext<ReadIsolate>(codec, problemsListener), ReadContext, Decoder by decoder, AutoCloseable {
 
     private
     val classes = ReadIdentities()
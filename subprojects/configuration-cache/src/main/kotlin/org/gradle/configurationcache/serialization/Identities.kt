@@ -17,6 +17,7 @@
 package org.gradle.configurationcache.serialization
 
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet
+import java.util.BitSet
 import java.util.IdentityHashMap
 
 
@@ -25,26 +26,68 @@ class WriteIdentities {
     private
     val instanceIds = IdentityHashMap<Any, Int>()
 
-    fun getId(instance: Any) = instanceIds[instance]
+    private
+    var referencedIds: BitSet? = null
+
+    /**
+     * The number of instances in this table, which is also the id of the next instance put into it.
+     */
+    val size: Int
+        get() = instanceIds.size
+
+    fun getId(instance: Any): Int? =
+        instanceIds[instance]?.also { id ->
+            referencedIds?.set(id)
+        }
 
     fun putInstance(instance: Any): Int {
         val id = instanceIds.size
         instanceIds[instance] = id
         return id
     }
+
+    /**
+     * Runs the given action and returns the ids of the instances that it looked up in this table.
+     */
+    fun recordingReferences(action: () -> Unit): BitSet {
+        val previous = referencedIds
+        val references = BitSet()
+        referencedIds = references
+        try {
+            action()
+        } finally {
+            referencedIds = previous
+        }
+        previous?.or(references)
+        return references
+    }
 }
 
 
-class ReadIdentities {
+/**
+ * Identities of decoded instances. A table created with a [parent] can also look up the instances of the parent,
+ * which must not be modified while this table is in use.
+ */
+class ReadIdentities(
+    private val parent: ReadIdentities? = null
+) {
 
     private
     val instanceIds = HashMap<Int, Any>()
 
-    fun getInstance(id: Int) = instanceIds[id]
+    fun getInstance(id: Int): Any? =
+        instanceIds[id] ?: parent?.getInstance(id)
 
     fun putInstance(id: Int, instance: Any) {
         instanceIds[id] = instance
     }
+
+    /**
+     * Adds the instances put into the given table, which were encoded with ids that are not used by this table.
+     */
+    fun putAll(identities: ReadIdentities) {
+        instanceIds.putAll(identities.instanceIds)
+    }
 }
 
 
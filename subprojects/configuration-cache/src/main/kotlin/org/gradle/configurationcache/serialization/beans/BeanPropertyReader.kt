@@ -17,7 +17,6 @@
 package org.gradle.configurationcache.serialization.beans
 
 import org.gradle.api.GradleException
-import org.gradle.configurationcache.extensions.unsafeLazy
 import org.gradle.configurationcache.problems.PropertyKind
 import org.gradle.configurationcache.problems.PropertyTrace
 import org.gradle.configurationcache.serialization.MutableIsolateContext
@@ -46,7 +45,7 @@ class BeanPropertyReader(
     val relevantFields = relevantStateOf(beanType)
 
     private
-    val constructorForSerialization by unsafeLazy {
+    val constructorForSerialization by lazy {
         constructors.constructorForSerialization(beanType)
     }
 
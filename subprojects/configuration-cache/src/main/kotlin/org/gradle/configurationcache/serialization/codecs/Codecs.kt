@@ -329,5 +329,5 @@ class Codecs(
     }
 
     fun workNodeCodecFor(gradle: GradleInternal) =
-        WorkNodeCodec(gradle, internalTypesCodec(), ordinalGroupFactory)
+        WorkNodeCodec(gradle, internalTypesCodec(), ordinalGroupFactory, TaskNodeCodec(userTypesCodec(), taskNodeFactory))
 }
@@ -73,14 +73,20 @@ class TaskNodeCodec(
         writeTask(task)
     }
 
-    override suspend fun ReadContext.decode(): LocalTaskNode {
-        val task = readTask()
+    override suspend fun ReadContext.decode(): LocalTaskNode =
+        nodeFor(readTask())
+
+    /**
+     * Creates the node for a task decoded by [readTask].
+     *
+     * Unlike [readTask], this must not be called concurrently.
+     */
+    fun nodeFor(task: Task): LocalTaskNode {
         val node = taskNodeFactory.getOrCreateNode(task) as LocalTaskNode
         node.isolated()
         return node
     }
 
-    private
     suspend fun WriteContext.writeTask(task: TaskInternal) {
         withDebugFrame({ task.path }) {
             val taskType = GeneratedSubclasses.unpackType(task)
@@ -112,7 +118,13 @@ class TaskNodeCodec(
         }
     }
 
-    private
+    /**
+     * Reads a task written by [writeTask].
+     *
+     * This can be called concurrently for tasks of different projects, each with its own [ReadContext]:
+     * the task is created in the task container of its project, and the codecs and bean readers shared
+     * between contexts only cache state in concurrent maps.
+     */
     suspend fun ReadContext.readTask(): Task {
         val taskType = readClassOf<Task>()
         val projectPath = readString()
@@ -16,16 +16,21 @@
 
 package org.gradle.configurationcache.serialization.codecs
 
+import org.gradle.api.Task
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.artifacts.transform.DefaultTransformUpstreamDependenciesResolver
 import org.gradle.api.internal.tasks.NodeExecutionContext
 import org.gradle.configurationcache.serialization.Codec
+import org.gradle.configurationcache.serialization.ProjectProvider
 import org.gradle.configurationcache.serialization.ReadContext
+import org.gradle.configurationcache.serialization.ReadIdentities
 import org.gradle.configurationcache.serialization.WriteContext
+import org.gradle.configurationcache.serialization.WriteIdentities
 import org.gradle.configurationcache.serialization.decodePreservingIdentity
 import org.gradle.configurationcache.serialization.encodePreservingIdentityOf
 import org.gradle.configurationcache.serialization.ownerService
 import org.gradle.configurationcache.serialization.readCollectionInto
+import org.gradle.configurationcache.serialization.readList
 import org.gradle.configurationcache.serialization.readNonNull
 import org.gradle.configurationcache.serialization.withGradleIsolate
 import org.gradle.configurationcache.serialization.writeCollection
@@ -40,32 +45,97 @@ import org.gradle.execution.plan.OrdinalGroupFactory
 import org.gradle.execution.plan.TaskNode
 
 
+/**
+ * An encoded segment of the work graph.
+ */
+internal
+class WorkGraphSegment(
+    val bytes: ByteArray,
+    /**
+     * Whether the segment puts state into the shared identities of the enclosing context that a later segment references.
+     * Such a segment has to be decoded before the other segments, in order, using the shared identities of the enclosing context.
+     */
+    val isShared: Boolean
+)
+
+
+/**
+ * Encodes and decodes segments of the work graph. Segments that no later segment depends on can be decoded concurrently with each other.
+ */
+internal
+interface WorkGraphSegments {
+    /**
+     * Encodes the given segments in order, using the given [sharedIdentities] of the enclosing context for state that is shared with other parts of the graph.
+     */
+    fun encode(sharedIdentities: WriteIdentities, segments: List<suspend WriteContext.() -> Unit>): List<WorkGraphSegment>
+
+    /**
+     * Decodes the given segments. The shared segments are decoded first, in order, using the [sharedIdentities] of the enclosing context.
+     * The others may then be decoded concurrently, and their shared state is added to the [sharedIdentities] once they are all decoded.
+     */
+    fun <T> decode(segments: List<WorkGraphSegment>, sharedIdentities: ReadIdentities, projectProvider: ProjectProvider, segment: suspend ReadContext.() -> T): List<T>
+}
+
+
 internal
 class WorkNodeCodec(
     private val owner: GradleInternal,
     private val internalTypesCodec: Codec<Any?>,
-    private val ordinalGroups: OrdinalGroupFactory
+    private val ordinalGroups: OrdinalGroupFactory,
+    private val taskNodeCodec: TaskNodeCodec
 ) {
 
-    suspend fun WriteContext.writeWork(nodes: List<Node>) {
+    /**
+     * Writes the given nodes. When [segments] are given, the tasks of each project are written
+     * to a separate segment, so they can be decoded concurrently when loading the graph unless a later segment depends on them.
+     */
+    suspend fun WriteContext.writeWork(nodes: List<Node>, segments: WorkGraphSegments?) {
+        val taskSegments = if (segments != null) encodeTaskSegments(nodes, segments) else TaskSegments.NONE
         // Share bean instances across all nodes (except tasks, which have their own isolate)
         withGradleIsolate(owner, internalTypesCodec) {
-            writeNodes(nodes)
+            writeNodes(nodes, taskSegments)
         }
     }
 
-    suspend fun ReadContext.readWork(): List<Node> =
+    suspend fun ReadContext.readWork(segments: WorkGraphSegments): List<Node> =
         withGradleIsolate(owner, internalTypesCodec) {
-            readNodes()
+            readNodes(segments)
+        }
+
+    private
+    fun WriteContext.encodeTaskSegments(nodes: List<Node>, segments: WorkGraphSegments): TaskSegments {
+        val segmentOfNode = HashMap<Node, Int>()
+        // Tasks are created in the task container of their project, so all tasks of a project go to the same segment
+        val projectSegments = nodes.filterIsInstance<LocalTaskNode>().groupBy { it.task.project }.values.mapIndexed { index, projectNodes ->
+            projectNodes.forEach { segmentOfNode[it] = index }
+            val segment: suspend WriteContext.() -> Unit = {
+                withGradleIsolate(owner, internalTypesCodec) {
+                    writeSmallInt(projectNodes.size)
+                    taskNodeCodec.run {
+                        projectNodes.forEach { writeTask(it.task) }
+                    }
+                }
+            }
+            segment
         }
+        return TaskSegments(segments.encode(sharedIdentities, projectSegments), segmentOfNode)
+    }
 
     private
-    suspend fun WriteContext.writeNodes(nodes: List<Node>) {
+    suspend fun WriteContext.writeNodes(nodes: List<Node>, taskSegments: TaskSegments) {
         val nodeCount = nodes.size
         writeSmallInt(nodeCount)
+        writeCollection(taskSegments.encoded) {
+            writeBoolean(it.isShared)
+            writeBinary(it.bytes)
+        }
         val scheduledNodeIds = HashMap<Node, Int>(nodeCount)
         nodes.forEach { node ->
-            write(node)
+            val segment = taskSegments.segmentOf(node)
+            writeSmallInt(segment)
+            if (segment < 0) {
+                write(node)
+            }
             scheduledNodeIds[node] = scheduledNodeIds.size
             if (node is LocalTaskNode) {
                 scheduledNodeIds[node.prepareNode] = scheduledNodeIds.size
@@ -78,12 +148,13 @@ class WorkNodeCodec(
     }
 
     private
-    suspend fun ReadContext.readNodes(): List<Node> {
+    suspend fun ReadContext.readNodes(segments: WorkGraphSegments): List<Node> {
         val nodeCount = readSmallInt()
+        val segmentTasks = decodeTaskSegments(readList { WorkGraphSegment(isShared = readBoolean(), bytes = readBinary()) }, segments)
         val nodes = ArrayList<Node>(nodeCount)
         val nodesById = HashMap<Int, Node>(nodeCount)
         for (i in 0 until nodeCount) {
-            val node = readNode()
+            val node = readNode(segmentTasks)
             nodesById[nodesById.size] = node
             if (node is LocalTaskNode) {
                 node.prepareNode.require()
@@ -99,8 +170,23 @@ class WorkNodeCodec(
     }
 
     private
-    suspend fun ReadContext.readNode(): Node {
-        val node = readNonNull<Node>()
+    fun ReadContext.decodeTaskSegments(encodedSegments: List<WorkGraphSegment>, segments: WorkGraphSegments): List<Iterator<Task>> =
+        segments.decode(encodedSegments, sharedIdentities, { path -> getProject(path) }) {
+            withGradleIsolate(owner, internalTypesCodec) {
+                taskNodeCodec.run {
+                    List(readSmallInt()) { readTask() }
+                }
+            }
+        }.map { it.iterator() }
+
+    private
+    suspend fun ReadContext.readNode(segmentTasks: List<Iterator<Task>>): Node {
+        val segment = readSmallInt()
+        val node = if (segment < 0) {
+            readNonNull<Node>()
+        } else {
+            taskNodeCodec.nodeFor(segmentTasks[segment].next())
+        }
         node.require()
         node.dependenciesProcessed()
         return node
@@ -247,3 +333,16 @@ class WorkNodeCodec(
         }
     }
 }
+
+
+private
+class TaskSegments(
+    val encoded: List<WorkGraphSegment>,
+    private val segmentOfNode: Map<Node, Int>
+) {
+    companion object {
+        val NONE = TaskSegments(emptyList(), emptyMap())
+    }
+
+    fun segmentOf(node: Node) = segmentOfNode[node] ?: -1
+}
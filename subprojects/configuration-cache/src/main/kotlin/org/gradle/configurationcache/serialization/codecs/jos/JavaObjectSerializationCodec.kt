@@ -39,6 +39,7 @@ import java.lang.invoke.SerializedLambda
 import java.lang.reflect.Method
 import java.lang.reflect.Modifier.isPrivate
 import java.lang.reflect.Modifier.isStatic
+import java.util.concurrent.ConcurrentHashMap
 
 
 /**
@@ -72,7 +73,7 @@ class JavaObjectSerializationCodec(
     val readResolveMethod = MethodCache { isReadResolve() }
 
     private
-    val readObjectHierarchy = HashMap<Class<*>, List<Method>>()
+    val readObjectHierarchy = ConcurrentHashMap<Class<*>, List<Method>>()
 
     override fun encodingForType(type: Class<*>): Encoding? =
         type.takeIf { Serializable::class.java.isAssignableFrom(it) }?.let { serializableType ->
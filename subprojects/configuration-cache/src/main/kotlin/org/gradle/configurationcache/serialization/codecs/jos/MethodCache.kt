@@ -19,6 +19,8 @@ package org.gradle.configurationcache.serialization.codecs.jos
 import org.gradle.internal.reflect.ClassInspector
 
 import java.lang.reflect.Method
+import java.util.Optional
+import java.util.concurrent.ConcurrentHashMap
 
 
 internal
@@ -29,14 +31,14 @@ class MethodCache(
 
 ) {
     private
-    val methodCache = hashMapOf<Class<*>, Method?>()
+    val methodCache = ConcurrentHashMap<Class<*>, Optional<Method>>()
 
     fun forObject(value: Any) =
         forClass(value.javaClass)
 
-    fun forClass(type: Class<*>) = methodCache.computeIfAbsent(type) {
-        it.firstAccessibleMatchingMethodOrNull(predicate)
-    }
+    fun forClass(type: Class<*>): Method? = methodCache.computeIfAbsent(type) {
+        Optional.ofNullable(it.firstAccessibleMatchingMethodOrNull(predicate))
+    }.orElse(null)
 }
 
 
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = "Public and internal 'core' Gradle APIs with implementation"
@@ -207,3 +208,5 @@ testFilesCleanup.reportOnly.set(true)
 tasks.configCacheIntegTest {
     systemProperties["org.gradle.configuration-cache.internal.test-disable-load-after-store"] = "true"
 }
+
+jmh.includes.set(listOf("PlanExecutorBenchmark"))
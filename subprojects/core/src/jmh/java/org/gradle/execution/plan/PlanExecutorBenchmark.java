@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.initialization.DefaultBuildCancellationToken;
+import org.gradle.internal.build.ExecutionResult;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of scheduling a node with {@link DefaultPlanExecutor}, using a plan of independent nodes which do nothing.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PlanExecutorBenchmark {
+    private static final int NODE_COUNT = 100_000;
+
+    @Param({"1", "4", "16"})
+    int workerCount;
+
+    private DefaultResourceLockCoordinationService coordinationService;
+    private DefaultWorkerLeaseService workerLeaseService;
+    private DefaultPlanExecutor planExecutor;
+
+    @Setup
+    public void setup() {
+        DefaultParallelismConfiguration parallelismConfiguration = new DefaultParallelismConfiguration(true, workerCount);
+        coordinationService = new DefaultResourceLockCoordinationService();
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfiguration);
+        planExecutor = new DefaultPlanExecutor(
+            parallelismConfiguration,
+            new DefaultExecutorFactory(),
+            workerLeaseService,
+            new DefaultBuildCancellationToken(),
+            coordinationService,
+            new DefaultInternalOptions(Collections.emptyMap())
+        );
+    }
+
+    @TearDown
+    public void tearDown() {
+        planExecutor.stop();
+        workerLeaseService.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODE_COUNT)
+    public ExecutionResult<Void> scheduleNoOpNodes() {
+        return workerLeaseService.runAsWorkerThread(() -> planExecutor.process(new NoOpWorkSource(NODE_COUNT), node -> {
+        }));
+    }
+
+    /**
+     * A plan of independent nodes. Accessed only while holding the state lock, same as the real plans.
+     */
+    private static class NoOpWorkSource implements WorkSource<Integer> {
+        private final int nodeCount;
+        private int started;
+        private int finished;
+
+        NoOpWorkSource(int nodeCount) {
+            this.nodeCount = nodeCount;
+        }
+
+        @Override
+        public State executionState() {
+            return started < nodeCount ? State.MaybeWorkReadyToStart : State.NoMoreWorkToStart;
+        }
+
+        @Override
+        public Selection<Integer> selectNext() {
+            return started < nodeCount ? Selection.of(started++) : Selection.noMoreWorkToStart();
+        }
+
+        @Override
+        public void finishedExecuting(Integer item, @Nullable Throwable failure) {
+            finished++;
+        }
+
+        @Override
+        public void abortAllAndFail(Throwable t) {
+            started = nodeCount;
+        }
+
+        @Override
+        public void cancelExecution() {
+            started = nodeCount;
+        }
+
+        @Override
+        public boolean allExecutionComplete() {
+            return finished == started && started == nodeCount;
+        }
+
+        @Override
+        public void collectFailures(Collection<? super Throwable> failures) {
+        }
+
+        @Override
+        public Diagnostics healthDiagnostics() {
+            return new Diagnostics("no-op plan", Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.internal.hash.DefaultFileHasher;
+
 import java.text.MessageFormat;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -30,18 +32,46 @@ public interface FileHasherStatistics {
      */
     long getHashedContentLength();
 
-    class Collector {
+    /**
+     * Amount of bytes hashed by copying them to a buffer on the heap.
+     */
+    long getHeapBufferHashedContentLength();
+
+    /**
+     * Amount of bytes hashed by reading them into direct buffers, without copying them to the heap.
+     */
+    long getDirectBufferHashedContentLength();
+
+    class Collector implements DefaultFileHasher.Listener {
         private final AtomicLong hashedFileCount = new AtomicLong();
         private final AtomicLong hashedContentLength = new AtomicLong();
+        private final AtomicLong heapBufferHashedContentLength = new AtomicLong();
+        private final AtomicLong directBufferHashedContentLength = new AtomicLong();
 
         public void reportFileHashed(long length) {
             hashedFileCount.incrementAndGet();
             hashedContentLength.addAndGet(length);
         }
 
+        @Override
+        public void fileHashed(DefaultFileHasher.ReadStrategy strategy, long length) {
+            switch (strategy) {
+                case HEAP_BUFFER:
+                    heapBufferHashedContentLength.addAndGet(length);
+                    break;
+                case DIRECT_BUFFER:
+                    directBufferHashedContentLength.addAndGet(length);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+
         public FileHasherStatistics collect() {
             long hashedFileCount = this.hashedFileCount.getAndSet(0);
             long hashedContentLength = this.hashedContentLength.getAndSet(0);
+            long heapBufferHashedContentLength = this.heapBufferHashedContentLength.getAndSet(0);
+            long directBufferHashedContentLength = this.directBufferHashedContentLength.getAndSet(0);
             return new FileHasherStatistics() {
                 @Override
                 public long getHashedFileCount() {
@@ -53,10 +83,20 @@ public long getHashedContentLength() {
                     return hashedContentLength;
                 }
 
+                @Override
+                public long getHeapBufferHashedContentLength() {
+                    return heapBufferHashedContentLength;
+                }
+
+                @Override
+                public long getDirectBufferHashedContentLength() {
+                    return directBufferHashedContentLength;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Hashed {0,number,integer} files ({1,number,integer} bytes)",
-                        hashedFileCount, hashedContentLength
+                    return MessageFormat.format("Hashed {0,number,integer} files ({1,number,integer} bytes, {2,number,integer} bytes via heap buffers, {3,number,integer} bytes via direct buffers)",
+                        hashedFileCount, hashedContentLength, heapBufferHashedContentLength, directBufferHashedContentLength
                     );
                 }
             };
@@ -17,10 +17,13 @@
 package org.gradle.caching.internal;
 
 import org.gradle.StartParameter;
+import org.gradle.api.GradleException;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.cache.internal.CleanupActionDecorator;
+import org.gradle.cache.scopes.GlobalScopedCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.configuration.internal.BuildCacheServiceRegistration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheConfiguration;
@@ -32,21 +35,35 @@
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
 import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.OutputFileLinks;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
+import org.gradle.caching.internal.packaging.impl.ZstdBuildCacheEntryPacker;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
+import org.gradle.caching.local.internal.DirectoryOutputFileStore;
+import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.Deleter;
+import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
-import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.hash.LocalFileContentHasher;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.nativeintegration.network.HostnameLookup;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.BuildOperationState;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.resource.local.DefaultPathKeyFileStore;
@@ -59,13 +76,52 @@
 import org.gradle.util.GradleVersion;
 import org.gradle.util.Path;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Build scoped services for build cache usage.
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
+    /**
+     * Whether build cache entries are packed with Zstandard instead of gzip.
+     *
+     * Entries packed with Zstandard are stored under different keys than the ones packed with gzip,
+     * so builds which enable this option only reuse the entries of other builds which enable it, too.
+     */
+    public static final InternalFlag ZSTD_PROPERTY = new InternalFlag("org.gradle.caching.zstd");
+
+    /**
+     * The Zstandard compression level of the packed build cache entries.
+     */
+    public static final IntegerInternalOption ZSTD_LEVEL_PROPERTY = new IntegerInternalOption("org.gradle.caching.zstd.level", ZstdBuildCacheEntryPacker.DEFAULT_LEVEL);
+
+    /**
+     * Whether large output files are kept uncompressed in a local store, so that loading them from the build cache can link them instead of unpacking them.
+     *
+     * Linked outputs are read-only, and are replaced by a copy before Gradle executes work which keeps its previous outputs.
+     * Other tools modifying such outputs in place fail, unless they run with permissions to write read-only files.
+     * Only used on file systems which expose the link count of files.
+     */
+    public static final InternalFlag LINK_OUTPUT_FILES_PROPERTY = new InternalFlag("org.gradle.caching.local.link-output-files");
+
+    /**
+     * Whether loading an entry from the build cache only writes the output files which do not already exist with the same content.
+     */
+    public static final InternalFlag UNPACK_CHANGED_FILES_ONLY_PROPERTY = new InternalFlag("org.gradle.caching.unpack-changed-files-only");
+
+    /**
+     * The maximum number of remote build cache entries downloaded ahead of execution at the same time.
+     */
+    private static final int MAX_CONCURRENT_PREFETCHES = 8;
+
+    /**
+     * The maximum number of entries uploaded to the remote build cache in the background at the same time.
+     */
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
 
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
@@ -73,6 +129,22 @@ public void registerBuildTreeServices(ServiceRegistration registration) {
             RootBuildCacheControllerRef createRootBuildCacheControllerRef() {
                 return new RootBuildCacheControllerRef();
             }
+
+            UnpackExecutor createUnpackExecutor(ExecutorFactory executorFactory) {
+                return new UnpackExecutor(executorFactory.create("Build cache entry unpacking", Runtime.getRuntime().availableProcessors()));
+            }
+
+            PrefetchExecutor createPrefetchExecutor(ExecutorFactory executorFactory) {
+                return new PrefetchExecutor(executorFactory.create("Build cache entry prefetching", MAX_CONCURRENT_PREFETCHES));
+            }
+
+            UploadExecutor createUploadExecutor(ExecutorFactory executorFactory) {
+                return new UploadExecutor(executorFactory.create("Build cache entry uploading", MAX_CONCURRENT_UPLOADS));
+            }
+
+            DirectoryOutputFileStore createOutputFileStore(GlobalScopedCache globalScopedCache, FileAccessTimeJournal fileAccessTimeJournal, CleanupActionDecorator cleanupActionDecorator) {
+                return new DirectoryOutputFileStore(globalScopedCache.crossVersionCache("build-cache-output-files-1"), fileAccessTimeJournal, cleanupActionDecorator);
+            }
         });
     }
 
@@ -116,11 +188,32 @@ TarPackerFileSystemSupport createPackerFileSystemSupport(Deleter deleter) {
             BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
-                StreamHasher fileHasher,
-                StringInterner stringInterner
+                LocalFileContentHasher contentHasher,
+                StringInterner stringInterner,
+                UnpackExecutor unpackExecutor,
+                DirectoryOutputFileStore outputFileStore,
+                InternalOptions internalOptions
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                // The snapshots of unpacked files end up in the virtual file system, so they are hashed like the other local snapshots.
+                // Content hashes are only recorded in the entries when they are the same as on other machines.
+                boolean recordContentHashes = contentHasher.usesDefaultFunction();
+                TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(
+                    fileSystemSupport,
+                    new FilePermissionsAccessAdapter(fileSystem),
+                    contentHasher.getStreamHasher(),
+                    stringInterner,
+                    unpackExecutor,
+                    recordContentHashes && internalOptions.getOption(LINK_OUTPUT_FILES_PROPERTY).get() && OutputFileLinks.isSupported() ? outputFileStore : null,
+                    recordContentHashes && internalOptions.getOption(UNPACK_CHANGED_FILES_ONLY_PROPERTY).get()
+                );
+                if (!internalOptions.getOption(ZSTD_PROPERTY).get()) {
+                    return new GZipBuildCacheEntryPacker(tarPacker);
+                }
+                // Do not fall back to gzip, as this build could then not load the entries packed with Zstandard by the other builds sharing the cache
+                if (!ZstdBuildCacheEntryPacker.isAvailable()) {
+                    throw new GradleException("Cannot pack build cache entries with Zstandard, as it is not available on this platform. Disable the '" + ZSTD_PROPERTY.getSystemPropertyName() + "' option for all builds sharing the build cache.");
+                }
+                return new ZstdBuildCacheEntryPacker(tarPacker, internalOptions.getOption(ZSTD_LEVEL_PROPERTY).get());
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -148,10 +241,12 @@ BuildCacheController createBuildCacheController(
                 FileSystemAccess fileSystemAccess,
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                PrefetchExecutor prefetchExecutor,
+                UploadExecutor uploadExecutor
             ) {
                 if (isRoot(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner);
+                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner, prefetchExecutor, uploadExecutor);
                 } else {
                     // must be an included build or buildSrc
                     return rootControllerRef.getForNonRootBuild();
@@ -174,7 +269,7 @@ private boolean isRoot(GradleInternal gradle) {
             private BuildCacheController doCreateBuildCacheController(
                 ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory,
                 GradleInternal gradle, TemporaryFileProvider temporaryFileProvider, FileSystemAccess fileSystemAccess, BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner, Executor prefetchExecutor, Executor uploadExecutor
             ) {
                 StartParameter startParameter = gradle.getStartParameter();
                 Path buildIdentityPath = gradle.getIdentityPath();
@@ -196,12 +291,124 @@ private BuildCacheController doCreateBuildCacheController(
                     fileSystemAccess,
                     packer,
                     originMetadataFactory,
-                    stringInterner
+                    stringInterner,
+                    prefetchExecutor,
+                    uploadExecutor
                 );
             }
         });
     }
 
+    /**
+     * Writes the files of the build cache entries being unpacked, shared by all the builds of the build tree.
+     */
+    private static final class UnpackExecutor extends StoppableExecutor {
+        public UnpackExecutor(ManagedExecutor executor) {
+            super(executor);
+        }
+    }
+
+    /**
+     * Downloads remote build cache entries ahead of execution, shared by all the builds of the build tree.
+     *
+     * The downloads run as children of the operation which encloses the root build, since they can outlive the operation of the work they are started for.
+     */
+    private static final class PrefetchExecutor extends StoppableExecutor implements RootBuildLifecycleListener {
+        private volatile BuildOperationRef buildOperation;
+
+        public PrefetchExecutor(ManagedExecutor executor) {
+            super(executor);
+        }
+
+        @Override
+        public void afterStart() {
+            buildOperation = CurrentBuildOperationRef.instance().get();
+        }
+
+        @Override
+        public void beforeComplete() {
+            buildOperation = null;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            BuildOperationRef parentOperation = buildOperation;
+            executeAsChildOf(() -> parentOperation, command);
+        }
+    }
+
+    /**
+     * Uploads build cache entries to the remote cache in the background, shared by all the builds of the build tree.
+     *
+     * An upload runs as a child of the operation which submitted it. When that operation has already completed by the time the upload starts,
+     * for example because the upload waited in the queue, the upload runs as a child of the operation which encloses the root build instead.
+     */
+    private static final class UploadExecutor extends StoppableExecutor implements RootBuildLifecycleListener {
+        private volatile BuildOperationRef buildOperation;
+
+        public UploadExecutor(ManagedExecutor executor) {
+            super(executor);
+        }
+
+        @Override
+        public void afterStart() {
+            buildOperation = CurrentBuildOperationRef.instance().get();
+        }
+
+        @Override
+        public void beforeComplete() {
+            buildOperation = null;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            BuildOperationRef submittingOperation = CurrentBuildOperationRef.instance().get();
+            BuildOperationRef buildOperation = this.buildOperation;
+            executeAsChildOf(() -> {
+                if (isRunning(submittingOperation)) {
+                    return submittingOperation;
+                }
+                return isRunning(buildOperation) ? buildOperation : null;
+            }, command);
+        }
+
+        private static boolean isRunning(@Nullable BuildOperationRef operation) {
+            return operation instanceof BuildOperationState && ((BuildOperationState) operation).isRunning();
+        }
+    }
+
+    private static abstract class StoppableExecutor implements Executor, Stoppable {
+        private final ManagedExecutor executor;
+
+        protected StoppableExecutor(ManagedExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(command);
+        }
+
+        /**
+         * Runs the command with the given operation as the current operation, as the operation which submitted the command can complete before the command runs.
+         */
+        protected void executeAsChildOf(Supplier<BuildOperationRef> parentOperation, Runnable command) {
+            executor.execute(() -> {
+                CurrentBuildOperationRef.instance().set(parentOperation.get());
+                try {
+                    command.run();
+                } finally {
+                    CurrentBuildOperationRef.instance().clear();
+                }
+            });
+        }
+
+        @Override
+        public void stop() {
+            executor.stop();
+        }
+    }
+
     private static final class FilePermissionsAccessAdapter implements FilePermissionAccess {
 
         private final FileSystem fileSystem;
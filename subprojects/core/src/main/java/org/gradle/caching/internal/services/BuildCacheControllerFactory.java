@@ -50,11 +50,13 @@
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public final class BuildCacheControllerFactory {
 
     public static final String REMOTE_CONTINUE_ON_ERROR_PROPERTY = "org.gradle.unsafe.build-cache.remote-continue-on-error";
+    public static final String REMOTE_ASYNC_STORE_PROPERTY = "org.gradle.unsafe.build-cache.remote-async-store";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
@@ -79,7 +81,9 @@ public static BuildCacheController create(
         final FileSystemAccess fileSystemAccess,
         final BuildCacheEntryPacker packer,
         final OriginMetadataFactory originMetadataFactory,
-        final StringInterner stringInterner
+        final StringInterner stringInterner,
+        final Executor prefetchExecutor,
+        final Executor uploadExecutor
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -135,7 +139,9 @@ public BuildCacheController call(BuildOperationContext context) {
                         fileSystemAccess,
                         packer,
                         originMetadataFactory,
-                        stringInterner
+                        stringInterner,
+                        prefetchExecutor,
+                        Boolean.getBoolean(REMOTE_ASYNC_STORE_PROPERTY) ? uploadExecutor : null
                     );
                 }
             }
@@ -53,6 +53,7 @@
 import org.gradle.internal.file.RelativeFilePathResolver;
 import org.gradle.internal.file.ReservedFileSystemLocation;
 import org.gradle.internal.file.ReservedFileSystemLocationRegistry;
+import org.gradle.internal.fingerprint.impl.FileCollectionFingerprintCache;
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -142,7 +143,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
         StringInterner stringInterner,
         FileCollectionSnapshotter fileCollectionSnapshotter,
         ResourceSnapshotterCacheService resourceSnapshotterCacheService,
-        InputNormalizationHandlerInternal inputNormalizationHandler
+        InputNormalizationHandlerInternal inputNormalizationHandler,
+        FileCollectionFingerprintCache fingerprintCache
     ) {
         return new FileCollectionFingerprinterRegistrations(
             stringInterner,
@@ -150,7 +152,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
             resourceSnapshotterCacheService,
             inputNormalizationHandler.getRuntimeClasspath().getClasspathResourceFilter(),
             inputNormalizationHandler.getRuntimeClasspath().getManifestAttributeResourceEntryFilter(),
-            inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters()
+            inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters(),
+            fingerprintCache
         );
     }
 
@@ -161,9 +164,10 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Fi
     InputFingerprinter createInputFingerprinter(
         FileCollectionSnapshotter snapshotter,
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
-        ValueSnapshotter valueSnapshotter
+        ValueSnapshotter valueSnapshotter,
+        BuildOperationExecutor buildOperationExecutor
     ) {
-        return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter);
+        return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor);
     }
 
     TaskExecutionModeResolver createExecutionModeResolver(
@@ -26,6 +26,7 @@
 import org.gradle.api.specs.Specs;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 
+import javax.annotation.Nullable;
 import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.Collections;
@@ -40,6 +41,7 @@
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 import static com.google.common.collect.Sets.newIdentityHashSet;
 
@@ -65,6 +67,8 @@ public class DefaultExecutionPlan implements ExecutionPlan, QueryableExecutionPl
     private final OrdinalNodeAccess ordinalNodeAccess;
     private Consumer<LocalTaskNode> completionHandler = localTaskNode -> {
     };
+    @Nullable
+    private ToLongFunction<? super Node> executionTimeEstimates;
 
     private DefaultFinalizedExecutionPlan finalizedPlan;
     // An immutable copy of the final plan
@@ -235,7 +239,7 @@ public FinalizedExecutionPlan finalizePlan() {
         if (finalizedPlan == null) {
             dependencyResolver.clear();
             // Should make an immutable copy of the contents to pass to the finalized plan and also to use in this instance
-            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler);
+            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler, executionTimeEstimates);
         }
         return finalizedPlan;
     }
@@ -253,6 +257,7 @@ public void close() {
         }
         completionHandler = localTaskNode -> {
         };
+        executionTimeEstimates = null;
         entryNodes.clear();
         nodeMapping.clear();
         filteredNodes.clear();
@@ -262,6 +267,11 @@ public void close() {
         dependencyResolver.clear();
     }
 
+    @Override
+    public void prioritizeCriticalPath(ToLongFunction<? super Node> executionTimeEstimates) {
+        this.executionTimeEstimates = executionTimeEstimates;
+    }
+
     @Override
     public void onComplete(Consumer<LocalTaskNode> handler) {
         Consumer<LocalTaskNode> previous = this.completionHandler;
@@ -42,6 +42,7 @@
 import java.util.TreeSet;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 import static com.google.common.collect.Sets.newIdentityHashSet;
 import static java.lang.String.format;
@@ -57,6 +58,11 @@ public int compare(Node node1, Node node2) {
             } else if (!node1.isPriority() && node2.isPriority()) {
                 return 1;
             }
+            // Start the nodes which are estimated to be on the longest remaining path first
+            int byRemainingExecutionTime = Long.compare(node2.getRemainingExecutionTimeEstimate(), node1.getRemainingExecutionTimeEstimate());
+            if (byRemainingExecutionTime != 0) {
+                return byRemainingExecutionTime;
+            }
             if (node1.getIndex() > node2.getIndex()) {
                 return 1;
             } else if (node1.getIndex() < node2.getIndex()) {
@@ -100,7 +106,8 @@ public DefaultFinalizedExecutionPlan(
         List<Node> scheduledNodes,
         boolean continueOnFailure,
         QueryableExecutionPlan contents,
-        Consumer<LocalTaskNode> completionHandler
+        Consumer<LocalTaskNode> completionHandler,
+        @Nullable ToLongFunction<? super Node> executionTimeEstimates
     ) {
         this.displayName = displayName;
         this.outputHierarchy = outputHierarchy;
@@ -118,6 +125,10 @@ public DefaultFinalizedExecutionPlan(
             }
         }
 
+        if (executionTimeEstimates != null) {
+            estimateRemainingExecutionTime(scheduledNodes, executionTimeEstimates);
+        }
+
         for (int i = 0; i < scheduledNodes.size(); i++) {
             Node node = scheduledNodes.get(i);
             node.setIndex(i);
@@ -129,6 +140,30 @@ public DefaultFinalizedExecutionPlan(
         lockCoordinator.addLockReleaseListener(resourceUnlockListener);
     }
 
+    /**
+     * Calculates the length of the longest path of dependent nodes starting at each node, visiting the nodes that depend on a node before the node itself.
+     *
+     * <p>A node which another node should run after is treated like a dependency of that node, so that it is never estimated to have a shorter remaining path
+     * and is still started first when both nodes are ready.</p>
+     */
+    private static void estimateRemainingExecutionTime(List<Node> scheduledNodes, ToLongFunction<? super Node> executionTimeEstimates) {
+        Map<Node, Long> longestShouldRunAfterPaths = new HashMap<>();
+        for (int i = scheduledNodes.size() - 1; i >= 0; i--) {
+            Node node = scheduledNodes.get(i);
+            long longestDependentPath = longestShouldRunAfterPaths.getOrDefault(node, 0L);
+            for (Node predecessor : node.getDependencyPredecessors()) {
+                longestDependentPath = Math.max(longestDependentPath, predecessor.getRemainingExecutionTimeEstimate());
+            }
+            long remainingExecutionTime = executionTimeEstimates.applyAsLong(node) + longestDependentPath;
+            node.setRemainingExecutionTimeEstimate(remainingExecutionTime);
+            if (node instanceof TaskNode) {
+                for (Node shouldRunBefore : ((TaskNode) node).getShouldSuccessors()) {
+                    longestShouldRunAfterPaths.merge(shouldRunBefore, remainingExecutionTime, Math::max);
+                }
+            }
+        }
+    }
+
     @Override
     public String getDisplayName() {
         return displayName;
@@ -567,6 +602,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                 LOGGER.debug("Node {} finished executing", node);
                 node.visitPostExecutionNodes(postNode -> {
                     postNode.setIndex(node.getIndex());
+                    postNode.setRemainingExecutionTimeEstimate(node.getRemainingExecutionTimeEstimate());
                     postNode.require();
                     postNode.updateAllDependenciesComplete();
                     addNodeToPlan(postNode);
@@ -370,14 +370,11 @@ public void run() {
                     releaseLeaseOnCompletion = false;
                 }
 
-                while (true) {
-                    WorkItem workItem = getNextItem(workerLease);
-                    if (workItem == null) {
-                        break;
-                    }
+                WorkItem workItem = getNextItem(workerLease);
+                while (workItem != null) {
                     Object selected = workItem.selection.getItem();
                     LOGGER.info("{} ({}) started.", selected, Thread.currentThread());
-                    execute(selected, workItem.plan, workItem.executor);
+                    workItem = executeAndGetNextItem(selected, workItem.plan, workItem.executor);
                 }
 
                 if (releaseLeaseOnCompletion) {
@@ -389,18 +386,56 @@ public void run() {
         }
 
         /**
-         * Selects an item that's ready to execute and executes the provided action against it. If no item is ready, blocks until some
-         * can be executed.
+         * Selects an item that's ready to execute. If no item is ready, blocks until some can be executed.
          *
          * @return The next item to execute or {@code null} when there are no items remaining
          */
         @Nullable
-        private WorkItem getNextItem(final WorkerLease workerLease) {
-            final MutableReference<WorkItem> selected;
+        private WorkItem getNextItem(WorkerLease workerLease) {
             stats.startSelect();
+            return finishAndGetNextItem(workerLease, null);
+        }
+
+        /**
+         * Executes the given item, marks it as finished and selects the next item that's ready to execute.
+         */
+        @Nullable
+        private WorkItem executeAndGetNextItem(Object selected, WorkSource<Object> executionPlan, Action<Object> worker) {
+            Throwable failure = null;
+            stats.startExecute();
+            try {
+                worker.execute(selected);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                stats.finishExecute();
+            }
+            stats.startMarkFinished();
+            return finishAndGetNextItem(workerLease, new FinishedItem(selected, executionPlan, failure));
+        }
+
+        /**
+         * Marks the given item as finished, if any, and selects the next item that's ready to execute. If no item is ready, blocks until some can be executed.
+         *
+         * <p>Both happen under a single acquisition of the state lock, so that the worker selects the work enabled by the finished item before
+         * the other workers woken up by the state change compete for the state lock.</p>
+         *
+         * @return The next item to execute or {@code null} when there are no items remaining
+         */
+        @Nullable
+        private WorkItem finishAndGetNextItem(final WorkerLease workerLease, @Nullable FinishedItem finishedItem) {
+            final MutableReference<FinishedItem> toFinish = MutableReference.of(finishedItem);
+            final MutableReference<WorkItem> selected = MutableReference.empty();
             try {
-                selected = MutableReference.empty();
                 coordinationService.withStateLock(resourceLockState -> {
+                    FinishedItem item = toFinish.get();
+                    if (item != null) {
+                        toFinish.set(null);
+                        item.markFinished();
+                        stats.finishMarkFinished();
+                        stats.startSelect();
+                    }
+
                     stats.finishWaitingForNextItem();
                     if (cancellationToken.isCancellationRequested()) {
                         queue.cancelExecution();
@@ -455,37 +490,27 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
             return selected.get();
         }
 
-        private void execute(Object selected, WorkSource<Object> executionPlan, Action<Object> worker) {
-            Throwable failure = null;
-            try {
-                stats.startExecute();
+        private class FinishedItem {
+            final Object item;
+            final WorkSource<Object> executionPlan;
+            @Nullable
+            final Throwable failure;
+
+            FinishedItem(Object item, WorkSource<Object> executionPlan, @Nullable Throwable failure) {
+                this.item = item;
+                this.executionPlan = executionPlan;
+                this.failure = failure;
+            }
+
+            void markFinished() {
                 try {
-                    worker.execute(selected);
+                    executionPlan.finishedExecuting(item, failure);
                 } catch (Throwable t) {
-                    failure = t;
-                } finally {
-                    stats.finishExecute();
+                    queue.abortAllAndFail(t);
                 }
-            } finally {
-                markFinished(selected, executionPlan, failure);
-            }
-        }
-
-        private void markFinished(Object selected, WorkSource<Object> executionPlan, @Nullable Throwable failure) {
-            stats.startMarkFinished();
-            try {
-                coordinationService.withStateLock(() -> {
-                    try {
-                        executionPlan.finishedExecuting(selected, failure);
-                    } catch (Throwable t) {
-                        queue.abortAllAndFail(t);
-                    }
-                    // Notify other threads that the item is finished as this may unblock further work
-                    // or this might be the last item in the queue
-                    coordinationService.notifyStateChange();
-                });
-            } finally {
-                stats.finishMarkFinished();
+                // Notify other threads that the item is finished as this may unblock further work
+                // or this might be the last item in the queue
+                coordinationService.notifyStateChange();
             }
         }
     }
@@ -24,6 +24,7 @@
 import java.io.Closeable;
 import java.util.Collection;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 /**
  * Represents a mutable graph of dependent work items.
@@ -64,6 +65,12 @@ public interface ExecutionPlan extends Describable, Closeable {
      */
     FinalizedExecutionPlan finalizePlan();
 
+    /**
+     * Starts the nodes that are ready to start and are on the longest estimated path through the remaining nodes first, rather than in plan order.
+     * The given function provides the estimated execution time of a node in milliseconds. Must be called before {@link #finalizePlan()}.
+     */
+    void prioritizeCriticalPath(ToLongFunction<? super Node> executionTimeEstimates);
+
     /**
      * Invokes the given action when a task completes (as per {@link Node#isComplete()}). Does nothing for tasks that have already completed.
      */
@@ -68,6 +68,7 @@ public enum DependenciesState {
     private Throwable executionFailure;
     private boolean filtered;
     private int index;
+    private long remainingExecutionTimeEstimate;
     private DependencyNodesSet dependencyNodes = DependencyNodesSet.EMPTY;
     private DependentNodesSet dependentNodes = DependentNodesSet.EMPTY;
     private final MutationInfo mutationInfo = new MutationInfo();
@@ -328,6 +329,17 @@ public void setIndex(int index) {
         this.index = index;
     }
 
+    /**
+     * Returns the estimated time in milliseconds it takes to execute this node and the longest chain of nodes that depend on it, or 0 when not known.
+     */
+    public long getRemainingExecutionTimeEstimate() {
+        return remainingExecutionTimeEstimate;
+    }
+
+    public void setRemainingExecutionTimeEstimate(long remainingExecutionTimeEstimate) {
+        this.remainingExecutionTimeEstimate = remainingExecutionTimeEstimate;
+    }
+
     /**
      * Mark this node as filtered from the current plan. The node will be considered complete and successful.
      */
@@ -344,6 +356,7 @@ public void filtered() {
     public void reset() {
         group = NodeGroup.DEFAULT_GROUP;
         index = 0;
+        remainingExecutionTimeEstimate = 0;
         if (!isCannotRunInAnyPlan()) {
             filtered = false;
             dependenciesProcessed = false;
@@ -20,12 +20,20 @@
 import org.gradle.execution.plan.ExecutionPlan;
 import org.gradle.execution.plan.ExecutionPlanFactory;
 import org.gradle.execution.plan.FinalizedExecutionPlan;
+import org.gradle.execution.plan.LocalTaskNode;
+import org.gradle.execution.plan.Node;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
 
+import java.time.Duration;
 import java.util.function.Consumer;
 
 public class DefaultBuildWorkPreparer implements BuildWorkPreparer {
+    private static final InternalFlag PRIORITIZE_CRITICAL_PATH = new InternalFlag("org.gradle.internal.execution.prioritize-critical-path", false);
+
     private final ExecutionPlanFactory executionPlanFactory;
 
     public DefaultBuildWorkPreparer(ExecutionPlanFactory executionPlanFactory) {
@@ -49,10 +57,31 @@ public FinalizedExecutionPlan finalizeWorkGraph(GradleInternal gradle, Execution
         if (gradle.getStartParameter().isContinueOnFailure()) {
             plan.setContinueOnFailure(true);
         }
+        if (isCriticalPathPrioritized(gradle)) {
+            ExecutionHistoryStore executionHistoryStore = gradle.getServices().get(ExecutionHistoryStore.class);
+            plan.prioritizeCriticalPath(node -> estimateExecutionTime(node, executionHistoryStore));
+        }
         FinalizedExecutionPlan finalizedExecutionPlan = plan.finalizePlan();
         taskGraph.populate(finalizedExecutionPlan);
         BuildOutputCleanupRegistry buildOutputCleanupRegistry = gradle.getServices().get(BuildOutputCleanupRegistry.class);
         buildOutputCleanupRegistry.resolveOutputs();
         return finalizedExecutionPlan;
     }
+
+    private static boolean isCriticalPathPrioritized(GradleInternal gradle) {
+        // The order only matters when nodes can run in parallel. Keep the plan order otherwise
+        return gradle.getStartParameter().isParallelProjectExecutionEnabled()
+            && gradle.getStartParameter().getMaxWorkerCount() > 1
+            && gradle.getServices().get(InternalOptions.class).getOption(PRIORITIZE_CRITICAL_PATH).get();
+    }
+
+    private static long estimateExecutionTime(Node node, ExecutionHistoryStore executionHistoryStore) {
+        if (node instanceof LocalTaskNode) {
+            // Tasks use their path to identify their execution history
+            return executionHistoryStore.loadExecutionTime(((LocalTaskNode) node).getTask().getPath())
+                .map(Duration::toMillis)
+                .orElse(0L);
+        }
+        return 0;
+    }
 }
@@ -52,6 +52,10 @@ public CurrentFileCollectionFingerprint fingerprint(FileSystemSnapshot snapshot,
         return DefaultCurrentFileCollectionFingerprint.from(snapshot, fingerprintingStrategy, previousFingerprint);
     }
 
+    public FingerprintingStrategy getFingerprintingStrategy() {
+        return fingerprintingStrategy;
+    }
+
     @Override
     public CurrentFileCollectionFingerprint empty() {
         return fingerprintingStrategy.getEmptyFingerprint();
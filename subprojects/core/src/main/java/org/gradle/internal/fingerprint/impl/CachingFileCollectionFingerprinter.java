@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.fingerprint.impl;
+
+import org.gradle.api.file.FileCollection;
+import org.gradle.internal.execution.FileCollectionFingerprinter;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FileNormalizer;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reuses the fingerprints of the same files which were already created by other work of the build.
+ */
+public class CachingFileCollectionFingerprinter implements FileCollectionFingerprinter {
+    private final AbstractFileCollectionFingerprinter delegate;
+    private final FileCollectionFingerprintCache cache;
+
+    public CachingFileCollectionFingerprinter(AbstractFileCollectionFingerprinter delegate, FileCollectionFingerprintCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public FileNormalizer getNormalizer() {
+        return delegate.getNormalizer();
+    }
+
+    @Override
+    public CurrentFileCollectionFingerprint fingerprint(FileCollection files) {
+        return delegate.fingerprint(files);
+    }
+
+    @Override
+    public CurrentFileCollectionFingerprint fingerprint(FileSystemSnapshot snapshot, @Nullable FileCollectionFingerprint previousFingerprint) {
+        return cache.fingerprint(snapshot, delegate.getFingerprintingStrategy(), () -> delegate.fingerprint(snapshot, previousFingerprint));
+    }
+
+    @Override
+    public CurrentFileCollectionFingerprint empty() {
+        return delegate.empty();
+    }
+}
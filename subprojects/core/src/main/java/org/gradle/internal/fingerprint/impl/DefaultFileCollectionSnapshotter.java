@@ -31,6 +31,8 @@
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
     private final FileSystemAccess fileSystemAccess;
@@ -43,50 +45,62 @@ public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, Stat
 
     @Override
     public Result snapshot(FileCollection fileCollection) {
-        SnapshottingVisitor visitor = new SnapshottingVisitor();
+        return resolveRoots(fileCollection).get();
+    }
+
+    @Override
+    public Supplier<Result> resolveRoots(FileCollection fileCollection) {
+        RootCollectingVisitor visitor = new RootCollectingVisitor();
         ((FileCollectionInternal) fileCollection).visitStructure(visitor);
-        FileSystemSnapshot snapshot = CompositeFileSystemSnapshot.of(visitor.getRoots());
+        List<Supplier<Optional<? extends FileSystemSnapshot>>> roots = visitor.getRoots();
         boolean containsArchiveTrees = visitor.containsArchiveTrees();
-        return new Result() {
-            @Override
-            public FileSystemSnapshot getSnapshot() {
-                return snapshot;
+        return () -> {
+            List<FileSystemSnapshot> rootSnapshots = new ArrayList<>(roots.size());
+            for (Supplier<Optional<? extends FileSystemSnapshot>> root : roots) {
+                root.get().ifPresent(rootSnapshots::add);
             }
+            FileSystemSnapshot snapshot = CompositeFileSystemSnapshot.of(rootSnapshots);
+            return new Result() {
+                @Override
+                public FileSystemSnapshot getSnapshot() {
+                    return snapshot;
+                }
 
-            @Override
-            public boolean containsArchiveTrees() {
-                return containsArchiveTrees;
-            }
+                @Override
+                public boolean containsArchiveTrees() {
+                    return containsArchiveTrees;
+                }
+            };
         };
     }
 
-    private class SnapshottingVisitor implements FileCollectionStructureVisitor {
-        private final List<FileSystemSnapshot> roots = new ArrayList<>();
+    private class RootCollectingVisitor implements FileCollectionStructureVisitor {
+        private final List<Supplier<Optional<? extends FileSystemSnapshot>>> roots = new ArrayList<>();
         private boolean containsArchiveTrees;
 
         @Override
         public void visitCollection(FileCollectionInternal.Source source, Iterable<File> contents) {
             for (File file : contents) {
-                roots.add(fileSystemAccess.read(file.getAbsolutePath()));
+                String absolutePath = file.getAbsolutePath();
+                roots.add(() -> Optional.of(fileSystemAccess.read(absolutePath)));
             }
         }
 
         @Override
         public void visitFileTree(File root, PatternSet patterns, FileTreeInternal fileTree) {
-            fileSystemAccess.read(
-                root.getAbsolutePath(),
-                new PatternSetSnapshottingFilter(patterns, stat)
-            )
-                .map(roots::add);
+            String absolutePath = root.getAbsolutePath();
+            PatternSetSnapshottingFilter filter = new PatternSetSnapshottingFilter(patterns, stat);
+            roots.add(() -> fileSystemAccess.read(absolutePath, filter));
         }
 
         @Override
         public void visitFileTreeBackedByFile(File file, FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            roots.add(fileSystemAccess.read(file.getAbsolutePath()));
+            String absolutePath = file.getAbsolutePath();
+            roots.add(() -> Optional.of(fileSystemAccess.read(absolutePath)));
             containsArchiveTrees = true;
         }
 
-        public List<FileSystemSnapshot> getRoots() {
+        public List<Supplier<Optional<? extends FileSystemSnapshot>>> getRoots() {
             return roots;
         }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.fingerprint.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FingerprintingStrategy;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.SnapshotUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Shares the fingerprints of the same files between the work executed during a build.
+ *
+ * <p>A fingerprint is identified by the hashes of the roots of the snapshot it was created from and by the configuration of the fingerprinting strategy.
+ * The root hashes are taken from the virtual file system, so a change to the files results in a different key and the outdated fingerprint is not used anymore.
+ * The fingerprints are discarded at the end of each build.</p>
+ */
+@ServiceScope(Scopes.BuildSession.class)
+public class FileCollectionFingerprintCache implements RootBuildLifecycleListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileCollectionFingerprintCache.class);
+
+    private final ConcurrentMap<Key, CurrentFileCollectionFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CurrentFileCollectionFingerprint fingerprint(FileSystemSnapshot snapshot, FingerprintingStrategy strategy, Supplier<CurrentFileCollectionFingerprint> fingerprinter) {
+        if (snapshot == FileSystemSnapshot.EMPTY) {
+            return fingerprinter.get();
+        }
+        Key key = new Key(strategy.getConfigurationHash(), ImmutableList.copyOf(SnapshotUtil.getRootHashes(snapshot).entries()));
+        CurrentFileCollectionFingerprint cached = fingerprints.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        // Fingerprint without holding a lock, a concurrent fingerprint of the same files produces the same result
+        CurrentFileCollectionFingerprint fingerprint = fingerprinter.get();
+        CurrentFileCollectionFingerprint previous = fingerprints.putIfAbsent(key, fingerprint);
+        return previous != null ? previous : fingerprint;
+    }
+
+    @Override
+    public void afterStart() {
+    }
+
+    @Override
+    public void beforeComplete() {
+        long hitCount = hits.getAndSet(0);
+        long missCount = misses.getAndSet(0);
+        if (hitCount + missCount > 0) {
+            LOGGER.info("File collection fingerprints reused: {} of {} ({}%)", hitCount, hitCount + missCount, hitCount * 100 / (hitCount + missCount));
+        }
+        fingerprints.clear();
+    }
+
+    private static class Key {
+        private final HashCode strategyConfigurationHash;
+        // The order of the roots matters
+        private final ImmutableList<Map.Entry<String, HashCode>> rootHashes;
+        private final int hashCode;
+
+        Key(HashCode strategyConfigurationHash, ImmutableList<Map.Entry<String, HashCode>> rootHashes) {
+            this.strategyConfigurationHash = strategyConfigurationHash;
+            this.rootHashes = rootHashes;
+            this.hashCode = 31 * strategyConfigurationHash.hashCode() + rootHashes.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return strategyConfigurationHash.equals(key.strategyConfigurationHash) && rootHashes.equals(key.rootHashes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
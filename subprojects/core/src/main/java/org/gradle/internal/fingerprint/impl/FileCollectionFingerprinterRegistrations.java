@@ -23,7 +23,6 @@
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
-import org.gradle.internal.execution.FileCollectionFingerprinter;
 import org.gradle.internal.execution.FileCollectionSnapshotter;
 import org.gradle.internal.execution.impl.FingerprinterRegistration;
 import org.gradle.internal.fingerprint.DirectorySensitivity;
@@ -52,15 +51,16 @@ public FileCollectionFingerprinterRegistrations(
         ResourceSnapshotterCacheService resourceSnapshotterCacheService,
         ResourceFilter resourceFilter,
         ResourceEntryFilter metaInfFilter,
-        Map<String, ResourceEntryFilter> propertiesFileFilters
+        Map<String, ResourceEntryFilter> propertiesFileFilters,
+        FileCollectionFingerprintCache fingerprintCache
         ) {
 
-        List<? extends FileCollectionFingerprinter> insensitiveFingerprinters = insensitiveFingerprinters(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner);
+        List<? extends AbstractFileCollectionFingerprinter> insensitiveFingerprinters = insensitiveFingerprinters(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner);
         this.registrants =
             withAllLineEndingSensitivities(lineEndingSensitivity -> {
                 FileSystemLocationSnapshotHasher normalizedContentHasher = normalizedContentHasher(lineEndingSensitivity, resourceSnapshotterCacheService);
 
-                List<? extends FileCollectionFingerprinter> directoryInsensitiveFingerprinters = directoryInsensitiveFingerprinters(
+                List<? extends AbstractFileCollectionFingerprinter> directoryInsensitiveFingerprinters = directoryInsensitiveFingerprinters(
                     lineEndingSensitivity,
                     normalizedContentHasher,
                     fileCollectionSnapshotter,
@@ -84,7 +84,8 @@ public FileCollectionFingerprinterRegistrations(
                             ),
                             directoryInsensitiveFingerprinters,
                             insensitiveFingerprinters
-                        )
+                        ),
+                        fingerprintCache
                     )
                 );
             }).collect(toImmutableSet());
@@ -93,7 +94,7 @@ public FileCollectionFingerprinterRegistrations(
     /**
      * These fingerprinters are fully sensitive to both line endings and empty directories
      */
-    private static List<? extends FileCollectionFingerprinter> fullySensitiveFingerprinters(
+    private static List<? extends AbstractFileCollectionFingerprinter> fullySensitiveFingerprinters(
         DirectorySensitivity directorySensitivity,
         StringInterner stringInterner,
         FileCollectionSnapshotter fileCollectionSnapshotter,
@@ -109,7 +110,7 @@ private static List<? extends FileCollectionFingerprinter> fullySensitiveFingerp
     /**
      * These fingerprinters are sensitive to line endings but not empty directories
      */
-    private static List<? extends FileCollectionFingerprinter> directoryInsensitiveFingerprinters(
+    private static List<? extends AbstractFileCollectionFingerprinter> directoryInsensitiveFingerprinters(
         LineEndingSensitivity lineEndingSensitivity,
         FileSystemLocationSnapshotHasher normalizedContentHasher,
         FileCollectionSnapshotter fileCollectionSnapshotter,
@@ -136,15 +137,20 @@ private static List<? extends FileCollectionFingerprinter> directoryInsensitiveF
     /**
      * These fingerprinters do not care about line ending or directory sensitivity at all
      */
-    private static List<? extends FileCollectionFingerprinter> insensitiveFingerprinters(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
+    private static List<? extends AbstractFileCollectionFingerprinter> insensitiveFingerprinters(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
         return Lists.newArrayList(
             new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner)
         );
     }
 
-    private static Stream<FingerprinterRegistration> registrationsFor(LineEndingSensitivity lineEndingSensitivity, DirectorySensitivity directorySensitivity, Stream<List<? extends FileCollectionFingerprinter>> fingerprinters) {
+    private static Stream<FingerprinterRegistration> registrationsFor(
+        LineEndingSensitivity lineEndingSensitivity,
+        DirectorySensitivity directorySensitivity,
+        Stream<List<? extends AbstractFileCollectionFingerprinter>> fingerprinters,
+        FileCollectionFingerprintCache fingerprintCache
+    ) {
         return fingerprinters.flatMap(Collection::stream).map(fingerprinter ->
-                registration(directorySensitivity, lineEndingSensitivity, fingerprinter)
+                registration(directorySensitivity, lineEndingSensitivity, new CachingFileCollectionFingerprinter(fingerprinter, fingerprintCache))
             );
     }
 
@@ -25,6 +25,7 @@
 import org.gradle.cache.scopes.BuildScopedCache;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
@@ -40,6 +41,7 @@
 import org.gradle.internal.execution.history.changes.ExecutionStateChangeDetector;
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultOutputFilesRepository;
+import org.gradle.internal.execution.history.impl.WriteBehindExecutionHistoryStore;
 import org.gradle.internal.execution.impl.DefaultExecutionEngine;
 import org.gradle.internal.execution.steps.AssignWorkspaceStep;
 import org.gradle.internal.execution.steps.BuildCacheStep;
@@ -88,13 +90,18 @@ ExecutionHistoryStore createExecutionHistoryStore(
         ExecutionHistoryCacheAccess executionHistoryCacheAccess,
         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
         StringInterner stringInterner,
-        ClassLoaderHierarchyHasher classLoaderHasher
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        ExecutorFactory executorFactory
     ) {
-        return new DefaultExecutionHistoryStore(
+        return new WriteBehindExecutionHistoryStore(
+            new DefaultExecutionHistoryStore(
+                executionHistoryCacheAccess,
+                inMemoryCacheDecoratorFactory,
+                stringInterner,
+                classLoaderHasher
+            ),
             executionHistoryCacheAccess,
-            inMemoryCacheDecoratorFactory,
-            stringInterner,
-            classLoaderHasher
+            executorFactory
         );
     }
 
@@ -17,10 +17,12 @@
 package org.gradle.internal.service.scopes;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import net.rubygrapefruit.platform.NativeIntegrationUnavailableException;
 import net.rubygrapefruit.platform.file.FileSystems;
 import org.apache.tools.ant.DirectoryScanner;
 import org.gradle.BuildAdapter;
+import org.gradle.api.GradleException;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.cache.StringInterner;
@@ -47,8 +49,10 @@
 import org.gradle.cache.scopes.GlobalScopedCache;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.build.BuildAddedListener;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
 import org.gradle.internal.buildoption.IntegerInternalOption;
 import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOption;
 import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.classloader.ClasspathHasher;
 import org.gradle.internal.event.ListenerManager;
@@ -65,19 +69,24 @@
 import org.gradle.internal.fingerprint.classpath.ClasspathFingerprinter;
 import org.gradle.internal.fingerprint.classpath.impl.DefaultClasspathFingerprinter;
 import org.gradle.internal.fingerprint.impl.DefaultFileCollectionSnapshotter;
+import org.gradle.internal.fingerprint.impl.FileCollectionFingerprintCache;
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
 import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
-import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.LocalFileContentHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.snapshot.CaseSensitivity;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.snapshot.ValueSnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterPool;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import org.gradle.internal.vfs.FileSystemAccess;
 import org.gradle.internal.vfs.VirtualFileSystem;
@@ -90,6 +99,7 @@
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.FileChangeListeners;
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
+import org.gradle.internal.watch.vfs.impl.DefaultVirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.impl.DefaultWatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
@@ -98,6 +108,9 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.function.Predicate;
 
@@ -118,14 +131,55 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     public static final IntegerInternalOption MAX_HIERARCHIES_TO_WATCH_PROPERTY = new IntegerInternalOption("org.gradle.vfs.watch.hierarchies.max", DEFAULT_MAX_HIERARCHIES_TO_WATCH);
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
+    /**
+     * The number of threads used to walk and hash directory trees when snapshotting.
+     *
+     * Values less than 2 snapshot each directory tree on the requesting thread only.
+     */
+    public static final IntegerInternalOption SNAPSHOTTING_PARALLELISM_PROPERTY = new IntegerInternalOption("org.gradle.vfs.snapshotting.parallelism", 0);
+
+    /**
+     * When file system watching is enabled, this flag can be used to keep the VFS state when the daemon stops.
+     *
+     * The next daemon restores the state, and checks the metadata of the restored files instead of snapshotting them again.
+     * The value of the last build run by a daemon decides whether its state is persisted.
+     */
+    public static final InternalFlag PERSIST_VFS_PROPERTY = new InternalFlag("org.gradle.vfs.persist");
+
     public static boolean isDropVfs(InternalOptions options) {
         return options.getOption(VFS_DROP_PROPERTY).get();
     }
 
+    public static boolean isPersistVfs(InternalOptions options) {
+        return options.getOption(PERSIST_VFS_PROPERTY).get();
+    }
+
+    public static int getSnapshottingParallelism(InternalOptions options) {
+        return options.getOption(SNAPSHOTTING_PARALLELISM_PROPERTY).get();
+    }
+
     public static int getMaximumNumberOfWatchedHierarchies(InternalOptions options) {
         return options.getOption(MAX_HIERARCHIES_TO_WATCH_PROPERTY).get();
     }
 
+    /**
+     * The algorithm used to hash file contents for the virtual file system and the execution history, for example {@code MURMUR3}. Defaults to MD5.
+     *
+     * Build cache keys are still MD5 hashes, but they are computed from the file content hashes,
+     * so machines which share a build cache only get hits for each other's entries when they use the same algorithm.
+     * The content hasher is shared by all the builds of the daemon, so the option is only read from the system properties of the daemon.
+     */
+    public static final InternalOption<HashFunction> CONTENT_HASH_ALGORITHM_PROPERTY = new ContentHashAlgorithmOption("org.gradle.internal.hash.content.algorithm");
+
+    /**
+     * File hashes created by different hash functions must not be mixed, so we keep them in separate caches.
+     */
+    private static String fileHashesCacheName(LocalFileContentHasher contentHasher) {
+        return contentHasher.usesDefaultFunction()
+            ? "fileHashes"
+            : "fileHashes-" + contentHasher.getHashFunction().getAlgorithm().toLowerCase(Locale.ROOT);
+    }
+
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new GlobalScopeServices());
@@ -149,6 +203,16 @@ FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
         }
+
+        LocalFileContentHasher createLocalFileContentHasher() {
+            InternalOptions daemonOptions = new DefaultInternalOptions(Collections.emptyMap());
+            return new LocalFileContentHasher(daemonOptions.getOption(CONTENT_HASH_ALGORITHM_PROPERTY).get());
+        }
+
+        DirectorySnapshotterPool createDirectorySnapshotterPool() {
+            // The parallelism is set for each build from the internal options, see FileSystemWatchingBuildActionRunner
+            return DirectorySnapshotterPool.sequential();
+        }
     }
 
     @VisibleForTesting
@@ -163,10 +227,10 @@ FileHasher createCachingFileHasher(
             CrossBuildFileHashCache fileStore,
             FileSystem fileSystem,
             GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
-            StreamHasher streamHasher,
+            LocalFileContentHasher contentHasher,
             StringInterner stringInterner
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(contentHasher.getStreamHasher(), DefaultFileHasher.DEFAULT_DIRECT_BUFFER_THRESHOLD, statisticsCollector), fileStore, stringInterner, fileTimeStampInspector, fileHashesCacheName(contentHasher), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -191,6 +255,11 @@ WatchableFileSystemDetector createWatchableFileSystemDetector(FileSystems fileSy
             return new DefaultWatchableFileSystemDetector(fileSystems);
         }
 
+        DefaultVirtualFileSystemStateStore createVirtualFileSystemStateStore(GlobalScopedCache scopedCache, StringInterner stringInterner, Stat stat) {
+            // Disabled until a build enables it, since the internal options are only known per build
+            return new DefaultVirtualFileSystemStateStore(scopedCache.baseDirForCache("vfs"), stringInterner, stat);
+        }
+
         BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
             DocumentationRegistry documentationRegistry,
@@ -199,7 +268,8 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             FileChangeListeners fileChangeListeners,
             FileSystem fileSystem,
             GlobalCacheLocations globalCacheLocations,
-            WatchableFileSystemDetector watchableFileSystemDetector
+            WatchableFileSystemDetector watchableFileSystemDetector,
+            DefaultVirtualFileSystemStateStore stateStore
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(caseSensitivity);
@@ -217,7 +287,8 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
                     locationsWrittenByCurrentBuild,
                     watchableFileSystemDetector,
-                    fileChangeListeners
+                    fileChangeListeners,
+                    stateStore
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(root));
             listenerManager.addListener((BuildAddedListener) buildState -> {
@@ -236,7 +307,8 @@ FileSystemAccess createFileSystemAccess(
             ListenerManager listenerManager,
             PatternSpecFactory patternSpecFactory,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            DirectorySnapshotterPool snapshotterPool
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
                 hasher,
@@ -245,6 +317,7 @@ FileSystemAccess createFileSystemAccess(
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                snapshotterPool,
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -332,11 +405,11 @@ FileHasher createFileHasher(
             CrossBuildFileHashCache cacheAccess,
             FileHasher globalHasher,
             FileSystem fileSystem,
-            StreamHasher streamHasher,
+            LocalFileContentHasher contentHasher,
             StringInterner stringInterner,
             FileHasherStatistics.Collector statisticsCollector
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(contentHasher.getStreamHasher(), DefaultFileHasher.DEFAULT_DIRECT_BUFFER_THRESHOLD, statisticsCollector), cacheAccess, stringInterner, fileTimeStampInspector, fileHashesCacheName(contentHasher), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -347,7 +420,8 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            DirectorySnapshotterPool snapshotterPool
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -356,6 +430,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                snapshotterPool,
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -370,14 +445,21 @@ FileCollectionSnapshotter createFileCollectionSnapshotter(FileSystemAccess fileS
             return new DefaultFileCollectionSnapshotter(fileSystemAccess, stat);
         }
 
-        OutputSnapshotter createOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter) {
-            return new DefaultOutputSnapshotter(fileCollectionSnapshotter);
+        OutputSnapshotter createOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter, BuildOperationExecutor buildOperationExecutor) {
+            return new DefaultOutputSnapshotter(fileCollectionSnapshotter, buildOperationExecutor);
+        }
+
+        FileCollectionFingerprintCache createFileCollectionFingerprintCache(ListenerManager listenerManager) {
+            FileCollectionFingerprintCache fingerprintCache = new FileCollectionFingerprintCache();
+            listenerManager.addListener(fingerprintCache);
+            return fingerprintCache;
         }
 
         FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegistrations(
             StringInterner stringInterner,
             FileCollectionSnapshotter fileCollectionSnapshotter,
-            ResourceSnapshotterCacheService resourceSnapshotterCacheService
+            ResourceSnapshotterCacheService resourceSnapshotterCacheService,
+            FileCollectionFingerprintCache fingerprintCache
         ) {
             return new FileCollectionFingerprinterRegistrations(
                 stringInterner,
@@ -385,7 +467,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
                 resourceSnapshotterCacheService,
                 ResourceFilter.FILTER_NOTHING,
                 ResourceEntryFilter.FILTER_NOTHING,
-                PropertiesFileFilter.FILTER_NOTHING
+                PropertiesFileFilter.FILTER_NOTHING,
+                fingerprintCache
             );
         }
 
@@ -396,9 +479,10 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Fi
         InputFingerprinter createInputFingerprinter(
             FileCollectionSnapshotter snapshotter,
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
-            ValueSnapshotter valueSnapshotter
+            ValueSnapshotter valueSnapshotter,
+            BuildOperationExecutor buildOperationExecutor
         ) {
-            return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter);
+            return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor);
         }
 
         ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
@@ -428,4 +512,34 @@ public void settingsEvaluated(Settings settings) {
     interface WatchFilter extends Predicate<String> {
     }
 
+
+    private static class ContentHashAlgorithmOption implements InternalOption<HashFunction> {
+        private static final List<String> SUPPORTED_ALGORITHMS = ImmutableList.of("MD5", "SHA-1", "SHA-256", "SHA-512", "MURMUR3");
+
+        private final String systemPropertyName;
+
+        ContentHashAlgorithmOption(String systemPropertyName) {
+            this.systemPropertyName = systemPropertyName;
+        }
+
+        @Override
+        public HashFunction getDefaultValue() {
+            return Hashing.defaultFunction();
+        }
+
+        @Override
+        public String getSystemPropertyName() {
+            return systemPropertyName;
+        }
+
+        @Override
+        public HashFunction convert(String value) {
+            try {
+                return Hashing.forAlgorithm(value);
+            } catch (IllegalArgumentException e) {
+                throw new GradleException(String.format("Unknown content hash algorithm '%s' set by the '%s' system property. Supported algorithms are: %s.",
+                    value, systemPropertyName, String.join(", ", SUPPORTED_ALGORITHMS)));
+            }
+        }
+    }
 }
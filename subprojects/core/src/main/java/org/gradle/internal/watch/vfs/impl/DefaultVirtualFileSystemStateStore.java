@@ -0,0 +1,159 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import org.apache.tools.ant.DirectoryScanner;
+import org.gradle.internal.execution.history.impl.FileSystemSnapshotSerializer;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.snapshot.CompositeFileSystemSnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.gradle.internal.snapshot.impl.FileSystemSnapshotValidator;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Persists the root snapshots of the virtual file system to a file in the Gradle user home.
+ *
+ * Only a single state is kept: the daemon which stops last overwrites the state of other daemons.
+ * A daemon restoring the state takes ownership of the file by moving it away, so the same state is never restored twice.
+ *
+ * <p>The last modified time of the state file marks when the snapshots were taken, in the clock and resolution of the file system.
+ * Restored files modified within {@link #RACY_TIMESTAMP_GRANULARITY_MILLIS} of that time are never considered up-to-date,
+ * since they may have changed again after the daemon stopped watching without changing their timestamp.</p>
+ *
+ * <p>The store is disabled until a build enables it via {@link #setEnabled(boolean)}.</p>
+ */
+public class DefaultVirtualFileSystemStateStore implements VirtualFileSystemStateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultVirtualFileSystemStateStore.class);
+    private static final String STATE_FILE_NAME = "vfs-state.bin";
+
+    /**
+     * The coarsest file system timestamp resolution we expect, which is the two seconds of FAT file systems.
+     */
+    private static final long RACY_TIMESTAMP_GRANULARITY_MILLIS = 2000;
+
+    private final File stateDir;
+    private final FileSystemSnapshotSerializer serializer;
+    private final Stat stat;
+    private FileSystemSnapshotValidator validator;
+    private volatile boolean enabled;
+
+    public DefaultVirtualFileSystemStateStore(File stateDir, Interner<String> stringInterner, Stat stat) {
+        this.stateDir = stateDir;
+        this.serializer = new FileSystemSnapshotSerializer(stringInterner);
+        this.stat = stat;
+    }
+
+    /**
+     * Enables or disables persisting and restoring the state, as configured by the current build.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void persist(List<FileSystemLocationSnapshot> rootSnapshots) {
+        if (!enabled || rootSnapshots.isEmpty()) {
+            return;
+        }
+        File tempFile = tempFile();
+        try {
+            Files.createDirectories(stateDir.toPath());
+            try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(tempFile))) {
+                serializer.write(encoder, CompositeFileSystemSnapshot.of(rootSnapshots));
+            }
+            Files.move(tempFile.toPath(), stateFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Persisted {} root snapshots of the virtual file system to {}", rootSnapshots.size(), stateFile());
+        } catch (Exception e) {
+            LOGGER.warn("Could not persist the state of the virtual file system to {}", stateDir, e);
+            deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public List<FileSystemLocationSnapshot> restore() {
+        if (!enabled) {
+            return ImmutableList.of();
+        }
+        File claimedFile = tempFile();
+        try {
+            Files.move(stateFile().toPath(), claimedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return ImmutableList.of();
+        } catch (IOException e) {
+            LOGGER.info("Could not claim the persisted state of the virtual file system at {}", stateFile(), e);
+            return ImmutableList.of();
+        }
+        // Moving the file keeps its last modified time.
+        // The default excludes are reset at the start of each build.
+        long racyTimestampThreshold = claimedFile.lastModified() - RACY_TIMESTAMP_GRANULARITY_MILLIS;
+        validator = new FileSystemSnapshotValidator(stat, Arrays.asList(DirectoryScanner.getDefaultExcludes()), racyTimestampThreshold);
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(claimedFile))) {
+            FileSystemSnapshot snapshot = serializer.read(decoder);
+            ImmutableList.Builder<FileSystemLocationSnapshot> rootSnapshots = ImmutableList.builder();
+            snapshot.accept(root -> {
+                rootSnapshots.add(root);
+                return SnapshotVisitResult.SKIP_SUBTREE;
+            });
+            return rootSnapshots.build();
+        } catch (Exception e) {
+            LOGGER.info("Could not read the persisted state of the virtual file system from {}", claimedFile, e);
+            return ImmutableList.of();
+        } finally {
+            deleteIfExists(claimedFile);
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(FileSystemLocationSnapshot restoredSnapshot) {
+        return validator != null && validator.isUpToDate(restoredSnapshot);
+    }
+
+    private File stateFile() {
+        return new File(stateDir, STATE_FILE_NAME);
+    }
+
+    private File tempFile() {
+        return new File(stateDir, STATE_FILE_NAME + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private static void deleteIfExists(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            LOGGER.debug("Could not delete {}", file, e);
+        }
+    }
+}
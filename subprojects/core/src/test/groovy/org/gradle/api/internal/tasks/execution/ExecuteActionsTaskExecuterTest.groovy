@@ -133,7 +133,7 @@ class ExecuteActionsTaskExecuterTest extends Specification {
     def virtualFileSystem = virtualFileSystem()
     def fileSystemAccess = fileSystemAccess(virtualFileSystem)
     def fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSystemAccess, fileSystem())
-    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter)
+    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter, buildOperationExecutor)
     def fingerprinter = new AbsolutePathFileCollectionFingerprinter(DirectorySensitivity.DEFAULT, fileCollectionSnapshotter, FileSystemLocationSnapshotHasher.DEFAULT)
     def fingerprinterRegistry = Stub(FileCollectionFingerprinterRegistry) {
         getFingerprinter(_) >> fingerprinter
@@ -156,7 +156,7 @@ class ExecuteActionsTaskExecuterTest extends Specification {
         }
     }
     def valueSnapshotter = new DefaultValueSnapshotter([], classloaderHierarchyHasher)
-    def inputFingerprinter = new DefaultInputFingerprinter(fileCollectionSnapshotter, fingerprinterRegistry, valueSnapshotter)
+    def inputFingerprinter = new DefaultInputFingerprinter(fileCollectionSnapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor)
     def reservedFileSystemLocationRegistry = Stub(ReservedFileSystemLocationRegistry)
     def overlappingOutputDetector = Stub(OverlappingOutputDetector)
     def fileCollectionFactory = fileCollectionFactory()
@@ -39,6 +39,8 @@ import org.gradle.util.Path
 import org.gradle.util.TestUtil
 import spock.lang.Specification
 
+import java.util.concurrent.Executor
+
 import static org.gradle.caching.internal.services.BuildCacheControllerFactory.BuildCacheMode.DISABLED
 import static org.gradle.caching.internal.services.BuildCacheControllerFactory.BuildCacheMode.ENABLED
 import static org.gradle.caching.internal.services.BuildCacheControllerFactory.RemoteAccessMode.ONLINE
@@ -74,7 +76,9 @@ class BuildCacheControllerFactoryTest extends Specification {
             Stub(FileSystemAccess),
             Stub(BuildCacheEntryPacker),
             Stub(OriginMetadataFactory),
-            Stub(StringInterner)
+            Stub(StringInterner),
+            Stub(Executor),
+            Stub(Executor)
         )
         assert controllerType.isInstance(controller)
         controllerType.cast(controller)
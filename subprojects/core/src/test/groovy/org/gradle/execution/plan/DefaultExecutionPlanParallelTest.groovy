@@ -1051,6 +1051,41 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         secondTask == b
     }
 
+    def "starts the task on the longest estimated path first when the critical path is prioritized"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+        def executionTimes = [(a): 100L, (b): 10L, (c): 200L]
+
+        when:
+        executionPlan.prioritizeCriticalPath { node -> node instanceof LocalTaskNode ? executionTimes[node.task] : 0L }
+        addToGraphAndPopulate(a, c)
+
+        def firstTask = selectNextTask()
+        def secondTask = selectNextTask()
+        then:
+        firstTask == b
+        secondTask == a
+    }
+
+    def "starts the task that another task should run after first when the critical path is prioritized"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async, shouldRunAfter: [a])
+        def executionTimes = [(a): 10L, (b): 100L]
+
+        when:
+        executionPlan.prioritizeCriticalPath { node -> node instanceof LocalTaskNode ? executionTimes[node.task] : 0L }
+        addToGraphAndPopulate(b, a)
+
+        def firstTask = selectNextTask()
+        def secondTask = selectNextTask()
+        then:
+        firstTask == a
+        secondTask == b
+    }
+
     def "task is not available for execution until all of its dependencies that are executed in parallel complete"() {
         given:
         Task a = task("a", type: Async)
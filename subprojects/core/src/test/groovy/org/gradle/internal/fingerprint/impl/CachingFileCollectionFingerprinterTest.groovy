@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.fingerprint.impl
+package org.gradle.internal.fingerprint.impl
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.fingerprint.DirectorySensitivity
+import org.gradle.internal.fingerprint.hashing.FileSystemLocationSnapshotHasher
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachingFileCollectionFingerprinterTest extends Specification {
+    def fileSystemAccess = TestFiles.fileSystemAccess(TestFiles.virtualFileSystem())
+    def fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSystemAccess, TestFiles.fileSystem())
+    def cache = new FileCollectionFingerprintCache()
+    def absolutePathFingerprinter = new CachingFileCollectionFingerprinter(new AbsolutePathFileCollectionFingerprinter(DirectorySensitivity.DEFAULT, fileCollectionSnapshotter, FileSystemLocationSnapshotHasher.DEFAULT), cache)
+    def nameOnlyFingerprinter = new CachingFileCollectionFingerprinter(new NameOnlyFileCollectionFingerprinter(DirectorySensitivity.DEFAULT, fileCollectionSnapshotter, FileSystemLocationSnapshotHasher.DEFAULT), cache)
+
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def "reuses the fingerprint of the same files"() {
+        def file = tmpDir.createFile("file").write("content")
+        def dir = tmpDir.createDir("dir")
+        dir.createFile("child")
+
+        when:
+        def fingerprint = absolutePathFingerprinter.fingerprint(snapshot(file, dir), null)
+
+        then:
+        absolutePathFingerprinter.fingerprint(snapshot(file, dir), null).is(fingerprint)
+        !absolutePathFingerprinter.fingerprint(snapshot(dir, file), null).is(fingerprint)
+        !nameOnlyFingerprinter.fingerprint(snapshot(file, dir), null).is(fingerprint)
+    }
+
+    def "does not reuse the fingerprint of changed files"() {
+        def file = tmpDir.createFile("file").write("content")
+        def fingerprint = absolutePathFingerprinter.fingerprint(snapshot(file), null)
+
+        when:
+        fileSystemAccess.write([file.absolutePath]) {
+            file.write("changed")
+        }
+        def changedFingerprint = absolutePathFingerprinter.fingerprint(snapshot(file), null)
+
+        then:
+        !changedFingerprint.is(fingerprint)
+        changedFingerprint.hash != fingerprint.hash
+    }
+
+    def "discards the fingerprints when the build completes"() {
+        def file = tmpDir.createFile("file").write("content")
+        def fingerprint = absolutePathFingerprinter.fingerprint(snapshot(file), null)
+
+        when:
+        cache.beforeComplete()
+
+        then:
+        !absolutePathFingerprinter.fingerprint(snapshot(file), null).is(fingerprint)
+    }
+
+    private snapshot(File... files) {
+        fileCollectionSnapshotter.snapshot(TestFiles.fixed(files)).snapshot
+    }
+}
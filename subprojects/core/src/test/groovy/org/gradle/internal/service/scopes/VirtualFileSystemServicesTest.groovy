@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.service.scopes
+
+import org.gradle.api.GradleException
+import org.gradle.internal.buildoption.DefaultInternalOptions
+import org.gradle.internal.hash.Hashing
+import spock.lang.Specification
+
+import static org.gradle.internal.service.scopes.VirtualFileSystemServices.CONTENT_HASH_ALGORITHM_PROPERTY
+
+class VirtualFileSystemServicesTest extends Specification {
+
+    def "uses the default hash function for file contents when no algorithm is set"() {
+        expect:
+        new DefaultInternalOptions([:]).getOption(CONTENT_HASH_ALGORITHM_PROPERTY).get().algorithm == Hashing.defaultFunction().algorithm
+    }
+
+    def "reads the content hash algorithm #value"() {
+        def options = new DefaultInternalOptions([(CONTENT_HASH_ALGORITHM_PROPERTY.systemPropertyName): value])
+
+        expect:
+        options.getOption(CONTENT_HASH_ALGORITHM_PROPERTY).get().algorithm == algorithm
+
+        where:
+        value     | algorithm
+        "MURMUR3" | "MURMUR3"
+        "sha-256" | "SHA-256"
+    }
+
+    def "rejects an unknown content hash algorithm"() {
+        def options = new DefaultInternalOptions([(CONTENT_HASH_ALGORITHM_PROPERTY.systemPropertyName): "CRC32"])
+
+        when:
+        options.getOption(CONTENT_HASH_ALGORITHM_PROPERTY)
+
+        then:
+        def e = thrown(GradleException)
+        e.message == "Unknown content hash algorithm 'CRC32' set by the 'org.gradle.internal.hash.content.algorithm' system property. Supported algorithms are: MD5, SHA-1, SHA-256, SHA-512, MURMUR3."
+    }
+}
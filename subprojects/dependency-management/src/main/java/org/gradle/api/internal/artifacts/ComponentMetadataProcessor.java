@@ -34,6 +34,11 @@ public ComponentMetadata processMetadata(ComponentMetadata metadata) {
         public int getRulesHash() {
             return 0;
         };
+
+        @Override
+        public boolean hasRules() {
+            return false;
+        }
     };
 
     ModuleComponentResolveMetadata processMetadata(ModuleComponentResolveMetadata metadata);
@@ -47,4 +52,9 @@ public int getRulesHash() {
     ComponentMetadata processMetadata(ComponentMetadata metadata);
 
     int getRulesHash();
+
+    /**
+     * Returns true if any component metadata rule has been registered.
+     */
+    boolean hasRules();
 }
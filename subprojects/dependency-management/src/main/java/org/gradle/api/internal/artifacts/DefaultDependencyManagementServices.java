@@ -49,9 +49,11 @@
 import org.gradle.api.internal.artifacts.dsl.dependencies.GradlePluginVariantsSupport;
 import org.gradle.api.internal.artifacts.dsl.dependencies.PlatformSupport;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
+import org.gradle.api.internal.artifacts.ivyservice.CachingConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.DefaultConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.ErrorHandlingConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
+import org.gradle.api.internal.artifacts.ivyservice.ResolutionResultCache;
 import org.gradle.api.internal.artifacts.ivyservice.ShortCircuitEmptyConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
@@ -61,6 +63,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.FileStoreAndIndexProvider;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleRepositoryCacheProvider;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.DefaultRootComponentMetadataBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
@@ -102,6 +105,7 @@
 import org.gradle.api.internal.file.FilePropertyFactory;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.model.NamedObjectInstantiator;
+import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.project.ProjectStateRegistry;
 import org.gradle.api.internal.provider.PropertyFactory;
 import org.gradle.api.internal.tasks.TaskDependencyFactory;
@@ -111,6 +115,8 @@
 import org.gradle.initialization.internal.InternalBuildFinishedListener;
 import org.gradle.internal.authentication.AuthenticationSchemeRegistry;
 import org.gradle.internal.build.BuildState;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.component.external.model.JavaEcosystemVariantDerivationStrategy;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetadata;
 import org.gradle.internal.component.model.ComponentAttributeMatcher;
@@ -120,6 +126,7 @@
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.hash.ChecksumService;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.isolation.IsolatableFactory;
 import org.gradle.internal.locking.DefaultDependencyLockingHandler;
@@ -191,6 +198,8 @@ public void afterTransformerInvocation(Describable transformer, Describable subj
 
     private static class DependencyResolutionScopeServices {
 
+        private static final InternalFlag CACHE_RESOLUTION_RESULTS = new InternalFlag("org.gradle.internal.dependency-resolution.cache-results");
+
         private final DomainObjectContext domainObjectContext;
 
         public DependencyResolutionScopeServices(DomainObjectContext domainObjectContext) {
@@ -515,36 +524,64 @@ ConfigurationResolver createDependencyResolver(ArtifactDependencyResolver artifa
                                                        DependencyVerificationOverride dependencyVerificationOverride,
                                                        ProjectDependencyResolver projectDependencyResolver,
                                                        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
-                                                       WorkerLeaseService workerLeaseService) {
+                                                       WorkerLeaseService workerLeaseService,
+                                                       InternalOptions internalOptions,
+                                                       ResolutionResultCache resolutionResultCache,
+                                                       ComponentMetadataHandlerInternal componentMetadataHandler,
+                                                       VersionSelectorScheme versionSelectorScheme,
+                                                       ClassLoaderHierarchyHasher classLoaderHierarchyHasher,
+                                                       DomainObjectContext domainObjectContext,
+                                                       ModuleRepositoryCacheProvider moduleRepositoryCacheProvider) {
+            DefaultConfigurationResolver defaultResolver = new DefaultConfigurationResolver(
+                artifactDependencyResolver,
+                repositoriesSupplier,
+                metadataHandler,
+                resolutionResultsStoreFactory,
+                startParameter.isBuildProjectDependencies(),
+                attributesSchema,
+                new DefaultArtifactTransforms(
+                        new ConsumerProvidedVariantFinder(
+                                variantTransforms,
+                                attributesSchema,
+                                attributesFactory),
+                        attributesSchema,
+                        attributesFactory,
+                        transformedVariantFactory
+                ),
+                moduleIdentifierFactory,
+                buildOperationExecutor,
+                artifactTypeRegistry,
+                componentSelectorConverter,
+                attributeContainerSerializer,
+                currentBuild.getBuildIdentifier(),
+                new AttributeDesugaring(attributesFactory),
+                dependencyVerificationOverride,
+                projectDependencyResolver,
+                componentSelectionDescriptorFactory,
+                workerLeaseService);
+            ConfigurationResolver resolver = defaultResolver;
+            if (internalOptions.getOption(CACHE_RESOLUTION_RESULTS).get() && !startParameter.isRefreshDependencies()) {
+                Supplier<HashCode> buildLogicHash = () -> domainObjectContext instanceof ProjectInternal
+                    ? classLoaderHierarchyHasher.getClassLoaderHash(((ProjectInternal) domainObjectContext).getClassLoaderScope().getLocalClassLoader())
+                    : null;
+                resolver = new CachingConfigurationResolver(
+                    defaultResolver,
+                    resolutionResultCache,
+                    metadataHandler,
+                    componentMetadataHandler,
+                    versionSelectorScheme,
+                    dependencyVerificationOverride,
+                    buildLogicHash,
+                    startParameter.isOffline(),
+                    moduleIdentifierFactory,
+                    attributeContainerSerializer,
+                    componentSelectionDescriptorFactory,
+                    attributesSchema,
+                    moduleRepositoryCacheProvider.getPersistentCaches().moduleMetadataCache);
+            }
             return new ErrorHandlingConfigurationResolver(
                     new ShortCircuitEmptyConfigurationResolver(
-                            new DefaultConfigurationResolver(
-                                    artifactDependencyResolver,
-                                    repositoriesSupplier,
-                                    metadataHandler,
-                                    resolutionResultsStoreFactory,
-                                    startParameter.isBuildProjectDependencies(),
-                                    attributesSchema,
-                                    new DefaultArtifactTransforms(
-                                            new ConsumerProvidedVariantFinder(
-                                                    variantTransforms,
-                                                    attributesSchema,
-                                                    attributesFactory),
-                                            attributesSchema,
-                                            attributesFactory,
-                                            transformedVariantFactory
-                                    ),
-                                    moduleIdentifierFactory,
-                                    buildOperationExecutor,
-                                    artifactTypeRegistry,
-                                    componentSelectorConverter,
-                                    attributeContainerSerializer,
-                                    currentBuild.getBuildIdentifier(),
-                                    new AttributeDesugaring(attributesFactory),
-                                    dependencyVerificationOverride,
-                                    projectDependencyResolver,
-                                    componentSelectionDescriptorFactory,
-                                    workerLeaseService),
+                            resolver,
                             componentIdentifierFactory,
                             moduleIdentifierFactory,
                             currentBuild.getBuildIdentifier()));
@@ -32,6 +32,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetadata;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCachesProvider;
+import org.gradle.api.internal.artifacts.ivyservice.ResolutionResultCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ChangingValueDependencyResolutionListener;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConnectionFailureRepositoryDisabler;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleDescriptorHashCodec;
@@ -495,6 +496,10 @@ LocallyAvailableResourceFinder<ModuleComponentArtifactMetadata> createArtifactRe
         return finderFactory.create();
     }
 
+    ResolutionResultCache createResolutionResultCache(ArtifactCachesProvider artifactCaches) {
+        return new ResolutionResultCache(artifactCaches.getWritableCacheLockingManager());
+    }
+
     RepositoryTransportFactory createRepositoryTransportFactory(TemporaryFileProvider temporaryFileProvider,
                                                                 FileStoreAndIndexProvider fileStoreAndIndexProvider,
                                                                 BuildCommencedTimeProvider buildCommencedTimeProvider,
@@ -0,0 +1,767 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import com.google.common.base.Strings;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.DependencySubstitution;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.LenientConfiguration;
+import org.gradle.api.artifacts.ResolveException;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedConfiguration;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.attributes.AttributeMatchingStrategy;
+import org.gradle.api.capabilities.Capability;
+import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.MetadataResolutionContext;
+import org.gradle.api.internal.artifacts.Module;
+import org.gradle.api.internal.artifacts.ResolverResults;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.dependencies.DefaultProjectDependencyConstraint;
+import org.gradle.api.internal.artifacts.dsl.ComponentMetadataHandlerInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleDescriptorHashModuleSource;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryChainModuleSource;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.AbstractModuleMetadataCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleMetadataCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultSerializer;
+import org.gradle.api.internal.artifacts.repositories.ContentFilteringRepository;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.descriptor.MavenRepositoryDescriptor;
+import org.gradle.api.internal.artifacts.repositories.descriptor.RepositoryDescriptor;
+import org.gradle.api.internal.artifacts.repositories.resolver.MavenUniqueSnapshotComponentIdentifier;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.DefaultAttributesSchema;
+import org.gradle.api.internal.attributes.DefaultCompatibilityRuleChain;
+import org.gradle.api.internal.attributes.DefaultDisambiguationRuleChain;
+import org.gradle.api.internal.attributes.DefaultOrderedCompatibilityRule;
+import org.gradle.api.internal.attributes.DefaultOrderedDisambiguationRule;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.Actions;
+import org.gradle.internal.action.ConfigurableRule;
+import org.gradle.internal.action.InstantiatingAction;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.ModuleSources;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.reflect.DirectInstantiator;
+import org.gradle.internal.reflect.Instantiator;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GradleVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reuses the dependency graph of a configuration across builds, when the graph is known to depend only on the inputs captured in the cache key.
+ *
+ * <p>This is only the case for configurations which declare external module dependencies with fixed versions, resolved from remote Maven repositories,
+ * without any rules that could change the result. For all other configurations, resolution is delegated without caching.
+ * Results containing failures, dynamic versions or snapshots are not cached either.</p>
+ *
+ * <p>The graph also depends on the metadata of the resolved modules. Their descriptor hashes are stored with the graph,
+ * and a cached graph is only used while the metadata cached for the modules still has these hashes.</p>
+ *
+ * <p>Only the {@link ResolutionResult} is cached, so the cache only serves requests for the graph.
+ * Artifact sets reference live component metadata and cannot be persisted. When the artifacts of a configuration loaded from the cache are used,
+ * the configuration is resolved in full, and the cache entry is replaced by a marker so that later builds resolve the configuration without the cache.</p>
+ *
+ * <p>This limits the cache to configurations whose graph is used on its own, for example by dependency reports, dependency insight or tooling models.
+ * Classpath configurations, whose files are used by nearly every build, are resolved from the cache at most once, and without the cache from then on.</p>
+ */
+public class CachingConfigurationResolver implements ConfigurationResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingConfigurationResolver.class);
+
+    /**
+     * The entry stored for configurations whose artifacts have been used after loading their graph from the cache.
+     */
+    private static final byte[] ARTIFACTS_REQUIRED = new byte[0];
+
+    /**
+     * A cached graph only contains external modules besides the root, see {@link #isCacheable(ResolutionResult)},
+     * so there are never any other local components in it.
+     */
+    private static final ResolvedLocalComponentsResult NO_LOCAL_COMPONENTS = Collections::emptyList;
+
+    private final DefaultConfigurationResolver delegate;
+    private final ResolutionResultCache cache;
+    private final GlobalDependencyResolutionRules metadataHandler;
+    private final ComponentMetadataHandlerInternal componentMetadataHandler;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final DependencyVerificationOverride dependencyVerificationOverride;
+    private final Supplier<HashCode> buildLogicHash;
+    private final boolean offline;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final AttributeContainerSerializer attributeContainerSerializer;
+    private final ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory;
+    private final AttributesSchemaInternal attributesSchema;
+    private final AbstractModuleMetadataCache moduleMetadataCache;
+
+    public CachingConfigurationResolver(
+        DefaultConfigurationResolver delegate,
+        ResolutionResultCache cache,
+        GlobalDependencyResolutionRules metadataHandler,
+        ComponentMetadataHandlerInternal componentMetadataHandler,
+        VersionSelectorScheme versionSelectorScheme,
+        DependencyVerificationOverride dependencyVerificationOverride,
+        Supplier<HashCode> buildLogicHash,
+        boolean offline,
+        ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+        AttributeContainerSerializer attributeContainerSerializer,
+        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
+        AttributesSchemaInternal attributesSchema,
+        AbstractModuleMetadataCache moduleMetadataCache
+    ) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.metadataHandler = metadataHandler;
+        this.componentMetadataHandler = componentMetadataHandler;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.dependencyVerificationOverride = dependencyVerificationOverride;
+        this.buildLogicHash = buildLogicHash;
+        this.offline = offline;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.attributeContainerSerializer = attributeContainerSerializer;
+        this.componentSelectionDescriptorFactory = componentSelectionDescriptorFactory;
+        this.attributesSchema = attributesSchema;
+        this.moduleMetadataCache = moduleMetadataCache;
+    }
+
+    @Override
+    public List<ResolutionAwareRepository> getRepositories() {
+        return delegate.getRepositories();
+    }
+
+    @Override
+    public void resolveBuildDependencies(ConfigurationInternal configuration, ResolverResults result) {
+        delegate.resolveBuildDependencies(configuration, result);
+    }
+
+    @Override
+    public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
+        HashCode cacheKey = createCacheKey(configuration);
+        if (cacheKey == null) {
+            delegate.resolveGraph(configuration, results);
+            return;
+        }
+
+        byte[] entry = cache.load(cacheKey);
+        if (entry != null && entry.length == ARTIFACTS_REQUIRED.length) {
+            delegate.resolveGraph(configuration, results);
+            return;
+        }
+        ResolutionResult cachedResult = entry == null ? null : load(entry, configuration);
+        if (cachedResult != null) {
+            configuration.getResolutionStrategy().confirmUnlockedConfigurationResolved(configuration.getName());
+            CachedGraphState state = new CachedGraphState(configuration, cacheKey);
+            results.graphResolved(cachedResult, NO_LOCAL_COMPONENTS, new DeferredVisitedArtifactSet(state));
+            results.retainState(state);
+            return;
+        }
+
+        ResolvedModulesCollector resolvedModules = new ResolvedModulesCollector();
+        delegate.resolveGraph(configuration, results, resolvedModules);
+        if (!results.hasError() && resolvedModules.isComplete()) {
+            ResolutionResult result = results.getResolutionResult();
+            if (isCacheable(result)) {
+                store(cacheKey, resolvedModules.getModules(), result, configuration);
+            }
+        }
+    }
+
+    @Override
+    public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
+        Object state = results.getArtifactResolveState();
+        if (state instanceof CachedGraphState) {
+            // Only resolve the configuration in full when the artifacts are actually used
+            CachedGraphState cachedGraphState = (CachedGraphState) state;
+            results.artifactsResolved(new DeferredResolvedConfiguration(cachedGraphState), new DeferredVisitedArtifactSet(cachedGraphState));
+        } else {
+            delegate.resolveArtifacts(configuration, results);
+        }
+    }
+
+    @Nullable
+    private ResolutionResult load(byte[] entry, ConfigurationInternal configuration) {
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(entry));
+            int moduleCount = decoder.readSmallInt();
+            for (int i = 0; i < moduleCount; i++) {
+                String repositoryId = decoder.readString();
+                ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(moduleIdentifierFactory.module(decoder.readString(), decoder.readString()), decoder.readString());
+                HashCode descriptorHash = HashCode.fromBytes(decoder.readBinary());
+                if (!hasCachedMetadata(repositoryId, id, descriptorHash)) {
+                    LOGGER.debug("Not using the cached dependency graph of {}, as the metadata of {} has changed.", configuration.getDisplayName(), id);
+                    return null;
+                }
+            }
+            ResolutionResultSerializer serializer = new ResolutionResultSerializer(moduleIdentifierFactory, attributeContainerSerializer, componentSelectionDescriptorFactory);
+            ResolutionResult result = serializer.read(decoder);
+            if (!isCacheable(result)) {
+                throw new IllegalStateException("The cached graph contains components other than external modules.");
+            }
+            LOGGER.debug("Loaded the dependency graph of {} from the cache.", configuration.getDisplayName());
+            return result;
+        } catch (Exception e) {
+            LOGGER.debug("Could not load the cached dependency graph of {}.", configuration.getDisplayName(), e);
+            return null;
+        }
+    }
+
+    private boolean hasCachedMetadata(String repositoryId, ModuleComponentIdentifier id, HashCode descriptorHash) {
+        ModuleMetadataCache.CachedMetadata cachedMetadata = moduleMetadataCache.getCachedModuleDescriptor(repositoryId, id);
+        if (cachedMetadata == null || cachedMetadata.isMissing()) {
+            return false;
+        }
+        return cachedMetadata.getModuleSources().getSource(ModuleDescriptorHashModuleSource.class)
+            .map(source -> source.getDescriptorHash().equals(descriptorHash))
+            .orElse(false);
+    }
+
+    private void store(HashCode cacheKey, Map<ModuleComponentIdentifier, ResolvedModule> modules, ResolutionResult result, ConfigurationInternal configuration) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+            encoder.writeSmallInt(modules.size());
+            for (Map.Entry<ModuleComponentIdentifier, ResolvedModule> module : modules.entrySet()) {
+                ModuleComponentIdentifier id = module.getKey();
+                encoder.writeString(module.getValue().repositoryId);
+                encoder.writeString(id.getGroup());
+                encoder.writeString(id.getModule());
+                encoder.writeString(id.getVersion());
+                encoder.writeBinary(module.getValue().descriptorHash.toByteArray());
+            }
+            new ResolutionResultSerializer(moduleIdentifierFactory, attributeContainerSerializer, componentSelectionDescriptorFactory).write(encoder, result);
+            encoder.flush();
+            cache.store(cacheKey, outputStream.toByteArray());
+        } catch (Exception e) {
+            LOGGER.debug("Could not cache the dependency graph of {}.", configuration.getDisplayName(), e);
+        }
+    }
+
+    /**
+     * Returns a hash of all inputs to the resolution of the given configuration, or {@code null} when the result may depend on anything else.
+     */
+    @Nullable
+    private HashCode createCacheKey(ConfigurationInternal configuration) {
+        if (dependencyVerificationOverride != DependencyVerificationOverride.NO_VERIFICATION || configuration.getConsistentResolutionSource() != null) {
+            return null;
+        }
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.isDependencyLockingEnabled()
+            || resolutionStrategy.resolveGraphToDetermineTaskDependencies()
+            || resolutionStrategy.getDependencySubstitutionRule() != Actions.<DependencySubstitution>doNothing()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || resolutionStrategy.getCapabilitiesResolutionRules().hasRules()
+            || metadataHandler.getModuleMetadataProcessor().getModuleReplacements().hasReplacements()
+            || metadataHandler.getComponentMetadataProcessorFactory().createComponentMetadataProcessor(new RuleInspectionContext(resolutionStrategy.getCachePolicy())).hasRules()) {
+            return null;
+        }
+        HashCode buildLogic = buildLogicHash.get();
+        if (buildLogic == null) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(GradleVersion.current().getVersion());
+        hasher.putHash(buildLogic);
+        hasher.putBoolean(offline);
+        hasher.putString(componentMetadataHandler.getVariantDerivationStrategy().getClass().getName());
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putBoolean(resolutionStrategy.isFailingOnDynamicVersions());
+        hasher.putBoolean(resolutionStrategy.isFailingOnChangingVersions());
+        if (!putAttributesSchema(hasher, attributesSchema)) {
+            return null;
+        }
+
+        Module module = configuration.getModule();
+        putNullableString(hasher, module.getGroup());
+        hasher.putString(module.getName());
+        putNullableString(hasher, module.getVersion());
+        putNullableString(hasher, module.getStatus());
+        putNullableString(hasher, module.getProjectId() == null ? null : module.getProjectId().getDisplayName());
+        hasher.putString(configuration.getName());
+        hasher.putBoolean(configuration.isTransitive());
+        hasher.putBoolean(configuration.getReturnAllVariants());
+        putAttributes(hasher, configuration.getAttributes());
+        putCapabilities(hasher, configuration.getOutgoing().getCapabilities());
+        putExcludeRules(hasher, configuration.getAllExcludeRules());
+
+        if (!putRepositories(hasher, delegate.getRepositories())) {
+            return null;
+        }
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!putDependency(hasher, dependency)) {
+                return null;
+            }
+        }
+        for (DependencyConstraint constraint : configuration.getAllDependencyConstraints()) {
+            if (!putDependencyConstraint(hasher, constraint)) {
+                return null;
+            }
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Adds which attribute matching rules the consumer schema uses, and their parameters.
+     * The implementations of the rules are part of the build logic, or of Gradle itself.
+     */
+    private static boolean putAttributesSchema(Hasher hasher, AttributesSchemaInternal attributesSchema) {
+        if (!(attributesSchema instanceof DefaultAttributesSchema)) {
+            return false;
+        }
+        DefaultAttributesSchema schema = (DefaultAttributesSchema) attributesSchema;
+        List<Attribute<?>> precedence = schema.getAttributeDisambiguationPrecedence();
+        hasher.putInt(precedence.size());
+        for (Attribute<?> attribute : precedence) {
+            hasher.putString(attribute.getName());
+        }
+        List<Attribute<?>> attributes = schema.getAttributes().stream()
+            .sorted(Comparator.comparing(Attribute::getName))
+            .collect(Collectors.toList());
+        hasher.putInt(attributes.size());
+        for (Attribute<?> attribute : attributes) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            AttributeMatchingStrategy<?> matchingStrategy = schema.getMatchingStrategy(attribute);
+            if (!(matchingStrategy.getCompatibilityRules() instanceof DefaultCompatibilityRuleChain) || !(matchingStrategy.getDisambiguationRules() instanceof DefaultDisambiguationRuleChain)) {
+                return false;
+            }
+            List<? extends Action<?>> compatibilityRules = ((DefaultCompatibilityRuleChain<?>) matchingStrategy.getCompatibilityRules()).getRules();
+            List<? extends Action<?>> disambiguationRules = ((DefaultDisambiguationRuleChain<?>) matchingStrategy.getDisambiguationRules()).getRules();
+            if (!putAttributeMatchingRules(hasher, compatibilityRules) || !putAttributeMatchingRules(hasher, disambiguationRules)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean putAttributeMatchingRules(Hasher hasher, List<? extends Action<?>> rules) {
+        hasher.putInt(rules.size());
+        for (Action<?> rule : rules) {
+            if (rule instanceof InstantiatingAction) {
+                for (ConfigurableRule<?> configurableRule : ((InstantiatingAction<?>) rule).getRules().getConfigurableRules()) {
+                    hasher.putString(configurableRule.getRuleClass().getName());
+                    configurableRule.getRuleParams().appendToHasher(hasher);
+                }
+            } else if (rule instanceof DefaultOrderedCompatibilityRule) {
+                DefaultOrderedCompatibilityRule<?> orderedRule = (DefaultOrderedCompatibilityRule<?>) rule;
+                if (!putComparator(hasher, orderedRule.getComparator())) {
+                    return false;
+                }
+                hasher.putBoolean(orderedRule.isReverse());
+            } else if (rule instanceof DefaultOrderedDisambiguationRule) {
+                DefaultOrderedDisambiguationRule<?> orderedRule = (DefaultOrderedDisambiguationRule<?>) rule;
+                if (!putComparator(hasher, orderedRule.getComparator())) {
+                    return false;
+                }
+                hasher.putBoolean(orderedRule.isPickFirst());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean putComparator(Hasher hasher, Comparator<?> comparator) {
+        // Lambdas have no stable name, and cannot be told apart from other lambdas of the same class
+        if (comparator.getClass().isSynthetic()) {
+            return false;
+        }
+        hasher.putString(comparator.getClass().getName());
+        return true;
+    }
+
+    private static boolean putRepositories(Hasher hasher, List<ResolutionAwareRepository> repositories) {
+        hasher.putInt(repositories.size());
+        for (ResolutionAwareRepository repository : repositories) {
+            // Content filters are arbitrary code, and local repositories may change without the version of a module changing
+            if (!(repository instanceof ContentFilteringRepository) || ((ContentFilteringRepository) repository).getContentFilter() != Actions.doNothing()) {
+                return false;
+            }
+            RepositoryDescriptor descriptor = repository.getDescriptor();
+            if (!(descriptor instanceof MavenRepositoryDescriptor)) {
+                return false;
+            }
+            URI url = ((MavenRepositoryDescriptor) descriptor).url;
+            if (url == null || "file".equals(url.getScheme())) {
+                return false;
+            }
+            hasher.putString(descriptor.name);
+            hasher.putString(descriptor.getType().name());
+            for (Map.Entry<String, ?> property : descriptor.getProperties().entrySet()) {
+                hasher.putString(property.getKey());
+                hasher.putString(String.valueOf(property.getValue()));
+            }
+        }
+        return true;
+    }
+
+    private boolean putDependency(Hasher hasher, Dependency dependency) {
+        if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+            return false;
+        }
+        ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+        if (moduleDependency.isChanging() || isDynamic(moduleDependency.getVersionConstraint())) {
+            return false;
+        }
+        putNullableString(hasher, moduleDependency.getGroup());
+        hasher.putString(moduleDependency.getName());
+        putVersionConstraint(hasher, moduleDependency.getVersionConstraint());
+        hasher.putBoolean(moduleDependency.isForce());
+        hasher.putBoolean(moduleDependency.isTransitive());
+        hasher.putBoolean(moduleDependency.isEndorsingStrictVersions());
+        putNullableString(hasher, moduleDependency.getTargetConfiguration());
+        putNullableString(hasher, moduleDependency.getReason());
+        putExcludeRules(hasher, moduleDependency.getExcludeRules());
+        hasher.putInt(moduleDependency.getArtifacts().size());
+        for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+            hasher.putString(artifact.getName());
+            putNullableString(hasher, artifact.getType());
+            putNullableString(hasher, artifact.getExtension());
+            putNullableString(hasher, artifact.getClassifier());
+            putNullableString(hasher, artifact.getUrl());
+        }
+        putAttributes(hasher, moduleDependency.getAttributes());
+        putCapabilities(hasher, moduleDependency.getRequestedCapabilities());
+        return true;
+    }
+
+    private boolean putDependencyConstraint(Hasher hasher, DependencyConstraint constraint) {
+        if (constraint instanceof DefaultProjectDependencyConstraint || isDynamic(constraint.getVersionConstraint())) {
+            return false;
+        }
+        putNullableString(hasher, constraint.getGroup());
+        hasher.putString(constraint.getName());
+        putVersionConstraint(hasher, constraint.getVersionConstraint());
+        putNullableString(hasher, constraint.getReason());
+        putAttributes(hasher, constraint.getAttributes());
+        return true;
+    }
+
+    private static void putVersionConstraint(Hasher hasher, VersionConstraint versionConstraint) {
+        putNullableString(hasher, versionConstraint.getRequiredVersion());
+        putNullableString(hasher, versionConstraint.getPreferredVersion());
+        putNullableString(hasher, versionConstraint.getStrictVersion());
+        hasher.putInt(versionConstraint.getRejectedVersions().size());
+        for (String rejectedVersion : versionConstraint.getRejectedVersions()) {
+            hasher.putString(rejectedVersion);
+        }
+    }
+
+    private static void putExcludeRules(Hasher hasher, Set<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            putNullableString(hasher, excludeRule.getGroup());
+            putNullableString(hasher, excludeRule.getModule());
+        }
+    }
+
+    private static void putAttributes(Hasher hasher, AttributeContainer attributes) {
+        AttributeContainerInternal immutableAttributes = ((AttributeContainerInternal) attributes).asImmutable();
+        hasher.putInt(immutableAttributes.keySet().size());
+        immutableAttributes.keySet().stream()
+            .sorted(Comparator.comparing(Attribute::getName))
+            .forEach(attribute -> {
+                hasher.putString(attribute.getName());
+                hasher.putString(attribute.getType().getName());
+                hasher.putString(String.valueOf(immutableAttributes.getAttribute(attribute)));
+            });
+    }
+
+    private static void putCapabilities(Hasher hasher, Iterable<? extends Capability> capabilities) {
+        for (Capability capability : capabilities) {
+            hasher.putString(capability.getGroup());
+            hasher.putString(capability.getName());
+            putNullableString(hasher, capability.getVersion());
+        }
+        hasher.putNull();
+    }
+
+    private static void putNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(value);
+        }
+    }
+
+    private boolean isDynamic(VersionConstraint versionConstraint) {
+        return versionConstraint.getBranch() != null
+            || isDynamic(versionConstraint.getRequiredVersion())
+            || isDynamic(versionConstraint.getPreferredVersion())
+            || isDynamic(versionConstraint.getStrictVersion());
+    }
+
+    private boolean isDynamic(@Nullable String version) {
+        return !Strings.isNullOrEmpty(version) && versionSelectorScheme.parseSelector(version).isDynamic();
+    }
+
+    /**
+     * Checks that the result does not depend on anything that may change without the cache key changing.
+     */
+    private boolean isCacheable(ResolutionResult result) {
+        ResolvedComponentResult root = result.getRoot();
+        Set<ResolvedComponentResult> visited = new HashSet<>();
+        visited.add(root);
+        return isCacheable(root, visited);
+    }
+
+    private boolean isCacheable(ResolvedComponentResult component, Set<ResolvedComponentResult> visited) {
+        for (DependencyResult dependency : component.getDependencies()) {
+            if (!(dependency instanceof ResolvedDependencyResult)) {
+                return false;
+            }
+            ComponentSelector requested = dependency.getRequested();
+            if (!(requested instanceof ModuleComponentSelector) || isDynamic(((ModuleComponentSelector) requested).getVersionConstraint())) {
+                return false;
+            }
+            ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+            if (visited.add(selected)) {
+                ComponentIdentifier id = selected.getId();
+                if (!(id instanceof ModuleComponentIdentifier) || id instanceof MavenUniqueSnapshotComponentIdentifier || ((ModuleComponentIdentifier) id).getVersion().endsWith("-SNAPSHOT")) {
+                    return false;
+                }
+                if (!isCacheable(selected, visited)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The state retained for a graph loaded from the cache, which resolves the configuration in full once its artifacts are used.
+     */
+    private class CachedGraphState {
+        private final ConfigurationInternal configuration;
+        private final HashCode cacheKey;
+        private ResolverResults fullResults;
+
+        CachedGraphState(ConfigurationInternal configuration, HashCode cacheKey) {
+            this.configuration = configuration;
+            this.cacheKey = cacheKey;
+        }
+
+        synchronized ResolverResults getFullResults() {
+            if (fullResults == null) {
+                // Resolving the graph again costs more than the cache saves, so do not use the cache for this configuration from now on
+                cache.store(cacheKey, ARTIFACTS_REQUIRED);
+                DefaultResolverResults results = new DefaultResolverResults();
+                delegate.resolveGraph(configuration, results);
+                delegate.resolveArtifacts(configuration, results);
+                fullResults = results;
+            }
+            return fullResults;
+        }
+    }
+
+    private static class DeferredVisitedArtifactSet implements VisitedArtifactSet {
+        private final CachedGraphState state;
+
+        DeferredVisitedArtifactSet(CachedGraphState state) {
+            this.state = state;
+        }
+
+        @Override
+        public SelectedArtifactSet select(Spec<? super Dependency> dependencySpec, AttributeContainerInternal requestedAttributes, Spec<? super ComponentIdentifier> componentSpec, boolean allowNoMatchingVariant, boolean selectFromAllVariants) {
+            return state.getFullResults().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant, selectFromAllVariants);
+        }
+    }
+
+    private static class DeferredResolvedConfiguration implements ResolvedConfiguration {
+        private final CachedGraphState state;
+
+        DeferredResolvedConfiguration(CachedGraphState state) {
+            this.state = state;
+        }
+
+        private ResolvedConfiguration getDelegate() {
+            return state.getFullResults().getResolvedConfiguration();
+        }
+
+        @Override
+        public boolean hasError() {
+            return getDelegate().hasError();
+        }
+
+        @Override
+        public LenientConfiguration getLenientConfiguration() {
+            return getDelegate().getLenientConfiguration();
+        }
+
+        @Override
+        public void rethrowFailure() throws ResolveException {
+            getDelegate().rethrowFailure();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Set<File> getFiles() throws ResolveException {
+            return getDelegate().getFiles();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Set<File> getFiles(Spec<? super Dependency> dependencySpec) throws ResolveException {
+            return getDelegate().getFiles(dependencySpec);
+        }
+
+        @Override
+        public Set<ResolvedDependency> getFirstLevelModuleDependencies() throws ResolveException {
+            return getDelegate().getFirstLevelModuleDependencies();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Set<ResolvedDependency> getFirstLevelModuleDependencies(Spec<? super Dependency> dependencySpec) throws ResolveException {
+            return getDelegate().getFirstLevelModuleDependencies(dependencySpec);
+        }
+
+        @Override
+        public Set<ResolvedArtifact> getResolvedArtifacts() throws ResolveException {
+            return getDelegate().getResolvedArtifacts();
+        }
+    }
+
+    private static class ResolvedModule {
+        private final String repositoryId;
+        private final HashCode descriptorHash;
+
+        ResolvedModule(String repositoryId, HashCode descriptorHash) {
+            this.repositoryId = repositoryId;
+            this.descriptorHash = descriptorHash;
+        }
+    }
+
+    /**
+     * Collects the repository and the metadata descriptor hash of each module in the graph.
+     */
+    private static class ResolvedModulesCollector implements DependencyGraphVisitor {
+        private final Map<ModuleComponentIdentifier, ResolvedModule> modules = new LinkedHashMap<>();
+        private boolean complete = true;
+
+        @Override
+        public void start(RootGraphNode root) {
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            ComponentIdentifier id = node.getOwner().getComponentId();
+            if (!(id instanceof ModuleComponentIdentifier) || modules.containsKey(id)) {
+                return;
+            }
+            ModuleSources sources = node.getOwner().getResolveState().getSources();
+            Optional<RepositoryChainModuleSource> repository = sources.getSource(RepositoryChainModuleSource.class);
+            Optional<ModuleDescriptorHashModuleSource> descriptor = sources.getSource(ModuleDescriptorHashModuleSource.class);
+            if (repository.isPresent() && descriptor.isPresent()) {
+                modules.put((ModuleComponentIdentifier) id, new ResolvedModule(repository.get().getRepositoryId(), descriptor.get().getDescriptorHash()));
+            } else {
+                complete = false;
+            }
+        }
+
+        @Override
+        public void visitSelector(DependencyGraphSelector selector) {
+        }
+
+        @Override
+        public void visitEdges(DependencyGraphNode node) {
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+
+        Map<ModuleComponentIdentifier, ResolvedModule> getModules() {
+            return modules;
+        }
+    }
+
+    private static class RuleInspectionContext implements MetadataResolutionContext {
+        private final CachePolicy cachePolicy;
+
+        RuleInspectionContext(CachePolicy cachePolicy) {
+            this.cachePolicy = cachePolicy;
+        }
+
+        @Override
+        public CachePolicy getCachePolicy() {
+            return cachePolicy;
+        }
+
+        @Override
+        public Instantiator getInjectingInstantiator() {
+            return DirectInstantiator.INSTANCE;
+        }
+    }
+}
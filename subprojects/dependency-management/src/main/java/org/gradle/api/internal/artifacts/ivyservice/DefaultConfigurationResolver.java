@@ -73,6 +73,7 @@
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.work.WorkerLeaseService;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -149,6 +150,13 @@ public void resolveBuildDependencies(ConfigurationInternal configuration, Resolv
 
     @Override
     public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) {
+        resolveGraph(configuration, results, null);
+    }
+
+    /**
+     * Resolves the graph like {@link #resolveGraph(ConfigurationInternal, ResolverResults)}, additionally visiting it with the given visitor.
+     */
+    public void resolveGraph(ConfigurationInternal configuration, ResolverResults results, @Nullable DependencyGraphVisitor additionalVisitor) {
         List<ResolutionAwareRepository> resolutionAwareRepositories = getRepositories();
         StoreSet stores = storeFactory.createStoreSet();
 
@@ -168,7 +176,9 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         DefaultResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder(buildProjectDependencies, resolutionStrategy.getSortOrder());
         FileDependencyCollectingGraphVisitor fileDependencyVisitor = new FileDependencyCollectingGraphVisitor();
         ResolutionFailureCollector failureCollector = new ResolutionFailureCollector(componentSelectorConverter);
-        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
+        DependencyGraphVisitor graphVisitor = additionalVisitor == null
+            ? new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector)
+            : new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector, additionalVisitor);
 
         ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<>();
         visitors.add(oldModelVisitor);
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Serialized dependency graph resolution results, stored in the metadata store of the artifact cache.
+ *
+ * Entries are keyed by a hash of everything the resolution depends on, see {@link CachingConfigurationResolver}.
+ */
+@ThreadSafe
+public class ResolutionResultCache {
+    private final ArtifactCacheLockingManager artifactCacheLockingManager;
+
+    private PersistentIndexedCache<HashCode, byte[]> cache;
+
+    public ResolutionResultCache(ArtifactCacheLockingManager artifactCacheLockingManager) {
+        this.artifactCacheLockingManager = artifactCacheLockingManager;
+    }
+
+    private synchronized PersistentIndexedCache<HashCode, byte[]> getCache() {
+        if (cache == null) {
+            cache = artifactCacheLockingManager.createCache("resolution-results", new HashCodeSerializer(), BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+        }
+        return cache;
+    }
+
+    @Nullable
+    public byte[] load(HashCode key) {
+        return getCache().getIfPresent(key);
+    }
+
+    public void store(HashCode key, byte[] serializedResult) {
+        getCache().put(key, serializedResult);
+    }
+}
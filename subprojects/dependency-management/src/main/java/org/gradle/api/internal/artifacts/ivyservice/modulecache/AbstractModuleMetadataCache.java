@@ -22,6 +22,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 public abstract class AbstractModuleMetadataCache implements ModuleMetadataCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(PersistentModuleMetadataCache.class);
     protected final BuildCommencedTimeProvider timeProvider;
@@ -36,6 +38,14 @@ public CachedMetadata getCachedModuleDescriptor(ModuleComponentRepository reposi
         return get(key);
     }
 
+    /**
+     * Returns the cached metadata of the given module from the repository with the given id, or {@code null} when there is none.
+     */
+    @Nullable
+    public CachedMetadata getCachedModuleDescriptor(String repositoryId, ModuleComponentIdentifier id) {
+        return get(new ModuleComponentAtRepositoryKey(repositoryId, id));
+    }
+
     @Override
     public CachedMetadata cacheMissing(ModuleComponentRepository repository, ModuleComponentIdentifier id) {
         LOGGER.debug("Recording absence of module descriptor in cache: {} [changing = {}]", id, false);
@@ -20,4 +20,9 @@
 
 public interface CapabilitiesResolutionInternal extends CapabilitiesResolution {
     void apply(CapabilitiesConflictHandler.ResolutionDetails details);
+
+    /**
+     * Returns true if any capability resolution rule has been registered.
+     */
+    boolean hasRules();
 }
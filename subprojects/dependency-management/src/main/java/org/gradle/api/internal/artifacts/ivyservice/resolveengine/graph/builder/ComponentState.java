@@ -63,7 +63,8 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private final ModuleVersionIdentifier id;
     private final ComponentMetaDataResolver resolver;
     private final AttributeDesugaring attributeDesugaring;
-    private final List<NodeState> nodes = Lists.newLinkedList();
+    // Most components have a single node
+    private final List<NodeState> nodes = Lists.newArrayListWithCapacity(1);
     private final Long resultId;
     private final ModuleResolveState module;
     private final List<ComponentSelectionDescriptorInternal> selectionCauses = Lists.newArrayList();
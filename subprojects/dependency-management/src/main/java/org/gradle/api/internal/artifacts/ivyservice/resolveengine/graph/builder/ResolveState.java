@@ -188,8 +188,16 @@ public Collection<NodeState> getNodes() {
     }
 
     public NodeState getNode(ComponentState module, VariantGraphResolveMetadata variant, boolean selectedByVariantAwareResolution) {
+        // Look the node up on its component first, which usually has a single node, to avoid creating an identifier for every lookup
+        for (NodeState node : module.getNodes()) {
+            if (node.getResolvedConfigurationId().getConfiguration().equals(variant.getName())) {
+                return node;
+            }
+        }
         ResolvedConfigurationIdentifier id = new ResolvedConfigurationIdentifier(module.getId(), variant.getName());
-        return nodes.computeIfAbsent(id, rci -> new NodeState(idGenerator.generateId(), id, module, this, variant, selectedByVariantAwareResolution));
+        NodeState node = new NodeState(idGenerator.generateId(), id, module, this, variant, selectedByVariantAwareResolution);
+        nodes.put(id, node);
+        return node;
     }
 
     public Collection<SelectorState> getSelectors() {
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.result;
+
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.artifacts.result.ResolvedVariantResult;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency;
+import org.gradle.api.internal.artifacts.result.ResolvedComponentResultInternal;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.Serializer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A serializer for a complete {@link ResolutionResult}, that is not thread-safe and not reusable.
+ *
+ * <p>Only results without unresolved dependencies can be written.</p>
+ */
+@NotThreadSafe
+public class ResolutionResultSerializer implements Serializer<ResolutionResult> {
+    private final AttributeContainerSerializer attributeContainerSerializer;
+    private final ResolvedVariantResultSerializer resolvedVariantResultSerializer;
+    private final ComponentResultSerializer componentResultSerializer;
+    private final ComponentSelectorSerializer componentSelectorSerializer;
+
+    public ResolutionResultSerializer(
+        ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+        AttributeContainerSerializer attributeContainerSerializer,
+        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory
+    ) {
+        ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+        this.attributeContainerSerializer = attributeContainerSerializer;
+        this.resolvedVariantResultSerializer = new ResolvedVariantResultSerializer(componentIdentifierSerializer, attributeContainerSerializer);
+        this.componentResultSerializer = new ComponentResultSerializer(moduleIdentifierFactory, resolvedVariantResultSerializer, componentSelectionDescriptorFactory, componentIdentifierSerializer, true);
+        this.componentSelectorSerializer = new ComponentSelectorSerializer(attributeContainerSerializer);
+    }
+
+    @Override
+    public ResolutionResult read(Decoder decoder) throws Exception {
+        DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
+        builder.setRequestedAttributes(attributeContainerSerializer.read(decoder));
+        int componentCount = decoder.readSmallInt();
+        for (int i = 0; i < componentCount; i++) {
+            builder.visitComponent(componentResultSerializer.read(decoder));
+        }
+        for (long componentId = 0; componentId < componentCount; componentId++) {
+            int dependencyCount = decoder.readSmallInt();
+            List<ResolvedGraphDependency> dependencies = new ArrayList<>(dependencyCount);
+            for (int i = 0; i < dependencyCount; i++) {
+                ComponentSelector requested = componentSelectorSerializer.read(decoder);
+                boolean constraint = decoder.readBoolean();
+                ResolvedVariantResult fromVariant = resolvedVariantResultSerializer.read(decoder);
+                long selected = decoder.readSmallLong();
+                ResolvedVariantResult selectedVariant = resolvedVariantResultSerializer.read(decoder);
+                dependencies.add(new DetachedResolvedGraphDependency(requested, selected, null, null, constraint, fromVariant, selectedVariant));
+            }
+            builder.visitOutgoingEdges(componentId, dependencies);
+        }
+        return builder.complete(0L);
+    }
+
+    @Override
+    public void write(Encoder encoder, ResolutionResult value) throws Exception {
+        attributeContainerSerializer.write(encoder, value.getRequestedAttributes());
+
+        // Number the components in breadth first order, so that the root is always component 0
+        List<ResolvedComponentResult> components = new ArrayList<>();
+        Map<ResolvedComponentResult, Long> componentIds = new IdentityHashMap<>();
+        components.add(value.getRoot());
+        componentIds.put(value.getRoot(), 0L);
+        for (int i = 0; i < components.size(); i++) {
+            for (DependencyResult dependency : components.get(i).getDependencies()) {
+                if (!(dependency instanceof ResolvedDependencyResult)) {
+                    throw new IllegalArgumentException("Cannot serialize unresolved dependency " + dependency + ".");
+                }
+                ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+                if (!componentIds.containsKey(selected)) {
+                    componentIds.put(selected, (long) components.size());
+                    components.add(selected);
+                }
+            }
+        }
+
+        encoder.writeSmallInt(components.size());
+        for (ResolvedComponentResult component : components) {
+            ResolvedComponentResultInternal internalComponent = (ResolvedComponentResultInternal) component;
+            componentResultSerializer.write(encoder, new DetachedComponentResult(
+                componentIds.get(component),
+                component.getModuleVersion(),
+                component.getSelectionReason(),
+                component.getId(),
+                component.getVariants(),
+                internalComponent.getAllVariants(),
+                internalComponent.getRepositoryName()
+            ));
+        }
+        for (ResolvedComponentResult component : components) {
+            Map<DependencyResult, ResolvedVariantResult> fromVariants = new IdentityHashMap<>();
+            for (ResolvedVariantResult variant : component.getVariants()) {
+                for (DependencyResult dependency : component.getDependenciesForVariant(variant)) {
+                    fromVariants.put(dependency, variant);
+                }
+            }
+            Set<? extends DependencyResult> dependencies = component.getDependencies();
+            encoder.writeSmallInt(dependencies.size());
+            for (DependencyResult dependency : dependencies) {
+                ResolvedDependencyResult resolvedDependency = (ResolvedDependencyResult) dependency;
+                componentSelectorSerializer.write(encoder, resolvedDependency.getRequested());
+                encoder.writeBoolean(resolvedDependency.isConstraint());
+                resolvedVariantResultSerializer.write(encoder, fromVariants.get(dependency));
+                encoder.writeSmallLong(componentIds.get(resolvedDependency.getSelected()));
+                resolvedVariantResultSerializer.write(encoder, resolvedDependency.getResolvedVariant());
+            }
+        }
+    }
+}
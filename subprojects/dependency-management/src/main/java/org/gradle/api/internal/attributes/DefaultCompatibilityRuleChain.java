@@ -28,6 +28,7 @@
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.model.internal.type.ModelType;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -80,6 +81,13 @@ public boolean doesSomething() {
         return !rules.isEmpty();
     }
 
+    /**
+     * Returns the rules of this chain, in the order they are applied.
+     */
+    public List<Action<? super CompatibilityCheckDetails<T>>> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
     private static class ExceptionHandler<T> implements InstantiatingAction.ExceptionHandler<CompatibilityCheckDetails<T>> {
 
         private final Class<? extends AttributeCompatibilityRule<T>> rule;
@@ -31,6 +31,7 @@
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.model.internal.type.ModelType;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
@@ -84,6 +85,13 @@ public boolean doesSomething() {
         return !rules.isEmpty();
     }
 
+    /**
+     * Returns the rules of this chain, in the order they are applied.
+     */
+    public List<Action<? super MultipleCandidatesDetails<T>>> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
     private static class ExceptionHandler<T> implements InstantiatingAction.ExceptionHandler<MultipleCandidatesDetails<T>> {
 
         private final Class<? extends AttributeDisambiguationRule<T>> rule;
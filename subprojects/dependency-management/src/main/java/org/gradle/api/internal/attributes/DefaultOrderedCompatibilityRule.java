@@ -29,6 +29,14 @@ public DefaultOrderedCompatibilityRule(Comparator<? super T> comparator, boolean
         this.reverse = reverse;
     }
 
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
     @Override
     public void execute(CompatibilityCheckDetails<T> details) {
         T consumerValue = details.getConsumerValue();
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.ConfigurationPublications
+import org.gradle.api.artifacts.DependencyConstraintSet
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ResolvedConfiguration
+import org.gradle.api.artifacts.ResolvedDependency
+import org.gradle.api.artifacts.result.ResolvedVariantResult
+import org.gradle.api.attributes.Attribute
+import org.gradle.api.internal.artifacts.ComponentMetadataProcessor
+import org.gradle.api.internal.artifacts.ComponentMetadataProcessorFactory
+import org.gradle.api.internal.artifacts.ComponentModuleMetadataProcessor
+import org.gradle.api.internal.artifacts.ComponentSelectionRulesInternal
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.DefaultResolverResults
+import org.gradle.api.internal.artifacts.DependencyManagementTestUtil
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.Module
+import org.gradle.api.internal.artifacts.ResolverResults
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDependency
+import org.gradle.api.internal.artifacts.dependencies.DefaultImmutableVersionConstraint
+import org.gradle.api.internal.artifacts.dsl.ComponentMetadataHandlerInternal
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleDescriptorHashModuleSource
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryChainModuleSource
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.AbstractModuleMetadataCache
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleMetadataCache
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionReasons
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultResolutionResultBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DesugaredAttributeContainerSerializer
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DetachedComponentResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DetachedResolvedGraphDependency
+import org.gradle.api.internal.artifacts.repositories.ContentFilteringRepository
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository
+import org.gradle.api.internal.artifacts.repositories.descriptor.MavenRepositoryDescriptor
+import org.gradle.api.internal.artifacts.result.DefaultResolvedVariantResult
+import org.gradle.api.internal.attributes.DefaultAttributesSchema
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.internal.Actions
+import org.gradle.internal.Describables
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.external.model.ImmutableCapability
+import org.gradle.internal.component.external.model.VariantDerivationStrategy
+import org.gradle.internal.component.model.ComponentAttributeMatcher
+import org.gradle.internal.component.model.ComponentGraphResolveState
+import org.gradle.internal.component.model.ImmutableModuleSources
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.util.AttributeTestUtil
+import org.gradle.util.SnapshotTestUtil
+import org.gradle.util.TestUtil
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+
+class CachingConfigurationResolverTest extends Specification {
+    def delegate = Mock(DefaultConfigurationResolver)
+    def entries = [:]
+    def cache = Stub(ResolutionResultCache) {
+        load(_) >> { HashCode key -> entries[key] }
+        store(_, _) >> { HashCode key, byte[] value -> entries[key] = value }
+    }
+    def metadataRules = false
+    def metadataProcessor = Stub(ComponentMetadataProcessor) {
+        hasRules() >> { metadataRules }
+    }
+    def metadataHandler = Stub(GlobalDependencyResolutionRules) {
+        getModuleMetadataProcessor() >> ComponentModuleMetadataProcessor.NO_OP
+        getComponentMetadataProcessorFactory() >> ({ context -> metadataProcessor } as ComponentMetadataProcessorFactory)
+    }
+    def schema = new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory(), SnapshotTestUtil.isolatableFactory())
+    def descriptorHash = Hashing.hashString("descriptor")
+    def moduleMetadataCache = Stub(AbstractModuleMetadataCache) {
+        getCachedModuleDescriptor("repo", _ as DefaultModuleComponentIdentifier) >> {
+            Stub(ModuleMetadataCache.CachedMetadata) {
+                getModuleSources() >> ImmutableModuleSources.of(new ModuleDescriptorHashModuleSource(descriptorHash, false))
+            }
+        }
+    }
+    def resolver = new CachingConfigurationResolver(
+        delegate,
+        cache,
+        metadataHandler,
+        Stub(ComponentMetadataHandlerInternal) {
+            getVariantDerivationStrategy() >> Stub(VariantDerivationStrategy)
+        },
+        new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser()),
+        DependencyVerificationOverride.NO_VERIFICATION,
+        { Hashing.hashString("build logic") },
+        false,
+        new DefaultImmutableModuleIdentifierFactory(),
+        new DesugaredAttributeContainerSerializer(AttributeTestUtil.attributesFactory(), TestUtil.objectInstantiator()),
+        DependencyManagementTestUtil.componentSelectionDescriptorFactory(),
+        schema,
+        moduleMetadataCache
+    )
+
+    def repositoryUrl = "https://repo.example.com/maven"
+    def dependencies = [new DefaultExternalModuleDependency("org", "a", "1.0")]
+    def configuration = Stub(ConfigurationInternal) {
+        getName() >> "conf"
+        getDisplayName() >> "configuration 'conf'"
+        getConsistentResolutionSource() >> null
+        getModule() >> Stub(Module) {
+            getName() >> "root"
+            getProjectId() >> null
+        }
+        getResolutionStrategy() >> Stub(ResolutionStrategyInternal) {
+            getDependencySubstitutionRule() >> Actions.doNothing()
+            getComponentSelection() >> Stub(ComponentSelectionRulesInternal)
+            getConflictResolution() >> ConflictResolution.latest
+        }
+        getAttributes() >> ImmutableAttributes.EMPTY
+        getOutgoing() >> Stub(ConfigurationPublications)
+        getAllDependencies() >> Stub(DependencySet) {
+            iterator() >> { dependencies.iterator() }
+        }
+        getAllDependencyConstraints() >> Stub(DependencyConstraintSet) {
+            iterator() >> { [].iterator() }
+        }
+    }
+
+    def setup() {
+        _ * delegate.repositories >> { [repository(repositoryUrl)] }
+        _ * delegate.resolveGraph(configuration, _, _) >> { ConfigurationInternal configuration, ResolverResults resolverResults, DependencyGraphVisitor visitor -> resolveGraph(resolverResults, visitor) }
+    }
+
+    def "resolves the graph when it is not cached"() {
+        def results = new DefaultResolverResults()
+
+        when:
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        1 * delegate.resolveGraph(configuration, results, _) >> { ConfigurationInternal configuration, ResolverResults resolverResults, DependencyGraphVisitor visitor -> resolveGraph(resolverResults, visitor) }
+        0 * delegate.resolveGraph(_, _)
+        entries.size() == 1
+        dependenciesOf(results) == ["org:a:1.0"]
+    }
+
+    def "reuses the cached graph of an unchanged configuration"() {
+        given:
+        resolveAndCache()
+        def results = new DefaultResolverResults()
+
+        when:
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        0 * delegate.resolveGraph(*_)
+        dependenciesOf(results) == ["org:a:1.0"]
+    }
+
+    def "does not reuse the cached graph when #change"() {
+        given:
+        resolveAndCache()
+        applyChange(change)
+        def results = new DefaultResolverResults()
+
+        when:
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        1 * delegate.resolveGraph(configuration, results, _) >> { ConfigurationInternal configuration, ResolverResults resolverResults, DependencyGraphVisitor visitor -> resolveGraph(resolverResults, visitor) }
+        entries.size() == 2
+
+        where:
+        change << ["a dependency is added", "the version of a dependency changes", "the repository changes", "an attribute is added to the schema", "an attribute matching rule is added"]
+    }
+
+    def "does not cache the graph when component metadata rules are registered"() {
+        given:
+        metadataRules = true
+        def results = new DefaultResolverResults()
+
+        when:
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        1 * delegate.resolveGraph(configuration, results)
+        0 * delegate.resolveGraph(_, _, _)
+        entries.isEmpty()
+    }
+
+    def "does not reuse the cached graph when the metadata of a module has changed"() {
+        given:
+        resolveAndCache()
+        descriptorHash = Hashing.hashString("changed descriptor")
+        def results = new DefaultResolverResults()
+
+        when:
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        1 * delegate.resolveGraph(configuration, results, _) >> { ConfigurationInternal configuration, ResolverResults resolverResults, DependencyGraphVisitor visitor -> resolveGraph(resolverResults, visitor) }
+        dependenciesOf(results) == ["org:a:1.0"]
+    }
+
+    def "resolves the configuration in full and stops using the cache once the artifacts of a cached graph are used"() {
+        given:
+        resolveAndCache()
+        def results = new DefaultResolverResults()
+        def firstLevelDependencies = [Stub(ResolvedDependency)] as Set
+
+        when:
+        resolver.resolveGraph(configuration, results)
+        resolver.resolveArtifacts(configuration, results)
+
+        then:
+        0 * delegate.resolveGraph(*_)
+        0 * delegate.resolveArtifacts(*_)
+
+        when:
+        def resolved = results.resolvedConfiguration.firstLevelModuleDependencies
+
+        then:
+        1 * delegate.resolveGraph(configuration, _ as ResolverResults) >> { ConfigurationInternal configuration, ResolverResults resolverResults -> resolveGraph(resolverResults, null) }
+        1 * delegate.resolveArtifacts(configuration, _ as ResolverResults) >> { ConfigurationInternal configuration, ResolverResults resolverResults ->
+            resolverResults.artifactsResolved(Stub(ResolvedConfiguration) { getFirstLevelModuleDependencies() >> firstLevelDependencies }, Stub(VisitedArtifactSet))
+        }
+        resolved == firstLevelDependencies
+
+        when:
+        def nextResults = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, nextResults)
+
+        then:
+        1 * delegate.resolveGraph(configuration, nextResults)
+        0 * delegate.resolveGraph(_, _, _)
+    }
+
+    private void resolveAndCache() {
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+        assert entries.size() == 1
+    }
+
+    private void applyChange(String change) {
+        switch (change) {
+            case "a dependency is added":
+                dependencies << new DefaultExternalModuleDependency("org", "b", "1.0")
+                break
+            case "the version of a dependency changes":
+                dependencies = [new DefaultExternalModuleDependency("org", "a", "1.1")]
+                break
+            case "the repository changes":
+                repositoryUrl = "https://other.example.com/maven"
+                break
+            case "an attribute is added to the schema":
+                schema.attribute(Attribute.of("usage", String))
+                break
+            case "an attribute matching rule is added":
+                schema.attribute(Attribute.of("usage", String)).compatibilityRules.ordered(Comparator.naturalOrder())
+                break
+            default:
+                throw new IllegalArgumentException(change)
+        }
+    }
+
+    private static List<String> dependenciesOf(ResolverResults results) {
+        results.resolutionResult.root.dependencies.collect { it.selected.moduleVersion.toString() }
+    }
+
+    /**
+     * Resolves the graph root -> org:a:1.0, as resolved from the repository 'repo'.
+     */
+    private void resolveGraph(ResolverResults results, DependencyGraphVisitor visitor) {
+        def root = variant("root")
+        def a = variant("a")
+        def builder = new DefaultResolutionResultBuilder()
+        builder.setRequestedAttributes(ImmutableAttributes.EMPTY)
+        builder.visitComponent(new DetachedComponentResult(1L, newId("org", "root", "1.0"), ComponentSelectionReasons.root(), root.owner, [root], [root], null))
+        builder.visitComponent(new DetachedComponentResult(2L, newId("org", "a", "1.0"), ComponentSelectionReasons.requested(), a.owner, [a], [a], "repo"))
+        def selector = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", "a"), DefaultImmutableVersionConstraint.of("1.0"))
+        builder.visitOutgoingEdges(1L, [new DetachedResolvedGraphDependency(selector, 2L, ComponentSelectionReasons.requested(), null, false, root, a)])
+        builder.visitOutgoingEdges(2L, [])
+        results.graphResolved(builder.complete(1L), Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet))
+
+        if (visitor != null) {
+            def sources = ImmutableModuleSources.of(
+                new RepositoryChainModuleSource(Stub(ModuleComponentRepository) { getId() >> "repo" }),
+                new ModuleDescriptorHashModuleSource(descriptorHash, false)
+            )
+            visitor.visitNode(Stub(DependencyGraphNode) {
+                getOwner() >> Stub(DependencyGraphComponent) {
+                    getComponentId() >> a.owner
+                    getResolveState() >> Stub(ComponentGraphResolveState) {
+                        getSources() >> sources
+                    }
+                }
+            })
+        }
+    }
+
+    private static ResolvedVariantResult variant(String module) {
+        def componentId = new DefaultModuleComponentIdentifier(DefaultModuleIdentifier.newId("org", module), "1.0")
+        new DefaultResolvedVariantResult(componentId, Describables.of("runtime"), ImmutableAttributes.EMPTY, [new ImmutableCapability("org", module, "1.0")], null)
+    }
+
+    private ResolutionAwareRepository repository(String url) {
+        def descriptor = new MavenRepositoryDescriptor.Builder("maven", new URI(url))
+            .setMetadataSources(["mavenPom"])
+            .setAuthenticated(false)
+            .setAuthenticationSchemes([])
+            .setArtifactUrls([])
+            .create()
+        Stub(TestRepository) {
+            getContentFilter() >> Actions.doNothing()
+            getDescriptor() >> descriptor
+        }
+    }
+
+    interface TestRepository extends ResolutionAwareRepository, ContentFilteringRepository {
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.result
+
+import org.gradle.api.artifacts.result.ResolvedVariantResult
+import org.gradle.api.attributes.Attribute
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.DependencyManagementTestUtil
+import org.gradle.api.internal.artifacts.dependencies.DefaultImmutableVersionConstraint
+import org.gradle.api.internal.artifacts.result.DefaultResolvedVariantResult
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.internal.Describables
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.external.model.ImmutableCapability
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.serialize.SerializerSpec
+import org.gradle.util.AttributeTestUtil
+import org.gradle.util.TestUtil
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultPrinter.printGraph
+
+class ResolutionResultSerializerTest extends SerializerSpec {
+
+    def serializer = new ResolutionResultSerializer(
+        new DefaultImmutableModuleIdentifierFactory(),
+        new DesugaredAttributeContainerSerializer(AttributeTestUtil.attributesFactory(), TestUtil.objectInstantiator()),
+        DependencyManagementTestUtil.componentSelectionDescriptorFactory()
+    )
+
+    def builder = new DefaultResolutionResultBuilder()
+    def variants = [:]
+
+    def "serializes graph"() {
+        given:
+        def attributes = AttributeTestUtil.attributesFactory().mutable()
+        attributes.attribute(Attribute.of('usage', String), 'java-runtime')
+        builder.setRequestedAttributes(attributes.asImmutable())
+        component(1L, "root", "default")
+        component(2L, "a", "runtime")
+        component(3L, "b", "runtime")
+        builder.visitOutgoingEdges(1L, [dep("root", "a", 2L), dep("root", "b", 3L)])
+        builder.visitOutgoingEdges(2L, [dep("a", "b", 3L, true)])
+        builder.visitOutgoingEdges(3L, [])
+        def original = builder.complete(1L)
+
+        when:
+        def result = serialize(original, serializer)
+
+        then:
+        printGraph(result.root) == printGraph(original.root)
+        result.requestedAttributes == attributes.asImmutable()
+        result.allComponents*.id as Set == original.allComponents*.id as Set
+
+        def a = result.root.dependencies.find { it.selected.moduleVersion.name == 'a' }
+        def b = result.root.dependencies.find { it.selected.moduleVersion.name == 'b' }
+        a.selected.variants*.displayName == ['runtime']
+        a.resolvedVariant.is(a.selected.variants[0])
+        a.selected.getDependenciesForVariant(a.selected.variants[0])*.requested == [selector("b")]
+        a.selected.dependencies.every { it.constraint }
+        a.selected.dependencies*.selected == [b.selected]
+        b.selected.dependents*.from as Set == [result.root, a.selected] as Set
+        result.root.getDependenciesForVariant(result.root.variants[0]).size() == 2
+    }
+
+    def "cannot serialize graph with unresolved dependencies"() {
+        given:
+        component(1L, "root", "default")
+        builder.visitOutgoingEdges(1L, [new DetachedResolvedGraphDependency(selector("a"), null, ComponentSelectionReasons.requested(), new ModuleVersionResolveException(selector("a"), new RuntimeException("broken")), false, variants["root"], null)])
+        def original = builder.complete(1L)
+
+        when:
+        toBytes(original, serializer)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private void component(long id, String module, String variantName) {
+        def componentId = new DefaultModuleComponentIdentifier(DefaultModuleIdentifier.newId("org", module), "1.0")
+        ResolvedVariantResult variant = new DefaultResolvedVariantResult(componentId, Describables.of(variantName), ImmutableAttributes.EMPTY, [new ImmutableCapability("org", module, "1.0")], null)
+        variants[module] = variant
+        builder.visitComponent(new DetachedComponentResult(id, newId("org", module, "1.0"), ComponentSelectionReasons.requested(), componentId, [variant], [variant], "repo"))
+    }
+
+    private DetachedResolvedGraphDependency dep(String from, String to, long selected, boolean constraint = false) {
+        new DetachedResolvedGraphDependency(selector(to), selected, ComponentSelectionReasons.requested(), null, constraint, variants[from], variants[to])
+    }
+
+    private static DefaultModuleComponentSelector selector(String module) {
+        DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", module), DefaultImmutableVersionConstraint.of("1.0"))
+    }
+}
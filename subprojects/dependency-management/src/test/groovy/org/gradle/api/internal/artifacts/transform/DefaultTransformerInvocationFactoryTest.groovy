@@ -97,7 +97,8 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
 
     def dependencyFingerprinter = new AbsolutePathFileCollectionFingerprinter(DirectorySensitivity.DEFAULT, fileCollectionSnapshotter, FileSystemLocationSnapshotHasher.DEFAULT)
     def fileCollectionFingerprinterRegistry = new DefaultFileCollectionFingerprinterRegistry([FingerprinterRegistration.registration(DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, dependencyFingerprinter)])
-    def inputFingerprinter = new DefaultInputFingerprinter(fileCollectionSnapshotter, fileCollectionFingerprinterRegistry, valueSnapshotter)
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def inputFingerprinter = new DefaultInputFingerprinter(fileCollectionSnapshotter, fileCollectionFingerprinterRegistry, valueSnapshotter, buildOperationExecutor)
 
     def projectServiceRegistry = Stub(ServiceRegistry) {
         get(TransformationWorkspaceServices) >> new TestTransformationWorkspaceServices(mutableTransformsStoreDirectory, executionHistoryStore)
@@ -117,8 +118,6 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
         getFiles() >> Optional.empty()
     }
 
-    def buildOperationExecutor = new TestBuildOperationExecutor()
-
     def buildCacheController = Stub(BuildCacheController)
     def buildInvocationScopeId = new BuildInvocationScopeId(UniqueId.generate())
     def cancellationToken = new DefaultBuildCancellationToken()
@@ -128,7 +127,7 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
     }
     def workInputListeners = Stub(WorkInputListeners)
     def buildOutputCleanupRegistry = Mock(BuildOutputCleanupRegistry)
-    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter)
+    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter, buildOperationExecutor)
     def deleter = TestFiles.deleter()
     def validationWarningRecorder = Mock(ValidateStep.ValidationWarningRecorder)
     def executionEngine = new ExecutionGradleServices().createExecutionEngine(
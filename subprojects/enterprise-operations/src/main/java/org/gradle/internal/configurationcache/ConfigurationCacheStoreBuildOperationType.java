@@ -29,6 +29,22 @@ public interface Details {
     }
 
     public interface Result {
+
+        /**
+         * The number of bytes written to the configuration cache state files, as stored on disk.
+         *
+         * @since 8.1
+         */
+        long getCompressedSize();
+
+        /**
+         * The number of bytes written to the configuration cache state files, before compression.
+         * Same as {@link #getCompressedSize()} when the state files are not compressed.
+         *
+         * @since 8.1
+         */
+        long getUncompressedSize();
+
     }
 
 }
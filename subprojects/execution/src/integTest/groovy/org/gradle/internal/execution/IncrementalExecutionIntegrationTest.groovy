@@ -103,12 +103,12 @@ class IncrementalExecutionIntegrationTest extends Specification implements Valid
     def outputFilesRepository = Stub(OutputFilesRepository) {
         isGeneratedByGradle() >> true
     }
-    def outputSnapshotter = new DefaultOutputSnapshotter(snapshotter)
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def outputSnapshotter = new DefaultOutputSnapshotter(snapshotter, buildOperationExecutor)
     def fingerprinterRegistry = new DefaultFileCollectionFingerprinterRegistry([FingerprinterRegistration.registration(DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, fingerprinter)])
     def valueSnapshotter = new DefaultValueSnapshotter([], classloaderHierarchyHasher)
-    def inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter)
+    def inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor)
     def buildCacheController = Mock(BuildCacheController)
-    def buildOperationExecutor = new TestBuildOperationExecutor()
     def validationWarningReporter = Mock(ValidateStep.ValidationWarningRecorder)
 
     final outputFile = temporaryFolder.file("output-file")
@@ -19,6 +19,8 @@
 import org.gradle.api.file.FileCollection;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 /**
  * Service for snapshotting {@link FileCollection}s.
  */
@@ -36,4 +38,11 @@ interface Result {
      * Snapshot the roots of a file collection.
      */
     Result snapshot(FileCollection fileCollection);
+
+    /**
+     * Resolves the roots of a file collection, and returns a supplier which snapshots them.
+     *
+     * Only resolving the roots accesses the file collection, so the returned supplier can be called from any thread.
+     */
+    Supplier<Result> resolveRoots(FileCollection fileCollection);
 }
@@ -16,11 +16,20 @@
 
 package org.gradle.internal.execution.history;
 
+import java.time.Duration;
 import java.util.Optional;
 
 public interface ExecutionHistoryStore {
     Optional<PreviousExecutionState> load(String key);
 
+    /**
+     * Returns how long the work took the last time it actually executed, without loading the whole previous execution state.
+     * Executions which reused their outputs, e.g. by loading them from the build cache, are not taken into account.
+     */
+    default Optional<Duration> loadExecutionTime(String key) {
+        return Optional.empty();
+    }
+
     void store(
         String key,
         boolean successful,
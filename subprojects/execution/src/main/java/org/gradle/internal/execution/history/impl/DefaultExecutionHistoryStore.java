@@ -28,8 +28,15 @@
 import org.gradle.internal.execution.history.PreviousExecutionState;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.impl.IgnoredPathFileSystemLocationFingerprint;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.BaseSerializerFactory;
 
+import java.time.Duration;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -37,8 +44,16 @@
 import static com.google.common.collect.Maps.transformValues;
 
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
+    /**
+     * Smaller fingerprints are stored inline, since looking them up would cost more than storing them again.
+     */
+    private static final int MIN_SHARED_FINGERPRINT_SIZE = 16;
 
+    private final PersistentCache persistentCache;
     private final PersistentIndexedCache<String, PreviousExecutionState> store;
+    private final PersistentIndexedCache<String, Long> executionTimes;
+    private final PersistentIndexedCache<HashCode, FileCollectionFingerprint> sharedFingerprints;
+    private final PersistentIndexedCache<HashCode, Integer> sharedFingerprintReferences;
 
     public DefaultExecutionHistoryStore(
         Supplier<PersistentCache> cache,
@@ -46,27 +61,75 @@ public DefaultExecutionHistoryStore(
         Interner<String> stringInterner,
         ClassLoaderHierarchyHasher classLoaderHasher
     ) {
+        FileCollectionFingerprintSerializer fingerprintSerializer = new FileCollectionFingerprintSerializer(stringInterner);
         DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
-            new FileCollectionFingerprintSerializer(stringInterner),
+            fingerprintSerializer,
             new FileSystemSnapshotSerializer(stringInterner),
             classLoaderHasher
         );
 
         CacheDecorator inMemoryCacheDecorator = inMemoryCacheDecoratorFactory.decorator(10000, false);
-        this.store = cache.get().createCache(
+        this.persistentCache = cache.get();
+        this.store = persistentCache.createCache(
             PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
             .withCacheDecorator(inMemoryCacheDecorator)
         );
+        // Execution times are kept separately, so they can be looked up for all the work in a plan without deserializing the whole execution state
+        this.executionTimes = persistentCache.createCache(
+            PersistentIndexedCacheParameters.of("executionTimes", String.class, BaseSerializerFactory.LONG_SERIALIZER)
+            .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, false))
+        );
+        // Large fingerprints, like the ones of a classpath used by many tasks, are stored once by their content hash
+        this.sharedFingerprints = persistentCache.createCache(
+            PersistentIndexedCacheParameters.of("sharedFileCollectionFingerprints", HashCode.class, fingerprintSerializer)
+            .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, false))
+        );
+        this.sharedFingerprintReferences = persistentCache.createCache(
+            PersistentIndexedCacheParameters.of("sharedFileCollectionFingerprintReferences", HashCode.class, BaseSerializerFactory.INTEGER_SERIALIZER)
+            .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, false))
+        );
     }
 
     @Override
     public Optional<PreviousExecutionState> load(String key) {
-        return Optional.ofNullable(store.getIfPresent(key));
+        PreviousExecutionState storedState = store.getIfPresent(key);
+        if (storedState == null) {
+            return Optional.empty();
+        }
+        return resolveSharedFingerprints(storedState);
+    }
+
+    @Override
+    public Optional<Duration> loadExecutionTime(String key) {
+        return Optional.ofNullable(executionTimes.getIfPresent(key)).map(Duration::ofMillis);
     }
 
     @Override
     public void store(String key, boolean successful, AfterExecutionState executionState) {
-        store.put(key, new DefaultPreviousExecutionState(
+        store(key, toPreviousExecutionState(successful, executionState), !executionState.isReused());
+    }
+
+    /**
+     * Stores the given state. The execution time is only recorded when the work actually {@code executed}, and not when its outputs were reused, e.g. loaded from the build cache.
+     *
+     * The reference counts of shared fingerprints are updated while holding the cache lock, as the history may be shared with other processes.
+     */
+    void store(String key, PreviousExecutionState previousExecutionState, boolean executed) {
+        persistentCache.useCache(() -> {
+            PreviousExecutionState replacedState = store.getIfPresent(key);
+            // Add the new references before releasing the old ones, so that fingerprints which did not change are kept
+            store.put(key, shareLargeFingerprints(previousExecutionState));
+            if (executed) {
+                executionTimes.put(key, previousExecutionState.getOriginMetadata().getExecutionTime().toMillis());
+            }
+            if (replacedState != null) {
+                releaseSharedFingerprints(replacedState);
+            }
+        });
+    }
+
+    static PreviousExecutionState toPreviousExecutionState(boolean successful, AfterExecutionState executionState) {
+        return new DefaultPreviousExecutionState(
             executionState.getOriginMetadata(),
             executionState.getImplementation(),
             executionState.getAdditionalImplementations(),
@@ -74,12 +137,102 @@ public void store(String key, boolean successful, AfterExecutionState executionS
             prepareForSerialization(executionState.getInputFileProperties()),
             executionState.getOutputFilesProducedByWork(),
             successful
-        ));
+        );
     }
 
     @Override
     public void remove(String key) {
-        store.remove(key);
+        persistentCache.useCache(() -> {
+            PreviousExecutionState removedState = store.getIfPresent(key);
+            store.remove(key);
+            executionTimes.remove(key);
+            if (removedState != null) {
+                releaseSharedFingerprints(removedState);
+            }
+        });
+    }
+
+    private PreviousExecutionState shareLargeFingerprints(PreviousExecutionState state) {
+        ImmutableSortedMap.Builder<String, FileCollectionFingerprint> storedFingerprints = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, FileCollectionFingerprint> entry : state.getInputFileProperties().entrySet()) {
+            FileCollectionFingerprint fingerprint = entry.getValue();
+            if (fingerprint.getFingerprints().size() >= MIN_SHARED_FINGERPRINT_SIZE) {
+                HashCode contentHash = hashContent(fingerprint);
+                Integer referenceCount = sharedFingerprintReferences.getIfPresent(contentHash);
+                if (referenceCount == null) {
+                    sharedFingerprints.put(contentHash, fingerprint);
+                    referenceCount = 0;
+                }
+                sharedFingerprintReferences.put(contentHash, referenceCount + 1);
+                fingerprint = new FileCollectionFingerprintReference(contentHash);
+            }
+            storedFingerprints.put(entry.getKey(), fingerprint);
+        }
+        return withInputFileProperties(state, storedFingerprints.build());
+    }
+
+    private void releaseSharedFingerprints(PreviousExecutionState storedState) {
+        for (FileCollectionFingerprint fingerprint : storedState.getInputFileProperties().values()) {
+            if (fingerprint instanceof FileCollectionFingerprintReference) {
+                HashCode contentHash = ((FileCollectionFingerprintReference) fingerprint).getContentHash();
+                Integer referenceCount = sharedFingerprintReferences.getIfPresent(contentHash);
+                if (referenceCount == null || referenceCount <= 1) {
+                    sharedFingerprintReferences.remove(contentHash);
+                    sharedFingerprints.remove(contentHash);
+                } else {
+                    sharedFingerprintReferences.put(contentHash, referenceCount - 1);
+                }
+            }
+        }
+    }
+
+    private Optional<PreviousExecutionState> resolveSharedFingerprints(PreviousExecutionState storedState) {
+        ImmutableSortedMap<String, FileCollectionFingerprint> storedFingerprints = storedState.getInputFileProperties();
+        if (storedFingerprints.values().stream().noneMatch(FileCollectionFingerprintReference.class::isInstance)) {
+            return Optional.of(storedState);
+        }
+        ImmutableSortedMap.Builder<String, FileCollectionFingerprint> resolvedFingerprints = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, FileCollectionFingerprint> entry : storedFingerprints.entrySet()) {
+            FileCollectionFingerprint fingerprint = entry.getValue();
+            if (fingerprint instanceof FileCollectionFingerprintReference) {
+                fingerprint = sharedFingerprints.getIfPresent(((FileCollectionFingerprintReference) fingerprint).getContentHash());
+                if (fingerprint == null) {
+                    // The shared fingerprint has been removed, for example by another process, so the history of this work is incomplete
+                    return Optional.empty();
+                }
+            }
+            resolvedFingerprints.put(entry.getKey(), fingerprint);
+        }
+        return Optional.of(withInputFileProperties(storedState, resolvedFingerprints.build()));
+    }
+
+    private static PreviousExecutionState withInputFileProperties(PreviousExecutionState state, ImmutableSortedMap<String, FileCollectionFingerprint> inputFileProperties) {
+        return new DefaultPreviousExecutionState(
+            state.getOriginMetadata(),
+            state.getImplementation(),
+            state.getAdditionalImplementations(),
+            state.getInputProperties(),
+            inputFileProperties,
+            state.getOutputFilesProducedByWork(),
+            state.isSuccessful()
+        );
+    }
+
+    private static HashCode hashContent(FileCollectionFingerprint fingerprint) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putInt(fingerprint.getFingerprints().size());
+        fingerprint.getFingerprints().forEach((absolutePath, locationFingerprint) -> {
+            hasher.putString(absolutePath);
+            hasher.putBoolean(locationFingerprint instanceof IgnoredPathFileSystemLocationFingerprint);
+            hasher.put(locationFingerprint);
+        });
+        hasher.putInt(fingerprint.getRootHashes().size());
+        fingerprint.getRootHashes().forEach((absolutePath, rootHash) -> {
+            hasher.putString(absolutePath);
+            hasher.putHash(rootHash);
+        });
+        hasher.putHash(((SerializableFileCollectionFingerprint) fingerprint).getStrategyConfigurationHash());
+        return hasher.hash();
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
@@ -26,6 +26,7 @@
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshot;
@@ -37,6 +38,10 @@
 import java.util.Map;
 
 public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<PreviousExecutionState> {
+    private static final byte INLINE_FINGERPRINT = 1;
+    private static final byte SHARED_FINGERPRINT = 2;
+
+    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
     private final Serializer<FileCollectionFingerprint> fileCollectionFingerprintSerializer;
     private final Serializer<FileSystemSnapshot> fileSystemSnapshotSerializer;
     private final Serializer<ImplementationSnapshot> implementationSnapshotSerializer;
@@ -137,17 +142,39 @@ private ImmutableSortedMap<String, FileCollectionFingerprint> readFingerprints(D
         ImmutableSortedMap.Builder<String, FileCollectionFingerprint> builder = ImmutableSortedMap.naturalOrder();
         for (int fingerprintIdx = 0; fingerprintIdx < count; fingerprintIdx++) {
             String property = decoder.readString();
-            FileCollectionFingerprint fingerprint = fileCollectionFingerprintSerializer.read(decoder);
+            FileCollectionFingerprint fingerprint = readFingerprint(decoder);
             builder.put(property, fingerprint);
         }
         return builder.build();
     }
 
+    private FileCollectionFingerprint readFingerprint(Decoder decoder) throws Exception {
+        byte fingerprintKind = decoder.readByte();
+        switch (fingerprintKind) {
+            case INLINE_FINGERPRINT:
+                return fileCollectionFingerprintSerializer.read(decoder);
+            case SHARED_FINGERPRINT:
+                return new FileCollectionFingerprintReference(hashCodeSerializer.read(decoder));
+            default:
+                throw new RuntimeException("Unable to read serialized file collection fingerprint. Unrecognized value found in the data stream.");
+        }
+    }
+
     private void writeFingerprints(Encoder encoder, Map<String, FileCollectionFingerprint> fingerprints) throws Exception {
         encoder.writeSmallInt(fingerprints.size());
         for (Map.Entry<String, FileCollectionFingerprint> entry : fingerprints.entrySet()) {
             encoder.writeString(entry.getKey());
-            fileCollectionFingerprintSerializer.write(encoder, entry.getValue());
+            writeFingerprint(encoder, entry.getValue());
+        }
+    }
+
+    private void writeFingerprint(Encoder encoder, FileCollectionFingerprint fingerprint) throws Exception {
+        if (fingerprint instanceof FileCollectionFingerprintReference) {
+            encoder.writeByte(SHARED_FINGERPRINT);
+            hashCodeSerializer.write(encoder, ((FileCollectionFingerprintReference) fingerprint).getContentHash());
+        } else {
+            encoder.writeByte(INLINE_FINGERPRINT);
+            fileCollectionFingerprintSerializer.write(encoder, fingerprint);
         }
     }
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.fingerprint.FingerprintingStrategy;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.Map;
+
+/**
+ * Stands in for a file collection fingerprint which is stored once in the execution history and shared between entries.
+ *
+ * References are resolved by {@link DefaultExecutionHistoryStore} before the state is handed out.
+ */
+class FileCollectionFingerprintReference implements FileCollectionFingerprint {
+    private final HashCode contentHash;
+
+    FileCollectionFingerprintReference(HashCode contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public HashCode getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public Map<String, FileSystemLocationFingerprint> getFingerprints() {
+        throw unresolved();
+    }
+
+    @Override
+    public ImmutableMultimap<String, HashCode> getRootHashes() {
+        throw unresolved();
+    }
+
+    @Override
+    public boolean wasCreatedWithStrategy(FingerprintingStrategy strategy) {
+        throw unresolved();
+    }
+
+    private UnsupportedOperationException unresolved() {
+        return new UnsupportedOperationException("Shared file collection fingerprint " + contentHash + " has not been resolved.");
+    }
+}
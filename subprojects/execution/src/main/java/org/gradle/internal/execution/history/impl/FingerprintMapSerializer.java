@@ -51,8 +51,11 @@ public FingerprintMapSerializer(Interner<String> stringInterner) {
     public Map<String, FileSystemLocationFingerprint> read(Decoder decoder) throws IOException {
         int fingerprintCount = decoder.readSmallInt();
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> fingerprints = ImmutableMap.builderWithExpectedSize(fingerprintCount);
+        String previousPath = "";
         for (int i = 0; i < fingerprintCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
+            int commonPrefixLength = decoder.readSmallInt();
+            String absolutePath = stringInterner.intern(previousPath.substring(0, commonPrefixLength) + decoder.readString());
+            previousPath = absolutePath;
             FileSystemLocationFingerprint fingerprint = readFingerprint(decoder);
             fingerprints.put(absolutePath, fingerprint);
         }
@@ -105,13 +108,31 @@ private FileType readFileType(Decoder decoder) throws IOException {
     @Override
     public void write(Encoder encoder, Map<String, FileSystemLocationFingerprint> value) throws Exception {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            FileSystemLocationFingerprint fingerprint = value.get(key);
-            writeFingerprint(encoder, fingerprint);
+        String previousPath = "";
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : value.entrySet()) {
+            // Paths of the same collection usually share a long prefix, like the directory of a dependency cache, so only the differing suffix is written
+            String absolutePath = entry.getKey();
+            int commonPrefixLength = commonPrefixLength(previousPath, absolutePath);
+            encoder.writeSmallInt(commonPrefixLength);
+            encoder.writeString(absolutePath.substring(commonPrefixLength));
+            writeFingerprint(encoder, entry.getValue());
+            previousPath = absolutePath;
         }
     }
 
+    private static int commonPrefixLength(String previous, String current) {
+        int maxLength = Math.min(previous.length(), current.length());
+        int length = 0;
+        while (length < maxLength && previous.charAt(length) == current.charAt(length)) {
+            length++;
+        }
+        // Do not split a surrogate pair
+        if (length > 0 && Character.isHighSurrogate(previous.charAt(length - 1))) {
+            length--;
+        }
+        return length;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!super.equals(obj)) {
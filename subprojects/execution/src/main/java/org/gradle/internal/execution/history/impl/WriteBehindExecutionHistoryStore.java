@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import org.gradle.cache.PersistentCache;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Writes the execution history on a dedicated thread, so that the thread which executed the work does not wait for the cache lock.
+ *
+ * <p>Entries which have not been written yet are kept in memory and returned by the reads.
+ * Entries are written in batches, holding the cache lock once per batch.
+ * When too many entries are waiting to be written, storing a new entry blocks until some have been written.
+ * All pending entries are written when this store is closed.</p>
+ */
+public class WriteBehindExecutionHistoryStore implements ExecutionHistoryStore, Closeable {
+    private static final int MAX_PENDING_WRITES = 1000;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final Object STOP = new Object();
+
+    private final DefaultExecutionHistoryStore delegate;
+    private final Supplier<PersistentCache> cache;
+    private final ConcurrentMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final BlockingQueue<Object> writeQueue = new LinkedBlockingQueue<>();
+    private final Semaphore availableWrites = new Semaphore(MAX_PENDING_WRITES);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final ManagedExecutor writer;
+
+    public WriteBehindExecutionHistoryStore(DefaultExecutionHistoryStore delegate, Supplier<PersistentCache> cache, ExecutorFactory executorFactory) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.writer = executorFactory.create("Execution history writer");
+        writer.execute(this::writePendingEntries);
+    }
+
+    @Override
+    public Optional<PreviousExecutionState> load(String key) {
+        PendingWrite pendingWrite = pendingWrites.get(key);
+        if (pendingWrite != null) {
+            return Optional.ofNullable(pendingWrite.state);
+        }
+        return delegate.load(key);
+    }
+
+    @Override
+    public Optional<Duration> loadExecutionTime(String key) {
+        PendingWrite pendingWrite = pendingWrites.get(key);
+        if (pendingWrite != null && (pendingWrite.state == null || pendingWrite.executed)) {
+            return Optional.ofNullable(pendingWrite.state).map(state -> state.getOriginMetadata().getExecutionTime());
+        }
+        return delegate.loadExecutionTime(key);
+    }
+
+    @Override
+    public void store(String key, boolean successful, AfterExecutionState executionState) {
+        enqueue(key, new PendingWrite(DefaultExecutionHistoryStore.toPreviousExecutionState(successful, executionState), !executionState.isReused()));
+    }
+
+    @Override
+    public void remove(String key) {
+        enqueue(key, new PendingWrite(null, false));
+    }
+
+    private void enqueue(String key, PendingWrite pendingWrite) {
+        if (pendingWrites.put(key, pendingWrite) == null) {
+            // The key was not queued yet
+            availableWrites.acquireUninterruptibly();
+            writeQueue.add(key);
+        }
+    }
+
+    private void writePendingEntries() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(writeQueue.take());
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            writeQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            stopped = batch.remove(STOP);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Object> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            cache.get().useCache(() -> {
+                for (Object key : keys) {
+                    write((String) key);
+                }
+            });
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+            // Drop the entries, so that the work is not blocked waiting for entries that cannot be written
+            for (Object key : keys) {
+                if (pendingWrites.remove(key) != null) {
+                    availableWrites.release();
+                }
+            }
+        }
+    }
+
+    private void write(String key) {
+        PendingWrite pendingWrite = pendingWrites.get(key);
+        if (pendingWrite == null) {
+            return;
+        }
+        if (pendingWrite.state != null) {
+            delegate.store(key, pendingWrite.state, pendingWrite.executed);
+        } else {
+            delegate.remove(key);
+        }
+        if (pendingWrites.remove(key, pendingWrite)) {
+            availableWrites.release();
+        } else {
+            // The entry has been replaced in the meantime, write it again
+            writeQueue.add(key);
+        }
+    }
+
+    @Override
+    public void close() {
+        writeQueue.add(STOP);
+        try {
+            writer.stop();
+        } finally {
+            // Write entries which have been queued again after the writer stopped
+            List<Object> remaining = new ArrayList<>();
+            while (writeQueue.drainTo(remaining) > 0) {
+                write(remaining);
+                remaining.clear();
+            }
+        }
+        Throwable writeFailure = failure.get();
+        if (writeFailure != null) {
+            throw UncheckedException.throwAsUncheckedException(writeFailure);
+        }
+    }
+
+    private static class PendingWrite {
+        /**
+         * The state to store, or {@code null} when the entry is removed.
+         */
+        @Nullable
+        final PreviousExecutionState state;
+        /**
+         * Whether the work actually executed, rather than reusing its outputs. Only then is the execution time of the state recorded.
+         */
+        final boolean executed;
+
+        PendingWrite(@Nullable PreviousExecutionState state, boolean executed) {
+            this.state = state;
+            this.executed = executed;
+        }
+    }
+}
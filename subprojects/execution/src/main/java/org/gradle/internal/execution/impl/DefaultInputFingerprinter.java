@@ -29,26 +29,34 @@
 import org.gradle.internal.execution.UnitOfWork.ValueSupplier;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.properties.InputBehavior;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DefaultInputFingerprinter implements InputFingerprinter {
 
     private final FileCollectionSnapshotter snapshotter;
     private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
     private final ValueSnapshotter valueSnapshotter;
+    private final BuildOperationExecutor buildOperationExecutor;
 
     public DefaultInputFingerprinter(
         FileCollectionSnapshotter snapshotter,
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
-        ValueSnapshotter valueSnapshotter
+        ValueSnapshotter valueSnapshotter,
+        BuildOperationExecutor buildOperationExecutor
     ) {
         this.snapshotter = snapshotter;
         this.fingerprinterRegistry = fingerprinterRegistry;
         this.valueSnapshotter = valueSnapshotter;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
@@ -59,7 +67,7 @@ public Result fingerprintInputProperties(
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints,
         Consumer<InputVisitor> inputs
     ) {
-        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, previousFingerprints, snapshotter, fingerprinterRegistry, valueSnapshotter, knownCurrentValueSnapshots, knownCurrentFingerprints);
+        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, previousFingerprints, snapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor, knownCurrentValueSnapshots, knownCurrentFingerprints);
         inputs.accept(visitor);
         return visitor.complete();
     }
@@ -70,12 +78,12 @@ private static class InputCollectingVisitor implements InputVisitor {
         private final FileCollectionSnapshotter snapshotter;
         private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
         private final ValueSnapshotter valueSnapshotter;
+        private final BuildOperationExecutor buildOperationExecutor;
         private final ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots;
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints;
 
         private final ImmutableSortedMap.Builder<String, ValueSnapshot> valueSnapshotsBuilder = ImmutableSortedMap.naturalOrder();
-        private final ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder = ImmutableSortedMap.naturalOrder();
-        private final ImmutableSet.Builder<String> propertiesRequiringIsEmptyCheck = ImmutableSet.builder();
+        private final List<FingerprintInputFileProperty> fileFingerprintingOperations = new ArrayList<>();
 
         public InputCollectingVisitor(
             ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots,
@@ -83,6 +91,7 @@ public InputCollectingVisitor(
             FileCollectionSnapshotter snapshotter,
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
             ValueSnapshotter valueSnapshotter,
+            BuildOperationExecutor buildOperationExecutor,
             ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots,
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints
         ) {
@@ -91,6 +100,7 @@ public InputCollectingVisitor(
             this.snapshotter = snapshotter;
             this.fingerprinterRegistry = fingerprinterRegistry;
             this.valueSnapshotter = valueSnapshotter;
+            this.buildOperationExecutor = buildOperationExecutor;
             this.knownCurrentValueSnapshots = knownCurrentValueSnapshots;
             this.knownCurrentFingerprints = knownCurrentFingerprints;
         }
@@ -129,19 +139,29 @@ public void visitInputFileProperty(String propertyName, InputBehavior behavior,
                 value.getDirectorySensitivity(),
                 value.getLineEndingNormalization());
             FileCollectionFingerprinter fingerprinter = fingerprinterRegistry.getFingerprinter(normalizationSpec);
+            Supplier<FileCollectionSnapshotter.Result> fileSnapshotter;
             try {
-                FileCollectionSnapshotter.Result result = snapshotter.snapshot(value.getFiles());
-                CurrentFileCollectionFingerprint fingerprint = fingerprinter.fingerprint(result.getSnapshot(), previousFingerprint);
-                fingerprintsBuilder.put(propertyName, fingerprint);
-                if (result.containsArchiveTrees()) {
-                    propertiesRequiringIsEmptyCheck.add(propertyName);
-                }
+                fileSnapshotter = snapshotter.resolveRoots(value.getFiles());
             } catch (Exception e) {
                 throw new InputFileFingerprintingException(propertyName, e);
             }
+            fileFingerprintingOperations.add(new FingerprintInputFileProperty(propertyName, fileSnapshotter, fingerprinter, previousFingerprint));
         }
 
         public Result complete() {
+            PropertySnapshottingOperation.runAll(buildOperationExecutor, fileFingerprintingOperations);
+            ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder = ImmutableSortedMap.naturalOrder();
+            ImmutableSet.Builder<String> propertiesRequiringIsEmptyCheck = ImmutableSet.builder();
+            for (FingerprintInputFileProperty operation : fileFingerprintingOperations) {
+                String propertyName = operation.getPropertyName();
+                if (operation.getFailure() != null) {
+                    throw new InputFileFingerprintingException(propertyName, operation.getFailure());
+                }
+                fingerprintsBuilder.put(propertyName, operation.getResult());
+                if (operation.containsArchiveTrees()) {
+                    propertiesRequiringIsEmptyCheck.add(propertyName);
+                }
+            }
             return new InputFingerprints(
                 knownCurrentValueSnapshots,
                 valueSnapshotsBuilder.build(),
@@ -151,6 +171,36 @@ public Result complete() {
         }
     }
 
+    private static class FingerprintInputFileProperty extends PropertySnapshottingOperation<CurrentFileCollectionFingerprint> {
+        private final Supplier<FileCollectionSnapshotter.Result> snapshotter;
+        private final FileCollectionFingerprinter fingerprinter;
+        private final FileCollectionFingerprint previousFingerprint;
+        private boolean containsArchiveTrees;
+
+        public FingerprintInputFileProperty(
+            String propertyName,
+            Supplier<FileCollectionSnapshotter.Result> snapshotter,
+            FileCollectionFingerprinter fingerprinter,
+            @Nullable FileCollectionFingerprint previousFingerprint
+        ) {
+            super(propertyName, "Fingerprint input property '" + propertyName + "'");
+            this.snapshotter = snapshotter;
+            this.fingerprinter = fingerprinter;
+            this.previousFingerprint = previousFingerprint;
+        }
+
+        @Override
+        protected CurrentFileCollectionFingerprint snapshot() {
+            FileCollectionSnapshotter.Result result = snapshotter.get();
+            containsArchiveTrees = result.containsArchiveTrees();
+            return fingerprinter.fingerprint(result.getSnapshot(), previousFingerprint);
+        }
+
+        public boolean containsArchiveTrees() {
+            return containsArchiveTrees;
+        }
+    }
+
     @VisibleForTesting
     public static class InputFingerprints implements InputFingerprinter.Result {
         private final ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots;
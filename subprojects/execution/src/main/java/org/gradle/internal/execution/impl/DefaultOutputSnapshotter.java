@@ -21,32 +21,61 @@
 import org.gradle.internal.execution.OutputSnapshotter;
 import org.gradle.internal.execution.UnitOfWork;
 import org.gradle.internal.file.TreeType;
+import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class DefaultOutputSnapshotter implements OutputSnapshotter {
     private final FileCollectionSnapshotter fileCollectionSnapshotter;
+    private final BuildOperationExecutor buildOperationExecutor;
 
-    public DefaultOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter) {
+    public DefaultOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter, BuildOperationExecutor buildOperationExecutor) {
         this.fileCollectionSnapshotter = fileCollectionSnapshotter;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
     public ImmutableSortedMap<String, FileSystemSnapshot> snapshotOutputs(UnitOfWork work, File workspace) {
-        ImmutableSortedMap.Builder<String, FileSystemSnapshot> builder = ImmutableSortedMap.naturalOrder();
+        List<SnapshotOutputProperty> operations = new ArrayList<>();
         work.visitOutputs(workspace, new UnitOfWork.OutputVisitor() {
             @Override
             public void visitOutputProperty(String propertyName, TreeType type, UnitOfWork.OutputFileValueSupplier value) {
-                FileSystemSnapshot snapshot;
+                Supplier<FileCollectionSnapshotter.Result> snapshotter;
                 try {
-                    snapshot = fileCollectionSnapshotter.snapshot(value.getFiles()).getSnapshot();
+                    snapshotter = fileCollectionSnapshotter.resolveRoots(value.getFiles());
                 } catch (Exception ex) {
                     throw new OutputFileSnapshottingException(propertyName, ex);
                 }
-                builder.put(propertyName, snapshot);
+                operations.add(new SnapshotOutputProperty(propertyName, work, snapshotter));
             }
         });
+        PropertySnapshottingOperation.runAll(buildOperationExecutor, operations);
+
+        ImmutableSortedMap.Builder<String, FileSystemSnapshot> builder = ImmutableSortedMap.naturalOrder();
+        for (SnapshotOutputProperty operation : operations) {
+            if (operation.getFailure() != null) {
+                throw new OutputFileSnapshottingException(operation.getPropertyName(), operation.getFailure());
+            }
+            builder.put(operation.getPropertyName(), operation.getResult());
+        }
         return builder.build();
     }
+
+    private static class SnapshotOutputProperty extends PropertySnapshottingOperation<FileSystemSnapshot> {
+        private final Supplier<FileCollectionSnapshotter.Result> snapshotter;
+
+        public SnapshotOutputProperty(String propertyName, UnitOfWork work, Supplier<FileCollectionSnapshotter.Result> snapshotter) {
+            super(propertyName, "Snapshot output property '" + propertyName + "' of " + work.getDisplayName());
+            this.snapshotter = snapshotter;
+        }
+
+        @Override
+        protected FileSystemSnapshot snapshot() {
+            return snapshotter.get().getSnapshot();
+        }
+    }
 }
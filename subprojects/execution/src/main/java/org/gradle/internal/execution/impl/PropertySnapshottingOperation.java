@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.impl;
+
+import org.gradle.api.Action;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Snapshots the files of a single property of a work.
+ *
+ * The files need to be resolved before, so the operation does not access any project state.
+ * Failures are kept, so that they can be reported for the property which failed first in a stable order.
+ */
+abstract class PropertySnapshottingOperation<T> implements RunnableBuildOperation {
+    private final String propertyName;
+    private final String displayName;
+    private T result;
+    private Exception failure;
+
+    PropertySnapshottingOperation(String propertyName, String displayName) {
+        this.propertyName = propertyName;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Runs the given operations, concurrently on the build operation workers when there are several of them.
+     */
+    static void runAll(BuildOperationExecutor buildOperationExecutor, List<? extends PropertySnapshottingOperation<?>> operations) {
+        if (operations.size() == 1) {
+            // Not worth handing over to another thread
+            PropertySnapshottingOperation<?> operation = operations.get(0);
+            operation.snapshotCapturingFailure();
+        } else if (operations.size() > 1) {
+            buildOperationExecutor.runAll((Action<BuildOperationQueue<PropertySnapshottingOperation<?>>>) queue -> operations.forEach(queue::add));
+        }
+    }
+
+    protected abstract T snapshot();
+
+    @Override
+    public void run(BuildOperationContext context) {
+        snapshotCapturingFailure();
+    }
+
+    private void snapshotCapturingFailure() {
+        try {
+            result = snapshot();
+        } catch (Exception e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public BuildOperationDescriptor.Builder description() {
+        return BuildOperationDescriptor.displayName(displayName);
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    @Nullable
+    public Exception getFailure() {
+        return failure;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.internal.execution.steps;
 
+import org.gradle.caching.internal.packaging.impl.OutputFileLinks;
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.execution.UnitOfWork;
 import org.gradle.internal.execution.history.BeforeExecutionState;
@@ -23,16 +24,22 @@
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.TreeType;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.gradle.internal.snapshot.SnapshotUtil;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * When executed non-incrementally remove previous outputs owned by the work unit.
+ *
+ * Previous outputs which are kept and are linked to files in the build cache output file store are replaced by copies,
+ * so that the work can modify them in place.
  */
 public class RemovePreviousOutputsStep<C extends ChangingOutputsContext, R extends Result> implements Step<C, R> {
 
@@ -52,21 +59,42 @@ public RemovePreviousOutputsStep(
 
     @Override
     public R execute(UnitOfWork work, C context) {
-        if (!context.isIncrementalExecution()) {
-            if (work.shouldCleanupOutputsOnNonIncrementalExecution()) {
-                boolean hasOverlappingOutputs = context.getBeforeExecutionState()
-                    .flatMap(BeforeExecutionState::getDetectedOverlappingOutputs)
-                    .isPresent();
-                if (hasOverlappingOutputs) {
-                    cleanupOverlappingOutputs(context, work);
-                } else {
-                    cleanupExclusivelyOwnedOutputs(context, work);
-                }
+        if (!context.isIncrementalExecution() && work.shouldCleanupOutputsOnNonIncrementalExecution()) {
+            boolean hasOverlappingOutputs = context.getBeforeExecutionState()
+                .flatMap(BeforeExecutionState::getDetectedOverlappingOutputs)
+                .isPresent();
+            if (hasOverlappingOutputs) {
+                cleanupOverlappingOutputs(context, work);
+            } else {
+                cleanupExclusivelyOwnedOutputs(context, work);
             }
+        } else {
+            breakLinksToStoredOutputFiles(context, work);
         }
         return delegate.execute(work, context);
     }
 
+    private void breakLinksToStoredOutputFiles(BeforeExecutionContext context, UnitOfWork work) {
+        context.getPreviousExecutionState().ifPresent(previousOutputs -> {
+            for (FileSystemSnapshot snapshot : previousOutputs.getOutputFilesProducedByWork().values()) {
+                snapshot.accept(location -> {
+                    if (location instanceof RegularFileSnapshot && ((RegularFileSnapshot) location).getMetadata().getLength() >= OutputFileLinks.MIN_FILE_SIZE) {
+                        File file = new File(location.getAbsolutePath());
+                        if (OutputFileLinks.isLinked(file)) {
+                            try {
+                                outputChangeListener.invalidateCachesFor(Collections.singleton(location.getAbsolutePath()));
+                                OutputFileLinks.breakLink(file);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException("Failed to copy linked output file " + file + " for " + work.getDisplayName(), e);
+                            }
+                        }
+                    }
+                    return SnapshotVisitResult.CONTINUE;
+                });
+            }
+        });
+    }
+
     private void cleanupOverlappingOutputs(BeforeExecutionContext context, UnitOfWork work) {
         context.getPreviousExecutionState().ifPresent(previousOutputs -> {
             Set<File> outputDirectoriesToPreserve = new HashSet<>();
@@ -26,13 +26,17 @@
 import org.gradle.internal.execution.caching.CachingStateFactory;
 import org.gradle.internal.execution.caching.impl.DefaultCachingStateFactory;
 import org.gradle.internal.execution.history.BeforeExecutionState;
+import org.gradle.internal.execution.history.InputExecutionState;
 import org.gradle.internal.execution.history.OverlappingOutputs;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.NOPLogger;
 
 import java.util.Formatter;
 import java.util.List;
+import java.util.Map;
 
 public class ResolveCachingStateStep<C extends ValidationFinishedContext> implements Step<C, CachingResult> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResolveCachingStateStep.class);
@@ -69,7 +73,10 @@ public CachingResult execute(UnitOfWork work, C context) {
         }
 
         cachingState.apply(
-            enabled -> logCacheKey(enabled.getKey(), work),
+            enabled -> {
+                logCacheKey(enabled.getKey(), work);
+                maybePrefetch(enabled.getKey(), enabled.getBeforeExecutionState(), context);
+            },
             disabled -> logDisabledReasons(disabled.getDisabledReasons(), work)
         );
 
@@ -104,6 +111,38 @@ private CachingState calculateCachingStateWithNoCapturedInputs(UnitOfWork work)
             .orElse(CachingState.NOT_DETERMINED);
     }
 
+    /**
+     * Starts downloading the remote entry while the work is checked for being up-to-date.
+     *
+     * Work with the same inputs as its last successful execution is most likely up-to-date, so its entry is not prefetched.
+     * Comparing the root hashes of the input files is cheap, and good enough for deciding on a prefetch.
+     */
+    private void maybePrefetch(BuildCacheKey cacheKey, BeforeExecutionState beforeExecutionState, C context) {
+        boolean inputsUnchanged = context.getPreviousExecutionState()
+            .filter(PreviousExecutionState::isSuccessful)
+            .map(previousExecutionState -> hasSameInputs(previousExecutionState, beforeExecutionState))
+            .orElse(false);
+        if (!inputsUnchanged) {
+            buildCache.prefetch(cacheKey);
+        }
+    }
+
+    private static boolean hasSameInputs(InputExecutionState previous, InputExecutionState current) {
+        if (!previous.getImplementation().equals(current.getImplementation())
+            || !previous.getAdditionalImplementations().equals(current.getAdditionalImplementations())
+            || !previous.getInputProperties().equals(current.getInputProperties())
+            || !previous.getInputFileProperties().keySet().equals(current.getInputFileProperties().keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, ? extends FileCollectionFingerprint> entry : current.getInputFileProperties().entrySet()) {
+            FileCollectionFingerprint previousFingerprint = previous.getInputFileProperties().get(entry.getKey());
+            if (!previousFingerprint.getRootHashes().equals(entry.getValue().getRootHashes())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void logCacheKey(BuildCacheKey cacheKey, UnitOfWork work) {
         if (buildCache.isEmitDebugLogging()) {
             LOGGER.warn("Build cache key for {} is {}", work.getDisplayName(), cacheKey.getDisplayName());
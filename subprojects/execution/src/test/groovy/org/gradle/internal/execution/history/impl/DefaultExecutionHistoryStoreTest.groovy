@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableMultimap
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.PersistentIndexedCacheParameters
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.internal.file.FileType
+import org.gradle.internal.fingerprint.FileCollectionFingerprint
+import org.gradle.internal.fingerprint.impl.DefaultFileSystemLocationFingerprint
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.gradle.testfixtures.internal.TestInMemoryPersistentIndexedCache
+import spock.lang.Specification
+
+import java.time.Duration
+
+class DefaultExecutionHistoryStoreTest extends Specification {
+    Map<String, TestInMemoryPersistentIndexedCache> caches = [:]
+    int lockedUpdates
+    def cache = Stub(PersistentCache) {
+        useCache(_ as Runnable) >> { Runnable action ->
+            lockedUpdates++
+            action.run()
+        }
+        createCache(_ as PersistentIndexedCacheParameters) >> { PersistentIndexedCacheParameters parameters ->
+            def indexedCache = new TestInMemoryPersistentIndexedCache(parameters.valueSerializer)
+            caches[parameters.cacheName] = indexedCache
+            return indexedCache
+        }
+    }
+    def store = new DefaultExecutionHistoryStore({ cache }, Stub(InMemoryCacheDecoratorFactory), new StringInterner(), Stub(ClassLoaderHierarchyHasher))
+
+    def "stores large fingerprints once"() {
+        def classpath = fingerprint(20)
+        def sources = fingerprint(2)
+
+        when:
+        store.store(":a", executionState(classpath: classpath, sources: sources))
+        store.store(":b", executionState(classpath: classpath))
+
+        then:
+        sharedFingerprints.size() == 1
+
+        when:
+        def loaded = store.load(":a").get()
+
+        then:
+        loaded.inputFileProperties.keySet() as List == ["classpath", "sources"]
+        loaded.inputFileProperties["classpath"].fingerprints == classpath.fingerprints
+        loaded.inputFileProperties["classpath"].rootHashes == classpath.rootHashes
+        loaded.inputFileProperties["sources"].fingerprints == sources.fingerprints
+        store.load(":b").get().inputFileProperties["classpath"].fingerprints == classpath.fingerprints
+    }
+
+    def "removes shared fingerprints which are not referenced anymore"() {
+        def classpath = fingerprint(20)
+
+        when:
+        store.store(":a", executionState(classpath: classpath))
+        store.store(":b", executionState(classpath: classpath))
+        store.remove(":a")
+
+        then:
+        sharedFingerprints.size() == 1
+        store.load(":b").present
+
+        when:
+        store.store(":b", executionState(classpath: fingerprint(30)))
+
+        then:
+        sharedFingerprints.size() == 1
+        store.load(":b").get().inputFileProperties["classpath"].fingerprints.size() == 30
+
+        when:
+        store.remove(":b")
+
+        then:
+        sharedFingerprints.empty
+        caches["sharedFileCollectionFingerprintReferences"].keySet().empty
+    }
+
+    def "updates reference counts while holding the cache lock"() {
+        when:
+        store.store(":a", executionState(classpath: fingerprint(20)))
+        store.remove(":a")
+
+        then:
+        lockedUpdates == 2
+        sharedFingerprints.empty
+    }
+
+    def "does not load entries referencing a missing shared fingerprint"() {
+        store.store(":a", executionState(classpath: fingerprint(20)))
+
+        when:
+        sharedFingerprints.each { caches["sharedFileCollectionFingerprints"].remove(it) }
+
+        then:
+        !store.load(":a").present
+    }
+
+    private Set getSharedFingerprints() {
+        caches["sharedFileCollectionFingerprints"].keySet()
+    }
+
+    private static FileCollectionFingerprint fingerprint(int size) {
+        def fingerprints = (1..size).collectEntries { index ->
+            ["/caches/modules/lib-${index}.jar".toString(), new DefaultFileSystemLocationFingerprint("lib-${index}.jar", FileType.RegularFile, TestHashCodes.hashCodeFrom(index))]
+        }
+        new SerializableFileCollectionFingerprint(fingerprints, ImmutableMultimap.of("/caches/modules", TestHashCodes.hashCodeFrom(size)), TestHashCodes.hashCodeFrom(1234))
+    }
+
+    private static PreviousExecutionState executionState(Map<String, FileCollectionFingerprint> inputFileProperties) {
+        new DefaultPreviousExecutionState(
+            new OriginMetadata("build-id", Duration.ofMillis(5)),
+            ImplementationSnapshot.of("Work", TestHashCodes.hashCodeFrom(1)),
+            ImmutableList.of(),
+            ImmutableSortedMap.of(),
+            ImmutableSortedMap.copyOf(inputFileProperties),
+            ImmutableSortedMap.of(),
+            true
+        )
+    }
+}
@@ -93,4 +93,25 @@ class FileCollectionFingerprintSerializerTest extends SerializerSpec {
         out.fingerprints.keySet() as List == ["/3", "/2", "/1"]
         out.rootHashes.keySet() as List == ["/3", "/2", "/1"]
     }
+
+    def "reads and writes paths sharing a prefix"() {
+        def fingerprints = [
+            "/caches/modules/a.jar": new DefaultFileSystemLocationFingerprint('a.jar', FileType.RegularFile, TestHashCodes.hashCodeFrom(1)),
+            "/caches/modules/ab.jar": new DefaultFileSystemLocationFingerprint('ab.jar', FileType.RegularFile, TestHashCodes.hashCodeFrom(2)),
+            "/caches/a": new DefaultFileSystemLocationFingerprint('a', FileType.Directory, FileSystemLocationFingerprint.DIR_SIGNATURE),
+            "/other/\uD83D\uDE00": new DefaultFileSystemLocationFingerprint('\uD83D\uDE00', FileType.RegularFile, TestHashCodes.hashCodeFrom(3)),
+            "/other/\uD83D\uDE01": new DefaultFileSystemLocationFingerprint('\uD83D\uDE01', FileType.RegularFile, TestHashCodes.hashCodeFrom(4)),
+        ]
+
+        when:
+        def out = serialize(new SerializableFileCollectionFingerprint(
+            fingerprints,
+            ImmutableMultimap.of("/caches", TestHashCodes.hashCodeFrom(5)),
+            TestHashCodes.hashCodeFrom(6)
+        ), serializer)
+
+        then:
+        out.fingerprints.keySet() as List == fingerprints.keySet() as List
+        out.fingerprints.values()*.normalizedPath == fingerprints.values()*.normalizedPath
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.execution.history.AfterExecutionState
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.function.Supplier
+
+class WriteBehindExecutionHistoryStoreTest extends Specification {
+    def delegate = Mock(DefaultExecutionHistoryStore)
+    def writesAllowed = new CountDownLatch(1)
+    def cache = Stub(PersistentCache) {
+        useCache(_ as Runnable) >> { Runnable action ->
+            writesAllowed.await()
+            action.run()
+        }
+    }
+    def executorFactory = new DefaultExecutorFactory()
+    def store = new WriteBehindExecutionHistoryStore(delegate, { cache } as Supplier<PersistentCache>, executorFactory)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "returns pending entries before they are written"() {
+        when:
+        store.store("key", true, afterExecutionState(Duration.ofMillis(123)))
+
+        then:
+        store.load("key").get().successful
+        store.loadExecutionTime("key") == Optional.of(Duration.ofMillis(123))
+        0 * delegate._
+
+        when:
+        writesAllowed.countDown()
+        store.close()
+
+        then:
+        1 * delegate.store("key", { it.successful && it.originMetadata.executionTime == Duration.ofMillis(123) }, true)
+        0 * delegate._
+    }
+
+    def "removed entries are not loaded from the delegate"() {
+        when:
+        store.store("key", true, afterExecutionState(Duration.ofMillis(123)))
+        store.remove("key")
+
+        then:
+        !store.load("key").present
+        !store.loadExecutionTime("key").present
+        0 * delegate._
+
+        when:
+        writesAllowed.countDown()
+        store.close()
+
+        then:
+        1 * delegate.remove("key")
+        0 * delegate._
+    }
+
+    def "loads entries which are not pending from the delegate"() {
+        writesAllowed.countDown()
+
+        when:
+        def loaded = store.loadExecutionTime("other")
+
+        then:
+        1 * delegate.loadExecutionTime("other") >> Optional.of(Duration.ofMillis(5))
+        loaded == Optional.of(Duration.ofMillis(5))
+
+        cleanup:
+        store.close()
+    }
+
+    def "does not record the execution time of reused outputs"() {
+        when:
+        store.store("key", true, afterExecutionState(Duration.ofMillis(123), true))
+
+        then:
+        store.load("key").get().successful
+        store.loadExecutionTime("key") == Optional.of(Duration.ofMillis(5))
+        1 * delegate.loadExecutionTime("key") >> Optional.of(Duration.ofMillis(5))
+        0 * delegate._
+
+        when:
+        writesAllowed.countDown()
+        store.close()
+
+        then:
+        1 * delegate.store("key", { it.originMetadata.executionTime == Duration.ofMillis(123) }, false)
+        0 * delegate._
+    }
+
+    def "rethrows write failures when closed"() {
+        def failure = new RuntimeException("broken")
+        writesAllowed.countDown()
+
+        when:
+        store.store("key", false, afterExecutionState(Duration.ofMillis(1)))
+        store.close()
+
+        then:
+        1 * delegate.store("key", _, _) >> { throw failure }
+        def e = thrown(RuntimeException)
+        e == failure
+        !store.load("key").present
+    }
+
+    private AfterExecutionState afterExecutionState(Duration executionTime, boolean reused = false) {
+        Stub(AfterExecutionState) {
+            getOriginMetadata() >> new OriginMetadata("build-id", executionTime)
+            isReused() >> reused
+            getImplementation() >> ImplementationSnapshot.of("Work", TestHashCodes.hashCodeFrom(1))
+            getAdditionalImplementations() >> ImmutableList.of()
+            getInputProperties() >> ImmutableSortedMap.of()
+            getInputFileProperties() >> ImmutableSortedMap.of()
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of()
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.internal.execution.impl
 
+import com.google.common.base.Suppliers
 import com.google.common.collect.ImmutableSortedMap
 import org.gradle.api.file.FileCollection
 import org.gradle.internal.execution.FileCollectionFingerprinter
@@ -31,12 +32,14 @@ import org.gradle.internal.fingerprint.DirectorySensitivity
 import org.gradle.internal.fingerprint.FileCollectionFingerprint
 import org.gradle.internal.fingerprint.FileNormalizer
 import org.gradle.internal.fingerprint.LineEndingSensitivity
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.snapshot.ValueSnapshot
 import org.gradle.internal.snapshot.ValueSnapshotter
 import spock.lang.Specification
 
 import java.util.function.Consumer
+import java.util.function.Supplier
 
 import static org.gradle.internal.properties.InputBehavior.NON_INCREMENTAL
 
@@ -47,7 +50,7 @@ class DefaultInputFingerprinterTest extends Specification {
         getFingerprinter(_ as FileNormalizationSpec) >> fingerprinter
     }
     def valueSnapshotter = Mock(ValueSnapshotter)
-    def inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter)
+    def inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, new TestBuildOperationExecutor())
 
     def input = Mock(Object)
     def inputSnapshot = Mock(ValueSnapshot)
@@ -69,7 +72,7 @@ class DefaultInputFingerprinterTest extends Specification {
 
         then:
         1 * valueSnapshotter.snapshot(input) >> inputSnapshot
-        1 * snapshotter.snapshot(fileInput) >> fileInputSnapshotResult
+        1 * snapshotter.resolveRoots(fileInput) >> Suppliers.ofInstance(fileInputSnapshotResult)
         _ * fileInputSnapshotResult.containsArchiveTrees() >> false
         1 * fileInputSnapshotResult.snapshot >> fileInputSnapshot
         1 * fingerprinter.fingerprint(fileInputSnapshot, null) >> fileInputFingerprint
@@ -99,14 +102,12 @@ class DefaultInputFingerprinterTest extends Specification {
         }
 
         then:
-        1 * snapshotter.snapshot(fileInput) >> fileInputSnapshotResult
+        1 * snapshotter.resolveRoots(fileInput) >> Suppliers.ofInstance(fileInputSnapshotResult)
         _ * fileInputSnapshotResult.fileTreeOnly >> false
         _ * fileInputSnapshotResult.containsArchiveTrees() >> false
         1 * fileInputSnapshotResult.snapshot >> fileInputSnapshot
         1 * fingerprinter.fingerprint(fileInputSnapshot, null) >> fileInputFingerprint
-
-        then:
-        1 * snapshotter.snapshot(archiveTreeInput) >> archiveTreeInputSnapshotResult
+        1 * snapshotter.resolveRoots(archiveTreeInput) >> Suppliers.ofInstance(archiveTreeInputSnapshotResult)
         _ * archiveTreeInputSnapshotResult.fileTreeOnly >> false
         _ * archiveTreeInputSnapshotResult.containsArchiveTrees() >> true
         1 * archiveTreeInputSnapshotResult.snapshot >> archiveTreeInputSnapshot
@@ -193,7 +194,7 @@ class DefaultInputFingerprinterTest extends Specification {
         }
 
         then:
-        1 * snapshotter.snapshot(fileInput) >> { throw failure }
+        1 * snapshotter.resolveRoots(fileInput) >> { throw failure }
         0 * _
 
         then:
@@ -203,6 +204,37 @@ class DefaultInputFingerprinterTest extends Specification {
         ex.cause == failure
     }
 
+    def "reports the first file property which failed to be fingerprinted"() {
+        def otherFileInput = Mock(FileCollection)
+        def otherFileInputSnapshotResult = Mock(FileCollectionSnapshotter.Result)
+        def failure = new UncheckedIOException(new IOException("Error"))
+
+        when:
+        fingerprintInputProperties { visitor ->
+            visitor.visitInputFileProperty(
+                "file",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(fileInput, normalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { fileInput }))
+            visitor.visitInputFileProperty(
+                "otherFile",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(otherFileInput, normalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { otherFileInput }))
+        }
+
+        then:
+        1 * snapshotter.resolveRoots(fileInput) >> { { -> throw failure } as Supplier }
+        1 * snapshotter.resolveRoots(otherFileInput) >> Suppliers.ofInstance(otherFileInputSnapshotResult)
+        _ * otherFileInputSnapshotResult.containsArchiveTrees() >> false
+        1 * otherFileInputSnapshotResult.snapshot >> fileInputSnapshot
+        1 * fingerprinter.fingerprint(fileInputSnapshot, null) >> fileInputFingerprint
+        0 * _
+
+        then:
+        def ex = thrown InputFingerprinter.InputFileFingerprintingException
+        ex.propertyName == "file"
+        ex.cause == failure
+    }
+
     private Result fingerprintInputProperties(
         ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots = ImmutableSortedMap.of(),
         ImmutableSortedMap<String, FileCollectionFingerprint> previousFingerprints = ImmutableSortedMap.of(),
@@ -16,11 +16,13 @@
 
 package org.gradle.internal.execution.impl
 
+import com.google.common.base.Suppliers
 import org.gradle.api.file.FileCollection
 import org.gradle.internal.execution.FileCollectionSnapshotter
 import org.gradle.internal.execution.OutputSnapshotter
 import org.gradle.internal.execution.UnitOfWork
 import org.gradle.internal.file.TreeType
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -29,7 +31,7 @@ import spock.lang.Specification
 class DefaultOutputSnapshotterTest extends Specification {
     def work = Mock(UnitOfWork)
     def fileCollectionSnapshotter = Mock(FileCollectionSnapshotter)
-    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter)
+    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter, new TestBuildOperationExecutor())
 
     @Rule
     TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
@@ -48,15 +50,42 @@ class DefaultOutputSnapshotterTest extends Specification {
         1 * work.visitOutputs(workspace, _ as UnitOfWork.OutputVisitor) >> { File workspace, UnitOfWork.OutputVisitor outputVisitor ->
             outputVisitor.visitOutputProperty("output", TreeType.FILE, UnitOfWork.OutputFileValueSupplier.fromStatic(root, contents))
         }
-        1 * fileCollectionSnapshotter.snapshot(contents) >> Stub(FileCollectionSnapshotter.Result) {
+        1 * fileCollectionSnapshotter.resolveRoots(contents) >> Suppliers.ofInstance(Stub(FileCollectionSnapshotter.Result) {
             snapshot >> outputSnapshot
-        }
+        })
         0 * _
 
         then:
         result as Map == ["output": outputSnapshot]
     }
 
+    def "snapshots several outputs"() {
+        def otherContents = Mock(FileCollection)
+        def otherRoot = workspace.file("other-root")
+        def outputSnapshot = Mock(FileSystemSnapshot)
+        def otherOutputSnapshot = Mock(FileSystemSnapshot)
+
+        when:
+        def result = outputSnapshotter.snapshotOutputs(work, workspace)
+
+        then:
+        1 * work.visitOutputs(workspace, _ as UnitOfWork.OutputVisitor) >> { File workspace, UnitOfWork.OutputVisitor outputVisitor ->
+            outputVisitor.visitOutputProperty("output", TreeType.FILE, UnitOfWork.OutputFileValueSupplier.fromStatic(root, contents))
+            outputVisitor.visitOutputProperty("other", TreeType.DIRECTORY, UnitOfWork.OutputFileValueSupplier.fromStatic(otherRoot, otherContents))
+        }
+        _ * work.displayName >> "work"
+        1 * fileCollectionSnapshotter.resolveRoots(contents) >> Suppliers.ofInstance(Stub(FileCollectionSnapshotter.Result) {
+            snapshot >> outputSnapshot
+        })
+        1 * fileCollectionSnapshotter.resolveRoots(otherContents) >> Suppliers.ofInstance(Stub(FileCollectionSnapshotter.Result) {
+            snapshot >> otherOutputSnapshot
+        })
+        0 * _
+
+        then:
+        result as Map == ["other": otherOutputSnapshot, "output": outputSnapshot]
+    }
+
     def "reports snapshotting problem"() {
         def failure = new UncheckedIOException(new IOException("Error"))
 
@@ -67,7 +96,9 @@ class DefaultOutputSnapshotterTest extends Specification {
         1 * work.visitOutputs(workspace, _ as UnitOfWork.OutputVisitor) >> { File workspace, UnitOfWork.OutputVisitor outputVisitor ->
             outputVisitor.visitOutputProperty("output", TreeType.FILE, UnitOfWork.OutputFileValueSupplier.fromStatic(root, contents))
         }
-        1 * fileCollectionSnapshotter.snapshot(contents) >> { throw failure }
+        1 * fileCollectionSnapshotter.resolveRoots(contents) >> Suppliers.ofInstance(Stub(FileCollectionSnapshotter.Result) {
+            snapshot >> { throw failure }
+        })
         0 * _
 
         then:
@@ -17,6 +17,7 @@
 package org.gradle.internal.execution.steps
 
 import com.google.common.collect.ImmutableSortedMap
+import org.gradle.caching.internal.packaging.impl.OutputFileLinks
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.internal.execution.OutputChangeListener
 import org.gradle.internal.execution.UnitOfWork
@@ -27,8 +28,13 @@ import org.gradle.internal.execution.history.PreviousExecutionState
 import org.gradle.internal.file.TreeType
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
 import org.junit.Rule
 
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermission
+
 class RemovePreviousOutputsStepTest extends StepSpec<ChangingOutputsContext> implements SnapshotterFixture {
     @Rule
     TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
@@ -146,6 +152,7 @@ class RemovePreviousOutputsStepTest extends StepSpec<ChangingOutputsContext> imp
         step.execute(work, context)
         then:
         _ * context.incrementalExecution >> true
+        _ * context.previousExecutionState >> Optional.empty()
         1 * delegate.execute(work, context) >> delegateResult
         0 * _
     }
@@ -156,10 +163,37 @@ class RemovePreviousOutputsStepTest extends StepSpec<ChangingOutputsContext> imp
         then:
         _ * context.incrementalExecution >> false
         _ * work.shouldCleanupOutputsOnNonIncrementalExecution() >> false
+        _ * context.previousExecutionState >> Optional.empty()
         1 * delegate.execute(work, context) >> delegateResult
         0 * _
     }
 
+    @Requires(TestPrecondition.UNIX_DERIVATIVE)
+    def "replaces kept outputs linked to stored files with writable copies"() {
+        def storedFile = temporaryFolder.file("store/large.jar")
+        storedFile.bytes = new byte[OutputFileLinks.MIN_FILE_SIZE]
+        storedFile.setWritable(false, false)
+        def output = temporaryFolder.file("build/large.jar").tap { parentFile.mkdirs() }
+        Files.createLink(output.toPath(), storedFile.toPath())
+        def outputSnapshot = snapshot(output)
+
+        when:
+        step.execute(work, context)
+        then:
+        _ * context.incrementalExecution >> true
+        _ * context.previousExecutionState >> Optional.of(previousExecutionState)
+        1 * previousExecutionState.outputFilesProducedByWork >> ImmutableSortedMap.of("file", outputSnapshot)
+        1 * outputChangeListener.invalidateCachesFor({ Iterable<String> paths -> paths as List == [output.absolutePath] })
+        1 * delegate.execute(work, context) >> delegateResult
+        0 * _
+
+        then:
+        Files.getAttribute(output.toPath(), "unix:nlink") == 1
+        Files.getPosixFilePermissions(output.toPath()).contains(PosixFilePermission.OWNER_WRITE)
+        !Files.getPosixFilePermissions(storedFile.toPath()).contains(PosixFilePermission.OWNER_WRITE)
+        output.bytes == storedFile.bytes
+    }
+
     def "does cleanup outputs when work does not request input changes"() {
         def outputs = new WorkOutputs()
         outputs.createContents()
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+
+import java.util.List;
+
+/**
+ * Keeps the state of the virtual file system across daemon restarts.
+ *
+ * The state is persisted when the daemon stops and restored by the next daemon which starts watching the file system.
+ * Since the file system has not been watched in between, restored snapshots need to be checked before they can be used.
+ */
+public interface VirtualFileSystemStateStore {
+    VirtualFileSystemStateStore NONE = new VirtualFileSystemStateStore() {
+        @Override
+        public void persist(List<FileSystemLocationSnapshot> rootSnapshots) {
+        }
+
+        @Override
+        public List<FileSystemLocationSnapshot> restore() {
+            return ImmutableList.of();
+        }
+
+        @Override
+        public boolean isUpToDate(FileSystemLocationSnapshot restoredSnapshot) {
+            return false;
+        }
+    };
+
+    /**
+     * Persists the given root snapshots of the virtual file system.
+     */
+    void persist(List<FileSystemLocationSnapshot> rootSnapshots);
+
+    /**
+     * Returns the previously persisted root snapshots, and removes them from the store.
+     *
+     * Returns an empty list if no state has been persisted or if the persisted state cannot be read.
+     */
+    List<FileSystemLocationSnapshot> restore();
+
+    /**
+     * Checks whether a restored snapshot still matches the file system.
+     */
+    boolean isUpToDate(FileSystemLocationSnapshot restoredSnapshot);
+}
@@ -24,6 +24,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -39,6 +40,7 @@
 import org.gradle.internal.watch.vfs.FileChangeListeners;
 import org.gradle.internal.watch.vfs.FileSystemWatchingInformation;
 import org.gradle.internal.watch.vfs.FileSystemWatchingStatistics;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.VfsLogging;
 import org.gradle.internal.watch.vfs.WatchLogging;
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
@@ -52,10 +54,12 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem implements BuildLifecycleAwareVirtualFileSystem, FileSystemWatchingInformation, Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(WatchingVirtualFileSystem.class);
@@ -67,6 +71,7 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final WatchableFileSystemDetector watchableFileSystemDetector;
     private final FileChangeListeners fileChangeListeners;
+    private final VirtualFileSystemStateStore stateStore;
     private final List<File> unsupportedFileSystems = new ArrayList<>();
     private Logger warningLogger = LOGGER;
 
@@ -75,6 +80,12 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
      */
     private final Set<File> watchableHierarchiesRegisteredEarly = new LinkedHashSet<>();
 
+    /**
+     * Snapshots persisted by a previous daemon, which are added to the VFS once their watchable hierarchy has been registered.
+     */
+    private final List<FileSystemLocationSnapshot> restoredSnapshots = new ArrayList<>();
+    private boolean stateRestored;
+
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
     private boolean stateInvalidatedAtStartOfBuild;
@@ -86,6 +97,18 @@ public WatchingVirtualFileSystem(
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
         WatchableFileSystemDetector watchableFileSystemDetector,
         FileChangeListeners fileChangeListeners
+    ) {
+        this(watcherRegistryFactory, root, daemonDocumentationIndex, locationsWrittenByCurrentBuild, watchableFileSystemDetector, fileChangeListeners, VirtualFileSystemStateStore.NONE);
+    }
+
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        SnapshotHierarchy root,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        WatchableFileSystemDetector watchableFileSystemDetector,
+        FileChangeListeners fileChangeListeners,
+        VirtualFileSystemStateStore stateStore
     ) {
         super(root);
         this.watcherRegistryFactory = watcherRegistryFactory;
@@ -93,6 +116,7 @@ public WatchingVirtualFileSystem(
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
         this.watchableFileSystemDetector = watchableFileSystemDetector;
         this.fileChangeListeners = fileChangeListeners;
+        this.stateStore = stateStore;
     }
 
     @Override
@@ -211,7 +235,10 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
             }
             return withWatcherChangeErrorHandling(
                 currentRoot,
-                () -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot)
+                () -> {
+                    watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot);
+                    return restoreSnapshotsInHierarchy(watchableHierarchy, currentRoot);
+                }
             );
         });
     }
@@ -228,6 +255,8 @@ public void beforeBuildFinished(
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 watchableHierarchiesRegisteredEarly.clear();
+                // Restored snapshots outside the hierarchies watched by the first build are not needed
+                restoredSnapshots.clear();
                 if (watchMode.isEnabled()) {
                     if (reasonForNotWatchingFiles != null) {
                         // Log exception again so it doesn't get lost.
@@ -314,7 +343,14 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
                     new BroadcastingChangeHandler()
                 )));
             SnapshotHierarchy newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot.empty(), watchMode, unsupportedFileSystems);
-            watchableHierarchiesRegisteredEarly.forEach(watchableHierarchy -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot));
+            if (!stateRestored) {
+                stateRestored = true;
+                restoredSnapshots.addAll(stateStore.restore());
+            }
+            for (File watchableHierarchy : watchableHierarchiesRegisteredEarly) {
+                watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot);
+                newRoot = restoreSnapshotsInHierarchy(watchableHierarchy, newRoot);
+            }
             watchableHierarchiesRegisteredEarly.clear();
             return newRoot;
         } catch (Exception ex) {
@@ -324,6 +360,50 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
         }
     }
 
+    /**
+     * Adds the restored snapshots in the given watchable hierarchy to the VFS.
+     *
+     * Each snapshot is stored before it is checked, so the watchers pick up any changes made while checking.
+     * Snapshots which don't match the file system anymore are invalidated again.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy restoreSnapshotsInHierarchy(File watchableHierarchy, SnapshotHierarchy currentRoot) {
+        if (restoredSnapshots.isEmpty()) {
+            return currentRoot;
+        }
+        String hierarchyPath = watchableHierarchy.getAbsolutePath();
+        SnapshotHierarchy newRoot = currentRoot;
+        int restoredCount = 0;
+        int outdatedCount = 0;
+        Iterator<FileSystemLocationSnapshot> iterator = restoredSnapshots.iterator();
+        while (iterator.hasNext()) {
+            FileSystemLocationSnapshot snapshot = iterator.next();
+            String absolutePath = snapshot.getAbsolutePath();
+            if (!isInHierarchy(absolutePath, hierarchyPath)) {
+                continue;
+            }
+            iterator.remove();
+            SnapshotHierarchy rootBeforeStore = newRoot;
+            newRoot = updateNotifyingListeners(diffListener -> rootBeforeStore.store(absolutePath, snapshot, diffListener));
+            if (stateStore.isUpToDate(snapshot)) {
+                restoredCount++;
+            } else {
+                outdatedCount++;
+                SnapshotHierarchy rootBeforeInvalidate = newRoot;
+                newRoot = updateNotifyingListeners(diffListener -> rootBeforeInvalidate.invalidate(absolutePath, diffListener));
+            }
+        }
+        if (restoredCount + outdatedCount > 0) {
+            LOGGER.info("Restored {} root snapshots in {} from the previous daemon, {} have been discarded since they changed", restoredCount, hierarchyPath, outdatedCount);
+        }
+        return newRoot;
+    }
+
+    private static boolean isInHierarchy(String absolutePath, String hierarchyPath) {
+        return absolutePath.startsWith(hierarchyPath)
+            && (absolutePath.length() == hierarchyPath.length() || absolutePath.charAt(hierarchyPath.length()) == File.separatorChar);
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         FileWatcherRegistry watchRegistry = this.watchRegistry;
@@ -506,6 +586,10 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
     public void close() {
         LOGGER.debug("Closing VFS, dropping state");
         updateRootUnderLock(currentRoot -> {
+            if (watchRegistry != null) {
+                // Only state which has been kept up-to-date by watching can be used by the next daemon
+                stateStore.persist(currentRoot.rootSnapshots().collect(Collectors.toList()));
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -18,7 +18,11 @@ package org.gradle.internal.watch.vfs.impl
 
 import net.rubygrapefruit.platform.NativeException
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.watch.registry.FileWatcherRegistry
@@ -27,6 +31,7 @@ import org.gradle.internal.watch.registry.WatchMode
 import org.gradle.internal.watch.registry.impl.DaemonDocumentationIndex
 import org.gradle.internal.watch.vfs.FileChangeListeners
 import org.gradle.internal.watch.vfs.VfsLogging
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore
 import org.gradle.internal.watch.vfs.WatchLogging
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector
 import spock.lang.Specification
@@ -228,4 +233,69 @@ class WatchingVirtualFileSystemTest extends Specification {
         1 * watcherRegistry.close()
         0 * _
     }
+
+    def "restores persisted snapshots in watched hierarchies"() {
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def watchableHierarchy = new File("watchable").absoluteFile
+        def unchangedSnapshot = fileSnapshot(new File(watchableHierarchy, "unchanged.txt"))
+        def changedSnapshot = fileSnapshot(new File(watchableHierarchy, "changed.txt"))
+        def notWatchedSnapshot = fileSnapshot(new File("notWatched/file.txt").absoluteFile)
+        def vfs = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            emptySnapshotHierarchy,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            watchableFileSystemDetector,
+            fileChangeListeners,
+            stateStore
+        )
+
+        when:
+        vfs.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> emptySnapshotHierarchy
+        1 * stateStore.restore() >> [unchangedSnapshot, changedSnapshot, notWatchedSnapshot]
+
+        when:
+        vfs.registerWatchableHierarchy(watchableHierarchy)
+        then:
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, _)
+        1 * stateStore.isUpToDate(unchangedSnapshot) >> true
+        1 * stateStore.isUpToDate(changedSnapshot) >> false
+        0 * stateStore.isUpToDate(notWatchedSnapshot)
+
+        vfs.findSnapshot(unchangedSnapshot.absolutePath).present
+        !vfs.findSnapshot(changedSnapshot.absolutePath).present
+        !vfs.findSnapshot(notWatchedSnapshot.absolutePath).present
+
+        when:
+        vfs.close()
+        then:
+        1 * stateStore.persist([unchangedSnapshot])
+        1 * watcherRegistry.close()
+    }
+
+    def "does not persist state when not watching"() {
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def vfs = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            emptySnapshotHierarchy,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            watchableFileSystemDetector,
+            fileChangeListeners,
+            stateStore
+        )
+
+        when:
+        vfs.afterBuildStarted(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        vfs.close()
+        then:
+        0 * stateStore._
+    }
+
+    private static RegularFileSnapshot fileSnapshot(File file) {
+        new RegularFileSnapshot(file.absolutePath, file.name, TestHashCodes.hashCodeFrom(1234), DefaultFileMetadata.file(1, 1, AccessType.DIRECT))
+    }
 }
@@ -1,13 +1,23 @@
 plugins {
     id("gradlebuild.distribution.api-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Tools for creating secure hashes for files and other content"
 
 gradlebuildJava.usedInWorkers() // org.gradle.internal.nativeintegration.filesystem.Stat is used in workers
 
+/**
+ * Use Java 8 compatibility for JMH benchmarks
+ */
+tasks.named<JavaCompile>("jmhCompileGeneratedClasses") {
+    options.release.set(8)
+}
+
 dependencies {
     implementation(project(":base-annotations"))
     implementation(libs.guava)
 }
+
+jmh.includes.set(listOf("FileHashingBenchmark"))
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares the hash functions available for hashing file contents.
+ */
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    int fileSize;
+
+    @Param({"MD5", "MURMUR3"})
+    String algorithm;
+
+    File file;
+    FileHasher fileHasher;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(1234L).nextBytes(content);
+        file = File.createTempFile("hashing", ".bin");
+        Files.write(file.toPath(), content);
+        fileHasher = new DefaultFileHasher(new DefaultStreamHasher(Hashing.forAlgorithm(algorithm)));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file.toPath());
+    }
+
+    @Benchmark
+    public HashCode hashFile() {
+        return fileHasher.hash(file);
+    }
+}
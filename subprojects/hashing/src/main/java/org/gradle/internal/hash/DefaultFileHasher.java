@@ -19,26 +19,54 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Files of at least this size are read into direct buffers, when the hash function can read those without copying them to the heap.
+     *
+     * @see Hashing#readsDirectBuffersNatively(HashFunction)
+     */
+    public static final long DEFAULT_DIRECT_BUFFER_THRESHOLD = 1024 * 1024;
+
     private final StreamHasher streamHasher;
+    private final long directBufferThreshold;
+    private final Listener listener;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, DEFAULT_DIRECT_BUFFER_THRESHOLD, Listener.NO_OP);
+    }
+
+    public DefaultFileHasher(StreamHasher streamHasher, long directBufferThreshold, Listener listener) {
         this.streamHasher = streamHasher;
+        this.directBufferThreshold = Hashing.readsDirectBuffersNatively(streamHasher.getHashFunction())
+            ? directBufferThreshold
+            : Long.MAX_VALUE;
+        this.listener = listener;
     }
 
     @Override
     public HashCode hash(File file) {
-        InputStream inputStream;
+        FileInputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", streamHasher.getHashFunction().getAlgorithm(), file), e);
         }
         try {
-            return streamHasher.hash(inputStream);
+            FileChannel channel = inputStream.getChannel();
+            long length = channel.size();
+            if (length >= directBufferThreshold) {
+                HashCode hash = streamHasher.hash(channel);
+                listener.fileHashed(ReadStrategy.DIRECT_BUFFER, length);
+                return hash;
+            }
+            HashCode hash = streamHasher.hash(inputStream);
+            listener.fileHashed(ReadStrategy.HEAP_BUFFER, length);
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", streamHasher.getHashFunction().getAlgorithm(), file), e);
         } finally {
             try {
                 inputStream.close();
@@ -52,4 +80,27 @@ public HashCode hash(File file) {
     public HashCode hash(File file, long length, long lastModified) {
         return hash(file);
     }
+
+    /**
+     * How the content of a file is read for hashing.
+     */
+    public enum ReadStrategy {
+        /**
+         * The content is copied into a buffer on the heap.
+         */
+        HEAP_BUFFER,
+        /**
+         * The content is read into a direct buffer, which the hash function reads without copying it to the heap.
+         */
+        DIRECT_BUFFER
+    }
+
+    /**
+     * Receives the number of bytes hashed with each {@link ReadStrategy}.
+     */
+    public interface Listener {
+        Listener NO_OP = (strategy, length) -> {};
+
+        void fileHashed(ReadStrategy strategy, long length);
+    }
 }
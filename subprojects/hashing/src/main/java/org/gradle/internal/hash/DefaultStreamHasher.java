@@ -21,20 +21,63 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
 
+    private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    private final Queue<ByteBuffer> directBuffers = new ArrayBlockingQueue<ByteBuffer>(16);
+    private final HashFunction hashFunction;
+
+    public DefaultStreamHasher() {
+        this(Hashing.defaultFunction());
+    }
+
+    public DefaultStreamHasher(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    @Override
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
 
     @Override
     public HashCode hash(InputStream inputStream) {
         try {
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file content.", hashFunction.getAlgorithm()), e);
+        }
+    }
+
+    @Override
+    public HashCode hash(ReadableByteChannel channel) {
+        ByteBuffer buffer = takeDirectBuffer();
+        try {
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            hasher.putHash(SIGNATURE);
+            while (true) {
+                ((Buffer) buffer).clear();
+                int nread = channel.read(buffer);
+                if (nread < 0) {
+                    break;
+                }
+                ((Buffer) buffer).flip();
+                hasher.putBytes(buffer);
+            }
+            return hasher.hash();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file content.", hashFunction.getAlgorithm()), e);
+        } finally {
+            directBuffers.offer(buffer);
         }
     }
 
@@ -46,7 +89,7 @@ public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) thr
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
-            PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
             hasher.putHash(SIGNATURE);
             while (true) {
                 int nread = inputStream.read(buffer);
@@ -67,6 +110,14 @@ private void returnBuffer(byte[] buffer) {
         buffers.offer(buffer);
     }
 
+    private ByteBuffer takeDirectBuffer() {
+        ByteBuffer buffer = directBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
     private byte[] takeBuffer() {
         byte[] buffer = buffers.poll();
         if (buffer == null) {
@@ -47,6 +47,8 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -143,33 +145,45 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
-    private static abstract class MessageDigestHashFunction implements HashFunction {
-        private final int hexDigits;
+    /**
+     * 128-bit MurmurHash3 (x64 variant) hashing function.
+     *
+     * This is a fast, non-cryptographic hash function.
+     * It should only be used for hashes which are not shared with other machines or Gradle versions.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
 
-        public MessageDigestHashFunction(int hashBits) {
-            this.hexDigits = hashBits / 4;
-        }
+    /**
+     * Returns whether the given hash function reads the content of direct {@link java.nio.ByteBuffer}s without copying it to the heap first.
+     *
+     * {@link MessageDigest} based functions copy direct buffers into a heap array before digesting them,
+     * so for those reading into a heap buffer directly is cheaper.
+     */
+    public static boolean readsDirectBuffersNatively(HashFunction hashFunction) {
+        return hashFunction instanceof Murmur3HashFunction;
+    }
 
-        public static MessageDigestHashFunction of(String algorithm) {
-            MessageDigest prototype;
-            try {
-                prototype = MessageDigest.getInstance(algorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
-            }
-            int hashBits = prototype.getDigestLength() * 8;
-            try {
-                prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
-            } catch (CloneNotSupportedException e) {
-                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+    /**
+     * Returns the hashing function with the given algorithm name.
+     *
+     * @throws IllegalArgumentException if there is no such hashing function.
+     */
+    public static HashFunction forAlgorithm(String algorithm) {
+        for (HashFunction hashFunction : new HashFunction[]{MD5, SHA1, SHA256, SHA512, MURMUR3}) {
+            if (hashFunction.getAlgorithm().equalsIgnoreCase(algorithm)) {
+                return hashFunction;
             }
         }
+        throw new IllegalArgumentException("Unknown hashing algorithm: " + algorithm);
+    }
 
-        @Override
-        public PrimitiveHasher newPrimitiveHasher() {
-            MessageDigest digest = createDigest();
-            return new MessageDigestHasher(digest);
+    private static abstract class AbstractHashFunction implements HashFunction {
+        private final int hexDigits;
+
+        public AbstractHashFunction(int hashBits) {
+            this.hexDigits = hashBits / 4;
         }
 
         @Override
@@ -209,8 +223,6 @@ private HashingOutputStream primitiveStreamHasher() {
             return new HashingOutputStream(this, ByteStreams.nullOutputStream());
         }
 
-        protected abstract MessageDigest createDigest();
-
         @Override
         public int getHexDigits() {
             return hexDigits;
@@ -222,6 +234,53 @@ public String toString() {
         }
     }
 
+    private static abstract class MessageDigestHashFunction extends AbstractHashFunction {
+
+        public MessageDigestHashFunction(int hashBits) {
+            super(hashBits);
+        }
+
+        public static MessageDigestHashFunction of(String algorithm) {
+            MessageDigest prototype;
+            try {
+                prototype = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
+            }
+            int hashBits = prototype.getDigestLength() * 8;
+            try {
+                prototype.clone();
+                return new CloningMessageDigestHashFunction(prototype, hashBits);
+            } catch (CloneNotSupportedException e) {
+                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+            }
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            MessageDigest digest = createDigest();
+            return new MessageDigestHasher(digest);
+        }
+
+        protected abstract MessageDigest createDigest();
+    }
+
+    private static class Murmur3HashFunction extends AbstractHashFunction {
+        public Murmur3HashFunction() {
+            super(128);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "MURMUR3";
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new Murmur3Hasher();
+        }
+    }
+
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
@@ -298,6 +357,11 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            getDigest().update(bytes);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
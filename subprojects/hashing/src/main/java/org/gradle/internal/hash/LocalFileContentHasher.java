@@ -0,0 +1,47 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+/**
+ * Hashes file contents for the stores which stay on this machine, like the virtual file system, the file hash caches and the execution history.
+ *
+ * <p>The hash function can be different from {@link Hashing#defaultFunction()}.
+ * Hashes which are written somewhere other machines can read them, for example into build cache entries,
+ * need to be created with the {@link StreamHasher} service instead, which always uses the default function.</p>
+ */
+public class LocalFileContentHasher {
+    private final StreamHasher streamHasher;
+
+    public LocalFileContentHasher(HashFunction hashFunction) {
+        this.streamHasher = new DefaultStreamHasher(hashFunction);
+    }
+
+    public StreamHasher getStreamHasher() {
+        return streamHasher;
+    }
+
+    public HashFunction getHashFunction() {
+        return streamHasher.getHashFunction();
+    }
+
+    /**
+     * Whether the hashes are the same as the ones created with the default function, so that they can be shared with other machines.
+     */
+    public boolean usesDefaultFunction() {
+        return getHashFunction() == Hashing.defaultFunction();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.gradle.internal.hash.HashCode.Usage.SAFE_TO_REUSE_BYTES;
+
+/**
+ * Streaming implementation of the x64 128-bit variant of MurmurHash3 with a seed of 0.
+ *
+ * Produces the same hashes as Guava's {@code Hashing.murmur3_128()}.
+ * Multi-byte primitives are added in little-endian byte order, same as for the message digest based hashers.
+ */
+class Murmur3Hasher implements PrimitiveHasher {
+    private static final int BLOCK_SIZE = 16;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private long totalLength;
+    private long h1;
+    private long h2;
+    private boolean done;
+
+    @Override
+    public void putByte(byte b) {
+        checkNotDone();
+        block[blockLength++] = b;
+        if (blockLength == BLOCK_SIZE) {
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+    }
+
+    @Override
+    public void putBytes(ByteBuffer bytes) {
+        checkNotDone();
+        if (bytes.hasArray()) {
+            putBytes(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+            return;
+        }
+        ByteOrder originalOrder = bytes.order();
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (blockLength > 0 && bytes.hasRemaining()) {
+                putByte(bytes.get());
+            }
+            while (bytes.remaining() >= BLOCK_SIZE) {
+                processBlock(bytes.getLong(), bytes.getLong());
+            }
+            while (bytes.hasRemaining()) {
+                putByte(bytes.get());
+            }
+        } finally {
+            bytes.order(originalOrder);
+        }
+    }
+
+    @Override
+    public void putBytes(byte[] bytes) {
+        putBytes(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void putBytes(byte[] bytes, int off, int len) {
+        checkNotDone();
+        int end = off + len;
+        if (blockLength > 0) {
+            int toCopy = Math.min(BLOCK_SIZE - blockLength, len);
+            System.arraycopy(bytes, off, block, blockLength, toCopy);
+            blockLength += toCopy;
+            off += toCopy;
+            if (blockLength < BLOCK_SIZE) {
+                return;
+            }
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+        while (end - off >= BLOCK_SIZE) {
+            processBlock(bytes, off);
+            off += BLOCK_SIZE;
+        }
+        int remaining = end - off;
+        System.arraycopy(bytes, off, block, 0, remaining);
+        blockLength = remaining;
+    }
+
+    @Override
+    public void putInt(int value) {
+        putByte((byte) value);
+        putByte((byte) (value >>> 8));
+        putByte((byte) (value >>> 16));
+        putByte((byte) (value >>> 24));
+    }
+
+    @Override
+    public void putLong(long value) {
+        putInt((int) value);
+        putInt((int) (value >>> 32));
+    }
+
+    @Override
+    public void putDouble(double value) {
+        putLong(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void putBoolean(boolean value) {
+        putByte((byte) (value ? 1 : 0));
+    }
+
+    @Override
+    public void putString(CharSequence value) {
+        putBytes(value.toString().getBytes(Charsets.UTF_8));
+    }
+
+    @Override
+    public void putHash(HashCode hashCode) {
+        hashCode.appendToHasher(this);
+    }
+
+    @Override
+    public HashCode hash() {
+        checkNotDone();
+        done = true;
+        if (blockLength > 0) {
+            processRemaining();
+        }
+        h1 ^= totalLength;
+        h2 ^= totalLength;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] bytes = new byte[BLOCK_SIZE];
+        writeLittleEndian(h1, bytes, 0);
+        writeLittleEndian(h2, bytes, 8);
+        return HashCode.fromBytes(bytes, SAFE_TO_REUSE_BYTES);
+    }
+
+    private void checkNotDone() {
+        if (done) {
+            throw new IllegalStateException("Cannot reuse hasher!");
+        }
+    }
+
+    private void processBlock(byte[] bytes, int off) {
+        processBlock(readLittleEndian(bytes, off, 8), readLittleEndian(bytes, off + 8, 8));
+    }
+
+    private void processBlock(long k1, long k2) {
+        totalLength += BLOCK_SIZE;
+
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private void processRemaining() {
+        totalLength += blockLength;
+        long k1 = readLittleEndian(block, 0, Math.min(blockLength, 8));
+        long k2 = blockLength > 8 ? readLittleEndian(block, 8, blockLength - 8) : 0;
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+    }
+
+    private static long readLittleEndian(byte[] bytes, int off, int length) {
+        long result = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            result = (result << 8) | (bytes[off + i] & 0xffL);
+        }
+        return result;
+    }
+
+    private static void writeLittleEndian(long value, byte[] bytes, int off) {
+        for (int i = 0; i < 8; i++) {
+            bytes[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
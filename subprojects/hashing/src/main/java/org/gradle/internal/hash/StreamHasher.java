@@ -18,13 +18,26 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
 
 public interface StreamHasher {
+    /**
+     * The hash function used to hash the contents of the streams.
+     */
+    HashFunction getHashFunction();
+
     /**
      * Returns the hash of the given input stream. The stream will not be closed by the method.
      */
     HashCode hash(InputStream inputStream);
 
+    /**
+     * Returns the hash of the given channel, which is the same as the hash of an input stream with the same content.
+     * The content is read into direct buffers, which are only copied to the heap if the hash function cannot read them natively.
+     * The channel will not be closed by the method.
+     */
+    HashCode hash(ReadableByteChannel channel);
+
     /**
      * Returns the hash of the given input stream while copying the data to the output stream.
      * The method will not close either stream.
@@ -18,6 +18,8 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.channels.Channels
+
 class DefaultStreamHasherTest extends Specification {
     def "can hash input"() {
         def input = new ByteArrayInputStream("hello".bytes)
@@ -36,4 +38,26 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "can hash input with a different hash function"() {
+        def hasher = new DefaultStreamHasher(Hashing.murmur3())
+        when:
+        def hash = hasher.hash(new ByteArrayInputStream("hello".bytes))
+        then:
+        hasher.hashFunction == Hashing.murmur3()
+        hash == hasher.hash(new ByteArrayInputStream("hello".bytes))
+        hash != new DefaultStreamHasher().hash(new ByteArrayInputStream("hello".bytes))
+    }
+
+    def "hashing a channel produces the same hash as hashing a stream"() {
+        def bytes = new byte[size]
+        new Random(size).nextBytes(bytes)
+        def hasher = new DefaultStreamHasher(hashFunction)
+
+        expect:
+        hasher.hash(Channels.newChannel(new ByteArrayInputStream(bytes))) == hasher.hash(new ByteArrayInputStream(bytes))
+
+        where:
+        [size, hashFunction] << [[0, 1, 15, 16, 17, 8191, 8192, 300 * 1024], [Hashing.md5(), Hashing.murmur3()]].combinations()
+    }
 }
@@ -36,6 +36,13 @@ class HashingTest extends Specification {
         thrown(IllegalStateException)
     }
 
+    def 'only murmur3 reads direct buffers natively'() {
+        expect:
+        Hashing.readsDirectBuffersNatively(Hashing.murmur3())
+        !Hashing.readsDirectBuffersNatively(Hashing.md5())
+        !Hashing.readsDirectBuffersNatively(Hashing.sha1())
+    }
+
     def 'hashers can overlap'() {
         when:
         def hasher1 = Hashing.newHasher()
@@ -109,6 +116,49 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 produces the same hashes as Guava for #length bytes'() {
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+
+        expect:
+        Hashing.murmur3().hashBytes(bytes).toByteArray() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).asBytes()
+
+        where:
+        length << [0, 1, 7, 8, 15, 16, 17, 31, 32, 33, 1000]
+    }
+
+    def 'murmur3 hash does not depend on how the input is split'() {
+        def bytes = new byte[100]
+        new Random(1).nextBytes(bytes)
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putByte(bytes[3])
+        hasher.putBytes(bytes, 4, 20)
+        hasher.putBytes(bytes, 24, 76)
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+    }
+
+    def 'murmur3 adds primitives in little-endian byte order'() {
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putInt(0x01020304)
+        hasher.putLong(0x0102030405060708L)
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes([4, 3, 2, 1, 8, 7, 6, 5, 4, 3, 2, 1] as byte[])
+    }
+
+    def 'can look up hash function by algorithm'() {
+        expect:
+        Hashing.forAlgorithm("md5") == Hashing.md5()
+        Hashing.forAlgorithm("MURMUR3") == Hashing.murmur3()
+        Hashing.murmur3().hexDigits == 32
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
@@ -28,12 +28,14 @@
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.service.scopes.VirtualFileSystemServices;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterPool;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import org.gradle.internal.watch.options.FileSystemWatchingSettingsFinalizedProgressDetails;
 import org.gradle.internal.watch.registry.WatchMode;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.VfsLogging;
 import org.gradle.internal.watch.vfs.WatchLogging;
+import org.gradle.internal.watch.vfs.impl.DefaultVirtualFileSystemStateStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +48,8 @@ public class FileSystemWatchingBuildActionRunner implements BuildActionRunner {
     private final StatStatistics.Collector statStatisticsCollector;
     private final FileHasherStatistics.Collector fileHasherStatisticsCollector;
     private final DirectorySnapshotterStatistics.Collector directorySnapshotterStatisticsCollector;
+    private final DirectorySnapshotterPool directorySnapshotterPool;
+    private final DefaultVirtualFileSystemStateStore virtualFileSystemStateStore;
     private final BuildOperationRunner buildOperationRunner;
     private final BuildActionRunner delegate;
     private final InternalOptions options;
@@ -57,6 +61,8 @@ public FileSystemWatchingBuildActionRunner(
         StatStatistics.Collector statStatisticsCollector,
         FileHasherStatistics.Collector fileHasherStatisticsCollector,
         DirectorySnapshotterStatistics.Collector directorySnapshotterStatisticsCollector,
+        DirectorySnapshotterPool directorySnapshotterPool,
+        DefaultVirtualFileSystemStateStore virtualFileSystemStateStore,
         BuildOperationRunner buildOperationRunner,
         BuildActionRunner delegate,
         InternalOptions options
@@ -67,6 +73,8 @@ public FileSystemWatchingBuildActionRunner(
         this.statStatisticsCollector = statStatisticsCollector;
         this.fileHasherStatisticsCollector = fileHasherStatisticsCollector;
         this.directorySnapshotterStatisticsCollector = directorySnapshotterStatisticsCollector;
+        this.directorySnapshotterPool = directorySnapshotterPool;
+        this.virtualFileSystemStateStore = virtualFileSystemStateStore;
         this.buildOperationRunner = buildOperationRunner;
         this.delegate = delegate;
         this.options = options;
@@ -86,6 +94,9 @@ public Result run(BuildAction action, BuildTreeLifecycleController buildControll
 
         LOGGER.info("Watching the file system is configured to be {}", watchFileSystemMode.getDescription());
 
+        directorySnapshotterPool.setParallelism(VirtualFileSystemServices.getSnapshottingParallelism(options));
+        virtualFileSystemStateStore.setEnabled(VirtualFileSystemServices.isPersistVfs(options));
+
         boolean continuousBuild = startParameter.isContinuous() || !deploymentRegistry.getRunningDeployments().isEmpty();
 
         if (continuousBuild && watchFileSystemMode == WatchMode.DEFAULT) {
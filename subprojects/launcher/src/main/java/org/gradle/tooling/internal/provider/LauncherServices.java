@@ -55,12 +55,14 @@
 import org.gradle.internal.service.scopes.GradleUserHomeScopeServiceRegistry;
 import org.gradle.internal.session.BuildSessionActionExecutor;
 import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterPool;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.FileChangeListeners;
 import org.gradle.internal.watch.vfs.FileSystemWatchingInformation;
+import org.gradle.internal.watch.vfs.impl.DefaultVirtualFileSystemStateStore;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.launcher.exec.BuildCompletionNotifyingBuildActionRunner;
 import org.gradle.launcher.exec.BuildExecuter;
@@ -221,6 +223,8 @@ BuildTreeActionExecutor createActionExecutor(
             StatStatistics.Collector statStatisticsCollector,
             FileHasherStatistics.Collector fileHasherStatisticsCollector,
             DirectorySnapshotterStatistics.Collector directorySnapshotterStatisticsCollector,
+            DirectorySnapshotterPool directorySnapshotterPool,
+            DefaultVirtualFileSystemStateStore virtualFileSystemStateStore,
             BuildOperationRunner buildOperationRunner,
             BuildLayout buildLayout,
             ExceptionAnalyser exceptionAnalyser,
@@ -238,6 +242,8 @@ BuildTreeActionExecutor createActionExecutor(
                         statStatisticsCollector,
                         fileHasherStatisticsCollector,
                         directorySnapshotterStatisticsCollector,
+                        directorySnapshotterPool,
+                        virtualFileSystemStateStore,
                         buildOperationRunner,
                         new BuildOutcomeReportingBuildActionRunner(
                             styledTextOutputFactory,
@@ -27,12 +27,14 @@ import org.gradle.internal.file.StatStatistics
 import org.gradle.internal.invocation.BuildAction
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter
 import org.gradle.internal.operations.BuildOperationRunner
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterPool
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
 import org.gradle.internal.watch.options.FileSystemWatchingSettingsFinalizedProgressDetails
 import org.gradle.internal.watch.registry.WatchMode
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem
 import org.gradle.internal.watch.vfs.VfsLogging
 import org.gradle.internal.watch.vfs.WatchLogging
+import org.gradle.internal.watch.vfs.impl.DefaultVirtualFileSystemStateStore
 import spock.lang.Specification
 
 class FileSystemWatchingBuildActionRunnerTest extends Specification {
@@ -56,6 +58,8 @@ class FileSystemWatchingBuildActionRunnerTest extends Specification {
         Stub(StatStatistics.Collector),
         Stub(FileHasherStatistics.Collector),
         Stub(DirectorySnapshotterStatistics.Collector),
+        DirectorySnapshotterPool.sequential(),
+        Mock(DefaultVirtualFileSystemStateStore),
         buildOperationRunner,
         delegate,
         new DefaultInternalOptions([:]))
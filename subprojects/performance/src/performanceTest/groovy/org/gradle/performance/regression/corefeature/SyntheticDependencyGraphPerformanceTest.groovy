@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance.regression.corefeature
+
+import org.gradle.performance.AbstractCrossVersionPerformanceTest
+import org.gradle.performance.annotations.RunFor
+import org.gradle.performance.annotations.Scenario
+
+import static org.gradle.performance.annotations.ScenarioType.PER_COMMIT
+import static org.gradle.performance.results.OperatingSystem.LINUX
+
+@RunFor(
+    @Scenario(type = PER_COMMIT, operatingSystems = [LINUX], testProjects = ["largeSyntheticDependencyGraph"])
+)
+class SyntheticDependencyGraphPerformanceTest extends AbstractCrossVersionPerformanceTest {
+
+    def "resolve synthetic dependency graph with 10000 modules"() {
+        given:
+        runner.tasksToRun = ['resolveDependencies']
+        // Record the garbage collection time caused by the allocations of the resolution engine, and the resolution time itself, for every run
+        runner.measureGarbageCollection = true
+        runner.measuredBuildOperations << "org.gradle.api.internal.artifacts.configurations.ResolveConfigurationDependenciesBuildOperationType"
+
+        when:
+        def result = runner.run()
+
+        then:
+        result.assertCurrentVersionHasNotRegressed()
+    }
+}
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = """Persistent caches on disk and cross process locking.
@@ -29,3 +30,5 @@ dependencies {
     }
     integTestDistributionRuntimeOnly(project(":distributions-core"))
 }
+
+jmh.includes.set(listOf("IndexedCacheStoreBenchmark"))
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the throughput of concurrent lookups in a single B-tree, which needs to be locked as a whole, with a striped store.
+ */
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class IndexedCacheStoreBenchmark {
+    private static final int ENTRY_COUNT = 20_000;
+
+    @Param({"1", "16"})
+    int stripes;
+
+    private File tempDir;
+    private IndexedCacheStore<String, String> store;
+    private final ReentrantLock storeLock = new ReentrantLock();
+
+    @Setup
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("indexed-cache-store").toFile();
+        store = stripes == 1
+            ? new BTreePersistentIndexedCache<>(new File(tempDir, "cache.bin"), BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER)
+            : new StripedBTreePersistentIndexedCache<>(new File(tempDir, "cache.bin.stripes"), BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, stripes);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            store.put(key(i), value(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public String get() {
+        String key = key(ThreadLocalRandom.current().nextInt(ENTRY_COUNT));
+        if (stripes == 1) {
+            // The B-tree is not thread-safe, and needs to be accessed by a single thread at a time
+            storeLock.lock();
+            try {
+                return store.get(key);
+            } finally {
+                storeLock.unlock();
+            }
+        }
+        return store.get(key);
+    }
+
+    @Benchmark
+    public void getAndPut() {
+        int index = ThreadLocalRandom.current().nextInt(ENTRY_COUNT);
+        if (stripes == 1) {
+            storeLock.lock();
+            try {
+                getAndPut(index);
+            } finally {
+                storeLock.unlock();
+            }
+        } else {
+            getAndPut(index);
+        }
+    }
+
+    private void getAndPut(int index) {
+        String key = key(index);
+        if (store.get(key) == null || index % 10 == 0) {
+            store.put(key, value(index));
+        }
+    }
+
+    private static String key(int index) {
+        return "task-" + index + ":execution-history";
+    }
+
+    private static String value(int index) {
+        return "output-files-fingerprint-" + index;
+    }
+}
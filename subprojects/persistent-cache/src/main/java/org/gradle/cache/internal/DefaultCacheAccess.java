@@ -17,6 +17,7 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.cache.AsyncCacheAccess;
@@ -31,6 +32,8 @@
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.IndexedCacheStore;
+import org.gradle.cache.internal.btree.StripedBTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
@@ -52,6 +55,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -60,6 +64,15 @@
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheCoordinator {
+    /**
+     * The number of stripes of the indexed caches. With more than one stripe, entries are stored in multiple B-trees which can be accessed concurrently.
+     *
+     * Striped caches are stored in a directory named after the number of stripes. When a cache is opened, the files of the other layouts are deleted,
+     * so switching the setting away and back never brings back stale entries.
+     * Reads of striped caches do not take ownership of the cache access, they only hold the file lock.
+     */
+    public static final String INDEXED_CACHE_STRIPES_PROPERTY = "org.gradle.cache.indexed.stripes";
+
     private final static Logger LOG = LoggerFactory.getLogger(DefaultCacheAccess.class);
     private final static Runnable NO_OP = () -> {
         // Empty initial operation to trigger onStartWork calls
@@ -70,6 +83,8 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final CacheCleanupExecutor cleanupAction;
     private final ExecutorFactory executorFactory;
     private final FileAccess fileAccess;
+    private final FileAccess concurrentReadFileAccess;
+    private final int indexedCacheStripes = Integer.getInteger(INDEXED_CACHE_STRIPES_PROPERTY, 1);
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
     private final CacheAccessOperationsStack operations;
@@ -117,6 +132,9 @@ public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions
             default:
                 throw new IllegalArgumentException();
         }
+        concurrentReadFileAccess = fileAccess == TransparentFileAccess.INSTANCE
+            ? fileAccess
+            : new ConcurrentReadFileAccess();
     }
 
     private synchronized AsyncCacheAccess getCacheAccessWorker() {
@@ -309,12 +327,17 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<IndexedCacheStore<K, V>> indexedCacheFactory = () -> {
+                    deleteOtherLayouts(cacheFile);
+                    return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                };
 
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                boolean concurrentReads = isStriped();
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, concurrentReads ? concurrentReadFileAccess : fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
                 if (decorator != null) {
-                    indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
+                    AsyncCacheAccess asyncCacheAccess = concurrentReads ? new ConcurrentReadCacheAccess() : getCacheAccessWorker();
+                    indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, asyncCacheAccess);
                     if (fileLock == null) {
                         useCache(NO_OP);
                     }
@@ -339,10 +362,44 @@ private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> paramet
 
     @Override
     public <K, V> boolean cacheExists(PersistentIndexedCacheParameters<K, V> parameters) {
-        return findCacheFile(parameters).exists();
+        File cacheFile = findCacheFile(parameters);
+        return isStriped()
+            ? stripesDirFor(cacheFile).exists()
+            : cacheFile.exists();
+    }
+
+    private boolean isStriped() {
+        return indexedCacheStripes > 1;
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    private File stripesDirFor(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".stripes-" + indexedCacheStripes);
+    }
+
+    /**
+     * Deletes the files of the layouts not in use, as they would not see the updates made with the current layout.
+     */
+    private void deleteOtherLayouts(File cacheFile) {
+        File stripesDir = stripesDirFor(cacheFile);
+        File[] files = cacheFile.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        String stripesDirPrefix = cacheFile.getName() + ".stripes";
+        for (File file : files) {
+            boolean otherLayout = isStriped()
+                ? file.equals(cacheFile) || (file.getName().startsWith(stripesDirPrefix) && !file.equals(stripesDir))
+                : file.getName().startsWith(stripesDirPrefix);
+            if (otherLayout) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    <K, V> IndexedCacheStore<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (isStriped()) {
+            return new StripedBTreePersistentIndexedCache<>(stripesDirFor(cacheFile), keySerializer, valueSerializer, indexedCacheStripes);
+        }
         return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
     }
 
@@ -410,6 +467,21 @@ private boolean onEndWork() {
         return true;
     }
 
+    /**
+     * Returns the file lock held on behalf of any thread, without requiring the current thread to own the cache.
+     */
+    private FileLock getHeldFileLock() {
+        stateLock.lock();
+        try {
+            if (fileLock == null) {
+                throw new IllegalStateException(String.format("The %s has not been locked.", cacheDisplayName));
+            }
+            return fileLock;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
     private FileLock getFileLock() {
         stateLock.lock();
         try {
@@ -422,6 +494,90 @@ private FileLock getFileLock() {
         return fileLock;
     }
 
+    /**
+     * File access for striped caches, which can be read by multiple threads at the same time.
+     *
+     * Reads only require some thread to hold the file lock, they do not take ownership of the cache.
+     * Writes take ownership, since marking the lock file as dirty and clean is not thread-safe.
+     * A read that overlaps with a write can see the lock file as dirty, which is treated as a cache miss.
+     */
+    private class ConcurrentReadFileAccess extends AbstractFileAccess {
+        @Override
+        public String toString() {
+            return cacheDisplayName;
+        }
+
+        @Override
+        public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
+            return getHeldFileLock().readFile(action);
+        }
+
+        @Override
+        public void updateFile(Runnable action) throws LockTimeoutException {
+            withOwnership(() -> getFileLock().updateFile(action));
+        }
+
+        @Override
+        public void writeFile(Runnable action) throws LockTimeoutException {
+            withOwnership(() -> getFileLock().writeFile(action));
+        }
+
+        private void withOwnership(Runnable action) {
+            stateLock.lock();
+            boolean isOwner;
+            try {
+                isOwner = owner == Thread.currentThread();
+            } finally {
+                stateLock.unlock();
+            }
+            if (isOwner) {
+                // Also the case while the caches are notified about the file lock being released
+                action.run();
+            } else {
+                useCache(action);
+            }
+        }
+    }
+
+    /**
+     * Runs reads of striped caches on the calling thread instead of handing them to the cache access worker.
+     *
+     * Writes are still handed to the cache access worker. As required by {@link AsyncCacheAccess}, reads are handed to the worker, too, while there are pending writes.
+     */
+    private class ConcurrentReadCacheAccess implements AsyncCacheAccess {
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+
+        @Override
+        public void enqueue(Runnable task) {
+            pendingWrites.incrementAndGet();
+            try {
+                getCacheAccessWorker().enqueue(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        pendingWrites.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                pendingWrites.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public <T> T read(Factory<T> task) {
+            if (pendingWrites.get() > 0) {
+                return getCacheAccessWorker().read(task);
+            }
+            return crossProcessCacheAccess.withFileLock(task);
+        }
+
+        @Override
+        public void flush() {
+            getCacheAccessWorker().flush();
+        }
+    }
+
     private static class TransparentFileAccess implements FileAccess {
         private static final FileAccess INSTANCE = new TransparentFileAccess();
 
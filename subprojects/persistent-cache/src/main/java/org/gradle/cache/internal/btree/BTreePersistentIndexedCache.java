@@ -47,7 +47,7 @@
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
 @SuppressWarnings("unchecked")
-public class BTreePersistentIndexedCache<K, V> {
+public class BTreePersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
@@ -121,63 +121,110 @@ public void run() {
         header = store.readFirst(HeaderBlock.class);
     }
 
+    @Override
     public V get(K key) {
         try {
-            try {
-                DataBlock block = header.getRoot().get(key);
-                if (block != null) {
-                    return block.getValue();
-                }
-                return null;
-            } catch (CorruptedCacheException e) {
-                rebuild();
-                return null;
-            }
+            return doGet(keyHasher.getHashCode(key));
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
         }
     }
 
-    public void put(K key, V value) {
+    /**
+     * Same as {@link #get(Object)}, for a key for which the hash code has already been calculated by a {@link KeyHasher}.
+     */
+    V get(K key, long hashCode) {
         try {
-            long hashCode = keyHasher.getHashCode(key);
-            Lookup lookup = header.getRoot().find(hashCode);
-            DataBlock newBlock = null;
-            if (lookup.entry != null) {
-                DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-                DataBlockUpdateResult updateResult = block.useNewValue(value);
-                if (updateResult.isFailed()) {
-                    store.remove(block);
-                    newBlock = new DataBlock(value, updateResult.getSerializedValue());
-                }
-            } else {
-                newBlock = new DataBlock(value);
-            }
-            if (newBlock != null) {
-                store.write(newBlock);
-                lookup.indexBlock.put(hashCode, newBlock.getPos());
+            return doGet(hashCode);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private V doGet(long hashCode) throws Exception {
+        try {
+            DataBlock block = header.getRoot().get(hashCode);
+            if (block != null) {
+                return block.getValue();
             }
-            store.flush();
+            return null;
+        } catch (CorruptedCacheException e) {
+            rebuild();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            doPut(keyHasher.getHashCode(key), value);
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
         }
     }
 
-    public void remove(K key) {
+    /**
+     * Same as {@link #put(Object, Object)}, for a key for which the hash code has already been calculated by a {@link KeyHasher}.
+     */
+    void put(K key, long hashCode, V value) {
         try {
-            Lookup lookup = header.getRoot().find(key);
-            if (lookup.entry == null) {
-                return;
-            }
-            lookup.indexBlock.remove(lookup.entry);
+            doPut(hashCode, value);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    private void doPut(long hashCode, V value) throws Exception {
+        Lookup lookup = header.getRoot().find(hashCode);
+        DataBlock newBlock = null;
+        if (lookup.entry != null) {
             DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-            store.remove(block);
-            store.flush();
+            DataBlockUpdateResult updateResult = block.useNewValue(value);
+            if (updateResult.isFailed()) {
+                store.remove(block);
+                newBlock = new DataBlock(value, updateResult.getSerializedValue());
+            }
+        } else {
+            newBlock = new DataBlock(value);
+        }
+        if (newBlock != null) {
+            store.write(newBlock);
+            lookup.indexBlock.put(hashCode, newBlock.getPos());
+        }
+        store.flush();
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            doRemove(keyHasher.getHashCode(key));
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
         }
     }
 
+    /**
+     * Same as {@link #remove(Object)}, for a key for which the hash code has already been calculated by a {@link KeyHasher}.
+     */
+    void remove(K key, long hashCode) {
+        try {
+            doRemove(hashCode);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private void doRemove(long hashCode) throws Exception {
+        Lookup lookup = header.getRoot().find(hashCode);
+        if (lookup.entry == null) {
+            return;
+        }
+        lookup.indexBlock.remove(lookup.entry);
+        DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
+        store.remove(block);
+        store.flush();
+    }
+
     private IndexBlock load(BlockPointer pos, IndexRoot root, IndexBlock parent, int index) {
         IndexBlock block = store.read(pos, IndexBlock.class);
         block.root = root;
@@ -186,6 +233,7 @@ private IndexBlock load(BlockPointer pos, IndexRoot root, IndexBlock parent, int
         return block;
     }
 
+    @Override
     public void reset() {
         close();
         try {
@@ -195,6 +243,7 @@ public void reset() {
         }
     }
 
+    @Override
     public void close() {
         LOGGER.debug("Closing {}", this);
         try {
@@ -204,6 +253,7 @@ public void close() {
         }
     }
 
+    @Override
     public boolean isOpen() {
         return store.isOpen();
     }
@@ -462,8 +512,8 @@ private void add(IndexBlock left, IndexEntry entry, IndexBlock right) throws Exc
             maybeSplit();
         }
 
-        public DataBlock get(K key) throws Exception {
-            Lookup lookup = find(key);
+        public DataBlock get(long hashCode) throws Exception {
+            Lookup lookup = find(hashCode);
             if (lookup.entry == null) {
                 return null;
             }
@@ -471,12 +521,7 @@ public DataBlock get(K key) throws Exception {
             return store.read(lookup.entry.dataBlock, DataBlock.class);
         }
 
-        public Lookup find(K key) throws Exception {
-            long checksum = keyHasher.getHashCode(key);
-            return find(checksum);
-        }
-
-        private Lookup find(long hashCode) throws Exception {
+        public Lookup find(long hashCode) throws Exception {
             int index = Collections.binarySearch(entries, new IndexEntry(hashCode));
             if (index >= 0) {
                 return new Lookup(this, entries.get(index));
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A thread-safe store which spreads its entries over multiple {@link BTreePersistentIndexedCache} files.
+ *
+ * Each key is assigned to a stripe based on the hash of its serialized form, so the assignment is stable across processes.
+ * The hash is calculated once, outside of any lock, and reused for the lookup in the B-tree of the stripe.
+ * Each stripe is guarded by its own lock, so threads accessing keys in different stripes do not block each other.
+ * Stripes are opened lazily, on first access.
+ *
+ * The stripe files are stored in a directory of their own. The same directory must always be used with the same number of stripes,
+ * since entries would be assigned to different stripes otherwise.
+ */
+public class StripedBTreePersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private final File stripesDir;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final ThreadLocal<KeyHasher<K>> keyHasher;
+    private final List<Stripe> stripes;
+
+    public StripedBTreePersistentIndexedCache(File stripesDir, Serializer<K> keySerializer, Serializer<V> valueSerializer, int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("The number of stripes must be positive, but was " + stripeCount + ".");
+        }
+        this.stripesDir = stripesDir;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.keyHasher = ThreadLocal.withInitial(() -> new KeyHasher<>(keySerializer));
+        this.stripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new Stripe(new File(stripesDir, i + ".bin")));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "striped cache " + stripesDir.getName() + " (" + stripesDir + ")";
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        long hashCode = hashCodeOf(key);
+        return stripeFor(hashCode).withCache(cache -> cache.get(key, hashCode));
+    }
+
+    @Override
+    public void put(K key, V value) {
+        long hashCode = hashCodeOf(key);
+        stripeFor(hashCode).withCache(cache -> {
+            cache.put(key, hashCode, value);
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(K key) {
+        long hashCode = hashCodeOf(key);
+        stripeFor(hashCode).withCache(cache -> {
+            cache.remove(key, hashCode);
+            return null;
+        });
+    }
+
+    @Override
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            stripe.reset();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    /**
+     * Returns whether any of the stripes is currently open.
+     */
+    @Override
+    public boolean isOpen() {
+        for (Stripe stripe : stripes) {
+            if (stripe.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long hashCodeOf(K key) {
+        try {
+            return keyHasher.get().getHashCode(key);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private Stripe stripeFor(long hashCode) {
+        // Use the high bits, the B-tree orders its entries by the full hash code
+        return stripes.get((int) ((hashCode >>> 32) & Integer.MAX_VALUE) % stripes.size());
+    }
+
+    private class Stripe {
+        private final File cacheFile;
+        private final ReentrantLock lock = new ReentrantLock();
+        private BTreePersistentIndexedCache<K, V> cache;
+
+        Stripe(File cacheFile) {
+            this.cacheFile = cacheFile;
+        }
+
+        <T> T withCache(Function<BTreePersistentIndexedCache<K, V>, T> action) {
+            lock.lock();
+            try {
+                if (cache == null) {
+                    cache = new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
+                }
+                return action.apply(cache);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void reset() {
+            lock.lock();
+            try {
+                if (cache != null) {
+                    cache.reset();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (cache != null) {
+                    cache.close();
+                    cache = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isOpen() {
+            lock.lock();
+            try {
+                return cache != null && cache.isOpen();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -810,4 +810,149 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         cleanup:
         access?.close()
     }
+
+    def "reads striped caches while another thread owns the cache"() {
+        System.setProperty(DefaultCacheAccess.INDEXED_CACHE_STRIPES_PROPERTY, "4")
+        def decorator = Mock(CacheDecorator)
+        def access = newAccess(OnDemand)
+
+        given:
+        AsyncCacheAccess asyncAccess
+        decorator.decorate(_, _, _, _, _) >> { String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess ->
+            asyncAccess = asyncCacheAccess
+            persistentCache
+        }
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> lock
+        lock.readFile(_) >> { Factory factory -> factory.create() }
+        lock.writeFile(_) >> { Runnable action -> action.run() }
+        backingCache.get("key") >> 12
+
+        access.open()
+        def cache = access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class).withCacheDecorator(decorator))
+        access.useCache {
+            cache.getIfPresent("key")
+        }
+
+        when:
+        async {
+            start {
+                access.useCache {
+                    instant.owned
+                    thread.blockUntil.read
+                }
+            }
+            start {
+                thread.blockUntil.owned
+                assert asyncAccess.read { cache.getIfPresent("key") } == 12
+                instant.read
+            }
+        }
+
+        then:
+        noExceptionThrown()
+
+        cleanup:
+        access?.close()
+        System.clearProperty(DefaultCacheAccess.INDEXED_CACHE_STRIPES_PROPERTY)
+    }
+
+    def "hands writes to striped caches to the cache access worker"() {
+        System.setProperty(DefaultCacheAccess.INDEXED_CACHE_STRIPES_PROPERTY, "4")
+        def decorator = Mock(CacheDecorator)
+        def access = newAccess(OnDemand)
+
+        given:
+        AsyncCacheAccess asyncAccess
+        decorator.decorate(_, _, _, _, _) >> { String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess ->
+            asyncAccess = asyncCacheAccess
+            persistentCache
+        }
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> lock
+        lock.readFile(_) >> { Factory factory -> factory.create() }
+        lock.writeFile(_) >> { Runnable action -> action.run() }
+
+        access.open()
+        def cache = access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class).withCacheDecorator(decorator))
+
+        when:
+        async {
+            start {
+                access.useCache {
+                    instant.owned
+                    thread.blockUntil.enqueued
+                }
+            }
+            start {
+                thread.blockUntil.owned
+                asyncAccess.enqueue { cache.put("key", 12) }
+                instant.enqueued
+            }
+        }
+        def value = asyncAccess.read { cache.getIfPresent("key") }
+
+        then:
+        1 * backingCache.put("key", 12)
+
+        then:
+        1 * backingCache.get("key") >> 12
+        value == 12
+
+        cleanup:
+        access?.close()
+        System.clearProperty(DefaultCacheAccess.INDEXED_CACHE_STRIPES_PROPERTY)
+    }
+
+    def "deletes the files of other layouts when opening a striped cache"() {
+        System.setProperty(DefaultCacheAccess.INDEXED_CACHE_STRIPES_PROPERTY, "4")
+        def access = newAccess(OnDemand)
+
+        given:
+        def unstriped = cacheDir.file("cache.bin").createFile()
+        def otherStripes = cacheDir.file("cache.bin.stripes-2").createDir()
+        def stripes = cacheDir.file("cache.bin.stripes-4").createDir()
+        def otherCache = cacheDir.file("other.bin").createFile()
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> lock
+        lock.readFile(_) >> { Factory factory -> factory.create() }
+        lock.writeFile(_) >> { Runnable action -> action.run() }
+
+        when:
+        def cache = access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class))
+        access.useCache {
+            cache.getIfPresent("key")
+        }
+
+        then:
+        !unstriped.exists()
+        !otherStripes.exists()
+        stripes.exists()
+        otherCache.exists()
+
+        cleanup:
+        access?.close()
+        System.clearProperty(DefaultCacheAccess.INDEXED_CACHE_STRIPES_PROPERTY)
+    }
+
+    def "deletes the files of striped layouts when opening an unstriped cache"() {
+        def access = newAccess(OnDemand)
+
+        given:
+        def unstriped = cacheDir.file("cache.bin").createFile()
+        def stripes = cacheDir.file("cache.bin.stripes-4").createDir()
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> lock
+        lock.readFile(_) >> { Factory factory -> factory.create() }
+        lock.writeFile(_) >> { Runnable action -> action.run() }
+
+        when:
+        def cache = access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class))
+        access.useCache {
+            cache.getIfPresent("key")
+        }
+
+        then:
+        unstriped.exists()
+        !stripes.exists()
+
+        cleanup:
+        access?.close()
+    }
 }
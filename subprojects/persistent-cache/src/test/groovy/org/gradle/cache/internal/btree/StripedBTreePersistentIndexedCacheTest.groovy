@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class StripedBTreePersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def "persists entries across stripes"() {
+        def cache = createCache(4)
+
+        when:
+        (1..100).each { cache.put("key-$it".toString(), it) }
+        cache.remove("key-50")
+        cache.close()
+        cache = createCache(4)
+
+        then:
+        !cache.isOpen()
+        cache.get("key-1") == 1
+        cache.get("key-100") == 100
+        cache.get("key-50") == null
+        cache.isOpen()
+        stripesDir(4).list().length == 4
+
+        cleanup:
+        cache.close()
+    }
+
+    def "can be accessed concurrently"() {
+        def cache = createCache(8)
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def results = (0..<8).collect { thread ->
+            executor.submit({
+                (1..200).every { index ->
+                    def key = "key-$thread-$index".toString()
+                    cache.put(key, index)
+                    cache.get(key) == index
+                }
+            } as Callable<Boolean>)
+        }
+
+        then:
+        results.every { it.get() }
+        cache.get("key-7-200") == 200
+
+        cleanup:
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+        cache.close()
+    }
+
+    private File stripesDir(int stripes) {
+        tmpDir.file("cache.bin.stripes-$stripes")
+    }
+
+    private StripedBTreePersistentIndexedCache<String, Integer> createCache(int stripes) {
+        new StripedBTreePersistentIndexedCache<String, Integer>(stripesDir(stripes), BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, stripes)
+    }
+}
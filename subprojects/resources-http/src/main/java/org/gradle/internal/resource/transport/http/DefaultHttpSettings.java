@@ -39,6 +39,7 @@ public class DefaultHttpSettings implements HttpSettings {
     private final HostnameVerifier hostnameVerifier;
     private final HttpRedirectVerifier redirectVerifier;
     private final int maxRedirects;
+    private final int maxConnections;
     private final RedirectMethodHandlingStrategy redirectMethodHandlingStrategy;
 
     private HttpProxySettings proxySettings;
@@ -54,9 +55,10 @@ private DefaultHttpSettings(
         SslContextFactory sslContextFactory,
         HostnameVerifier hostnameVerifier,
         HttpRedirectVerifier redirectVerifier,
-        RedirectMethodHandlingStrategy redirectMethodHandlingStrategy, int maxRedirects
+        RedirectMethodHandlingStrategy redirectMethodHandlingStrategy, int maxRedirects, int maxConnections
     ) {
         Preconditions.checkArgument(maxRedirects >= 0, "maxRedirects must be positive");
+        Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive");
         Preconditions.checkNotNull(authenticationSettings, "authenticationSettings");
         Preconditions.checkNotNull(sslContextFactory, "sslContextFactory");
         Preconditions.checkNotNull(hostnameVerifier, "hostnameVerifier");
@@ -64,6 +66,7 @@ private DefaultHttpSettings(
         Preconditions.checkNotNull(redirectMethodHandlingStrategy, "redirectMethodHandlingStrategy");
 
         this.maxRedirects = maxRedirects;
+        this.maxConnections = maxConnections;
         this.authenticationSettings = authenticationSettings;
         this.sslContextFactory = sslContextFactory;
         this.hostnameVerifier = hostnameVerifier;
@@ -100,6 +103,11 @@ public int getMaxRedirects() {
         return maxRedirects;
     }
 
+    @Override
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
     @Override
     public HttpRedirectVerifier getRedirectVerifier() {
         return redirectVerifier;
@@ -131,6 +139,7 @@ public static class Builder {
         private HostnameVerifier hostnameVerifier;
         private HttpRedirectVerifier redirectVerifier;
         private int maxRedirects = 10;
+        private int maxConnections = 20;
         private RedirectMethodHandlingStrategy redirectMethodHandlingStrategy = RedirectMethodHandlingStrategy.ALWAYS_FOLLOW_AND_PRESERVE;
 
         public Builder withAuthenticationSettings(Collection<Authentication> authenticationSettings) {
@@ -161,13 +170,19 @@ public Builder maxRedirects(int maxRedirects) {
             return this;
         }
 
+        public Builder maxConnections(int maxConnections) {
+            Preconditions.checkArgument(maxConnections > 0);
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
         public Builder withRedirectMethodHandlingStrategy(RedirectMethodHandlingStrategy redirectMethodHandlingStrategy) {
             this.redirectMethodHandlingStrategy = redirectMethodHandlingStrategy;
             return this;
         }
 
         public HttpSettings build() {
-            return new DefaultHttpSettings(authenticationSettings, sslContextFactory, hostnameVerifier, redirectVerifier, redirectMethodHandlingStrategy, maxRedirects);
+            return new DefaultHttpSettings(authenticationSettings, sslContextFactory, hostnameVerifier, redirectVerifier, redirectMethodHandlingStrategy, maxRedirects, maxConnections);
         }
     }
 
@@ -56,6 +56,7 @@ public class HttpClientHelper implements Closeable {
     private CloseableHttpClient client;
     private final DocumentationRegistry documentationRegistry;
     private final HttpSettings settings;
+    private final HttpConnectionStatistics connectionStatistics = new HttpConnectionStatistics();
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -222,11 +223,16 @@ private synchronized CloseableHttpClient getClient() {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
             new HttpClientConfigurer(settings).configure(builder);
+            builder.setRequestExecutor(connectionStatistics);
             this.client = builder.build();
         }
         return client;
     }
 
+    public HttpConnectionStatistics getConnectionStatistics() {
+        return connectionStatistics;
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (client != null) {
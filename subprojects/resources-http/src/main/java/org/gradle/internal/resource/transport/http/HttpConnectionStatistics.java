@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the requests sent by a client, and how many of them reused a kept-alive connection.
+ */
+public class HttpConnectionStatistics extends HttpRequestExecutor {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong reusedConnections = new AtomicLong();
+
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection connection, HttpContext context) throws IOException, HttpException {
+        requests.incrementAndGet();
+        // The request has not been sent yet, so a connection which already sent requests has been kept alive
+        if (connection.getMetrics().getRequestCount() > 0) {
+            reusedConnections.incrementAndGet();
+        }
+        return super.execute(request, connection, context);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getReusedConnections() {
+        return reusedConnections.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d on a reused connection", getRequests(), getReusedConnections());
+    }
+}
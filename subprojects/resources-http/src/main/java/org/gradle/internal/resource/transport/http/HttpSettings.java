@@ -31,6 +31,11 @@ public interface HttpSettings {
 
     int getMaxRedirects();
 
+    /**
+     * The maximum number of connections kept open, in total and to the same host.
+     */
+    int getMaxConnections();
+
     HttpRedirectVerifier getRedirectVerifier();
 
     RedirectMethodHandlingStrategy getRedirectMethodHandlingStrategy();
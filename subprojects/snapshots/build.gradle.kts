@@ -1,6 +1,7 @@
 plugins {
     id("gradlebuild.distribution.implementation-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Tools to take immutable, comparable snapshots of files and other things"
@@ -35,3 +36,5 @@ dependencies {
 
     integTestDistributionRuntimeOnly(project(":distributions-core"))
 }
+
+jmh.includes.set(listOf("SnapshotHierarchyMemoryBenchmark"))
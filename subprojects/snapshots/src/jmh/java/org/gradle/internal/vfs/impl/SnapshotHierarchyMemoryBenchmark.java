@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by the virtual file system per snapshotted file system location.
+ *
+ * The retained memory is reported in the {@code retainedBytesPerNode} secondary result.
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyMemoryBenchmark {
+    private static final String ROOT = "/home/user/projects/gradle-build/subprojects";
+
+    @Param({"100", "1000"})
+    int directoryCount;
+
+    @Param({"100"})
+    int filesPerDirectory;
+
+    private final Interner<String> stringInterner = Interners.newWeakInterner();
+    private SnapshotHierarchy retainedHierarchy;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedMemory {
+        public long retainedBytesPerNode;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytesPerNode = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void releaseHierarchy() {
+        retainedHierarchy = null;
+    }
+
+    @Benchmark
+    public void storeSnapshots(RetainedMemory retainedMemory) {
+        long usedBefore = usedHeapAfterGc();
+        SnapshotHierarchy hierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        for (int dir = 0; dir < directoryCount; dir++) {
+            DirectorySnapshot snapshot = directorySnapshot(ROOT + "/module" + dir + "/src/main/java/org/gradle/sample");
+            hierarchy = hierarchy.store(snapshot.getAbsolutePath(), snapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        retainedHierarchy = hierarchy;
+        long usedAfter = usedHeapAfterGc();
+        retainedMemory.retainedBytesPerNode = (usedAfter - usedBefore) / ((long) directoryCount * (filesPerDirectory + 1));
+    }
+
+    private DirectorySnapshot directorySnapshot(String absolutePath) {
+        List<FileSystemLocationSnapshot> children = new ArrayList<>(filesPerDirectory);
+        for (int file = 0; file < filesPerDirectory; file++) {
+            String name = stringInterner.intern("SampleClass" + file + ".java");
+            String filePath = absolutePath + "/" + name;
+            HashCode contentHash = Hashing.md5().hashString(filePath);
+            // Same as the file snapshots created by DirectorySnapshotter
+            children.add(RegularFileSnapshot.inDirectory(absolutePath, name, contentHash, DefaultFileMetadata.file(file, 1024L + file, AccessType.DIRECT)));
+        }
+        children.sort((left, right) -> left.getName().compareTo(right.getName()));
+        String name = absolutePath.substring(absolutePath.lastIndexOf('/') + 1);
+        return new DirectorySnapshot(absolutePath, name, AccessType.DIRECT, Hashing.md5().hashString(absolutePath), children);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
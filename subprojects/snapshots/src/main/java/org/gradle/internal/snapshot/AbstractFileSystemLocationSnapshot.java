@@ -18,27 +18,50 @@
 
 import org.gradle.internal.file.FileMetadata.AccessType;
 
+import java.io.File;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 public abstract class AbstractFileSystemLocationSnapshot implements FileSystemLocationSnapshot {
-    private final String absolutePath;
+    /**
+     * Either the absolute path of the location, or the absolute path of its parent directory.
+     *
+     * The latter allows all the children of a directory to share the parent path instead of each retaining its own absolute path.
+     */
+    private final String location;
     private final String name;
     private final AccessType accessType;
+    private final boolean locationIsParentPath;
 
     public AbstractFileSystemLocationSnapshot(String absolutePath, String name, AccessType accessType) {
-        this.absolutePath = absolutePath;
+        this(absolutePath, false, name, accessType);
+    }
+
+    protected AbstractFileSystemLocationSnapshot(String location, boolean locationIsParentPath, String name, AccessType accessType) {
+        this.location = location;
+        this.locationIsParentPath = locationIsParentPath;
         this.name = name;
         this.accessType = accessType;
     }
 
+    /**
+     * Whether the absolute path of a child can be computed by appending a separator and its name to the parent path.
+     *
+     * This is not the case for file system roots, which already end with a separator.
+     */
+    protected static boolean canDeriveAbsolutePath(String parentPath) {
+        return !parentPath.isEmpty() && parentPath.charAt(parentPath.length() - 1) != File.separatorChar;
+    }
+
     protected static MissingFileSnapshot missingSnapshotForAbsolutePath(String filePath) {
         return new MissingFileSnapshot(filePath, AccessType.DIRECT);
     }
 
     @Override
     public String getAbsolutePath() {
-        return absolutePath;
+        return locationIsParentPath
+            ? location + File.separatorChar + name
+            : location;
     }
 
     @Override
@@ -115,7 +138,7 @@ public boolean equals(Object o) {
         if (!name.equals(that.name)) {
             return false;
         }
-        if (!absolutePath.equals(that.absolutePath)) {
+        if (!getAbsolutePath().equals(that.getAbsolutePath())) {
             return false;
         }
         return getHash().equals(that.getHash());
@@ -123,7 +146,7 @@ public boolean equals(Object o) {
 
     @Override
     public int hashCode() {
-        int result = absolutePath.hashCode();
+        int result = getAbsolutePath().hashCode();
         result = 31 * result + name.hashCode();
         result = 31 * result + accessType.hashCode();
         result = 31 * result + getHash().hashCode();
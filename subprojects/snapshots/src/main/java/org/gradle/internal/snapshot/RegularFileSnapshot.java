@@ -17,24 +17,56 @@
 package org.gradle.internal.snapshot;
 
 import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
 import org.gradle.internal.hash.HashCode;
 
+import java.io.File;
 import java.util.Optional;
 
 /**
  * A snapshot of a regular file.
  *
  * The snapshot includes the content hash of the file and its metadata.
+ *
+ * <p>Snapshots of regular files are the most numerous nodes retained by the virtual file system.
+ * To keep their footprint small, the length and the last modified time are stored as primitive fields
+ * instead of retaining a separate {@link FileMetadata} object for every file.
+ * Snapshots created via {@link #inDirectory(String, String, HashCode, FileMetadata)} share the path of their parent directory
+ * and compute their absolute path on demand.
+ * Neither the derived path nor the metadata object is cached, since snapshots live as long as the virtual file system
+ * and fingerprinting requests both for nearly every file.</p>
  */
 public class RegularFileSnapshot extends AbstractFileSystemLocationSnapshot implements FileSystemLeafSnapshot {
     private final HashCode contentHash;
-    private final FileMetadata metadata;
+    private final long lastModified;
+    private final long length;
 
     public RegularFileSnapshot(String absolutePath, String name, HashCode contentHash, FileMetadata metadata) {
         super(absolutePath, name, metadata.getAccessType());
         this.contentHash = contentHash;
-        this.metadata = metadata;
+        this.lastModified = metadata.getLastModified();
+        this.length = metadata.getLength();
+    }
+
+    private RegularFileSnapshot(String parentPath, String name, HashCode contentHash, long lastModified, long length, AccessType accessType) {
+        super(parentPath, true, name, accessType);
+        this.contentHash = contentHash;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * Creates a snapshot for the file with the given name in the directory with the given absolute path.
+     *
+     * The parent path is retained instead of the absolute path of the file, so it should be the same instance as used by the snapshot of the parent directory.
+     */
+    public static RegularFileSnapshot inDirectory(String parentPath, String name, HashCode contentHash, FileMetadata metadata) {
+        if (!canDeriveAbsolutePath(parentPath)) {
+            return new RegularFileSnapshot(parentPath + name, name, contentHash, metadata);
+        }
+        return new RegularFileSnapshot(parentPath, name, contentHash, metadata.getLastModified(), metadata.getLength(), metadata.getAccessType());
     }
 
     @Override
@@ -49,12 +81,18 @@ public HashCode getHash() {
 
     // Used by the Maven caching client. Do not remove
     public FileMetadata getMetadata() {
-        return metadata;
+        return DefaultFileMetadata.file(lastModified, length, getAccessType());
     }
 
     @Override
     public boolean isContentAndMetadataUpToDate(FileSystemLocationSnapshot other) {
-        return isContentUpToDate(other) && metadata.equals(((RegularFileSnapshot) other).metadata);
+        if (!isContentUpToDate(other)) {
+            return false;
+        }
+        RegularFileSnapshot otherFile = (RegularFileSnapshot) other;
+        return lastModified == otherFile.lastModified
+            && length == otherFile.length
+            && getAccessType() == otherFile.getAccessType();
     }
 
     @Override
@@ -17,6 +17,7 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
@@ -48,12 +49,15 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -62,9 +66,18 @@
 
 /**
  * For creating {@link DirectorySnapshot}s of directories.
+ *
+ * When created with a parallel {@link DirectorySnapshotterPool}, the snapshotter walks sub-directories and hashes regular files concurrently on that pool.
+ * Forked work is joined before the enclosing directory is left, and the children of a directory are sorted
+ * before its snapshot is built, so the resulting snapshots are the same as when walking on a single thread.
  */
 public class DirectorySnapshotter {
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
+    /**
+     * Work is only forked when the current worker has at most this many queued tasks which have not been stolen yet.
+     * This keeps the number of tasks low for small trees while still splitting large trees across all workers.
+     */
+    private static final int MAX_SURPLUS_QUEUED_TASKS = 3;
     private static final SymbolicLinkMapping EMPTY_SYMBOLIC_LINK_MAPPING = new SymbolicLinkMapping() {
 
         @Override
@@ -73,8 +86,8 @@ public String remapAbsolutePath(Path path) {
         }
 
         @Override
-        public SymbolicLinkMapping withNewMapping(String source, String target, RelativePathTracker currentPathTracker) {
-            return new DefaultSymbolicLinkMapping(source, target, currentPathTracker.getSegments());
+        public SymbolicLinkMapping withNewMapping(String source, String target, Iterable<String> currentSegments) {
+            return new DefaultSymbolicLinkMapping(source, target, currentSegments);
         }
 
         @Override
@@ -87,12 +100,23 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final DirectorySnapshotterPool pool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, DirectorySnapshotterPool.sequential());
+    }
+
+    /**
+     * Creates a snapshotter which snapshots directories on the given pool.
+     *
+     * @param pool The pool to snapshot on, which is looked up for each snapshot as its parallelism can change between builds.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, DirectorySnapshotterPool pool) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.pool = pool;
     }
 
     /**
@@ -113,10 +137,21 @@ public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner,
      */
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
         try {
+            ForkJoinPool forkJoinPool = pool.getForkJoinPool();
             AtomicBoolean hasBeenFiltered = new AtomicBoolean();
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
-            Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer, forkJoinPool);
+            if (forkJoinPool == null || ForkJoinTask.getPool() == forkJoinPool) {
+                Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            } else {
+                forkJoinPool.invoke(ForkJoinTask.adapt(() -> {
+                    try {
+                        Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
+                    }
+                }));
+            }
             FileSystemLocationSnapshot result = visitor.getResult();
             if (!hasBeenFiltered.get()) {
                 unfilteredSnapshotConsumer.accept(result);
@@ -130,7 +165,7 @@ public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable Snapsh
     private interface SymbolicLinkMapping {
         String remapAbsolutePath(Path path);
         @CheckReturnValue
-        SymbolicLinkMapping withNewMapping(String source, String target, RelativePathTracker currentPathTracker);
+        SymbolicLinkMapping withNewMapping(String source, String target, Iterable<String> currentSegments);
         Iterable<String> getRemappedSegments(Iterable<String> segments);
     }
 
@@ -161,8 +196,8 @@ public String remapAbsolutePath(String absolutePath) {
         }
 
         @Override
-        public SymbolicLinkMapping withNewMapping(String source, String target, RelativePathTracker currentPathTracker) {
-            return new DefaultSymbolicLinkMapping(remapAbsolutePath(source), target, getRemappedSegments(currentPathTracker.getSegments()));
+        public SymbolicLinkMapping withNewMapping(String source, String target, Iterable<String> currentSegments) {
+            return new DefaultSymbolicLinkMapping(remapAbsolutePath(source), target, getRemappedSegments(currentSegments));
         }
 
         @Override
@@ -253,9 +288,12 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
         private final SymbolicLinkMapping symbolicLinkMapping;
-        private final Deque<String> parentDirectories = new ArrayDeque<>();
+        private final Deque<String> parentDirectories;
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer;
+        private final ForkJoinPool forkJoinPool;
+        private final ImmutableList<String> subtreeSegmentsPrefix;
+        private final List<ForkedSnapshot> forkedSnapshots = new ArrayList<>();
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -265,9 +303,27 @@ public PathVisitor(
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping,
-            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+            @Nullable ForkJoinPool forkJoinPool
         ) {
-            super(statisticsCollector);
+            this(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, statisticsCollector, symbolicLinkMapping, unfilteredSnapshotConsumer, forkJoinPool, false, ImmutableList.of(), new ArrayDeque<>());
+        }
+
+        private PathVisitor(
+            @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
+            AtomicBoolean hasBeenFiltered,
+            FileHasher hasher,
+            Interner<String> stringInterner,
+            DefaultExcludes defaultExcludes,
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            SymbolicLinkMapping symbolicLinkMapping,
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+            @Nullable ForkJoinPool forkJoinPool,
+            boolean forkedSubtree,
+            ImmutableList<String> subtreeSegmentsPrefix,
+            Deque<String> parentDirectories
+        ) {
+            super(statisticsCollector, forkedSubtree);
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::consumeUnfilteredSnapshot);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
@@ -276,6 +332,9 @@ public PathVisitor(
             this.defaultExcludes = defaultExcludes;
             this.symbolicLinkMapping = symbolicLinkMapping;
             this.unfilteredSnapshotConsumer = unfilteredSnapshotConsumer;
+            this.forkJoinPool = forkJoinPool;
+            this.subtreeSegmentsPrefix = subtreeSegmentsPrefix;
+            this.parentDirectories = parentDirectories;
         }
 
         private void consumeUnfilteredSnapshot(FileSystemLocationSnapshot snapshot) {
@@ -293,6 +352,11 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (shouldVisitDirectory(dir, fileName)) {
+                if (!pathTracker.isRoot() && shouldFork()) {
+                    forkSubtree(dir);
+                    pathTracker.leave();
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
                 return FileVisitResult.CONTINUE;
@@ -311,6 +375,7 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            joinForkedSnapshots(parentDirectories.size());
             boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
             FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
             if (!currentLevelComplete) {
@@ -371,8 +436,9 @@ private DirectorySnapshot followSymlink(Path file, String internedFileName, Atom
                         stringInterner,
                         defaultExcludes,
                         collector,
-                        symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
-                        unfilteredSnapshotConsumer);
+                        symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, getCurrentSegments()),
+                        unfilteredSnapshotConsumer,
+                        forkJoinPool);
                     Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
@@ -390,10 +456,87 @@ private boolean introducesCycle(String targetDirString) {
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
             if (shouldVisitFile(file, internedName)) {
-                builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                if (shouldFork()) {
+                    ForkJoinTask<FileSystemLocationSnapshot> task = ForkJoinTask.adapt(() -> snapshotFile(file, internedName, targetAttributes, accessType));
+                    forkedSnapshots.add(new ForkedSnapshot(parentDirectories.size(), task.fork(), null));
+                } else {
+                    builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                }
             }
         }
 
+        private boolean shouldFork() {
+            return forkJoinPool != null
+                && ForkJoinTask.getPool() == forkJoinPool
+                && ForkJoinTask.getSurplusQueuedTaskCount() <= MAX_SURPLUS_QUEUED_TASKS;
+        }
+
+        /**
+         * Walks the given directory with a separate visitor on the fork/join pool.
+         *
+         * The subtree visitor sees the same relative path and parent directories as this visitor would,
+         * so filtering and cycle detection behave the same as when walking the subtree directly.
+         */
+        private void forkSubtree(Path dir) {
+            AtomicBoolean subtreeHasBeenFiltered = new AtomicBoolean();
+            PathVisitor subtreeVisitor = new PathVisitor(
+                predicate,
+                subtreeHasBeenFiltered,
+                hasher,
+                stringInterner,
+                defaultExcludes,
+                collector,
+                symbolicLinkMapping,
+                unfilteredSnapshotConsumer,
+                forkJoinPool,
+                true,
+                ImmutableList.copyOf(getCurrentSegments()),
+                new ArrayDeque<>(parentDirectories));
+            ForkJoinTask<FileSystemLocationSnapshot> task = ForkJoinTask.adapt(() -> {
+                try {
+                    Files.walkFileTree(dir, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, subtreeVisitor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", dir), e);
+                }
+                return subtreeVisitor.getResult();
+            });
+            forkedSnapshots.add(new ForkedSnapshot(parentDirectories.size(), task.fork(), subtreeHasBeenFiltered));
+        }
+
+        /**
+         * Adds the results of the work forked from the directory at the given depth to the current level of the builder.
+         */
+        private void joinForkedSnapshots(int depth) {
+            while (!forkedSnapshots.isEmpty()) {
+                ForkedSnapshot forkedSnapshot = forkedSnapshots.get(forkedSnapshots.size() - 1);
+                if (forkedSnapshot.depth != depth) {
+                    break;
+                }
+                forkedSnapshots.remove(forkedSnapshots.size() - 1);
+                FileSystemLocationSnapshot snapshot = forkedSnapshot.task.join();
+                if (snapshot == null) {
+                    // The directory disappeared before the forked walk got to it
+                    continue;
+                }
+                if (forkedSnapshot.subtreeHasBeenFiltered == null) {
+                    builder.visitLeafElement((FileSystemLeafSnapshot) snapshot);
+                } else {
+                    builder.visitDirectory((DirectorySnapshot) snapshot);
+                    if (forkedSnapshot.subtreeHasBeenFiltered.get()) {
+                        filteredDirectorySnapshots.add(snapshot);
+                        builder.markCurrentLevelAsFiltered();
+                        hasBeenFiltered.set(true);
+                    }
+                }
+            }
+        }
+
+        private Iterable<String> getCurrentSegments() {
+            return subtreeSegmentsPrefix.isEmpty()
+                ? pathTracker.getSegments()
+                : Iterables.concat(subtreeSegmentsPrefix, pathTracker.getSegments());
+        }
+
         private boolean shouldVisitDirectory(Path dir, String internedName) {
             return pathTracker.isRoot() || shouldVisit(dir, internedName, true);
         }
@@ -413,17 +556,18 @@ private BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFil
         }
 
         private FileSystemLeafSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
-            String internedRemappedAbsoluteFilePath = intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath));
             if (attrs.isSymbolicLink()) {
-                return new MissingFileSnapshot(internedRemappedAbsoluteFilePath, internedName, accessType);
+                return new MissingFileSnapshot(intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath)), internedName, accessType);
             } else if (!attrs.isRegularFile()) {
-                throw new UncheckedIOException(new IOException(String.format("Cannot snapshot %s: not a regular file", internedRemappedAbsoluteFilePath)));
+                throw new UncheckedIOException(new IOException(String.format("Cannot snapshot %s: not a regular file", symbolicLinkMapping.remapAbsolutePath(absoluteFilePath))));
             }
             long lastModified = attrs.lastModifiedTime().toMillis();
             long fileLength = attrs.size();
             FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
             HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
-            return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
+            // Share the interned path of the parent directory instead of retaining the absolute path of every file
+            String internedRemappedParentPath = intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath.getParent()));
+            return RegularFileSnapshot.inDirectory(internedRemappedParentPath, internedName, hash, metadata);
         }
 
         /** unlistable directories (and maybe some locked files) will stop here */
@@ -472,7 +616,7 @@ private boolean shouldVisit(Path path, String internedName, boolean isDirectory)
             if (predicate == null) {
                 return true;
             }
-            boolean allowed = predicate.test(path, internedName, isDirectory, symbolicLinkMapping.getRemappedSegments(pathTracker.getSegments()));
+            boolean allowed = predicate.test(path, internedName, isDirectory, symbolicLinkMapping.getRemappedSegments(getCurrentSegments()));
             if (!allowed) {
                 builder.markCurrentLevelAsFiltered();
                 hasBeenFiltered.set(true);
@@ -489,4 +633,17 @@ public FileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    private static class ForkedSnapshot {
+        private final int depth;
+        private final ForkJoinTask<FileSystemLocationSnapshot> task;
+        @Nullable
+        private final AtomicBoolean subtreeHasBeenFiltered;
+
+        public ForkedSnapshot(int depth, ForkJoinTask<FileSystemLocationSnapshot> task, @Nullable AtomicBoolean subtreeHasBeenFiltered) {
+            this.depth = depth;
+            this.task = task;
+            this.subtreeHasBeenFiltered = subtreeHasBeenFiltered;
+        }
+    }
 }
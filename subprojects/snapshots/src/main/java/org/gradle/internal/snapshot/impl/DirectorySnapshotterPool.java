@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The bounded pool used by {@link DirectorySnapshotter} to walk and hash directory trees concurrently.
+ *
+ * <p>The pool is sequential until it is given a parallelism of at least 2. The parallelism can be changed between builds.</p>
+ */
+public class DirectorySnapshotterPool implements Closeable {
+    private volatile ForkJoinPool forkJoinPool;
+    private int parallelism;
+
+    /**
+     * A pool which does not fork any work, directories are snapshotted on the calling thread.
+     */
+    public static DirectorySnapshotterPool sequential() {
+        return new DirectorySnapshotterPool();
+    }
+
+    /**
+     * Creates a pool with the given number of workers, or a sequential pool if {@code parallelism} is less than 2.
+     */
+    public static DirectorySnapshotterPool withParallelism(int parallelism) {
+        DirectorySnapshotterPool pool = new DirectorySnapshotterPool();
+        pool.setParallelism(parallelism);
+        return pool;
+    }
+
+    /**
+     * Changes the number of workers. Work already running on the previous workers is allowed to finish.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        int effectiveParallelism = parallelism < 2 ? 0 : parallelism;
+        if (effectiveParallelism == this.parallelism) {
+            return;
+        }
+        ForkJoinPool previous = forkJoinPool;
+        forkJoinPool = effectiveParallelism == 0
+            ? null
+            : new ForkJoinPool(effectiveParallelism, DirectorySnapshotterPool::newWorkerThread, null, false);
+        this.parallelism = effectiveParallelism;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    private static ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Directory snapshotter " + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * The pool to snapshot on, or {@code null} when snapshotting sequentially.
+     */
+    @Nullable
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
+            forkJoinPool = null;
+            parallelism = 0;
+        }
+    }
+}
@@ -105,15 +105,33 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        private boolean rootDirectoryAlreadyRecorded;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * Creates a visitor for a subtree of a hierarchy which is already being visited.
+         *
+         * When {@code subtreeOfVisitedHierarchy} is {@code true}, neither the hierarchy nor the root directory of the visited subtree
+         * are recorded, since both have already been recorded by the visitor of the enclosing hierarchy.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean subtreeOfVisitedHierarchy) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.rootDirectoryAlreadyRecorded = subtreeOfVisitedHierarchy;
+            if (!subtreeOfVisitedHierarchy) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (rootDirectoryAlreadyRecorded) {
+                rootDirectoryAlreadyRecorded = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.internal.file.FileException;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshotHierarchyVisitor;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks whether snapshots which have been taken earlier, for example by a different daemon, still match the file system.
+ *
+ * Only metadata is compared, so this is a lot cheaper than snapshotting the locations again.
+ * A regular file is considered unchanged when its length and its last modified time did not change.
+ * A directory is considered unchanged when it still contains the same entries, ignoring the default excludes.
+ *
+ * <p>Like the racy-git check, regular files with a last modified time at or after {@code racyTimestampThreshold} are never considered unchanged.
+ * Such a file may have been modified again after the snapshot was taken, within the same file system timestamp, so its metadata could match while its content does not.</p>
+ */
+public class FileSystemSnapshotValidator {
+    private final Stat stat;
+    private final DirectorySnapshotter.DefaultExcludes defaultExcludes;
+    private final long racyTimestampThreshold;
+
+    public FileSystemSnapshotValidator(Stat stat, Collection<String> defaultExcludes) {
+        this(stat, defaultExcludes, Long.MAX_VALUE);
+    }
+
+    public FileSystemSnapshotValidator(Stat stat, Collection<String> defaultExcludes, long racyTimestampThreshold) {
+        this.stat = stat;
+        this.defaultExcludes = new DirectorySnapshotter.DefaultExcludes(defaultExcludes);
+        this.racyTimestampThreshold = racyTimestampThreshold;
+    }
+
+    public boolean isUpToDate(FileSystemLocationSnapshot snapshot) {
+        ValidatingVisitor visitor = new ValidatingVisitor();
+        snapshot.accept(visitor);
+        return visitor.upToDate;
+    }
+
+    private class ValidatingVisitor implements FileSystemSnapshotHierarchyVisitor {
+        private final Deque<Set<String>> childNames = new ArrayDeque<>();
+        private boolean upToDate = true;
+
+        @Override
+        public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot) {
+            if (upToDate) {
+                Set<String> siblingNames = childNames.peek();
+                if (siblingNames != null) {
+                    siblingNames.add(snapshot.getName());
+                }
+                upToDate = hasSameMetadata(snapshot);
+            }
+            return upToDate ? SnapshotVisitResult.CONTINUE : SnapshotVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public void enterDirectory(DirectorySnapshot directorySnapshot) {
+            childNames.push(new HashSet<>());
+        }
+
+        @Override
+        public void leaveDirectory(DirectorySnapshot directorySnapshot) {
+            Set<String> expectedChildNames = childNames.pop();
+            if (upToDate) {
+                upToDate = hasSameEntries(new File(directorySnapshot.getAbsolutePath()), expectedChildNames);
+            }
+        }
+
+        private boolean hasSameMetadata(FileSystemLocationSnapshot snapshot) {
+            FileMetadata metadata;
+            try {
+                metadata = stat.stat(new File(snapshot.getAbsolutePath()));
+            } catch (FileException e) {
+                return false;
+            }
+            if (metadata.getType() != snapshot.getType() || metadata.getAccessType() != snapshot.getAccessType()) {
+                return false;
+            }
+            if (snapshot instanceof RegularFileSnapshot) {
+                FileMetadata snapshotMetadata = ((RegularFileSnapshot) snapshot).getMetadata();
+                return metadata.getLength() == snapshotMetadata.getLength()
+                    && metadata.getLastModified() == snapshotMetadata.getLastModified()
+                    && metadata.getLastModified() < racyTimestampThreshold;
+            }
+            return true;
+        }
+
+        private boolean hasSameEntries(File directory, Set<String> expectedChildNames) {
+            String[] actualChildNames = directory.list();
+            if (actualChildNames == null) {
+                return false;
+            }
+            int foundChildren = 0;
+            for (String actualChildName : actualChildNames) {
+                if (expectedChildNames.contains(actualChildName)) {
+                    foundChildren++;
+                } else if (!isDefaultExcluded(new File(directory, actualChildName))) {
+                    return false;
+                }
+            }
+            return foundChildren == expectedChildNames.size();
+        }
+
+        private boolean isDefaultExcluded(File child) {
+            String name = child.getName();
+            return Files.isDirectory(child.toPath())
+                ? defaultExcludes.excludeDir(name)
+                : defaultExcludes.excludeFile(name);
+        }
+    }
+}
@@ -25,4 +25,43 @@ class RegularFileSnapshotTest extends AbstractFileSystemLeafSnapshotTest {
     protected RegularFileSnapshot createInitialRootNode(String absolutePath) {
         return new RegularFileSnapshot(absolutePath, PathUtil.getFileName(absolutePath), TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
     }
+
+    def "snapshot in directory computes its absolute path from the parent path"() {
+        def parentPath = new File("/some/dir").absolutePath
+        def metadata = DefaultFileMetadata.file(1, 2, AccessType.VIA_SYMLINK)
+        def hash = TestHashCodes.hashCodeFrom(1235)
+
+        when:
+        def snapshot = RegularFileSnapshot.inDirectory(parentPath, "file.txt", hash, metadata)
+        def fullPathSnapshot = new RegularFileSnapshot(new File(parentPath, "file.txt").absolutePath, "file.txt", hash, metadata)
+
+        then:
+        snapshot.absolutePath == new File(parentPath, "file.txt").absolutePath
+        snapshot.name == "file.txt"
+        snapshot.metadata == metadata
+        snapshot.accessType == AccessType.VIA_SYMLINK
+        snapshot == fullPathSnapshot
+        snapshot.hashCode() == fullPathSnapshot.hashCode()
+        snapshot.isContentAndMetadataUpToDate(fullPathSnapshot)
+    }
+
+    def "snapshot in file system root does not duplicate the separator"() {
+        def root = File.listRoots()[0].absolutePath
+
+        when:
+        def snapshot = RegularFileSnapshot.inDirectory(root, "file.txt", TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
+
+        then:
+        snapshot.absolutePath == root + "file.txt"
+    }
+
+    def "metadata change is detected"() {
+        def hash = TestHashCodes.hashCodeFrom(1235)
+        def snapshot = new RegularFileSnapshot("/some/file.txt", "file.txt", hash, DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
+
+        expect:
+        snapshot.isContentAndMetadataUpToDate(new RegularFileSnapshot("/some/file.txt", "file.txt", hash, DefaultFileMetadata.file(1, 2, AccessType.DIRECT)))
+        !snapshot.isContentAndMetadataUpToDate(new RegularFileSnapshot("/some/file.txt", "file.txt", hash, DefaultFileMetadata.file(3, 2, AccessType.DIRECT)))
+        !snapshot.isContentAndMetadataUpToDate(new RegularFileSnapshot("/some/file.txt", "file.txt", hash, DefaultFileMetadata.file(1, 4, AccessType.DIRECT)))
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.apache.tools.ant.DirectoryScanner
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class FileSystemSnapshotValidatorTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def defaultExcludes = DirectoryScanner.getDefaultExcludes() as List
+    def directorySnapshotter = new DirectorySnapshotter(new TestFileHasher(), new StringInterner(), defaultExcludes, Stub(DirectorySnapshotterStatistics.Collector))
+    def validator = new FileSystemSnapshotValidator(TestFiles.fileSystem(), defaultExcludes)
+
+    def "unchanged directory is up-to-date"() {
+        def rootDir = createTree()
+        def snapshot = snapshot(rootDir)
+
+        expect:
+        validator.isUpToDate(snapshot)
+    }
+
+    def "default excludes added to a directory are ignored"() {
+        def rootDir = createTree()
+        def snapshot = snapshot(rootDir)
+
+        when:
+        rootDir.file("dir1/.git/config").text = "config"
+        rootDir.file("dir2/.DS_Store").text = "store"
+
+        then:
+        validator.isUpToDate(snapshot)
+    }
+
+    def "detects #change"() {
+        def rootDir = createTree()
+        def snapshot = snapshot(rootDir)
+
+        when:
+        modification(rootDir)
+
+        then:
+        !validator.isUpToDate(snapshot)
+
+        where:
+        change                     | modification
+        "changed file content"     | { TestFile root -> root.file("dir1/file1.txt").text = "changed content" }
+        "removed file"             | { TestFile root -> root.file("dir1/file1.txt").delete() }
+        "added file"               | { TestFile root -> root.file("dir1/added.txt").text = "added" }
+        "added directory"          | { TestFile root -> root.file("dir1/added").createDir() }
+        "file replaced by dir"     | { TestFile root -> root.file("dir2/file2.txt").with { delete(); createDir() } }
+        "removed root"             | { TestFile root -> root.deleteDir() }
+    }
+
+    def "file modified within the timestamp granularity of the snapshot is not up-to-date"() {
+        def rootDir = createTree()
+        def snapshot = snapshot(rootDir)
+        def lastModified = rootDir.file("dir1/file1.txt").lastModified()
+
+        expect:
+        !new FileSystemSnapshotValidator(TestFiles.fileSystem(), defaultExcludes, lastModified).isUpToDate(snapshot)
+        new FileSystemSnapshotValidator(TestFiles.fileSystem(), defaultExcludes, Long.MAX_VALUE).isUpToDate(snapshot)
+    }
+
+    def "detects missing file being created"() {
+        def missingFile = tmpDir.file("missing.txt")
+        def snapshot = new MissingFileSnapshot(missingFile.absolutePath, AccessType.DIRECT)
+
+        expect:
+        validator.isUpToDate(snapshot)
+
+        when:
+        missingFile.text = "created"
+
+        then:
+        !validator.isUpToDate(snapshot)
+    }
+
+    private FileSystemLocationSnapshot snapshot(TestFile rootDir) {
+        directorySnapshotter.snapshot(rootDir.absolutePath, null, {})
+    }
+
+    private TestFile createTree() {
+        def rootDir = tmpDir.createDir("root")
+        rootDir.file("dir1/file1.txt").text = "content1"
+        rootDir.file("dir2/file2.txt").text = "content2"
+        rootDir.file("dir2/empty").createDir()
+        rootDir.file("root.txt").text = "root"
+        return rootDir
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.fingerprint.impl.PatternSetSnapshottingFilter
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.SnapshotVisitorUtil
+import org.gradle.internal.snapshot.SnapshottingFilter
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class ParallelDirectorySnapshotterTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def fileHasher = new TestFileHasher()
+    def pool = DirectorySnapshotterPool.withParallelism(4)
+    def sequentialStatistics = new DirectorySnapshotterStatistics.Collector()
+    def parallelStatistics = new DirectorySnapshotterStatistics.Collector()
+    def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], sequentialStatistics)
+    def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], parallelStatistics, pool)
+
+    def cleanup() {
+        pool.close()
+    }
+
+    def "creates the same snapshot as the sequential snapshotter"() {
+        def rootDir = createTree()
+
+        when:
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, null, {})
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, {})
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getAbsolutePaths(parallel, true) == SnapshotVisitorUtil.getAbsolutePaths(sequential, true)
+    }
+
+    def "records the same statistics as the sequential snapshotter"() {
+        def rootDir = createTree()
+
+        when:
+        sequentialSnapshotter.snapshot(rootDir.absolutePath, null, {})
+        parallelSnapshotter.snapshot(rootDir.absolutePath, null, {})
+        def sequential = sequentialStatistics.collect()
+        def parallel = parallelStatistics.collect()
+
+        then:
+        parallel.visitedHierarchyCount == 1
+        parallel.visitedHierarchyCount == sequential.visitedHierarchyCount
+        parallel.visitedDirectoryCount == sequential.visitedDirectoryCount
+        parallel.visitedFiles == sequential.visitedFiles
+        parallel.failedFiles == sequential.failedFiles
+    }
+
+    def "reports the same unfiltered snapshots as the sequential snapshotter when filtering"() {
+        def rootDir = createTree()
+        def patterns = new PatternSet()
+        patterns.include("**/*.txt")
+        patterns.exclude("dir3/**")
+        List<FileSystemLocationSnapshot> sequentialUnfiltered = []
+        List<FileSystemLocationSnapshot> parallelUnfiltered = new CopyOnWriteArrayList<>()
+
+        when:
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, directoryWalkerPredicate(patterns), { sequentialUnfiltered.add(it) })
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, directoryWalkerPredicate(patterns), { parallelUnfiltered.add(it) })
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel, true) == SnapshotVisitorUtil.getRelativePaths(sequential, true)
+        parallelUnfiltered*.absolutePath as Set == sequentialUnfiltered*.absolutePath as Set
+        parallelUnfiltered*.hash as Set == sequentialUnfiltered*.hash as Set
+    }
+
+    private TestFile createTree() {
+        def rootDir = tmpDir.createDir("root")
+        (1..5).each { dir ->
+            (1..5).each { subDir ->
+                (1..20).each { file ->
+                    rootDir.file("dir${dir}/sub${subDir}/file${file}.txt").text = "content ${dir} ${subDir} ${file}"
+                    rootDir.file("dir${dir}/sub${subDir}/file${file}.html").text = "html ${dir} ${subDir} ${file}"
+                }
+            }
+            rootDir.file("dir${dir}/empty").createDir()
+        }
+        rootDir.file("root.txt").text = "root"
+        return rootDir
+    }
+
+    private static SnapshottingFilter.DirectoryWalkerPredicate directoryWalkerPredicate(PatternSet patternSet) {
+        return new PatternSetSnapshottingFilter(patternSet, TestFiles.fileSystem()).asDirectoryWalkerPredicate
+    }
+}